@@ -0,0 +1,486 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.arrow;
+
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.BaseFixedWidthVector;
+import org.apache.arrow.vector.BaseVariableWidthVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import com.alibaba.supersonic.base.exception.SupersonicException;
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.BlockBuilder;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.base.memory.Arena;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrs;
+import com.google.common.base.Preconditions;
+
+/**
+ * Converts between views and Apache Arrow record batches
+ * ({@link VectorSchemaRoot}s). Values are copied once, in bulk: fixed-width
+ * columns with a single array copy per column, variable-length columns with
+ * one copy of the whole data buffer (on import) or of each value (on
+ * export). Only the NULL flags and BOOL values are converted one by one, as
+ * Arrow packs them into bitmaps.
+ * 
+ * Types map as follows:
+ * 
+ *   INT32, UINT32, INT64, UINT64 - Int(32|64, signed|unsigned)
+ *   FLOAT, DOUBLE                - FloatingPoint(SINGLE|DOUBLE)
+ *   BOOL                         - Bool
+ *   DATE                         - Date(DAY)
+ *   DATETIME                     - Timestamp(MICROSECOND), without time zone
+ *   STRING, BINARY               - Utf8, Binary
+ *   DATA_TYPE                    - Int(32, signed), with the DATA_TYPE_KEY
+ *                                  field metadata
+ * 
+ * Nullability maps to Arrow's nullable flag.
+ */
+public final class ArrowConverter {
+
+  /**
+   * The field metadata key that marks an Int(32) field as a DATA_TYPE
+   * column; the value is "DATA_TYPE".
+   */
+  public static final String DATA_TYPE_KEY = "supersonic.type";
+
+  private ArrowConverter() {
+  }
+
+  /**
+   * Returns the Arrow schema of record batches with the schema's columns.
+   */
+  public static Schema toArrowSchema(final TupleSchema schema) {
+    List<Field> fields = new ArrayList<Field>(schema.attributeCount());
+    for (int i = 0; i < schema.attributeCount(); ++i) {
+      final Attribute attribute = schema.getAttributeAt(i);
+      Map<String, String> metadata = null;
+      if (attribute.getType() == DataType.DATA_TYPE) {
+        metadata = Collections.singletonMap(DATA_TYPE_KEY,
+            DataType.DATA_TYPE.name());
+      }
+      fields.add(new Field(attribute.getName(), new FieldType(
+          attribute.isNullable(), toArrowType(attribute.getType()), null,
+          metadata), null));
+    }
+    return new Schema(fields);
+  }
+
+  /**
+   * Returns the schema of views holding the Arrow schema's record batches,
+   * or a failure if a field's type has no Supersonic counterpart.
+   */
+  public static FailureOr<TupleSchema> fromArrowSchema(final Schema schema) {
+    TupleSchema.Builder result = TupleSchema.builder();
+    for (Field field : schema.getFields()) {
+      final DataType type = fromArrowType(field);
+      if (type == null) {
+        return FailureOrs.failure(new SupersonicException(
+            ReturnCode.ERROR_INVALID_ARGUMENT_TYPE,
+            "No Supersonic type for Arrow field " + field));
+      }
+      if (!result.addAttribute(new Attribute(field.getName(), type,
+          field.isNullable() ? Nullability.NULLABLE
+              : Nullability.NOT_NULLABLE))) {
+        return FailureOrs.failure(new SupersonicException(
+            ReturnCode.ERROR_ATTRIBUTE_EXISTS,
+            "Duplicate Arrow field name: " + field.getName()));
+      }
+    }
+    return FailureOrs.success(result.build());
+  }
+
+  /**
+   * Copies the view into the root, replacing its contents. The root must
+   * have the schema given by {@link #toArrowSchema(TupleSchema)} for the
+   * view's schema (or one equal by type), e.g. created with:
+   * 
+   *   VectorSchemaRoot.create(toArrowSchema(schema), allocator)
+   * 
+   * and can be reused across views.
+   */
+  public static void exportView(final View view,
+      final VectorSchemaRoot root) {
+    Preconditions.checkArgument(
+        root.getFieldVectors().size() == view.columnCount(),
+        "Column count mismatch");
+    final int rowCount = view.rowCount();
+    for (int i = 0; i < view.columnCount(); ++i) {
+      exportColumn(view.column(i), rowCount, root.getVector(i));
+    }
+    root.setRowCount(rowCount);
+  }
+
+  /**
+   * Copies up to count rows of the root, starting at firstRow, to the end of
+   * the target's block, whose schema must be equal by type to the one given
+   * by {@link #fromArrowSchema(Schema)} for the root. Returns the number of
+   * rows copied, which is less than count if the block fills up, or a
+   * failure, with nothing copied, if the column counts or types differ or
+   * the copied rows have NULLs in a column that is not nullable in the
+   * block.
+   */
+  public static FailureOr<Integer> importRows(final VectorSchemaRoot root,
+      final int firstRow, final int count, final BlockBuilder target) {
+    Preconditions.checkPositionIndexes(firstRow, firstRow + count,
+        root.getRowCount());
+    final Block block = target.block();
+    if (root.getFieldVectors().size() != block.columnCount()) {
+      return FailureOrs.failure(new SupersonicException(
+          ReturnCode.ERROR_ATTRIBUTE_COUNT_MISMATCH,
+          "Arrow root has " + root.getFieldVectors().size()
+              + " columns, block has " + block.columnCount()));
+    }
+    final int copied = Math.min(count, target.remainingCapacity());
+    for (int i = 0; i < block.columnCount(); ++i) {
+      final Attribute attribute = block.schema().getAttributeAt(i);
+      final FieldVector vector = root.getVector(i);
+      final DataType type = fromArrowType(vector.getField());
+      if (type != attribute.getType()) {
+        return FailureOrs.failure(new SupersonicException(
+            ReturnCode.ERROR_ATTRIBUTE_TYPE_MISMATCH,
+            "Arrow type " + vector.getField().getType()
+                + " doesn't match attribute '" + attribute.getName()
+                + "' of type " + attribute.getType()));
+      }
+      if (block.isNull(i) == null && hasNulls(vector, firstRow, copied)) {
+        return FailureOrs.failure(new SupersonicException(
+            ReturnCode.ERROR_ATTRIBUTE_IS_NULLABLE,
+            "NULLs in Arrow vector for non-nullable attribute '"
+                + attribute.getName() + "'"));
+      }
+    }
+    final int targetRow = target.reserve(copied);
+    for (int i = 0; i < block.columnCount(); ++i) {
+      importColumn(root.getVector(i), firstRow, copied, block, i, targetRow);
+    }
+    return FailureOrs.success(copied);
+  }
+
+  private static boolean hasNulls(final FieldVector vector,
+      final int firstRow, final int count) {
+    if (vector.getNullCount() == 0) {
+      return false;
+    }
+    for (int i = firstRow; i < firstRow + count; ++i) {
+      if (vector.isNull(i)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static ArrowType toArrowType(final DataType type) {
+    switch (type) {
+      case INT32:
+      case DATA_TYPE:
+        return new ArrowType.Int(32, true);
+      case UINT32:
+        return new ArrowType.Int(32, false);
+      case INT64:
+        return new ArrowType.Int(64, true);
+      case UINT64:
+        return new ArrowType.Int(64, false);
+      case FLOAT:
+        return new ArrowType.FloatingPoint(FloatingPointPrecision.SINGLE);
+      case DOUBLE:
+        return new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE);
+      case BOOL:
+        return ArrowType.Bool.INSTANCE;
+      case DATE:
+        return new ArrowType.Date(DateUnit.DAY);
+      case DATETIME:
+        return new ArrowType.Timestamp(TimeUnit.MICROSECOND, null);
+      case STRING:
+        return ArrowType.Utf8.INSTANCE;
+      case BINARY:
+        return ArrowType.Binary.INSTANCE;
+      default:
+        throw new IllegalArgumentException("Unsupported type: " + type);
+    }
+  }
+
+  /**
+   * Returns the DataType of the field, or null if there's none.
+   */
+  private static DataType fromArrowType(final Field field) {
+    final ArrowType type = field.getType();
+    switch (type.getTypeID()) {
+      case Int: {
+        final ArrowType.Int intType = (ArrowType.Int) type;
+        if (intType.getBitWidth() == 32) {
+          if (!intType.getIsSigned()) {
+            return DataType.UINT32;
+          }
+          return DataType.DATA_TYPE.name().equals(
+              field.getMetadata().get(DATA_TYPE_KEY))
+              ? DataType.DATA_TYPE : DataType.INT32;
+        }
+        if (intType.getBitWidth() == 64) {
+          return intType.getIsSigned() ? DataType.INT64 : DataType.UINT64;
+        }
+        return null;
+      }
+      case FloatingPoint: {
+        final FloatingPointPrecision precision =
+            ((ArrowType.FloatingPoint) type).getPrecision();
+        return precision == FloatingPointPrecision.SINGLE ? DataType.FLOAT
+            : precision == FloatingPointPrecision.DOUBLE ? DataType.DOUBLE
+                : null;
+      }
+      case Bool:
+        return DataType.BOOL;
+      case Date:
+        return ((ArrowType.Date) type).getUnit() == DateUnit.DAY
+            ? DataType.DATE : null;
+      case Timestamp:
+        return ((ArrowType.Timestamp) type).getUnit() == TimeUnit.MICROSECOND
+            && ((ArrowType.Timestamp) type).getTimezone() == null
+            ? DataType.DATETIME : null;
+      case Utf8:
+        return DataType.STRING;
+      case Binary:
+        return DataType.BINARY;
+      default:
+        return null;
+    }
+  }
+
+  private static void exportColumn(final Column column, final int rowCount,
+      final FieldVector vector) {
+    final int offset = column.offset();
+    switch (column.typeInfo().type()) {
+      case INT32:
+      case UINT32:
+      case DATE:
+      case DATA_TYPE: {
+        final ArrowBuf data = allocateFixedWidth(vector, rowCount);
+        data.nioBuffer(0, rowCount * 4).order(ByteOrder.LITTLE_ENDIAN)
+            .asIntBuffer().put((int[]) column.data(), offset, rowCount);
+        break;
+      }
+      case INT64:
+      case UINT64:
+      case DATETIME: {
+        final ArrowBuf data = allocateFixedWidth(vector, rowCount);
+        data.nioBuffer(0, rowCount * 8).order(ByteOrder.LITTLE_ENDIAN)
+            .asLongBuffer().put((long[]) column.data(), offset, rowCount);
+        break;
+      }
+      case FLOAT: {
+        final ArrowBuf data = allocateFixedWidth(vector, rowCount);
+        data.nioBuffer(0, rowCount * 4).order(ByteOrder.LITTLE_ENDIAN)
+            .asFloatBuffer().put((float[]) column.data(), offset, rowCount);
+        break;
+      }
+      case DOUBLE: {
+        final ArrowBuf data = allocateFixedWidth(vector, rowCount);
+        data.nioBuffer(0, rowCount * 8).order(ByteOrder.LITTLE_ENDIAN)
+            .asDoubleBuffer().put((double[]) column.data(), offset, rowCount);
+        break;
+      }
+      case BOOL: {
+        final ArrowBuf data = allocateFixedWidth(vector, rowCount);
+        final boolean[] values = (boolean[]) column.data();
+        for (int i = 0; i < rowCount; i += 8) {
+          int bits = 0;
+          final int limit = Math.min(8, rowCount - i);
+          for (int j = 0; j < limit; ++j) {
+            if (values[offset + i + j]) {
+              bits |= 1 << j;
+            }
+          }
+          data.setByte(i >> 3, bits);
+        }
+        break;
+      }
+      case STRING:
+      case BINARY:
+        exportVariableWidth(column, rowCount,
+            (BaseVariableWidthVector) vector);
+        break;
+      default:
+        throw new IllegalStateException("Unsupported type: "
+            + column.typeInfo().name());
+    }
+    exportValidity(column, rowCount, vector.getValidityBuffer());
+    vector.setValueCount(rowCount);
+  }
+
+  private static ArrowBuf allocateFixedWidth(final FieldVector vector,
+      final int rowCount) {
+    final BaseFixedWidthVector fixedWidth = (BaseFixedWidthVector) vector;
+    fixedWidth.clear();
+    fixedWidth.allocateNew(rowCount);
+    return fixedWidth.getDataBuffer();
+  }
+
+  private static void exportVariableWidth(final Column column,
+      final int rowCount, final BaseVariableWidthVector vector) {
+    final long[] pieces = (long[]) column.data();
+    final int offset = column.offset();
+    long totalLength = 0;
+    for (int i = 0; i < rowCount; ++i) {
+      if (!column.isNull(i)) {
+        totalLength += Arena.pieceLength(pieces[offset + i]);
+      }
+    }
+    vector.clear();
+    vector.allocateNew(Math.max(totalLength, 1), rowCount);
+    final ArrowBuf offsets = vector.getOffsetBuffer();
+    final ArrowBuf data = vector.getDataBuffer();
+    final byte[] arena = column.arena() == null ? null
+        : column.arena().buffer();
+    int end = 0;
+    offsets.setInt(0, 0);
+    for (int i = 0; i < rowCount; ++i) {
+      if (!column.isNull(i)) {
+        final long piece = pieces[offset + i];
+        final int length = Arena.pieceLength(piece);
+        data.setBytes(end, arena, Arena.pieceOffset(piece), length);
+        end += length;
+      }
+      offsets.setInt((long) (i + 1) * 4, end);
+    }
+    vector.setLastSet(rowCount - 1);
+  }
+
+  /**
+   * Packs the column's NULL flags into the Arrow validity bitmap, in which
+   * set bits mark non-NULL values.
+   */
+  private static void exportValidity(final Column column, final int rowCount,
+      final ArrowBuf validity) {
+    final boolean[] isNull = column.isNull();
+    final int offset = column.isNullOffset();
+    for (int i = 0; i < rowCount; i += 8) {
+      final int limit = Math.min(8, rowCount - i);
+      int bits = (1 << limit) - 1;
+      if (isNull != null) {
+        for (int j = 0; j < limit; ++j) {
+          if (isNull[offset + i + j]) {
+            bits &= ~(1 << j);
+          }
+        }
+      }
+      validity.setByte(i >> 3, bits);
+    }
+  }
+
+  private static void importColumn(final FieldVector vector,
+      final int firstRow, final int count, final Block block,
+      final int column, final int targetRow) {
+    final boolean[] isNull = block.isNull(column);
+    if (isNull != null) {
+      for (int i = 0; i < count; ++i) {
+        isNull[targetRow + i] = vector.isNull(firstRow + i);
+      }
+    }
+    switch (block.schema().getAttributeAt(column).getType()) {
+      case INT32:
+      case UINT32:
+      case DATE:
+      case DATA_TYPE:
+        vector.getDataBuffer().nioBuffer((long) firstRow * 4, count * 4)
+            .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer()
+            .get(block.intData(column), targetRow, count);
+        break;
+      case INT64:
+      case UINT64:
+      case DATETIME:
+        vector.getDataBuffer().nioBuffer((long) firstRow * 8, count * 8)
+            .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer()
+            .get(block.longData(column), targetRow, count);
+        break;
+      case FLOAT:
+        vector.getDataBuffer().nioBuffer((long) firstRow * 4, count * 4)
+            .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer()
+            .get(block.floatData(column), targetRow, count);
+        break;
+      case DOUBLE:
+        vector.getDataBuffer().nioBuffer((long) firstRow * 8, count * 8)
+            .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer()
+            .get(block.doubleData(column), targetRow, count);
+        break;
+      case BOOL: {
+        final ArrowBuf bits = vector.getDataBuffer();
+        final boolean[] data = block.boolData(column);
+        for (int i = 0; i < count; ++i) {
+          data[targetRow + i] = isBitSet(bits, firstRow + i);
+        }
+        break;
+      }
+      case STRING:
+      case BINARY:
+        importVariableWidth((BaseVariableWidthVector) vector, firstRow,
+            count, block, column, targetRow);
+        break;
+      default:
+        throw new IllegalStateException("Unsupported type: "
+            + block.schema().getAttributeAt(column).getType());
+    }
+  }
+
+  private static boolean isBitSet(final ArrowBuf bits, final int index) {
+    return (bits.getByte(index >> 3) & (1 << (index & 7))) != 0;
+  }
+
+  /**
+   * Copies the rows' values into the column's arena with a single copy of
+   * the data buffer range they occupy.
+   */
+  private static void importVariableWidth(
+      final BaseVariableWidthVector vector, final int firstRow,
+      final int count, final Block block, final int column,
+      final int targetRow) {
+    final ArrowBuf offsets = vector.getOffsetBuffer();
+    final int begin = offsets.getInt((long) firstRow * 4);
+    final int end = offsets.getInt((long) (firstRow + count) * 4);
+    final Arena arena = block.arena(column);
+    final int start = arena.reserve(end - begin);
+    vector.getDataBuffer().getBytes(begin, arena.buffer(), start, end - begin);
+    final long[] pieces = block.longData(column);
+    int valueStart = begin;
+    for (int i = 0; i < count; ++i) {
+      final int valueEnd = offsets.getInt((long) (firstRow + i + 1) * 4);
+      pieces[targetRow + i] = Arena.piece(start + valueStart - begin,
+          valueEnd - valueStart);
+      valueStart = valueEnd;
+    }
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.arrow;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.BlockBuilder;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+
+public class ArrowConverterTest extends TestCase {
+
+  private static final DataType[] TYPES = {
+    DataType.INT32, DataType.UINT32, DataType.INT64, DataType.UINT64,
+    DataType.FLOAT, DataType.DOUBLE, DataType.BOOL, DataType.DATE,
+    DataType.DATETIME, DataType.STRING, DataType.BINARY, DataType.DATA_TYPE,
+  };
+
+  private final Random random = new Random(5);
+  private BufferAllocator allocator;
+  private TupleSchema schema;
+
+  @Override
+  protected void setUp() {
+    allocator = new RootAllocator(Long.MAX_VALUE);
+    final TupleSchema.Builder builder = TupleSchema.builder();
+    for (DataType type : TYPES) {
+      builder.addAttribute(new Attribute(type.name().toLowerCase(), type,
+          Nullability.NOT_NULLABLE));
+      builder.addAttribute(new Attribute(type.name().toLowerCase() + "_n",
+          type, Nullability.NULLABLE));
+    }
+    schema = builder.build();
+  }
+
+  @Override
+  protected void tearDown() {
+    // Fails if any Arrow memory leaked.
+    allocator.close();
+  }
+
+  public void testSchemaRoundTrip() {
+    final Schema arrowSchema = ArrowConverter.toArrowSchema(schema);
+    assertEquals(schema.attributeCount(), arrowSchema.getFields().size());
+    assertEquals(schema, ArrowConverter.fromArrowSchema(arrowSchema).get());
+  }
+
+  public void testUnsupportedArrowType() {
+    final Schema arrowSchema = new Schema(Arrays.asList(new Field("x",
+        FieldType.nullable(new ArrowType.Int(16, true)), null)));
+    assertEquals(ReturnCode.ERROR_INVALID_ARGUMENT_TYPE,
+        ArrowConverter.fromArrowSchema(arrowSchema).exception()
+            .getReturnCode());
+  }
+
+  public void testRoundTrip() {
+    final Block block = block(203);
+    // Views at an offset, of sizes that aren't multiples of 8, and empty;
+    // the root is reused across them.
+    final View[] views = {
+      block.view(), new View(block.view(), 13, 150),
+      new View(block.view(), 200, 3), new View(block.view(), 5, 0),
+    };
+    final VectorSchemaRoot root = VectorSchemaRoot.create(
+        ArrowConverter.toArrowSchema(schema), allocator);
+    try {
+      for (View view : views) {
+        ArrowConverter.exportView(view, root);
+        assertEquals(view.rowCount(), root.getRowCount());
+        final Block copy = new Block(schema, view.rowCount());
+        final FailureOr<Integer> imported = ArrowConverter.importRows(root, 0,
+            view.rowCount(), new BlockBuilder(copy));
+        assertEquals(view.rowCount(), imported.get().intValue());
+        assertViewsEqual(view, copy.view());
+      }
+    } finally {
+      root.close();
+    }
+  }
+
+  public void testPartialImports() {
+    final Block block = block(100);
+    final VectorSchemaRoot root = VectorSchemaRoot.create(
+        ArrowConverter.toArrowSchema(schema), allocator);
+    try {
+      ArrowConverter.exportView(block.view(), root);
+      // Rows [10, 60) into a block of 30 rows that already holds 5.
+      final Block target = new Block(schema, 30);
+      final BlockBuilder builder = new BlockBuilder(target);
+      assertEquals(5, ArrowConverter.importRows(root, 90, 5, builder).get()
+          .intValue());
+      assertEquals(25, ArrowConverter.importRows(root, 10, 50, builder).get()
+          .intValue());
+      assertTrue(builder.isFull());
+      assertEquals(0, ArrowConverter.importRows(root, 35, 25, builder).get()
+          .intValue());
+      assertViewsEqual(new View(block.view(), 90, 5),
+          new View(target.view(), 0, 5));
+      assertViewsEqual(new View(block.view(), 10, 25),
+          new View(target.view(), 5, 25));
+    } finally {
+      root.close();
+    }
+  }
+
+  public void testNullsOnlyMatterInImportedRows() {
+    final TupleSchema notNullable = TupleSchema.singleton("x",
+        DataType.INT64, Nullability.NOT_NULLABLE);
+    final VectorSchemaRoot root = VectorSchemaRoot.create(new Schema(
+        Arrays.asList(new Field("x", FieldType.nullable(
+            new ArrowType.Int(64, true)), null))), allocator);
+    try {
+      final BigIntVector vector = (BigIntVector) root.getVector(0);
+      vector.allocateNew(10);
+      for (int i = 0; i < 10; ++i) {
+        if (i == 2) {
+          vector.setNull(i);
+        } else {
+          vector.set(i, i * 10);
+        }
+      }
+      root.setRowCount(10);
+      final BlockBuilder builder =
+          new BlockBuilder(new Block(notNullable, 10));
+      assertEquals(7, ArrowConverter.importRows(root, 3, 7, builder).get()
+          .intValue());
+      assertEquals(30, builder.block().longData(0)[0]);
+      final FailureOr<Integer> rejected =
+          ArrowConverter.importRows(root, 0, 3, builder);
+      assertEquals(ReturnCode.ERROR_ATTRIBUTE_IS_NULLABLE,
+          rejected.exception().getReturnCode());
+      assertEquals(7, builder.rowCount());
+      // Only rows that fit are checked.
+      assertEquals(2, ArrowConverter.importRows(root, 0, 3,
+          new BlockBuilder(new Block(notNullable, 2))).get().intValue());
+    } finally {
+      root.close();
+    }
+  }
+
+  public void testSchemaMismatches() {
+    final TupleSchema int64 = TupleSchema.singleton("x", DataType.INT64,
+        Nullability.NULLABLE);
+    final TupleSchema int32 = TupleSchema.singleton("x", DataType.INT32,
+        Nullability.NULLABLE);
+    final Block block = new Block(int64, 4);
+    final VectorSchemaRoot root = VectorSchemaRoot.create(
+        ArrowConverter.toArrowSchema(int64), allocator);
+    try {
+      ArrowConverter.exportView(block.view(), root);
+      final BlockBuilder wrongType = new BlockBuilder(new Block(int32, 4));
+      assertEquals(ReturnCode.ERROR_ATTRIBUTE_TYPE_MISMATCH,
+          ArrowConverter.importRows(root, 0, 4, wrongType).exception()
+              .getReturnCode());
+      assertEquals(0, wrongType.rowCount());
+      // DATA_TYPE and INT32 share the Arrow type, but not the metadata.
+      final TupleSchema dataType = TupleSchema.singleton("x",
+          DataType.DATA_TYPE, Nullability.NULLABLE);
+      final VectorSchemaRoot ints = VectorSchemaRoot.create(
+          ArrowConverter.toArrowSchema(int32), allocator);
+      try {
+        ArrowConverter.exportView(new Block(int32, 4).view(), ints);
+        assertEquals(ReturnCode.ERROR_ATTRIBUTE_TYPE_MISMATCH,
+            ArrowConverter.importRows(ints, 0, 4,
+                new BlockBuilder(new Block(dataType, 4))).exception()
+                .getReturnCode());
+      } finally {
+        ints.close();
+      }
+      final TupleSchema.Builder builder = TupleSchema.builder(int64);
+      builder.addAttribute(new Attribute("y", DataType.INT64,
+          Nullability.NULLABLE));
+      assertEquals(ReturnCode.ERROR_ATTRIBUTE_COUNT_MISMATCH,
+          ArrowConverter.importRows(root, 0, 4,
+              new BlockBuilder(new Block(builder.build(), 4))).exception()
+              .getReturnCode());
+    } finally {
+      root.close();
+    }
+  }
+
+  private Block block(final int rowCount) {
+    final Block block = new Block(schema, rowCount);
+    final DataType[] dataTypes = DataType.values();
+    for (int column = 0; column < schema.attributeCount(); ++column) {
+      final boolean[] isNull = block.isNull(column);
+      for (int i = 0; i < rowCount; ++i) {
+        switch (schema.getAttributeAt(column).getType()) {
+          case INT32:
+          case UINT32:
+          case DATE:
+            block.intData(column)[i] = random.nextInt();
+            break;
+          case DATA_TYPE:
+            block.intData(column)[i] =
+                dataTypes[random.nextInt(dataTypes.length)].getNumber();
+            break;
+          case INT64:
+          case UINT64:
+          case DATETIME:
+            block.longData(column)[i] = random.nextLong();
+            break;
+          case FLOAT:
+            block.floatData(column)[i] = random.nextFloat();
+            break;
+          case DOUBLE:
+            block.doubleData(column)[i] = random.nextGaussian();
+            break;
+          case BOOL:
+            block.boolData(column)[i] = random.nextBoolean();
+            break;
+          case STRING:
+            block.setString(column, i, Integer.toString(random.nextInt(),
+                36));
+            break;
+          case BINARY: {
+            final byte[] bytes = new byte[random.nextInt(20)];
+            random.nextBytes(bytes);
+            block.setBytes(column, i, bytes, 0, bytes.length);
+            break;
+          }
+          default:
+            throw new IllegalStateException();
+        }
+        if (isNull != null) {
+          isNull[i] = random.nextInt(5) == 0;
+        }
+      }
+    }
+    return block;
+  }
+
+  private static void assertViewsEqual(final View expected,
+      final View actual) {
+    assertEquals(expected.rowCount(), actual.rowCount());
+    for (int column = 0; column < expected.columnCount(); ++column) {
+      final Column e = expected.column(column);
+      final Column a = actual.column(column);
+      for (int i = 0; i < expected.rowCount(); ++i) {
+        final String message = e.attribute().getName() + " #" + i;
+        assertEquals(message, e.isNull(i), a.isNull(i));
+        if (e.isNull(i)) {
+          continue;
+        }
+        switch (e.attribute().getType()) {
+          case STRING:
+          case BINARY:
+            assertTrue(message, Arrays.equals(e.getBytes(i), a.getBytes(i)));
+            break;
+          default:
+            assertEquals(message, e.get(i), a.get(i));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.base.infrastructure;
+
+import java.util.Random;
+
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+
+/**
+ * Helpers that build schemas and populated views for the benchmarks.
+ */
+final class BenchmarkData {
+
+  private BenchmarkData() {
+  }
+
+  /**
+   * Returns a schema with columnCount attributes of the same type, named
+   * c0, c1, ...
+   */
+  static TupleSchema schema(final int columnCount, final DataType type,
+      final Nullability nullability) {
+    TupleSchema.Builder schema = TupleSchema.builder();
+    for (int i = 0; i < columnCount; ++i) {
+      schema.addAttribute(new Attribute("c" + i, type, nullability));
+    }
+    return schema.build();
+  }
+
+  /**
+   * Returns a view over rowCount random rows of the schema. In nullable
+   * columns, about nullDensity of the values are NULL.
+   */
+  static View view(final TupleSchema schema, final int rowCount,
+      final double nullDensity, final long seed) {
+    Random random = new Random(seed);
+    Block block = new Block(schema, rowCount);
+    for (int i = 0; i < schema.attributeCount(); ++i) {
+      boolean[] isNull = block.isNull(i);
+      for (int row = 0; row < rowCount; ++row) {
+        setRandom(block, i, row, random);
+        if (isNull != null) {
+          isNull[row] = random.nextDouble() < nullDensity;
+        }
+      }
+    }
+    return block.view();
+  }
+
+  private static void setRandom(final Block block, final int column,
+      final int row, final Random random) {
+    switch (block.schema().getAttributeAt(column).getType()) {
+      case INT32:
+      case UINT32:
+      case DATE:
+        block.intData(column)[row] = random.nextInt();
+        break;
+      case INT64:
+      case UINT64:
+      case DATETIME:
+        block.longData(column)[row] = random.nextLong();
+        break;
+      case FLOAT:
+        block.floatData(column)[row] = random.nextFloat();
+        break;
+      case DOUBLE:
+        block.doubleData(column)[row] = random.nextDouble();
+        break;
+      case BOOL:
+        block.boolData(column)[row] = random.nextBoolean();
+        break;
+      case STRING:
+        block.setString(column, row, Long.toString(random.nextLong(), 36));
+        break;
+      case BINARY:
+        byte[] bytes = new byte[8 + random.nextInt(24)];
+        random.nextBytes(bytes);
+        block.setBytes(column, row, bytes, 0, bytes.length);
+        break;
+      case DATA_TYPE:
+        block.intData(column)[row] =
+            DataType.values()[random.nextInt(DataType.values().length)]
+                .getNumber();
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported type: "
+            + block.schema().getAttributeAt(column).getType());
+    }
+  }
+}
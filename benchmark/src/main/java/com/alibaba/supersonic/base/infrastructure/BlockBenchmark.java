@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.base.infrastructure;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+
+/**
+ * Measures producing an output batch: into a freshly allocated block, versus
+ * into a block recycled through a {@link BlockPool}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BlockBenchmark {
+
+  private static final int ROW_COUNT = 1024;
+
+  @Param({ "INT64", "STRING" })
+  public DataType type;
+
+  private TupleSchema schema;
+  private View source;
+  private BlockPool pool;
+
+  @Setup
+  public void setUp() {
+    schema = BenchmarkData.schema(4, type, Nullability.NULLABLE);
+    source = BenchmarkData.view(schema, ROW_COUNT, 0.1, 42);
+    pool = new BlockPool(4);
+  }
+
+  @Benchmark
+  public int allocated() {
+    BlockBuilder builder = new BlockBuilder(new Block(schema, ROW_COUNT));
+    return builder.appendView(source);
+  }
+
+  @Benchmark
+  public int pooled() {
+    Block block = pool.acquire(schema, ROW_COUNT);
+    BlockBuilder builder = new BlockBuilder(block);
+    int result = builder.appendView(source);
+    pool.release(block);
+    return result;
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.base.infrastructure;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+
+/**
+ * Measures the per-row cost of the {@link Column} access paths, across types
+ * and NULL densities. Results are reported per row.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ColumnBenchmark {
+
+  private static final int ROW_COUNT = 4096;
+
+  @Param({ "INT32", "INT64", "DOUBLE", "STRING" })
+  public DataType type;
+
+  @Param({ "0.0", "0.1", "0.5" })
+  public double nullDensity;
+
+  private Column column;
+
+  @Setup
+  public void setUp() {
+    TupleSchema schema = BenchmarkData.schema(1, type, Nullability.NULLABLE);
+    column = BenchmarkData.view(schema, ROW_COUNT, nullDensity, 42).column(0);
+  }
+
+  /**
+   * Reads each value and its NULL flag through the boxing accessor.
+   */
+  @Benchmark
+  @OperationsPerInvocation(ROW_COUNT)
+  public int boxed() {
+    int result = 0;
+    for (int i = 0; i < ROW_COUNT; ++i) {
+      if (!column.isNull(i)) {
+        result += column.get(i).hashCode();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Reads each value and its NULL flag through the typed accessors.
+   */
+  @Benchmark
+  @OperationsPerInvocation(ROW_COUNT)
+  public long typed() {
+    long result = 0;
+    for (int i = 0; i < ROW_COUNT; ++i) {
+      if (!column.isNull(i)) {
+        switch (type) {
+          case INT32: result += column.getInt(i); break;
+          case INT64: result += column.getLong(i); break;
+          case DOUBLE: result += (long) column.getDouble(i); break;
+          default: result += column.getPiece(i); break;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Reads the values and NULL flags straight from the underlying arrays, as
+   * vectorized kernels do.
+   */
+  @Benchmark
+  @OperationsPerInvocation(ROW_COUNT)
+  public long direct() {
+    final boolean[] isNull = column.isNull();
+    final int nullOffset = column.isNullOffset();
+    final int offset = column.offset();
+    long result = 0;
+    switch (type) {
+      case INT32: {
+        final int[] data = (int[]) column.data();
+        for (int i = 0; i < ROW_COUNT; ++i) {
+          if (!isNull[nullOffset + i]) result += data[offset + i];
+        }
+        break;
+      }
+      case DOUBLE: {
+        final double[] data = (double[]) column.data();
+        for (int i = 0; i < ROW_COUNT; ++i) {
+          if (!isNull[nullOffset + i]) result += (long) data[offset + i];
+        }
+        break;
+      }
+      default: {
+        final long[] data = (long[]) column.data();
+        for (int i = 0; i < ROW_COUNT; ++i) {
+          if (!isNull[nullOffset + i]) result += data[offset + i];
+        }
+        break;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Counts NULLs, i.e. reads the NULL flags only.
+   */
+  @Benchmark
+  @OperationsPerInvocation(ROW_COUNT)
+  public int countNulls() {
+    final boolean[] isNull = column.isNull();
+    final int nullOffset = column.isNullOffset();
+    int result = 0;
+    for (int i = 0; i < ROW_COUNT; ++i) {
+      if (isNull[nullOffset + i]) ++result;
+    }
+    return result;
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.base.infrastructure;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+
+/**
+ * Measures transposing a block to rows ({@link RowBuffer#appendRows(View)})
+ * and back ({@link RowBuffer#copyRows(int, int, BlockBuilder)}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RowBufferBenchmark {
+
+  private static final int ROW_COUNT = 1024;
+
+  @Param({ "INT64", "STRING" })
+  public DataType type;
+
+  private View source;
+  private RowBuffer rows;
+  private RowBuffer filled;
+  private Block block;
+
+  @Setup
+  public void setUp() {
+    TupleSchema schema = BenchmarkData.schema(4, type, Nullability.NULLABLE);
+    source = BenchmarkData.view(schema, ROW_COUNT, 0.1, 42);
+    rows = new RowBuffer(schema);
+    filled = new RowBuffer(schema);
+    filled.appendRows(source);
+    block = new Block(schema, ROW_COUNT);
+  }
+
+  @Benchmark
+  public int columnsToRows() {
+    rows.reset();
+    return rows.appendRows(source);
+  }
+
+  @Benchmark
+  public int rowsToColumns() {
+    block.reset();
+    return filled.copyRows(0, ROW_COUNT, new BlockBuilder(block));
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.base.infrastructure;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+
+/**
+ * Measures the cost of creating and repositioning {@link View}s, which
+ * cursors do once or more per block.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ViewBenchmark {
+
+  private static final int ROW_COUNT = 1024;
+  private static final int STEP = 64;
+
+  @Param({ "1", "8", "64" })
+  public int columnCount;
+
+  private TupleSchema schema;
+  private View source;
+
+  @Setup
+  public void setUp() {
+    schema = BenchmarkData.schema(columnCount, DataType.INT64,
+        Nullability.NULLABLE);
+    source = BenchmarkData.view(schema, ROW_COUNT, 0.1, 42);
+  }
+
+  @Benchmark
+  public View construct() {
+    return new View(schema);
+  }
+
+  @Benchmark
+  public View copy() {
+    return new View(source);
+  }
+
+  @Benchmark
+  public View subRange() {
+    return new View(source, ROW_COUNT / 4, ROW_COUNT / 2);
+  }
+
+  /**
+   * Walks a copy of the source view to its end, STEP rows at a time.
+   */
+  @Benchmark
+  public int advance() {
+    View view = new View(source);
+    while (view.rowCount() >= STEP) {
+      view.advance(STEP);
+    }
+    return view.rowCount();
+  }
+}
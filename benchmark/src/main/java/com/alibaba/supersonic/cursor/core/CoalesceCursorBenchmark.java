@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.BlockPool;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.ExpressionDescription;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+import com.alibaba.supersonic.cursor.base.Cursor;
+import com.alibaba.supersonic.cursor.base.ResultView;
+import com.alibaba.supersonic.expression.infrastructure.Expressions;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+
+/**
+ * Measures a COMPUTE over the output of a selective FILTER (which leaves
+ * about selectivity% of the rows of each block), with and without
+ * coalescing the filtered blocks first.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CoalesceCursorBenchmark {
+
+  private static final int BLOCK_SIZE = 1024;
+  private static final long ROW_COUNT = 1 << 20;
+
+  @Param({"1", "10"})
+  public int selectivity;
+
+  private View block;
+  private ExpressionDescription predicate;
+  private List<ExpressionDescription> projections;
+  private List<ExpressionDescription> expressions;
+  private List<String> names;
+  private BlockPool pool;
+
+  @Setup
+  public void setUp() {
+    final TupleSchema.Builder builder = TupleSchema.builder();
+    builder.addAttribute(new Attribute("a", DataType.INT64,
+        Nullability.NOT_NULLABLE));
+    builder.addAttribute(new Attribute("b", DataType.DOUBLE,
+        Nullability.NOT_NULLABLE));
+    final TupleSchema schema = builder.build();
+    final Block data = new Block(schema, BLOCK_SIZE);
+    for (int row = 0; row < BLOCK_SIZE; ++row) {
+      data.longData(0)[row] = row % 100;
+      data.doubleData(1)[row] = row * 0.5;
+    }
+    block = data.view();
+    predicate = Expressions.operation(OperationType.LESS,
+        Expressions.variable("a"), Expressions.int64(selectivity));
+    projections = Arrays.asList(Expressions.variable("a"),
+        Expressions.variable("b"));
+    expressions = new ArrayList<ExpressionDescription>();
+    names = new ArrayList<String>();
+    for (int i = 0; i < 8; ++i) {
+      expressions.add(Expressions.operation(OperationType.MULTIPLY,
+          Expressions.operation(OperationType.ADD, Expressions.variable("a"),
+              Expressions.int64(i)), Expressions.variable("b")));
+      names.add("e" + i);
+    }
+    pool = new BlockPool(4);
+  }
+
+  @Benchmark
+  public long uncoalesced() {
+    return drain(compute(filter()));
+  }
+
+  @Benchmark
+  public long coalesced() {
+    return drain(compute(new CoalesceCursor(filter(),
+        CoalesceCursor.DEFAULT_TARGET_ROW_COUNT, pool)));
+  }
+
+  private Cursor filter() {
+    return FilterCursor.create(new RepeatingBlockCursor(block, ROW_COUNT),
+        predicate, projections, Arrays.asList("a", "b")).get();
+  }
+
+  private Cursor compute(final Cursor child) {
+    return ComputeCursor.create(child, expressions, names).get();
+  }
+
+  private static long drain(final Cursor cursor) {
+    long rowCount = 0;
+    while (true) {
+      final ResultView result = cursor.next(BLOCK_SIZE);
+      if (!result.hasData()) {
+        return rowCount;
+      }
+      rowCount += result.view().rowCount();
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.proto.CommonEnums.Aggregation;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+
+/**
+ * Measures bringing a grouped aggregation up to date after a new batch of
+ * rows has been appended to a history of BATCH_COUNT batches: folding in the
+ * new batch only, and aggregating the whole history again.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IncrementalAggregatorBenchmark {
+
+  private static final int ROW_COUNT = 1024;
+  private static final int BATCH_COUNT = 64;
+  private static final int GROUP_COUNT = 1000;
+
+  private TupleSchema schema;
+  private AggregationSpecification specification;
+  private View[] history;
+  private IncrementalAggregator aggregator;
+
+  @Setup
+  public void setUp() {
+    final TupleSchema.Builder builder = TupleSchema.builder();
+    builder.addAttribute(new Attribute("key", DataType.INT64,
+        Nullability.NOT_NULLABLE));
+    builder.addAttribute(new Attribute("value", DataType.DOUBLE,
+        Nullability.NULLABLE));
+    schema = builder.build();
+    specification = new AggregationSpecification()
+        .addAggregation(Aggregation.SUM, "value", "sum")
+        .addAggregation(Aggregation.MAX, "value", "max")
+        .addAggregation(Aggregation.COUNT, null, "count");
+    final Random random = new Random(42);
+    history = new View[BATCH_COUNT];
+    for (int i = 0; i < BATCH_COUNT; ++i) {
+      final Block block = new Block(schema, ROW_COUNT);
+      for (int row = 0; row < ROW_COUNT; ++row) {
+        block.longData(0)[row] = random.nextInt(GROUP_COUNT);
+        block.doubleData(1)[row] = random.nextDouble();
+        block.isNull(1)[row] = random.nextInt(10) == 0;
+      }
+      history[i] = block.view();
+    }
+    aggregator = aggregate(history.length);
+  }
+
+  @Benchmark
+  public View incremental() {
+    aggregator.update(history[BATCH_COUNT - 1]);
+    return aggregator.result();
+  }
+
+  @Benchmark
+  public View rescan() {
+    return aggregate(history.length).result();
+  }
+
+  private IncrementalAggregator aggregate(final int batchCount) {
+    final IncrementalAggregator result = IncrementalAggregator.create(schema,
+        Arrays.asList("key"), specification).get();
+    for (int i = 0; i < batchCount; ++i) {
+      result.update(history[i]);
+    }
+    return result;
+  }
+}
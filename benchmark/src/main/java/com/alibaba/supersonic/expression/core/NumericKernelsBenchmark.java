@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+
+/**
+ * Measures the numeric kernels on a block of rows: the scalar loops, and
+ * the kernels the engine loaded (the SIMD ones, if built with the vector
+ * profile and run with -jvmArgsAppend --add-modules=jdk.incubator.vector).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NumericKernelsBenchmark {
+
+  private static final int ROW_COUNT = 1024;
+
+  @Param({ "scalar", "loaded" })
+  public String kernels;
+
+  private NumericKernels numeric;
+  private double[] left;
+  private double[] right;
+  private double[] doubles;
+  private long[] longs;
+  private long[] otherLongs;
+  private boolean[] isNull;
+  private boolean[] result;
+
+  @Setup
+  public void setUp() {
+    numeric = kernels.equals("scalar") ? new ScalarNumericKernels()
+        : NumericKernelsLoader.kernels();
+    left = new double[ROW_COUNT];
+    right = new double[ROW_COUNT];
+    doubles = new double[ROW_COUNT];
+    longs = new long[ROW_COUNT];
+    otherLongs = new long[ROW_COUNT];
+    isNull = new boolean[ROW_COUNT];
+    result = new boolean[ROW_COUNT];
+    Random random = new Random(42);
+    for (int i = 0; i < ROW_COUNT; ++i) {
+      left[i] = random.nextDouble();
+      right[i] = random.nextDouble();
+      longs[i] = random.nextInt(1000);
+      otherLongs[i] = random.nextInt(1000);
+      isNull[i] = random.nextInt(10) == 0;
+    }
+  }
+
+  @Benchmark
+  public double[] multiplyDoubles() {
+    numeric.arithmetic(OperationType.MULTIPLY, left, 0, right, 0, doubles,
+        ROW_COUNT);
+    return doubles;
+  }
+
+  @Benchmark
+  public boolean[] lessLongs() {
+    numeric.compare(OperationType.LESS, longs, 0, otherLongs, 0, false,
+        result, ROW_COUNT);
+    return result;
+  }
+
+  @Benchmark
+  public long sumNullableLongs() {
+    return numeric.sum(longs, 0, isNull, 0, ROW_COUNT, 0L);
+  }
+
+  @Benchmark
+  public double maxDoubles() {
+    return numeric.max(left, 0, null, 0, ROW_COUNT, Double.NEGATIVE_INFINITY);
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.infrastructure;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.ExpressionDescription;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.expression.core.LogicExpression;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+
+/**
+ * Measures a two-conjunct AND, written with the expensive, unselective
+ * conjunct first: evaluated densely (both conjuncts on all rows), and with
+ * short-circuit evaluation and adaptive ordering.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConjunctionBenchmark {
+
+  private static final int ROW_COUNT = 1024;
+
+  private View input;
+  private Selection all;
+  private ExpressionProgram program;
+  private BoundExpression dense;
+
+  @Setup
+  public void setUp() {
+    TupleSchema schema = TupleSchema.singleton("x", DataType.INT64,
+        Nullability.NOT_NULLABLE);
+    Block block = new Block(schema, ROW_COUNT);
+    Random random = new Random(42);
+    for (int i = 0; i < ROW_COUNT; ++i) {
+      block.longData(0)[i] = random.nextInt(1000);
+    }
+    input = block.view();
+    input.setRowCount(ROW_COUNT);
+    all = Selection.all(ROW_COUNT);
+
+    // (x * (x + 7)) % 13 > -1 is always TRUE; x < 10 is TRUE for 1%.
+    ExpressionDescription x = Expressions.variable("x");
+    ExpressionDescription expensive = Expressions.operation(
+        OperationType.GREATER,
+        Expressions.operation(OperationType.MODULUS,
+            Expressions.operation(OperationType.MULTIPLY, x,
+                Expressions.operation(OperationType.ADD, x,
+                    Expressions.int64(7))),
+            Expressions.int64(13)),
+        Expressions.int64(-1));
+    ExpressionDescription cheap = Expressions.operation(OperationType.LESS, x,
+        Expressions.int64(10));
+    program = ExpressionProgram.compile(schema, Arrays.asList(
+        Expressions.operation(OperationType.AND, expensive, cheap))).get();
+    ExpressionBinder binder = new ExpressionBinder(schema);
+    dense = new LogicExpression(OperationType.AND,
+        new Attribute("and", DataType.BOOL, Nullability.NOT_NULLABLE),
+        binder.bind(expensive).get(), binder.bind(cheap).get());
+  }
+
+  @Benchmark
+  public Column dense() {
+    return dense.evaluate(input, all).get();
+  }
+
+  @Benchmark
+  public Column shortCircuit() {
+    program.beginBlock();
+    return program.root(0).evaluate(input, all).get();
+  }
+}
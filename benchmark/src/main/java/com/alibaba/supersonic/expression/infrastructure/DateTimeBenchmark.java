@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.infrastructure;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+
+/**
+ * Measures the datetime kernels on a block of (sorted, as in a log) DATETIMEs
+ * spanning a few months, against computing the same with java.time objects
+ * per row.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DateTimeBenchmark {
+
+  private static final int ROW_COUNT = 1024;
+
+  private View input;
+  private Selection all;
+  private BoundExpression yearLocal;
+  private BoundExpression truncToDay;
+  private BoundExpression addMonth;
+  private BoundExpression dateFormat;
+  private ZoneId zone;
+
+  @Setup
+  public void setUp() {
+    TupleSchema schema =
+        TupleSchema.singleton("t", DataType.DATETIME, Nullability.NOT_NULLABLE);
+    Block block = new Block(schema, ROW_COUNT);
+    Random random = new Random(42);
+    long micros = 1356998400L * 1000 * 1000;  // 2013-01-01.
+    for (int i = 0; i < ROW_COUNT; ++i) {
+      micros += random.nextInt(3 * 3600) * 1000L * 1000;
+      block.longData(0)[i] = micros;
+    }
+    input = block.view();
+    input.setRowCount(ROW_COUNT);
+    all = Selection.all(ROW_COUNT);
+    ExpressionBinder binder = new ExpressionBinder(schema);
+    yearLocal = binder.bind(Expressions.operation(OperationType.YEAR_LOCAL,
+        Expressions.variable("t"))).get();
+    truncToDay = binder.bind(Expressions.operation(
+        OperationType.TRUNC_TO_DAY, Expressions.variable("t"))).get();
+    addMonth = binder.bind(Expressions.operation(OperationType.ADD_MONTH,
+        Expressions.variable("t"), Expressions.int32(1))).get();
+    dateFormat = binder.bind(Expressions.operation(
+        OperationType.DATE_FORMAT_UTC, Expressions.variable("t"),
+        Expressions.string("%Y-%m-%d %H:%M:%S"))).get();
+    zone = ZoneId.systemDefault();
+  }
+
+  @Benchmark
+  public Column yearLocal() {
+    return yearLocal.evaluate(input, all).get();
+  }
+
+  @Benchmark
+  public int yearLocalJavaTime() {
+    long[] micros = (long[]) input.column(0).data();
+    int sum = 0;
+    for (int i = 0; i < ROW_COUNT; ++i) {
+      sum += LocalDateTime.ofInstant(
+          Instant.ofEpochSecond(micros[i] / 1000000), zone).getYear();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public Column truncToDay() {
+    return truncToDay.evaluate(input, all).get();
+  }
+
+  @Benchmark
+  public Column addMonth() {
+    return addMonth.evaluate(input, all).get();
+  }
+
+  @Benchmark
+  public Column dateFormat() {
+    return dateFormat.evaluate(input, all).get();
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.infrastructure;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.ExpressionDescription;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+
+/**
+ * Measures IN over a list of 64 constants, and REGEXP_PARTIAL on log-like
+ * lines (with a literal prefilter), against decoding every line into a
+ * String and running the regular expression on it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MatchingBenchmark {
+
+  private static final int ROW_COUNT = 1024;
+  private static final String PATTERN = "timeout after (\\d+) ms";
+
+  private View input;
+  private Selection all;
+  private BoundExpression in;
+  private BoundExpression regexp;
+  private Pattern pattern;
+
+  @Setup
+  public void setUp() {
+    TupleSchema.Builder builder = TupleSchema.builder();
+    builder.addAttribute(
+        new Attribute("id", DataType.INT64, Nullability.NOT_NULLABLE));
+    builder.addAttribute(
+        new Attribute("line", DataType.STRING, Nullability.NOT_NULLABLE));
+    TupleSchema schema = builder.build();
+    Block block = new Block(schema, ROW_COUNT);
+    Random random = new Random(42);
+    for (int i = 0; i < ROW_COUNT; ++i) {
+      block.longData(0)[i] = random.nextInt(10000);
+      block.setString(1, i, "2013-01-0" + random.nextInt(10) + " INFO "
+          + (random.nextInt(50) == 0 ? "request timeout after "
+              + random.nextInt(1000) + " ms" : "request served in "
+              + random.nextInt(100) + " ms") + " from host-"
+          + random.nextInt(100));
+    }
+    input = block.view();
+    input.setRowCount(ROW_COUNT);
+    all = Selection.all(ROW_COUNT);
+
+    ExpressionDescription[] list = new ExpressionDescription[65];
+    list[0] = Expressions.variable("id");
+    for (int i = 1; i < list.length; ++i) {
+      list[i] = Expressions.int64(random.nextInt(10000));
+    }
+    ExpressionBinder binder = new ExpressionBinder(schema);
+    in = binder.bind(Expressions.operation(OperationType.IN, list)).get();
+    regexp = binder.bind(Expressions.operation(OperationType.REGEXP_PARTIAL,
+        Expressions.variable("line"), Expressions.string(PATTERN))).get();
+    pattern = Pattern.compile(PATTERN);
+  }
+
+  @Benchmark
+  public Column inList() {
+    return in.evaluate(input, all).get();
+  }
+
+  @Benchmark
+  public Column regexpPartial() {
+    return regexp.evaluate(input, all).get();
+  }
+
+  @Benchmark
+  public int regexpOnStrings() {
+    Column lines = input.column(1);
+    int matches = 0;
+    for (int i = 0; i < ROW_COUNT; ++i) {
+      matches += pattern.matcher(lines.getString(i)).find() ? 1 : 0;
+    }
+    return matches;
+  }
+}
@@ -46,11 +46,35 @@ public class SupersonicException extends Exception {
   private ReturnCode code;
   SerializedException serial_;
 
+  /**
+   * Creates an exception. The stack trace is captured only for error codes;
+   * see {@link #isExpected(ReturnCode)}.
+   */
   public SupersonicException(final ReturnCode code, final String message) {
-    super(message);
+    this(code, message, !isExpected(code));
+  }
+
+  /**
+   * Creates an exception, capturing the stack trace only if requested.
+   * Capturing the stack trace dominates the cost of creating an exception,
+   * and is of little use for conditions that are part of the normal control
+   * flow.
+   */
+  public SupersonicException(final ReturnCode code, final String message,
+      final boolean captureStackTrace) {
+    super(message, null, false, captureStackTrace);
     this.code = code;
   }
 
+  /**
+   * Returns true for codes that don't indicate a bug or a malfunction: the
+   * success codes (e.g. END_OF_INPUT), and INTERRUPTED.
+   */
+  public static boolean isExpected(final ReturnCode code) {
+    return code.getNumber() < ReturnCode.ERROR_UNKNOWN_ERROR.getNumber()
+        || code == ReturnCode.INTERRUPTED;
+  }
+
   public ReturnCode getReturnCode() {
     return code;
   }
@@ -26,10 +26,10 @@ import com.alibaba.supersonic.proto.CommonEnums.Nullability;
  */
 public class Attribute {
 
-  private String name;
+  private final String name;
 
-  private DataType type;
-  private Nullability nullability;
+  private final DataType type;
+  private final Nullability nullability;
 
   public Attribute(final String name, final DataType type,
       final Nullability nullability) {
@@ -53,4 +53,29 @@ public class Attribute {
   public boolean isNullable() {
     return nullability == Nullability.NULLABLE;
   }
+
+  @Override
+  public boolean equals(final Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof Attribute)) {
+      return false;
+    }
+    Attribute that = (Attribute) other;
+    return name.equals(that.name) && type == that.type
+        && nullability == that.nullability;
+  }
+
+  @Override
+  public int hashCode() {
+    return (name.hashCode() * 31 + type.hashCode()) * 31
+        + nullability.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return name + ": " + type.name()
+        + (isNullable() ? "" : " NOT NULL");
+  }
 }
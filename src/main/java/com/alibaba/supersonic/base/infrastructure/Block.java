@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.base.infrastructure;
+
+import java.nio.charset.Charset;
+
+import com.alibaba.supersonic.base.memory.Arena;
+import com.google.common.base.Preconditions;
+
+/**
+ * A writable, fixed-capacity block of data, owning the storage for all
+ * columns of a schema: a primitive array per column (see
+ * {@link TypeInfo#arrayClass()}), an is_null vector per nullable column, and
+ * an {@link Arena} per variable-length column.
+ * 
+ * The block exposes its storage directly, so that operators can compute into
+ * it with plain array loops; {@link BlockBuilder} adds bulk appends on top.
+ * Blocks are expensive to create and cheap to reuse: see {@link BlockPool}.
+ */
+public class Block {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final TupleSchema schema;
+  private final int rowCapacity;
+  private final Object[] data;
+  private final boolean[][] isNull;
+  private final Arena[] arenas;
+  private final View view;
+
+  /**
+   * Allocates a block that can hold rowCapacity rows of the schema.
+   */
+  public Block(final TupleSchema schema, final int rowCapacity) {
+    Preconditions.checkArgument(rowCapacity >= 0,
+        "Row capacity must be >= 0: %s", rowCapacity);
+    this.schema = schema;
+    this.rowCapacity = rowCapacity;
+    final int columnCount = schema.attributeCount();
+    this.data = new Object[columnCount];
+    this.isNull = new boolean[columnCount][];
+    this.arenas = new Arena[columnCount];
+    this.view = new View(schema);
+    for (int i = 0; i < columnCount; ++i) {
+      final Attribute attribute = schema.getAttributeAt(i);
+      final TypeInfo typeInfo = schema.getTypeInfoAt(i);
+      data[i] = typeInfo.newArray(rowCapacity);
+      if (attribute.isNullable()) {
+        isNull[i] = new boolean[rowCapacity];
+      }
+      if (typeInfo.isVariableLength()) {
+        arenas[i] = new Arena();
+      }
+      view.mutableColumn(i).reset(data[i], arenas[i], isNull[i]);
+    }
+    view.setRowCount(rowCapacity);
+  }
+
+  public TupleSchema schema() {
+    return schema;
+  }
+
+  public int rowCapacity() {
+    return rowCapacity;
+  }
+
+  public int columnCount() {
+    return data.length;
+  }
+
+  /**
+   * Returns a view over the whole block (all rowCapacity rows).
+   */
+  public View view() {
+    return view;
+  }
+
+  /**
+   * Returns the array storing the column's values; its type is given by the
+   * column's {@link TypeInfo#arrayClass()}.
+   */
+  public Object data(final int column) {
+    return data[column];
+  }
+
+  public int[] intData(final int column) {
+    return (int[]) data[column];
+  }
+
+  public long[] longData(final int column) {
+    return (long[]) data[column];
+  }
+
+  public float[] floatData(final int column) {
+    return (float[]) data[column];
+  }
+
+  public double[] doubleData(final int column) {
+    return (double[]) data[column];
+  }
+
+  public boolean[] boolData(final int column) {
+    return (boolean[]) data[column];
+  }
+
+  /**
+   * Returns the column's is_null vector, or null if the column is not
+   * nullable.
+   */
+  public boolean[] isNull(final int column) {
+    return isNull[column];
+  }
+
+  /**
+   * Returns the arena of a variable-length column, or null for fixed-width
+   * columns.
+   */
+  public Arena arena(final int column) {
+    return arenas[column];
+  }
+
+  /**
+   * Stores a variable-length value, copying the bytes into the column's
+   * arena.
+   */
+  public void setBytes(final int column, final int row, final byte[] bytes,
+      final int offset, final int length) {
+    longData(column)[row] = arenas[column].append(bytes, offset, length);
+  }
+
+  /**
+   * Stores a variable-length value, encoded as UTF-8.
+   */
+  public void setString(final int column, final int row, final String value) {
+    final byte[] bytes = value.getBytes(UTF_8);
+    setBytes(column, row, bytes, 0, bytes.length);
+  }
+
+  /**
+   * Returns an estimate of the memory held by the block, in bytes: the
+   * arrays for rowCapacity rows, and the arenas' buffers.
+   */
+  public long memoryUsage() {
+    long result = (long) rowCapacity * schema.fixedWidthRowSize();
+    for (int i = 0; i < data.length; ++i) {
+      if (isNull[i] != null) {
+        result += rowCapacity;
+      }
+      if (arenas[i] != null) {
+        result += arenas[i].capacity();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Discards the variable-length values, so that the block can be refilled
+   * from scratch. Fixed-width data and NULL flags are left as they are; they
+   * are expected to be overwritten.
+   */
+  public void reset() {
+    for (Arena arena : arenas) {
+      if (arena != null) {
+        arena.reset();
+      }
+    }
+  }
+}
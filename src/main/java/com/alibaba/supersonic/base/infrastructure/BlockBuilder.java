@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.base.infrastructure;
+
+import java.util.Arrays;
+
+import com.alibaba.supersonic.base.memory.Arena;
+import com.google.common.base.Preconditions;
+
+/**
+ * Fills a {@link Block} from the front, either by copying whole row ranges
+ * of other views (column by column, with System.arraycopy), or by reserving
+ * rows that the caller then writes into the block's arrays directly.
+ * 
+ * Usage:
+ * 
+ *   BlockBuilder builder = new BlockBuilder(pool.acquire(schema, 1024));
+ *   while (!builder.isFull() && ...) {
+ *     builder.appendRows(input, offset, count);
+ *   }
+ *   View output = builder.view();
+ *   ...
+ *   builder.reset();  // Before refilling.
+ */
+public class BlockBuilder {
+
+  private final Block block;
+  private final View view;
+  private int rowCount;
+
+  public BlockBuilder(final Block block) {
+    this.block = block;
+    this.view = new View(block.schema());
+    this.rowCount = 0;
+    view.resetFrom(block.view());
+    view.setRowCount(0);
+  }
+
+  public Block block() {
+    return block;
+  }
+
+  /**
+   * Returns the number of rows appended so far.
+   */
+  public int rowCount() {
+    return rowCount;
+  }
+
+  public int remainingCapacity() {
+    return block.rowCapacity() - rowCount;
+  }
+
+  public boolean isFull() {
+    return rowCount == block.rowCapacity();
+  }
+
+  /**
+   * Copies up to count rows of the source, starting at offset, to the end of
+   * the block. Returns the number of rows copied, which is less than count if
+   * the block fills up. The source must have the same column types as the
+   * block, and may contain NULLs only in columns that are nullable in the
+   * block.
+   */
+  public int appendRows(final View source, final int offset, final int count) {
+    Preconditions.checkArgument(source.schema().equalByType(block.schema()),
+        "Schema mismatch");
+    Preconditions.checkPositionIndexes(offset, offset + count,
+        source.rowCount());
+    final int copied = Math.min(count, remainingCapacity());
+    for (int i = 0; i < block.columnCount(); ++i) {
+      copyColumn(source.column(i), offset, i, copied);
+    }
+    rowCount += copied;
+    view.setRowCount(rowCount);
+    return copied;
+  }
+
+  /**
+   * Copies as many rows of the source as fit. Returns the number copied.
+   */
+  public int appendView(final View source) {
+    return appendRows(source, 0, source.rowCount());
+  }
+
+  /**
+   * Copies the source's rows listed in rows[0 .. count) (in that order) to
+   * the end of the block; count must not exceed the remaining capacity.
+   * Otherwise like appendRows().
+   */
+  public void appendSelectedRows(final View source, final int[] rows,
+      final int count) {
+    Preconditions.checkArgument(source.schema().equalByType(block.schema()),
+        "Schema mismatch");
+    if (count > remainingCapacity()) {
+      throw new IllegalArgumentException("Can't append " + count
+          + " rows; remaining capacity: " + remainingCapacity());
+    }
+    for (int i = 0; i < block.columnCount(); ++i) {
+      gatherColumn(source.column(i), rows, i, count);
+    }
+    rowCount += count;
+    view.setRowCount(rowCount);
+  }
+
+  /**
+   * Reserves count rows at the end of the block and returns the index of the
+   * first one. The caller must write all values (and NULL flags, in nullable
+   * columns) of the reserved rows.
+   */
+  public int reserve(final int count) {
+    if (count < 0 || count > remainingCapacity()) {
+      throw new IllegalArgumentException("Can't reserve " + count
+          + " rows; remaining capacity: " + remainingCapacity());
+    }
+    final int first = rowCount;
+    rowCount += count;
+    view.setRowCount(rowCount);
+    return first;
+  }
+
+  /**
+   * Returns a view over the rows appended so far. The same view object is
+   * returned (and updated) for the lifetime of the builder.
+   */
+  public View view() {
+    return view;
+  }
+
+  /**
+   * Discards all rows, so that the block can be refilled.
+   */
+  public void reset() {
+    block.reset();
+    rowCount = 0;
+    view.setRowCount(0);
+  }
+
+  private void copyColumn(final Column source, final int offset,
+      final int column, final int count) {
+    final boolean[] targetIsNull = block.isNull(column);
+    final boolean[] sourceIsNull = source.isNull();
+    if (targetIsNull != null) {
+      if (sourceIsNull != null) {
+        System.arraycopy(sourceIsNull, source.isNullOffset() + offset,
+            targetIsNull, rowCount, count);
+      } else {
+        Arrays.fill(targetIsNull, rowCount, rowCount + count, false);
+      }
+    } else if (sourceIsNull != null) {
+      final int start = source.isNullOffset() + offset;
+      for (int i = start; i < start + count; ++i) {
+        if (sourceIsNull[i]) {
+          throw new IllegalArgumentException(
+              "NULL in non-nullable column " + column);
+        }
+      }
+    }
+    final Arena arena = block.arena(column);
+    if (arena == null) {
+      System.arraycopy(source.data(), source.offset() + offset,
+          block.data(column), rowCount, count);
+    } else {
+      // Variable-length values are copied into the block's own arena, so
+      // that the block doesn't depend on the lifetime of the source.
+      final long[] sourcePieces = (long[]) source.data();
+      final long[] targetPieces = block.longData(column);
+      final Arena sourceArena = source.arena();
+      final int start = source.offset() + offset;
+      for (int i = 0; i < count; ++i) {
+        targetPieces[rowCount + i] =
+            arena.append(sourceArena, sourcePieces[start + i]);
+      }
+    }
+  }
+
+  private void gatherColumn(final Column source, final int[] rows,
+      final int column, final int count) {
+    final boolean[] targetIsNull = block.isNull(column);
+    final boolean[] sourceIsNull = source.isNull();
+    final int nullOffset = source.isNullOffset();
+    if (targetIsNull != null) {
+      if (sourceIsNull != null) {
+        for (int k = 0; k < count; ++k) {
+          targetIsNull[rowCount + k] = sourceIsNull[nullOffset + rows[k]];
+        }
+      } else {
+        Arrays.fill(targetIsNull, rowCount, rowCount + count, false);
+      }
+    } else if (sourceIsNull != null) {
+      for (int k = 0; k < count; ++k) {
+        if (sourceIsNull[nullOffset + rows[k]]) {
+          throw new IllegalArgumentException(
+              "NULL in non-nullable column " + column);
+        }
+      }
+    }
+    final int offset = source.offset();
+    final Object data = block.data(column);
+    final Arena arena = block.arena(column);
+    if (arena != null) {
+      final long[] sourcePieces = (long[]) source.data();
+      final long[] targetPieces = (long[]) data;
+      final Arena sourceArena = source.arena();
+      for (int k = 0; k < count; ++k) {
+        targetPieces[rowCount + k] =
+            arena.append(sourceArena, sourcePieces[offset + rows[k]]);
+      }
+    } else if (data instanceof int[]) {
+      final int[] from = (int[]) source.data();
+      final int[] to = (int[]) data;
+      for (int k = 0; k < count; ++k) to[rowCount + k] = from[offset + rows[k]];
+    } else if (data instanceof long[]) {
+      final long[] from = (long[]) source.data();
+      final long[] to = (long[]) data;
+      for (int k = 0; k < count; ++k) to[rowCount + k] = from[offset + rows[k]];
+    } else if (data instanceof double[]) {
+      final double[] from = (double[]) source.data();
+      final double[] to = (double[]) data;
+      for (int k = 0; k < count; ++k) to[rowCount + k] = from[offset + rows[k]];
+    } else if (data instanceof float[]) {
+      final float[] from = (float[]) source.data();
+      final float[] to = (float[]) data;
+      for (int k = 0; k < count; ++k) to[rowCount + k] = from[offset + rows[k]];
+    } else {
+      final boolean[] from = (boolean[]) source.data();
+      final boolean[] to = (boolean[]) data;
+      for (int k = 0; k < count; ++k) to[rowCount + k] = from[offset + rows[k]];
+    }
+  }
+}
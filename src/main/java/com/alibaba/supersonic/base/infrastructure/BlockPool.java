@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.base.infrastructure;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Recycles {@link Block}s, so that pipelines in a steady state reuse their
+ * output buffers instead of allocating new ones per batch. Blocks are keyed
+ * by schema (by identity, which is cheap and exact, as schemas are interned)
+ * and row capacity.
+ * 
+ * Up to maxIdleBlocks blocks are kept per key; blocks released beyond that
+ * are dropped, and left to the garbage collector. Lookups don't allocate.
+ * 
+ * Thread-safe.
+ */
+public class BlockPool {
+
+  private final int maxIdleBlocks;
+  private final Map<TupleSchema, List<Shelf>> shelves =
+      new IdentityHashMap<TupleSchema, List<Shelf>>();
+  private int idleBlockCount;
+
+  /**
+   * Creates a pool that keeps up to maxIdleBlocks idle blocks per schema and
+   * capacity.
+   */
+  public BlockPool(final int maxIdleBlocks) {
+    Preconditions.checkArgument(maxIdleBlocks >= 0,
+        "Max idle blocks must be >= 0: %s", maxIdleBlocks);
+    this.maxIdleBlocks = maxIdleBlocks;
+  }
+
+  /**
+   * Returns an idle block of the schema and capacity, or a new one if there
+   * are none. The returned block is reset; its fixed-width contents are
+   * undefined.
+   */
+  public synchronized Block acquire(final TupleSchema schema,
+      final int rowCapacity) {
+    final Shelf shelf = find(schema, rowCapacity, false);
+    if (shelf == null || shelf.blocks.isEmpty()) {
+      return new Block(schema, rowCapacity);
+    }
+    --idleBlockCount;
+    return shelf.blocks.pop();
+  }
+
+  /**
+   * Returns the block to the pool. The caller must not use it afterwards.
+   */
+  public synchronized void release(final Block block) {
+    final Shelf shelf = find(block.schema(), block.rowCapacity(), true);
+    if (shelf.blocks.size() < maxIdleBlocks) {
+      block.reset();
+      shelf.blocks.push(block);
+      ++idleBlockCount;
+    }
+  }
+
+  /**
+   * Returns the total number of idle blocks in the pool.
+   */
+  public synchronized int idleBlockCount() {
+    return idleBlockCount;
+  }
+
+  /**
+   * Drops all idle blocks.
+   */
+  public synchronized void clear() {
+    shelves.clear();
+    idleBlockCount = 0;
+  }
+
+  private Shelf find(final TupleSchema schema, final int rowCapacity,
+      final boolean create) {
+    List<Shelf> candidates = shelves.get(schema);
+    if (candidates == null) {
+      if (!create) {
+        return null;
+      }
+      candidates = new ArrayList<Shelf>(1);
+      shelves.put(schema, candidates);
+    }
+    // Usually a single capacity per schema; a linear scan beats hashing.
+    for (int i = 0; i < candidates.size(); ++i) {
+      if (candidates.get(i).rowCapacity == rowCapacity) {
+        return candidates.get(i);
+      }
+    }
+    if (!create) {
+      return null;
+    }
+    final Shelf shelf = new Shelf(rowCapacity);
+    candidates.add(shelf);
+    return shelf;
+  }
+
+  private static final class Shelf {
+    final int rowCapacity;
+    final ArrayDeque<Block> blocks = new ArrayDeque<Block>();
+
+    Shelf(final int rowCapacity) {
+      this.rowCapacity = rowCapacity;
+    }
+  }
+}
@@ -16,8 +16,11 @@
  */
 package com.alibaba.supersonic.base.infrastructure;
 
-import java.util.List;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 
+import com.alibaba.supersonic.base.memory.Arena;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
 import com.google.common.base.Preconditions;
 
 /**
@@ -25,28 +28,39 @@ import com.google.common.base.Preconditions;
  * Knows its type. Currently, does not know its length. (May be revisited).
  * Exposes read-only pointers to the underlying data and nullability arrays,
  * via data() and is_null() methods. Allows these pointers to be reset,
- * via Reset() and ResetFrom() methods. Provides templatized methods for
+ * via Reset() and ResetFrom() methods. Provides typed methods for
  * type-safe access, should the type be known at compile time.
  * 
+ * A 'pointer' is an array plus an offset: the column's row i is stored at
+ * data()[offset() + i], and its NULL flag at isNull()[isNullOffset() + i].
+ * The array type is given by {@link TypeInfo#arrayClass()}; variable-length
+ * values are stored as pieces of the column's {@link Arena}.
+ * 
  * @author Min Zhou (coderplay@gmail.com)
  */
 public class Column {
 
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
   private Attribute attribute;
   private TypeInfo typeInfo;
 
-  @SuppressWarnings("rawtypes")
-  private List data;
+  private Object data;
+  private int offset;
 
   /* A vector to point each element of data is null or not */
-  private List<Boolean> isNull;
+  private boolean[] isNull;
+  private int isNullOffset;
+
+  /* Storage of variable-length values; null for fixed-width types. */
+  private Arena arena;
   
   Column() {
     
   }
   
   // Returns the associated schema attribute.
-  final Attribute attribute() {
+  public final Attribute attribute() {
     checkInitialized();
     return attribute;
   }
@@ -55,23 +69,27 @@ public class Column {
    * Returns the (cached) {@link TypeInfo}
    * @return
    */
-  final TypeInfo typeInfo() {
+  public final TypeInfo typeInfo() {
     checkInitialized();
     return typeInfo;
   }
 
   /*
-   * Returns an untyped pointer to the data.
+   * Returns an untyped pointer to the data: the array, whose element at
+   * offset() is the column's first row.
    */
-  @SuppressWarnings("rawtypes")
-  List data() { return data; }
+  public Object data() { return data; }
 
   /**
-   * Returns an untyped pointer to the data, plus the specified index.
+   * Returns the position of the column's first row in data().
    */
-  Object get(int index) {
-    return data().get(index);
-  }
+  public int offset() { return offset; }
+
+  /**
+   * Returns the arena that holds the variable-length values, or null for
+   * fixed-width types.
+   */
+  public Arena arena() { return arena; }
 
   /**
    * Returns the is_null vector.
@@ -80,16 +98,91 @@ public class Column {
    * no NULLs in this particular view.
    * @return
    */
-  List<Boolean> isNull() { return isNull; }
+  public boolean[] isNull() { return isNull; }
+
+  /**
+   * Returns the position of the column's first row in isNull().
+   */
+  public int isNullOffset() { return isNullOffset; }
 
   /**
-   * A convenience method that returns the is_null vector shifted by the
-   * specified offset, or null if the is_null vector == null.
+   * A convenience method that returns true if the specified row is NULL.
    * @param index
    * @return
    */
-  Boolean isNull(int index) {
-    return isNull() == null ? null : isNull.get(index);
+  public boolean isNull(int index) {
+    return isNull != null && isNull[isNullOffset + index];
+  }
+
+  /**
+   * Returns the value at the specified index, boxed (String for STRING,
+   * byte[] for BINARY, DataType for DATA_TYPE). Ignores the is_null vector.
+   * For logging and tests; use the typed getters in loops.
+   */
+  public Object get(int index) {
+    switch (typeInfo().type()) {
+      case INT32:
+      case UINT32:
+      case DATE:
+        return getInt(index);
+      case INT64:
+      case UINT64:
+      case DATETIME:
+        return getLong(index);
+      case FLOAT:
+        return getFloat(index);
+      case DOUBLE:
+        return getDouble(index);
+      case BOOL:
+        return getBool(index);
+      case STRING:
+        return getString(index);
+      case BINARY:
+        return getBytes(index);
+      case DATA_TYPE:
+        return DataType.valueOf(getInt(index));
+      default:
+        throw new IllegalStateException("Unsupported type: "
+            + typeInfo().name());
+    }
+  }
+
+  public int getInt(int index) { return ((int[]) data)[offset + index]; }
+
+  public long getLong(int index) { return ((long[]) data)[offset + index]; }
+
+  public float getFloat(int index) { return ((float[]) data)[offset + index]; }
+
+  public double getDouble(int index) {
+    return ((double[]) data)[offset + index];
+  }
+
+  public boolean getBool(int index) {
+    return ((boolean[]) data)[offset + index];
+  }
+
+  /**
+   * Returns the arena piece of a variable-length value.
+   */
+  public long getPiece(int index) { return ((long[]) data)[offset + index]; }
+
+  /**
+   * Returns a copy of the bytes of a variable-length value.
+   */
+  public byte[] getBytes(int index) {
+    final long piece = getPiece(index);
+    final int start = Arena.pieceOffset(piece);
+    return Arrays.copyOfRange(arena.buffer(), start,
+        start + Arena.pieceLength(piece));
+  }
+
+  /**
+   * Decodes a variable-length value as UTF-8.
+   */
+  public String getString(int index) {
+    final long piece = getPiece(index);
+    return new String(arena.buffer(), Arena.pieceOffset(piece),
+        Arena.pieceLength(piece), UTF_8);
   }
 
   /**
@@ -98,14 +191,16 @@ public class Column {
    * @param data
    * @param isNull
    */
-  @SuppressWarnings("rawtypes")
-  void reset(List data, List<Boolean> isNull) {
-    checkInitialized();
-    Preconditions.checkState(typeInfo == null || attribute().isNullable(),  
-         "Attempt to use is_null vector for a non-nullable attribute "
-        +"'" + attribute().getName() + "'");
-    this.data = data;
-    this.isNull = isNull;
+  public void reset(Object data, boolean[] isNull) {
+    reset(data, 0, isNull, 0, null);
+  }
+
+  /**
+   * Updates a column of a variable-length type to point to a new place.
+   * Ownership of data, arena and is_null stays with the callee.
+   */
+  public void reset(Object data, Arena arena, boolean[] isNull) {
+    reset(data, 0, isNull, 0, arena);
   }
 
   /**
@@ -113,12 +208,8 @@ public class Column {
    * specified column.
    * @param other
    */
-  void resetFrom(final Column other) {
-    checkInitialized();
-    Preconditions.checkArgument(typeInfo().type().equals(other.typeInfo().type()),  
-        "Type mismatch; trying to reset " +  typeInfo().name() + " from "
-        + other.typeInfo().name());
-    reset(other.data(), other.isNull());
+  public void resetFrom(final Column other) {
+    resetFromPlusOffset(other, 0);
   }
 
   /**
@@ -127,14 +218,14 @@ public class Column {
    * @param other
    * @param offset
    */
-  void resetFromPlusOffset(final Column other, final int offset) {
+  public void resetFromPlusOffset(final Column other, final int offset) {
     checkInitialized();
-    Preconditions.checkArgument(typeInfo().type().equals(other.typeInfo().type()),
-        "Type mismatch; trying to reset " + typeInfo().name() + " from "
-            + other.typeInfo().name());
-    List d = other.data();
-    List<Boolean> n = other.isNull;
-    reset(d.subList(offset, d.size()), n.subList(offset, n.size()));
+    if (typeInfo().type() != other.typeInfo().type()) {
+      throw new IllegalArgumentException("Type mismatch; trying to reset "
+          + typeInfo().name() + " from " + other.typeInfo().name());
+    }
+    reset(other.data, other.offset + offset, other.isNull,
+        other.isNullOffset + offset, other.arena);
   }
 
   /**
@@ -144,20 +235,26 @@ public class Column {
    * resultant view in expressions.
    * @param isNull
    */
-  void resetIsNull(List<Boolean> isNull) {
+  public void resetIsNull(boolean[] isNull) {
     checkInitialized();
-    if (attribute().isNullable()) this.isNull = isNull;
+    if (attribute().isNullable()) {
+      this.isNull = isNull;
+      this.isNullOffset = 0;
+    }
   }
 
   /**
    * Must be called before use, if the no-arg constructor was used to create.
-   * Ownership of the attribute remains with the caller.
+   * Ownership of the attribute remains with the caller. The typeInfo must be
+   * the one of the attribute's type; it is passed in (rather than looked up)
+   * so that creating views doesn't cost a lookup per column.
    * @param attribute
    */
-  void init(final Attribute attribute) {
-    Preconditions.checkState(typeInfo == null, "Column already initialized");
+  void init(final Attribute attribute, final TypeInfo typeInfo) {
+    Preconditions.checkState(this.typeInfo == null,
+        "Column already initialized");
     this.attribute = attribute;
-    this.typeInfo = TypeInfo.getTypeInfo(attribute.getType());
+    this.typeInfo = typeInfo;
   }
 
   /**
@@ -166,4 +263,28 @@ public class Column {
   public void checkInitialized() {
     Preconditions.checkNotNull(typeInfo, "Column not initialized");
   }
+
+  private void reset(Object data, int offset, boolean[] isNull,
+      int isNullOffset, Arena arena) {
+    checkInitialized();
+    // Called per block; no eagerly built messages or varargs arrays here.
+    if (isNull != null && !attribute.isNullable()) {
+      throw new IllegalStateException(
+          "Attempt to use is_null vector for a non-nullable attribute "
+          + "'" + attribute.getName() + "'");
+    }
+    if (data != null && typeInfo.arrayClass() != data.getClass()) {
+      throw new IllegalArgumentException("Can't store " + data.getClass()
+          + " in a " + typeInfo.name() + " column");
+    }
+    if (data != null && arena == null && typeInfo.isVariableLength()) {
+      throw new IllegalArgumentException("Variable-length column '"
+          + attribute.getName() + "' needs an arena");
+    }
+    this.data = data;
+    this.offset = offset;
+    this.isNull = isNull;
+    this.isNullOffset = isNullOffset;
+    this.arena = arena;
+  }
 }
@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.base.infrastructure;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Reads a file sequentially, ahead of the reader: the file is read in chunks
+ * of chunkSize bytes, up to maxChunksInFlight of them at a time, with
+ * asynchronous reads that complete on a background I/O pool. When the reader
+ * has consumed a chunk, its buffer is reused to read the chunk
+ * maxChunksInFlight positions further on. Thus, e.g. a {@link ViewReader}
+ * decodes a batch while the following ones are being read, and memory is
+ * bounded by chunkSize * maxChunksInFlight.
+ * 
+ * The file is read up to its size at the time it was opened.
+ * 
+ * Not thread-safe, except for cancel().
+ */
+public class ReadAheadChannel implements ReadableByteChannel {
+
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+  public static final int DEFAULT_MAX_CHUNKS_IN_FLIGHT = 4;
+
+  private final AsynchronousFileChannel channel;
+  private final long size;
+  private final Chunk[] chunks;
+  // The position (in the file) of the next chunk to read ahead.
+  private long nextReadPosition;
+  // The chunk being consumed; chunks are used round-robin.
+  private int current;
+  private volatile boolean cancelled;
+  private boolean open;
+
+  private ReadAheadChannel(final AsynchronousFileChannel channel,
+      final long size, final int chunkSize, final int maxChunksInFlight) {
+    this.channel = channel;
+    this.size = size;
+    this.chunks = new Chunk[maxChunksInFlight];
+    this.open = true;
+    for (int i = 0; i < maxChunksInFlight; ++i) {
+      chunks[i] = new Chunk(ByteBuffer.allocateDirect(chunkSize));
+      readAhead(chunks[i]);
+    }
+  }
+
+  /**
+   * Opens the file, with the default chunk size and window, and completes
+   * the reads on the default pool of the JVM.
+   */
+  public static ReadAheadChannel open(final Path file) throws IOException {
+    return open(file, null, DEFAULT_CHUNK_SIZE,
+        DEFAULT_MAX_CHUNKS_IN_FLIGHT);
+  }
+
+  /**
+   * Opens the file, and starts reading its first maxChunksInFlight chunks.
+   * The reads complete on ioPool, or the default pool if it is null.
+   */
+  public static ReadAheadChannel open(final Path file,
+      final ExecutorService ioPool, final int chunkSize,
+      final int maxChunksInFlight) throws IOException {
+    Preconditions.checkArgument(chunkSize > 0,
+        "Chunk size must be positive: %s", chunkSize);
+    Preconditions.checkArgument(maxChunksInFlight > 0,
+        "Max chunks in flight must be positive: %s", maxChunksInFlight);
+    final AsynchronousFileChannel channel = ioPool == null
+        ? AsynchronousFileChannel.open(file, StandardOpenOption.READ)
+        : AsynchronousFileChannel.open(file,
+            Collections.singleton(StandardOpenOption.READ), ioPool);
+    try {
+      return new ReadAheadChannel(channel, channel.size(), chunkSize,
+          maxChunksInFlight);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Copies the next bytes of the file into the target, waiting for them to
+   * be read if need be. Returns the number of bytes copied, or -1 at the end
+   * of the file.
+   */
+  @Override
+  public int read(final ByteBuffer target) throws IOException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+    int copied = 0;
+    while (target.hasRemaining()) {
+      final Chunk chunk = chunks[current];
+      if (chunk.length == 0) {
+        return copied == 0 ? -1 : copied;
+      }
+      // Don't block once something has been copied.
+      if (!chunk.await(copied == 0)) {
+        return copied;
+      }
+      final ByteBuffer data = chunk.buffer;
+      final int length = Math.min(data.remaining(), target.remaining());
+      final int limit = data.limit();
+      // Buffer's methods, not ByteBuffer's Java 9 overrides.
+      data.limit(data.position() + length);
+      target.put(data);
+      data.limit(limit);
+      copied += length;
+      if (!data.hasRemaining()) {
+        readAhead(chunk);
+        current = (current + 1) % chunks.length;
+      }
+    }
+    return copied;
+  }
+
+  /**
+   * Makes a read() that waits for a chunk (now or later) fail with an
+   * InterruptedIOException. May be called from any thread.
+   */
+  public void cancel() {
+    cancelled = true;
+    for (Chunk chunk : chunks) {
+      synchronized (chunk) {
+        chunk.notifyAll();
+      }
+    }
+  }
+
+  @Override
+  public boolean isOpen() {
+    return open;
+  }
+
+  /**
+   * Closes the file. Reads in flight complete (with an error) in the
+   * background.
+   */
+  @Override
+  public void close() throws IOException {
+    if (open) {
+      open = false;
+      channel.close();
+    }
+  }
+
+  /**
+   * Starts reading the next chunk of the file into the chunk's buffer
+   * (nothing past the end of the file).
+   */
+  private void readAhead(final Chunk chunk) {
+    final int length = (int) Math.min(chunk.buffer.capacity(),
+        size - nextReadPosition);
+    chunk.start(nextReadPosition, length);
+    nextReadPosition += length;
+    if (length > 0) {
+      channel.read(chunk.buffer, chunk.position, chunk, chunk);
+    }
+  }
+
+  /**
+   * A buffer, and the state of the read into it. Reads may complete short;
+   * the rest is then read by a follow-up read.
+   */
+  private final class Chunk implements CompletionHandler<Integer, Chunk> {
+    final ByteBuffer buffer;
+    long position;
+    // 0 past the end of the file.
+    int length;
+    // Set once the reader has seen the read done; used by the reader only.
+    boolean ready;
+    // Guarded by this.
+    private boolean done;
+    private Throwable failure;
+
+    Chunk(final ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    void start(final long position, final int length) {
+      this.position = position;
+      this.length = length;
+      this.ready = false;
+      buffer.clear();
+      buffer.limit(length);
+      synchronized (this) {
+        done = false;
+        failure = null;
+      }
+    }
+
+    /**
+     * Returns true once the chunk has been read, waiting for it if block is
+     * set; then, the buffer holds the data between its position and limit.
+     */
+    boolean await(final boolean block) throws IOException {
+      if (ready) {
+        return true;
+      }
+      synchronized (this) {
+        while (!done) {
+          if (!block) {
+            return false;
+          }
+          if (cancelled) {
+            throw new InterruptedIOException("Read cancelled");
+          }
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Read interrupted");
+          }
+        }
+        if (failure != null) {
+          throw failure instanceof IOException ? (IOException) failure
+              : new IOException(failure);
+        }
+      }
+      ready = true;
+      return true;
+    }
+
+    @Override
+    public void completed(final Integer count, final Chunk chunk) {
+      if (count < 0) {
+        failed(new IOException("Unexpected end of file at "
+            + (position + buffer.position())), chunk);
+      } else if (buffer.hasRemaining()) {
+        channel.read(buffer, position + buffer.position(), chunk, chunk);
+      } else {
+        buffer.flip();
+        finish(null);
+      }
+    }
+
+    @Override
+    public void failed(final Throwable exception, final Chunk chunk) {
+      finish(exception);
+    }
+
+    private synchronized void finish(final Throwable exception) {
+      failure = exception;
+      done = true;
+      notifyAll();
+    }
+  }
+}
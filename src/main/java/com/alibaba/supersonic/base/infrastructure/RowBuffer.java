@@ -0,0 +1,407 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.base.infrastructure;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import com.alibaba.supersonic.base.memory.Arena;
+import com.google.common.base.Preconditions;
+
+/**
+ * A growable sequence of rows in the {@link RowFormat} of a schema, stored
+ * contiguously in a single byte array. For operators that access whole rows
+ * at random, e.g. hash join build sides and sort buffers.
+ * 
+ * Rows are appended from views and copied back into blocks by transposition
+ * kernels that work a column at a time, so that the per-type dispatch happens
+ * once per column, not once per value.
+ */
+public class RowBuffer {
+
+  private static final int DEFAULT_INITIAL_CAPACITY = 4096;
+
+  private final RowFormat format;
+  private byte[] bytes;
+  private ByteBuffer buffer;
+  // Row i occupies [rowOffsets[i], rowOffsets[i + 1]).
+  private int[] rowOffsets;
+  private int rowCount;
+  // Per-row write positions in the variable-length tails; reused.
+  private int[] tails;
+
+  public RowBuffer(final TupleSchema schema) {
+    this(new RowFormat(schema), DEFAULT_INITIAL_CAPACITY);
+  }
+
+  public RowBuffer(final RowFormat format, final int initialCapacity) {
+    this.format = format;
+    this.bytes = new byte[initialCapacity];
+    this.buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    this.rowOffsets = new int[64];
+    this.rowCount = 0;
+    this.tails = new int[0];
+  }
+
+  public RowFormat format() {
+    return format;
+  }
+
+  public int rowCount() {
+    return rowCount;
+  }
+
+  /**
+   * Returns the backing array. Valid until the next append.
+   */
+  public byte[] bytes() {
+    return bytes;
+  }
+
+  /**
+   * Returns the offset of the row in bytes().
+   */
+  public int rowOffset(final int row) {
+    return rowOffsets[row];
+  }
+
+  /**
+   * Returns the size of the row, including its variable-length tail.
+   */
+  public int rowSize(final int row) {
+    return rowOffsets[row + 1] - rowOffsets[row];
+  }
+
+  /**
+   * Discards all rows, keeping the allocated memory.
+   */
+  public void reset() {
+    rowCount = 0;
+  }
+
+  /**
+   * Appends all rows of the source, which must have the same column types as
+   * this buffer, and may contain NULLs only in columns that are nullable in
+   * the buffer's schema. Returns the index of the first appended row.
+   */
+  public int appendRows(final View source) {
+    Preconditions.checkArgument(
+        source.schema().equalByType(format.schema()), "Schema mismatch");
+    final int first = rowCount;
+    final int count = source.rowCount();
+    for (int column = 0; column < source.columnCount(); ++column) {
+      if (!format.schema().getAttributeAt(column).isNullable()) {
+        checkNoNulls(source.column(column), count, column);
+      }
+    }
+    ensureRowCapacity(first + count);
+    computeRowOffsets(source, first, count);
+    ensureByteCapacity(rowOffsets[first + count]);
+    for (int i = 0; i < count; ++i) {
+      final int start = rowOffsets[first + i];
+      Arrays.fill(bytes, start, start + format.nullBitmaskSize(), (byte) 0);
+    }
+    if (format.hasVariableLength()) {
+      if (tails.length < count) {
+        tails = new int[Math.max(count, tails.length * 2)];
+      }
+      for (int i = 0; i < count; ++i) {
+        tails[i] = rowOffsets[first + i] + format.fixedRowSize();
+      }
+    }
+    for (int column = 0; column < source.columnCount(); ++column) {
+      writeColumn(source.column(column), column, first, count);
+    }
+    rowCount += count;
+    return first;
+  }
+
+  /**
+   * Copies up to count rows, starting at firstRow, to the end of the
+   * target's block. Returns the number of rows copied, which is less than
+   * count if the block fills up. The copied rows may contain NULLs only in
+   * columns that are nullable in the block.
+   */
+  public int copyRows(final int firstRow, final int count,
+      final BlockBuilder target) {
+    Preconditions.checkPositionIndexes(firstRow, firstRow + count, rowCount);
+    final TupleSchema targetSchema = target.block().schema();
+    Preconditions.checkArgument(targetSchema.equalByType(format.schema()),
+        "Schema mismatch");
+    final int copied = Math.min(count, target.remainingCapacity());
+    for (int column = 0; column < targetSchema.attributeCount(); ++column) {
+      if (!targetSchema.getAttributeAt(column).isNullable()) {
+        for (int row = firstRow; row < firstRow + copied; ++row) {
+          if (isNull(row, column)) {
+            throw new IllegalArgumentException("NULL in row " + row
+                + " of attribute '"
+                + targetSchema.getAttributeAt(column).getName()
+                + "', which is not nullable in the target");
+          }
+        }
+      }
+    }
+    final int targetRow = target.reserve(copied);
+    for (int column = 0; column < format.schema().attributeCount();
+        ++column) {
+      readColumn(column, firstRow, copied, target.block(), targetRow);
+    }
+    return copied;
+  }
+
+  public boolean isNull(final int row, final int column) {
+    return (bytes[rowOffsets[row] + (column >> 3)] & (1 << (column & 7))) != 0;
+  }
+
+  public int getInt(final int row, final int column) {
+    return buffer.getInt(rowOffsets[row] + format.slotOffset(column));
+  }
+
+  public long getLong(final int row, final int column) {
+    return buffer.getLong(rowOffsets[row] + format.slotOffset(column));
+  }
+
+  public float getFloat(final int row, final int column) {
+    return buffer.getFloat(rowOffsets[row] + format.slotOffset(column));
+  }
+
+  public double getDouble(final int row, final int column) {
+    return buffer.getDouble(rowOffsets[row] + format.slotOffset(column));
+  }
+
+  public boolean getBool(final int row, final int column) {
+    return bytes[rowOffsets[row] + format.slotOffset(column)] != 0;
+  }
+
+  /**
+   * Returns the offset in bytes() of a variable-length value.
+   */
+  public int getBytesOffset(final int row, final int column) {
+    return rowOffsets[row] + Arena.pieceOffset(getLong(row, column));
+  }
+
+  /**
+   * Returns the length of a variable-length value.
+   */
+  public int getBytesLength(final int row, final int column) {
+    return Arena.pieceLength(getLong(row, column));
+  }
+
+  private void checkNoNulls(final Column source, final int count,
+      final int column) {
+    final boolean[] isNull = source.isNull();
+    if (isNull == null) {
+      return;
+    }
+    for (int i = 0; i < count; ++i) {
+      if (isNull[source.isNullOffset() + i]) {
+        throw new IllegalArgumentException("NULL in row " + i
+            + " of attribute '"
+            + format.schema().getAttributeAt(column).getName()
+            + "', which is not nullable");
+      }
+    }
+  }
+
+  private void computeRowOffsets(final View source, final int first,
+      final int count) {
+    final int fixedRowSize = format.fixedRowSize();
+    int end = rowOffsets[first];
+    if (!format.hasVariableLength()) {
+      for (int i = 1; i <= count; ++i) {
+        rowOffsets[first + i] = end + i * fixedRowSize;
+      }
+      return;
+    }
+    final int[] variableLengthColumns = format.variableLengthColumns();
+    for (int i = 0; i < count; ++i) {
+      int size = fixedRowSize;
+      for (int column : variableLengthColumns) {
+        final Column data = source.column(column);
+        if (!data.isNull(i)) {
+          size += Arena.pieceLength(data.getPiece(i));
+        }
+      }
+      end += size;
+      rowOffsets[first + i + 1] = end;
+    }
+  }
+
+  private void writeColumn(final Column source, final int column,
+      final int first, final int count) {
+    final int slot = format.slotOffset(column);
+    final int[] offsets = rowOffsets;
+    final int nullByte = column >> 3;
+    final byte nullBit = (byte) (1 << (column & 7));
+    final boolean[] isNull = source.isNull();
+    if (isNull != null) {
+      final int nullOffset = source.isNullOffset();
+      for (int i = 0; i < count; ++i) {
+        if (isNull[nullOffset + i]) {
+          bytes[offsets[first + i] + nullByte] |= nullBit;
+        }
+      }
+    }
+    final int offset = source.offset();
+    switch (source.typeInfo().type()) {
+      case INT32:
+      case UINT32:
+      case DATE:
+      case DATA_TYPE: {
+        final int[] data = (int[]) source.data();
+        for (int i = 0; i < count; ++i) {
+          buffer.putInt(offsets[first + i] + slot, data[offset + i]);
+        }
+        break;
+      }
+      case INT64:
+      case UINT64:
+      case DATETIME: {
+        final long[] data = (long[]) source.data();
+        for (int i = 0; i < count; ++i) {
+          buffer.putLong(offsets[first + i] + slot, data[offset + i]);
+        }
+        break;
+      }
+      case FLOAT: {
+        final float[] data = (float[]) source.data();
+        for (int i = 0; i < count; ++i) {
+          buffer.putFloat(offsets[first + i] + slot, data[offset + i]);
+        }
+        break;
+      }
+      case DOUBLE: {
+        final double[] data = (double[]) source.data();
+        for (int i = 0; i < count; ++i) {
+          buffer.putDouble(offsets[first + i] + slot, data[offset + i]);
+        }
+        break;
+      }
+      case BOOL: {
+        final boolean[] data = (boolean[]) source.data();
+        for (int i = 0; i < count; ++i) {
+          bytes[offsets[first + i] + slot] = (byte) (data[offset + i] ? 1 : 0);
+        }
+        break;
+      }
+      case STRING:
+      case BINARY: {
+        final long[] data = (long[]) source.data();
+        final byte[] arena = source.arena().buffer();
+        for (int i = 0; i < count; ++i) {
+          final int rowStart = offsets[first + i];
+          int length = 0;
+          if (isNull == null || !isNull[source.isNullOffset() + i]) {
+            length = Arena.pieceLength(data[offset + i]);
+            System.arraycopy(arena, Arena.pieceOffset(data[offset + i]),
+                bytes, tails[i], length);
+          }
+          buffer.putLong(rowStart + slot,
+              Arena.piece(tails[i] - rowStart, length));
+          tails[i] += length;
+        }
+        break;
+      }
+      default:
+        throw new IllegalStateException("Unsupported type: "
+            + source.typeInfo().name());
+    }
+  }
+
+  private void readColumn(final int column, final int firstRow,
+      final int count, final Block target, final int targetRow) {
+    final int slot = format.slotOffset(column);
+    final int[] offsets = rowOffsets;
+    final boolean[] isNull = target.isNull(column);
+    if (isNull != null) {
+      for (int i = 0; i < count; ++i) {
+        isNull[targetRow + i] = isNull(firstRow + i, column);
+      }
+    }
+    switch (format.schema().getAttributeAt(column).getType()) {
+      case INT32:
+      case UINT32:
+      case DATE:
+      case DATA_TYPE: {
+        final int[] data = target.intData(column);
+        for (int i = 0; i < count; ++i) {
+          data[targetRow + i] = buffer.getInt(offsets[firstRow + i] + slot);
+        }
+        break;
+      }
+      case INT64:
+      case UINT64:
+      case DATETIME: {
+        final long[] data = target.longData(column);
+        for (int i = 0; i < count; ++i) {
+          data[targetRow + i] = buffer.getLong(offsets[firstRow + i] + slot);
+        }
+        break;
+      }
+      case FLOAT: {
+        final float[] data = target.floatData(column);
+        for (int i = 0; i < count; ++i) {
+          data[targetRow + i] = buffer.getFloat(offsets[firstRow + i] + slot);
+        }
+        break;
+      }
+      case DOUBLE: {
+        final double[] data = target.doubleData(column);
+        for (int i = 0; i < count; ++i) {
+          data[targetRow + i] =
+              buffer.getDouble(offsets[firstRow + i] + slot);
+        }
+        break;
+      }
+      case BOOL: {
+        final boolean[] data = target.boolData(column);
+        for (int i = 0; i < count; ++i) {
+          data[targetRow + i] = bytes[offsets[firstRow + i] + slot] != 0;
+        }
+        break;
+      }
+      case STRING:
+      case BINARY: {
+        for (int i = 0; i < count; ++i) {
+          final int rowStart = offsets[firstRow + i];
+          final long piece = buffer.getLong(rowStart + slot);
+          target.setBytes(column, targetRow + i, bytes,
+              rowStart + Arena.pieceOffset(piece), Arena.pieceLength(piece));
+        }
+        break;
+      }
+      default:
+        throw new IllegalStateException("Unsupported type: "
+            + format.schema().getAttributeAt(column).getType());
+    }
+  }
+
+  private void ensureRowCapacity(final int rows) {
+    if (rows + 1 > rowOffsets.length) {
+      rowOffsets = Arrays.copyOf(rowOffsets,
+          Math.max(rows + 1, rowOffsets.length * 2));
+    }
+  }
+
+  private void ensureByteCapacity(final int size) {
+    if (size > bytes.length) {
+      bytes = Arrays.copyOf(bytes, Math.max(size, bytes.length * 2));
+      buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+  }
+}
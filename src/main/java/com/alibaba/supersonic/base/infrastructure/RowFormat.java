@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.base.infrastructure;
+
+/**
+ * Describes the row-major layout of tuples of a schema, as stored in a
+ * {@link RowBuffer}. Each row is:
+ * 
+ *   [null bitmask][fixed-width slots][variable-length tail]
+ * 
+ * The null bitmask has one bit per attribute (bit i % 8 of byte i / 8 is set
+ * iff attribute i is NULL). The slots follow, one per attribute, sized and
+ * ordered as in the schema's fixed-width layout
+ * ({@link TupleSchema#getFixedWidthOffsetAt(int)}); multi-byte values are
+ * little-endian. The slot of a variable-length attribute holds an arena piece
+ * (see {@link com.alibaba.supersonic.base.memory.Arena}) whose offset is
+ * relative to the start of the row, pointing into the row's tail.
+ * 
+ * Immutable.
+ */
+public final class RowFormat {
+
+  private final TupleSchema schema;
+  private final int nullBitmaskSize;
+  private final int fixedRowSize;
+  private final int[] slotOffsets;
+  private final int[] variableLengthColumns;
+
+  public RowFormat(final TupleSchema schema) {
+    this.schema = schema;
+    this.nullBitmaskSize = (schema.attributeCount() + 7) / 8;
+    this.fixedRowSize = nullBitmaskSize + schema.fixedWidthRowSize();
+    this.slotOffsets = new int[schema.attributeCount()];
+    int variableLengthCount = 0;
+    for (int i = 0; i < schema.attributeCount(); ++i) {
+      slotOffsets[i] = nullBitmaskSize + schema.getFixedWidthOffsetAt(i);
+      if (schema.getTypeInfoAt(i).isVariableLength()) {
+        ++variableLengthCount;
+      }
+    }
+    this.variableLengthColumns = new int[variableLengthCount];
+    for (int i = 0, j = 0; i < schema.attributeCount(); ++i) {
+      if (schema.getTypeInfoAt(i).isVariableLength()) {
+        variableLengthColumns[j++] = i;
+      }
+    }
+  }
+
+  public TupleSchema schema() {
+    return schema;
+  }
+
+  /**
+   * Returns the size of the null bitmask at the beginning of each row.
+   */
+  public int nullBitmaskSize() {
+    return nullBitmaskSize;
+  }
+
+  /**
+   * Returns the size of a row without its variable-length tail; the exact
+   * size of every row if there are no variable-length attributes.
+   */
+  public int fixedRowSize() {
+    return fixedRowSize;
+  }
+
+  /**
+   * Returns the offset of the attribute's slot from the start of the row.
+   */
+  public int slotOffset(final int column) {
+    return slotOffsets[column];
+  }
+
+  /**
+   * Returns true if the rows have a variable-length tail.
+   */
+  public boolean hasVariableLength() {
+    return variableLengthColumns.length > 0;
+  }
+
+  int[] variableLengthColumns() {
+    return variableLengthColumns;
+  }
+}
@@ -16,8 +16,13 @@
  */
 package com.alibaba.supersonic.base.infrastructure;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.alibaba.supersonic.base.exception.SupersonicException;
 import com.alibaba.supersonic.proto.CommonEnums.DataType;
@@ -26,6 +31,8 @@ import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
 import com.alibaba.supersonic.utils.exception.FailureOr;
 import com.alibaba.supersonic.utils.exception.FailureOrs;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 
 /**
  * Represents the schema for a tuple, which is an ordered list of named and
@@ -33,118 +40,200 @@ import com.google.common.base.Preconditions;
  * types and names of tuple elements, called 'attributes'.
  * 
  * The schema is often used in objects passed by value, e.g. comparators used
- * for table sorting; therefore, it needs to support copy construction and
- * assignment.
+ * for table sorting. Schemas are therefore immutable, and interned: equal
+ * schemas are the same object, so they can be shared freely, compared and
+ * used as keys by identity. Schemas are built with a {@link Builder}.
+ * 
+ * Everything that views and blocks need per attribute (the TypeInfo, and the
+ * offset in the fixed-width row layout) is computed once, when the schema is
+ * built.
  * 
  * @author Min Zhou (coderplay@gmail.com)
  */
-public class TupleSchema {
-	private List<Attribute> attributes;
-	private Map<String, Integer> attributeNames;
-
-	/*
-	 * Creates and returns a schema with a single attribute.
-	 */
-	public static TupleSchema singleton(final String name, final DataType type,
-			final Nullability nullability) {
-		TupleSchema result = new TupleSchema();
-		Attribute attribute = new Attribute(name, type, nullability);
-		Preconditions.checkState(result.addAttribute(attribute));
-		return result;
-	}
-	  
-	/**
-	 * Creates a new, empty schema (with no attributes).
-	 */
-	public TupleSchema() {
-	};
-
-	/**
-	 * A copy constructor.
-	 * 
-	 * @param other the source schema
-	 */
-	public TupleSchema(final TupleSchema other) {
-		this.attributes = other.attributes;
-		this.attributeNames = other.attributeNames;
-	}
-
-	/**
-	 * Returns the number of attributes.
-	 * @return the number of attributes.
-	 */
-	public int attributeCount() {
-		return attributes.size();
-	}
-	
-	/**
-	 * Returns the attribute at the specified position.
-	 * @param position the specified position.
-	 * @return the attribute at the specified position.
-	 */
-	public Attribute getAttributeAt(final int position) {
-		Preconditions.checkPositionIndex(position, attributes.size());
-		return attributes.get(position);
-	}
-	
-	/**
-	 * Adds an attribute to the schema if it isn't already defined. The added
-	 * attribute occupies the last position (positions of all existing
-	 * attributes do not change). Returns true iff name has been successfully
-	 * added.
-	 */
-	public boolean addAttribute(final Attribute attribute) {
-		if(attributeNames.containsKey(attribute.getName())) {
-			return false;
-		}
-		
-		attributeNames.put(attribute.getName(), attributes.size());
-		attributes.add(attribute);
-		return true;
-	}
-	
-	
-	/**
-	 * Looks up an attribute with the specified name. O(log2(attribute count)).
-	 * The attribute must exist in the schema.
-	 */
-	public Attribute lookupAttribute(final String attributeName) {
-		int position = lookupAttributePosition(attributeName);
-		Preconditions.checkPositionIndex(position, attributes.size());
-		return attributes.get(position);
-	}
-	
-	/**
-	 * Looks up and returns the position of an attribute with the specified
-	 * name, or -1 if not found in the schema. O(log2(attribute count)).
-	 */
-	public int lookupAttributePosition(final String attributeName) {
-		Integer i = attributeNames.get(attributeName);
-		return (i == null) ? -1 : i;
-	}
-	
-	/**
-	 * Checks whether two schemas are equal, i.e. they have attributes of the
-	 * same types and (if check_names is set to true) names on the same
-	 * positions.
-	 */
-	public static boolean equals(final TupleSchema a, final TupleSchema b,
-			boolean checkNames) {
-		if (a.attributeCount() != b.attributeCount()) {
-			return false;
-		}
-		for (int i = 0; i < a.attributeCount(); i++) {
-			final Attribute aAttr = a.getAttributeAt(i);
-			final Attribute bAttr = b.getAttributeAt(i);
-			if (aAttr.getType() != bAttr.getType()
-					|| aAttr.isNullable() != bAttr.isNullable()
-					|| (checkNames && (aAttr.getName() != bAttr.getName()))) {
-				return false;
-			}
-		}
-		return true;
-	}
-	
+public final class TupleSchema {
+
+  private static final Interner<TupleSchema> INTERNER =
+      Interners.newWeakInterner();
+
+  private static final TupleSchema EMPTY =
+      INTERNER.intern(new TupleSchema(new Attribute[0]));
+
+  private final Attribute[] attributes;
+  private final TypeInfo[] typeInfos;
+  private final int[] fixedWidthOffsets;
+  private final int fixedWidthRowSize;
+  // Never modified after construction.
+  private final Map<String, Integer> attributeNames;
+  private final int hashCode;
+
+  private TupleSchema(final Attribute[] attributes) {
+    this.attributes = attributes;
+    this.typeInfos = new TypeInfo[attributes.length];
+    this.fixedWidthOffsets = new int[attributes.length];
+    this.attributeNames = new HashMap<String, Integer>(attributes.length * 2);
+    int offset = 0;
+    for (int i = 0; i < attributes.length; ++i) {
+      typeInfos[i] = TypeInfo.getTypeInfo(attributes[i].getType());
+      fixedWidthOffsets[i] = offset;
+      offset += typeInfos[i].size();
+      attributeNames.put(attributes[i].getName(), i);
+    }
+    this.fixedWidthRowSize = offset;
+    this.hashCode = Arrays.hashCode(attributes);
+  }
+
+  /**
+   * Builds a schema by adding attributes one by one.
+   */
+  public static final class Builder {
+    private final List<Attribute> attributes = new ArrayList<Attribute>();
+    private final Set<String> names = new HashSet<String>();
+
+    private Builder() {
+    }
+
+    /**
+     * Adds an attribute to the schema if it isn't already defined. The added
+     * attribute occupies the last position (positions of all existing
+     * attributes do not change). Returns true iff name has been successfully
+     * added.
+     */
+    public boolean addAttribute(final Attribute attribute) {
+      if (!names.add(attribute.getName())) {
+        return false;
+      }
+      attributes.add(attribute);
+      return true;
+    }
+
+    /**
+     * Returns the (interned) schema with the attributes added so far.
+     */
+    public TupleSchema build() {
+      return INTERNER.intern(new TupleSchema(
+          attributes.toArray(new Attribute[attributes.size()])));
+    }
+  }
+
+  /**
+   * Returns a builder for a new schema.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns a builder initialized with the attributes of the schema.
+   */
+  public static Builder builder(final TupleSchema schema) {
+    Builder builder = new Builder();
+    for (Attribute attribute : schema.attributes) {
+      builder.addAttribute(attribute);
+    }
+    return builder;
+  }
+
+  /**
+   * Returns the schema with no attributes.
+   */
+  public static TupleSchema empty() {
+    return EMPTY;
+  }
+
+  /*
+   * Creates and returns a schema with a single attribute.
+   */
+  public static TupleSchema singleton(final String name, final DataType type,
+      final Nullability nullability) {
+    Builder builder = builder();
+    Attribute attribute = new Attribute(name, type, nullability);
+    Preconditions.checkState(builder.addAttribute(attribute));
+    return builder.build();
+  }
+
+  /**
+   * Returns the number of attributes.
+   * @return the number of attributes.
+   */
+  public int attributeCount() {
+    return attributes.length;
+  }
+
+  /**
+   * Returns the attribute at the specified position.
+   * @param position the specified position.
+   * @return the attribute at the specified position.
+   */
+  public Attribute getAttributeAt(final int position) {
+    return attributes[position];
+  }
+
+  /**
+   * Returns the (precomputed) TypeInfo of the attribute at the specified
+   * position.
+   */
+  public TypeInfo getTypeInfoAt(final int position) {
+    return typeInfos[position];
+  }
+
+  /**
+   * Returns the offset, in bytes, of the attribute at the specified position
+   * within a row, if the attributes were laid out one after another using
+   * their fixed-width sizes ({@link TypeInfo#size()}).
+   */
+  public int getFixedWidthOffsetAt(final int position) {
+    return fixedWidthOffsets[position];
+  }
+
+  /**
+   * Returns the size, in bytes, of a row in the fixed-width layout, i.e. the
+   * sum of {@link TypeInfo#size()} over all attributes.
+   */
+  public int fixedWidthRowSize() {
+    return fixedWidthRowSize;
+  }
+
+  /**
+   * Looks up an attribute with the specified name.
+   * The attribute must exist in the schema.
+   */
+  public Attribute lookupAttribute(final String attributeName) {
+    int position = lookupAttributePosition(attributeName);
+    Preconditions.checkElementIndex(position, attributes.length);
+    return attributes[position];
+  }
+
+  /**
+   * Looks up and returns the position of an attribute with the specified
+   * name, or -1 if not found in the schema.
+   */
+  public int lookupAttributePosition(final String attributeName) {
+    Integer i = attributeNames.get(attributeName);
+    return (i == null) ? -1 : i;
+  }
+
+  /**
+   * Checks whether two schemas are equal, i.e. they have attributes of the
+   * same types and (if check_names is set to true) names on the same
+   * positions.
+   */
+  public static boolean equals(final TupleSchema a, final TupleSchema b,
+      boolean checkNames) {
+    if (a.attributeCount() != b.attributeCount()) {
+      return false;
+    }
+    for (int i = 0; i < a.attributeCount(); i++) {
+      final Attribute aAttr = a.getAttributeAt(i);
+      final Attribute bAttr = b.getAttributeAt(i);
+      if (aAttr.getType() != bAttr.getType()
+          || aAttr.isNullable() != bAttr.isNullable()
+          || (checkNames && !aAttr.getName().equals(bAttr.getName()))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Returns true if two schemas can be merged (they do not contain attributes
    * with the same name).
@@ -155,14 +244,9 @@ public class TupleSchema {
         return false;
       }
     }
-    for (int i = 0; i < b.attributeCount(); i++) {
-      if (a.lookupAttributePosition(b.getAttributeAt(i).getName()) >= 0) {
-        return false;
-      }
-    }
     return true;
   }
-	
+
   /**
    * TODO(user): Remove this method and replace its uses with TryMerge. Merges
    * two TupleSchema into a new TupleSchema object. It is safe to call this
@@ -172,33 +256,31 @@ public class TupleSchema {
    * @param b
    * @return
    */
-  public TupleSchema merge(final TupleSchema a, final TupleSchema b)
-      throws SupersonicException {
+  public static TupleSchema merge(final TupleSchema a, final TupleSchema b) {
     FailureOr<TupleSchema> result = tryMerge(a, b);
     Preconditions.checkState(result.isSuccess(), "TupleSchema::Merge failed, "
-        + result.exception().getMessage());
+        + (result.isFailure() ? result.exception().getMessage() : ""));
     return result.get();
   }
-  
+
   // Like Merge, but when the schemas can't be merged, returns a failure instead
   // of failing a CHECK.
-  static FailureOr<TupleSchema> tryMerge(final TupleSchema a,
-                                           final TupleSchema b) 
-      throws SupersonicException {
-    TupleSchema result = new TupleSchema(a);
+  public static FailureOr<TupleSchema> tryMerge(final TupleSchema a,
+      final TupleSchema b) {
+    Builder result = builder(a);
 
     for (int i = 0; i < b.attributeCount(); ++i) {
       if (!result.addAttribute(b.getAttributeAt(i))) {
-
-        throw new SupersonicException(ReturnCode.ERROR_ATTRIBUTE_EXISTS,
+        return FailureOrs.failure(new SupersonicException(
+            ReturnCode.ERROR_ATTRIBUTE_EXISTS,
             "Can't merge schemas, ambiguous attribute name: "
-                + b.getAttributeAt(i).getName());
+                + b.getAttributeAt(i).getName()));
       }
     }
 
-    return FailureOrs.success(result);
+    return FailureOrs.success(result.build());
   }
-  
+
   /**
    * Equality tester for CHECKs and tests.
    * TODO(user): clarify relationship to AreEqual (above).
@@ -206,15 +288,40 @@ public class TupleSchema {
    * @return
    */
   public boolean equalByType(final TupleSchema other) {
+    if (this == other)
+      return true;
     if (attributeCount() != other.attributeCount())
       return false;
     for (int i = 0; i < attributeCount(); ++i) {
-      if (getAttributeAt(i).getType() != other.getAttributeAt(i).getType())
+      if (typeInfos[i] != other.typeInfos[i])
         return false;
     }
     return true;
   }
-  
+
+  /**
+   * Schemas are equal if they have equal attributes (names, types and
+   * nullability) on the same positions. As schemas are interned, equal
+   * schemas are normally also identical.
+   */
+  @Override
+  public boolean equals(final Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof TupleSchema)) {
+      return false;
+    }
+    TupleSchema that = (TupleSchema) other;
+    return hashCode == that.hashCode
+        && Arrays.equals(attributes, that.attributes);
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
   /**
    * Convenience function that returns a schema specification formatted
    * in the human-readable representation:
@@ -229,10 +336,14 @@ public class TupleSchema {
       if (i > 0) result.append(", ");
       result.append(getAttributeAt(i).getName());
       result.append(": ");
-      result.append(TypeInfo.getTypeInfo(getAttributeAt(i).getType()).name());
+      result.append(typeInfos[i].name());
       if (!getAttributeAt(i).isNullable()) result.append(" NOT NULL");
     }
     return result.toString();
   }
 
+  @Override
+  public String toString() {
+    return getHumanReadableSpecification();
+  }
 }
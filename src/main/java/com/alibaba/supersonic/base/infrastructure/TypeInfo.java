@@ -33,6 +33,7 @@ public class TypeInfo {
   final boolean isInteger;
   final boolean isFloatingPoint;
   final boolean isVariableLength;
+  final Class<?> arrayClass;
 
   public static TypeInfo getTypeInfo(DataType type) {
     return TypeInfoResolver.getInstance().getTypeInfo(type);
@@ -42,16 +43,17 @@ public class TypeInfo {
    * Constructor, called by TypeInfoResolver.
    */
   TypeInfo(DataType type, int size, boolean isNumeric, boolean isInteger,
-      boolean isFloatingPoint, boolean isVariableLength) {
+      boolean isFloatingPoint, boolean isVariableLength, Class<?> arrayClass) {
     this.type = type;
     this.name = type.name();
     this.size = size;
-    // FIXME: correct log2Size
-    this.log2Size = -1;
+    this.log2Size = Integer.bitCount(size) == 1
+        ? Integer.numberOfTrailingZeros(size) : -1;
     this.isNumeric = isNumeric;
     this.isInteger = isInteger;
     this.isFloatingPoint = isFloatingPoint;
     this.isVariableLength = isVariableLength;
+    this.arrayClass = arrayClass;
   }
 
   /**
@@ -72,7 +74,7 @@ public class TypeInfo {
 
   /**
    * Returns the log2 of the size(), so that offsets can be quickly computed
-   * using left shift.
+   * using left shift. All sizes are powers of two.
    * @return
    */
   public int log2Size()  { return log2Size; }
@@ -103,4 +105,22 @@ public class TypeInfo {
    */
   public boolean isFloatingPoint()  { return isFloatingPoint; }
 
+  /**
+   * Returns the class of the primitive arrays that store columns of this
+   * type: int[] for INT32, UINT32, DATE and DATA_TYPE (the enum number);
+   * long[] for INT64, UINT64 and DATETIME; float[], double[] and boolean[]
+   * for FLOAT, DOUBLE and BOOL. Variable-length types are stored as long[]
+   * arena pieces; see {@link com.alibaba.supersonic.base.memory.Arena}.
+   * Unsigned values are stored in the signed type of the same width.
+   */
+  public Class<?> arrayClass() { return arrayClass; }
+
+  /**
+   * Allocates an array for storing length values of this type.
+   */
+  public Object newArray(int length) {
+    return java.lang.reflect.Array.newInstance(arrayClass.getComponentType(),
+        length);
+  }
+
 }
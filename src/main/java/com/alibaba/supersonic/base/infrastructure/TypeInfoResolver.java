@@ -16,9 +16,6 @@
  */
 package com.alibaba.supersonic.base.infrastructure;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import com.alibaba.supersonic.proto.CommonEnums.DataType;
 import com.google.common.base.Preconditions;
 
@@ -30,44 +27,52 @@ import com.google.common.base.Preconditions;
 class TypeInfoResolver {
   private static final TypeInfoResolver instance = new TypeInfoResolver();
 
-  final Map<DataType, TypeInfo> map = new HashMap<DataType, TypeInfo>();
+  private static final int INT_SIZE = Integer.SIZE / Byte.SIZE;
+  private static final int LONG_SIZE = Long.SIZE / Byte.SIZE;
+
+  // Indexed by DataType.ordinal(); a lookup is a single array access.
+  private final TypeInfo[] table = new TypeInfo[DataType.values().length];
   
   static TypeInfoResolver getInstance() {
     return instance;
   }
 
   TypeInfoResolver() {
-    map.put(DataType.INT32, new TypeInfo(DataType.INT32, Integer.SIZE, true,
-        true, false, false));
-    map.put(DataType.INT64, new TypeInfo(DataType.INT64, Long.SIZE, true, true,
-        false, false));
-    map.put(DataType.UINT32, new TypeInfo(DataType.UINT32, Integer.SIZE, true,
-        true, false, false));
-    map.put(DataType.UINT64, new TypeInfo(DataType.UINT64, Long.SIZE, true,
-        true, false, false));
-    map.put(DataType.FLOAT, new TypeInfo(DataType.FLOAT, Float.SIZE, true,
-        false, true, false));
-    map.put(DataType.DOUBLE, new TypeInfo(DataType.DOUBLE, Double.SIZE, true,
-        false, true, false));
-    // FIXME: do assure the size of boolean
-    map.put(DataType.BOOL, new TypeInfo(DataType.BOOL, 1, false, false, false,
-        false));
-    map.put(DataType.STRING, new TypeInfo(DataType.STRING, 32, false, false,
-        false, true));
-    map.put(DataType.DATETIME, new TypeInfo(DataType.DATETIME, Long.SIZE,
-        false, false, false, false));
-    map.put(DataType.DATE, new TypeInfo(DataType.DATE, Integer.SIZE, false,
-        false, false, false));
-    map.put(DataType.BINARY, new TypeInfo(DataType.BINARY, 32, false, false,
-        false, true));
-    map.put(DataType.DATA_TYPE, new TypeInfo(DataType.DATA_TYPE, 32, false, false,
-        false, false));
+    register(new TypeInfo(DataType.INT32, INT_SIZE, true, true, false, false,
+        int[].class));
+    register(new TypeInfo(DataType.INT64, LONG_SIZE, true, true, false, false,
+        long[].class));
+    register(new TypeInfo(DataType.UINT32, INT_SIZE, true, true, false, false,
+        int[].class));
+    register(new TypeInfo(DataType.UINT64, LONG_SIZE, true, true, false, false,
+        long[].class));
+    register(new TypeInfo(DataType.FLOAT, Float.SIZE / Byte.SIZE, true, false,
+        true, false, float[].class));
+    register(new TypeInfo(DataType.DOUBLE, Double.SIZE / Byte.SIZE, true,
+        false, true, false, double[].class));
+    register(new TypeInfo(DataType.BOOL, 1, false, false, false, false,
+        boolean[].class));
+    // Variable-length values are stored as arena pieces.
+    register(new TypeInfo(DataType.STRING, LONG_SIZE, false, false, false,
+        true, long[].class));
+    register(new TypeInfo(DataType.DATETIME, LONG_SIZE, false, false, false,
+        false, long[].class));
+    register(new TypeInfo(DataType.DATE, INT_SIZE, false, false, false, false,
+        int[].class));
+    register(new TypeInfo(DataType.BINARY, LONG_SIZE, false, false, false,
+        true, long[].class));
+    // Stored as the enum number.
+    register(new TypeInfo(DataType.DATA_TYPE, INT_SIZE, false, false, false,
+        false, int[].class));
   }
 
   public TypeInfo getTypeInfo(DataType type) {
-    final TypeInfo type_info = map.get(type);
+    final TypeInfo type_info = table[type.ordinal()];
     Preconditions.checkNotNull(type_info);
     return type_info;
   }
 
+  private void register(TypeInfo typeInfo) {
+    table[typeInfo.type().ordinal()] = typeInfo;
+  }
 }
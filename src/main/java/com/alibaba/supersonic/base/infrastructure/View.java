@@ -78,7 +78,7 @@ public class View {
     this.columns_ = new Column[1];
     this.row_count_ = row_count;
     init();
-    // mutable_column(0)->ResetFrom(column);
+    mutableColumn(0).resetFrom(column);
   }
 
   /**
@@ -129,7 +129,7 @@ public class View {
    * @param column_index
    * @return
    */
-  Column mutableColumn(int column_index) {
+  public Column mutableColumn(int column_index) {
     Preconditions.checkPositionIndex(column_index, columnCount());
     return columns_[column_index];
   }
@@ -138,7 +138,7 @@ public class View {
    * Resets View's columns from another View. Sets the row_count as well.
    * @param other
    */
-  void resetFrom(final View other) {
+  public void resetFrom(final View other) {
     for (int i = 0; i < schema_.attributeCount(); ++i) {
       mutableColumn(i).resetFrom(other.column(i));
     }
@@ -153,7 +153,7 @@ public class View {
    * @param offset
    * @param row_count
    */
-  void resetFromSubRange(final View other, int offset, int row_count) {
+  public void resetFromSubRange(final View other, int offset, int row_count) {
     Preconditions.checkPositionIndex(offset, other.rowCount());
     for (int i = 0; i < columnCount(); ++i) {
       mutableColumn(i).resetFromPlusOffset(other.column(i), offset);
@@ -168,7 +168,7 @@ public class View {
    * 
    * @param offset
    */
-  void advance(int offset) {
+  public void advance(int offset) {
     Preconditions.checkPositionIndex(offset, rowCount());
     for (int i = 0; i < columnCount(); i++) {
       Column column = mutableColumn(i);
@@ -179,7 +179,8 @@ public class View {
 
   private void init() {
     for (int i = 0; i < schema_.attributeCount(); i++) {
-      columns_[i].init(schema_.getAttributeAt(i));
+      columns_[i] = new Column();
+      columns_[i].init(schema_.getAttributeAt(i), schema_.getTypeInfoAt(i));
     }
   }
 
@@ -0,0 +1,342 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.base.infrastructure;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import com.alibaba.supersonic.base.exception.SupersonicException;
+import com.alibaba.supersonic.base.memory.Arena;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrs;
+
+/**
+ * Reads a stream of views written by {@link ViewWriter} from a channel (see
+ * there for the format). The batches are decoded into a block owned by the
+ * reader, with bulk copies; the variable-length sections are scattered
+ * straight into the block's arenas.
+ * 
+ * Usage:
+ * 
+ *   FailureOr<ViewReader> reader = ViewReader.open(channel);
+ *   ...
+ *   FailureOr<View> batch;
+ *   while ((batch = reader.get().read()).isSuccess()
+ *       && batch.get() != null) {
+ *     ... batch.get() ...
+ *   }
+ * 
+ * Not thread-safe.
+ */
+public class ViewReader {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final ReadableByteChannel channel;
+  private final TupleSchema schema;
+  private final View view;
+  // The frame length, row count, and column directory.
+  private final ByteBuffer prefix;
+  private ByteBuffer scratch;
+  private final ByteBuffer[] buffers;
+  private final boolean[] hasNulls;
+  private final int[] sectionLengths;
+  private final int[] sectionStarts;
+  private Block block;
+  private boolean eos;
+
+  private ViewReader(final ReadableByteChannel channel,
+      final TupleSchema schema) {
+    final int columnCount = schema.attributeCount();
+    this.channel = channel;
+    this.schema = schema;
+    this.view = new View(schema);
+    this.prefix = ViewWriter.allocate(
+        8 + columnCount * ViewWriter.DIRECTORY_ENTRY_SIZE);
+    this.scratch = ViewWriter.allocate(4096);
+    this.buffers = new ByteBuffer[1 + columnCount];
+    this.hasNulls = new boolean[columnCount];
+    this.sectionLengths = new int[columnCount];
+    this.sectionStarts = new int[columnCount];
+    this.block = null;
+    this.eos = false;
+  }
+
+  /**
+   * Reads the stream header, and returns a reader for the batches.
+   */
+  public static FailureOr<ViewReader> open(final ReadableByteChannel channel) {
+    try {
+      ByteBuffer length = ViewWriter.allocate(4);
+      readFully(channel, length);
+      length.flip();
+      final int headerLength = length.getInt();
+      if (headerLength < 12) {
+        return corrupt("Bad header length: " + headerLength);
+      }
+      ByteBuffer header = ViewWriter.allocate(headerLength);
+      readFully(channel, header);
+      header.flip();
+      if (header.getInt() != ViewWriter.MAGIC) {
+        return corrupt("Not a view stream");
+      }
+      final int version = header.getInt();
+      if (version != ViewWriter.VERSION) {
+        return corrupt("Unsupported version: " + version);
+      }
+      final int attributeCount = header.getInt();
+      TupleSchema.Builder schema = TupleSchema.builder();
+      for (int i = 0; i < attributeCount; ++i) {
+        if (header.remaining() < 9) {
+          return corrupt("Truncated header");
+        }
+        final DataType type = DataType.valueOf(header.getInt());
+        final Nullability nullability = Nullability.valueOf(header.get());
+        final int nameLength = header.getInt();
+        if (type == null || nullability == null || nameLength < 0
+            || nameLength > header.remaining()) {
+          return corrupt("Bad attribute #" + i);
+        }
+        byte[] name = new byte[nameLength];
+        header.get(name);
+        if (!schema.addAttribute(new Attribute(new String(name, UTF_8), type,
+            nullability))) {
+          return corrupt("Duplicate attribute name");
+        }
+      }
+      return FailureOrs.success(new ViewReader(channel, schema.build()));
+    } catch (IOException e) {
+      return FailureOrs.failure(ViewWriter.ioException(e));
+    }
+  }
+
+  public TupleSchema schema() {
+    return schema;
+  }
+
+  /**
+   * Reads the next batch. Returns a view that stays valid until the next
+   * call, or a success holding null at the end of the stream.
+   */
+  public FailureOr<View> read() {
+    if (eos) {
+      return FailureOrs.success(null);
+    }
+    try {
+      prefix.clear();
+      prefix.limit(4);
+      readFully(channel, prefix);
+      final int frameLength = prefix.getInt(0);
+      if (frameLength == 0) {
+        eos = true;
+        return FailureOrs.success(null);
+      }
+      prefix.limit(prefix.capacity());
+      readFully(channel, prefix);
+      prefix.flip();
+      prefix.position(4);
+      final int rowCount = prefix.getInt();
+      if (rowCount < 0) {
+        return corrupt("Bad row count: " + rowCount);
+      }
+      final int bitmapSize = (rowCount + 7) >> 3;
+      long bodyLength = 0;
+      long variableLength = 0;
+      for (int i = 0; i < schema.attributeCount(); ++i) {
+        hasNulls[i] = prefix.get() != 0;
+        sectionLengths[i] = prefix.getInt();
+        if (hasNulls[i] && !schema.getAttributeAt(i).isNullable()) {
+          return corrupt("NULLs in non-nullable column #" + i);
+        }
+        if (sectionLengths[i] < 0 || (sectionLengths[i] > 0
+            && !schema.getTypeInfoAt(i).isVariableLength())) {
+          return corrupt("Bad section length in column #" + i);
+        }
+        bodyLength += (hasNulls[i] ? bitmapSize : 0)
+            + (long) rowCount * schema.getTypeInfoAt(i).size();
+        variableLength += sectionLengths[i];
+      }
+      if (frameLength != prefix.limit() - 4 + bodyLength + variableLength) {
+        return corrupt("Frame length mismatch: " + frameLength);
+      }
+      prepareBlock(rowCount);
+      final int bufferCount = prepareBuffers((int) bodyLength);
+      readFully(bufferCount);
+      scratch.flip();
+      for (int i = 0; i < schema.attributeCount(); ++i) {
+        if (!readColumn(i, rowCount)) {
+          return corrupt("Bad variable-length value in column #" + i);
+        }
+      }
+      view.resetFrom(block.view());
+      view.setRowCount(rowCount);
+      return FailureOrs.success(view);
+    } catch (IOException e) {
+      return FailureOrs.failure(ViewWriter.ioException(e));
+    }
+  }
+
+  private void prepareBlock(final int rowCount) {
+    if (block == null || block.rowCapacity() < rowCount) {
+      block = new Block(schema, block == null
+          ? rowCount : Math.max(rowCount, block.rowCapacity() * 2));
+    } else {
+      block.reset();
+    }
+  }
+
+  /**
+   * Points the buffers at the scratch buffer (for the body), and at the
+   * space for the variable-length sections, reserved in the block's arenas.
+   */
+  private int prepareBuffers(final int bodyLength) {
+    if (scratch.capacity() < bodyLength) {
+      scratch = ViewWriter.allocate(
+          Math.max(bodyLength, scratch.capacity() * 2));
+    }
+    scratch.clear();
+    scratch.limit(bodyLength);
+    buffers[0] = scratch;
+    int bufferCount = 1;
+    for (int i = 0; i < schema.attributeCount(); ++i) {
+      if (schema.getTypeInfoAt(i).isVariableLength()) {
+        final Arena arena = block.arena(i);
+        sectionStarts[i] = arena.reserve(sectionLengths[i]);
+        buffers[bufferCount++] = ByteBuffer.wrap(arena.buffer(),
+            sectionStarts[i], sectionLengths[i]);
+      }
+    }
+    return bufferCount;
+  }
+
+  /**
+   * Decodes the column's NULL bitmap and values from the scratch buffer.
+   * Returns false if a variable-length value points outside its section.
+   */
+  private boolean readColumn(final int column, final int rowCount) {
+    final boolean[] isNull = block.isNull(column);
+    if (hasNulls[column]) {
+      getBitmap(isNull, rowCount);
+    } else if (isNull != null) {
+      Arrays.fill(isNull, 0, rowCount, false);
+    }
+    switch (schema.getAttributeAt(column).getType()) {
+      case INT32:
+      case UINT32:
+      case DATE:
+      case DATA_TYPE:
+        scratch.asIntBuffer().get(block.intData(column), 0, rowCount);
+        break;
+      case INT64:
+      case UINT64:
+      case DATETIME:
+        scratch.asLongBuffer().get(block.longData(column), 0, rowCount);
+        break;
+      case FLOAT:
+        scratch.asFloatBuffer().get(block.floatData(column), 0, rowCount);
+        break;
+      case DOUBLE:
+        scratch.asDoubleBuffer().get(block.doubleData(column), 0, rowCount);
+        break;
+      case BOOL: {
+        final boolean[] data = block.boolData(column);
+        for (int i = 0; i < rowCount; ++i) {
+          data[i] = scratch.get() != 0;
+        }
+        return true;
+      }
+      case STRING:
+      case BINARY: {
+        final long[] pieces = block.longData(column);
+        final long rebase = (long) sectionStarts[column] << 32;
+        final long sectionLength = sectionLengths[column];
+        for (int i = 0; i < rowCount; ++i) {
+          final long piece = scratch.getLong();
+          if ((long) Arena.pieceOffset(piece) + Arena.pieceLength(piece)
+              > sectionLength || Arena.pieceLength(piece) < 0) {
+            return false;
+          }
+          pieces[i] = piece + rebase;
+        }
+        return true;
+      }
+      default:
+        throw new IllegalStateException("Unsupported type: "
+            + schema.getAttributeAt(column).getType());
+    }
+    // The bulk gets above went through a view buffer; skip over the values.
+    scratch.position(scratch.position()
+        + rowCount * schema.getTypeInfoAt(column).size());
+    return true;
+  }
+
+  private void getBitmap(final boolean[] isNull, final int rowCount) {
+    for (int i = 0; i < rowCount; i += 8) {
+      final int bits = scratch.get();
+      final int limit = Math.min(8, rowCount - i);
+      for (int j = 0; j < limit; ++j) {
+        isNull[i + j] = (bits & (1 << j)) != 0;
+      }
+    }
+  }
+
+  private void readFully(final int bufferCount) throws IOException {
+    if (channel instanceof ScatteringByteChannel) {
+      final ScatteringByteChannel scattering = (ScatteringByteChannel) channel;
+      long remaining = 0;
+      for (int i = 0; i < bufferCount; ++i) {
+        remaining += buffers[i].remaining();
+      }
+      while (remaining > 0) {
+        final long read = scattering.read(buffers, 0, bufferCount);
+        if (read < 0) {
+          throw new EOFException("Unexpected end of stream");
+        }
+        remaining -= read;
+      }
+    } else {
+      for (int i = 0; i < bufferCount; ++i) {
+        readFully(channel, buffers[i]);
+      }
+    }
+    for (int i = 1; i < bufferCount; ++i) {
+      buffers[i] = null;
+    }
+  }
+
+  private static void readFully(final ReadableByteChannel channel,
+      final ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        throw new EOFException("Unexpected end of stream");
+      }
+    }
+  }
+
+  private static <T> FailureOr<T> corrupt(final String message) {
+    return FailureOrs.failure(new SupersonicException(
+        ReturnCode.ERROR_GENERAL_IO_ERROR, "Corrupt view stream: " + message));
+  }
+}
@@ -0,0 +1,367 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.base.infrastructure;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+import com.alibaba.supersonic.base.exception.SupersonicException;
+import com.alibaba.supersonic.base.memory.Arena;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOrVoid;
+import com.alibaba.supersonic.utils.exception.FailureOrs;
+import com.google.common.base.Preconditions;
+
+/**
+ * Writes a stream of views of one schema to a channel, in a length-prefixed
+ * columnar format that {@link ViewReader} reads back. The column data is
+ * copied in bulk, as raw little-endian arrays, rather than encoded value by
+ * value; variable-length values are gathered straight from their arenas.
+ * 
+ * The stream is a header frame, followed by any number of batch frames, and
+ * an end-of-stream marker. Each frame starts with its length in bytes
+ * (int32, not counting the length itself); all numbers are little-endian.
+ * 
+ *   header: magic (int32), version (int32), attribute count (int32), and for
+ *           each attribute: type (int32, the DataType number), nullability
+ *           (byte), name length (int32), name (UTF-8).
+ *   batch:  row count (int32);
+ *           a directory with, for each column: has NULLs (byte), length of
+ *           the variable-length section (int32, 0 for fixed-width types);
+ *           for each column: the NULL bitmap ((row count + 7) / 8 bytes, bit
+ *           i % 8 of byte i / 8 set iff row i is NULL; only if the column has
+ *           NULLs), followed by the values (row count * TypeInfo.size()
+ *           bytes; BOOL as one byte, STRING and BINARY as arena pieces
+ *           relative to the column's variable-length section);
+ *           the variable-length sections of the STRING and BINARY columns.
+ *   end:    a frame of length 0.
+ * 
+ * Not thread-safe.
+ */
+public class ViewWriter {
+
+  static final int MAGIC = 0x57565353;  // "SSVW"
+  static final int VERSION = 1;
+  static final int DIRECTORY_ENTRY_SIZE = 5;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final WritableByteChannel channel;
+  private final TupleSchema schema;
+  // Holds everything but the variable-length sections; reused across
+  // batches, grown on demand.
+  private ByteBuffer scratch;
+  // The scratch buffer, followed by the variable-length sections.
+  private final ByteBuffer[] buffers;
+  private final int[] sectionStarts;
+  private boolean headerWritten;
+  private boolean finished;
+
+  public ViewWriter(final WritableByteChannel channel,
+      final TupleSchema schema) {
+    this.channel = channel;
+    this.schema = schema;
+    this.scratch = allocate(4096);
+    this.buffers = new ByteBuffer[1 + schema.attributeCount()];
+    this.sectionStarts = new int[schema.attributeCount()];
+    this.headerWritten = false;
+    this.finished = false;
+  }
+
+  public TupleSchema schema() {
+    return schema;
+  }
+
+  /**
+   * Writes the view as one batch. The view must have the same column types
+   * as the writer's schema. Writes the header first, if not written yet.
+   * Fails, writing nothing, if the view has NULLs in an attribute that is
+   * not nullable in the writer's schema.
+   */
+  public FailureOrVoid write(final View view) {
+    Preconditions.checkArgument(view.schema().equalByType(schema),
+        "Schema mismatch");
+    Preconditions.checkState(!finished, "Stream already finished");
+    for (int i = 0; i < schema.attributeCount(); ++i) {
+      if (!schema.getAttributeAt(i).isNullable()
+          && hasNulls(view.column(i), view.rowCount())) {
+        return FailureOrs.voidFailure(new SupersonicException(
+            ReturnCode.ERROR_ATTRIBUTE_IS_NULLABLE, "NULLs in attribute '"
+                + schema.getAttributeAt(i).getName()
+                + "', which is not nullable"));
+      }
+    }
+    try {
+      writeHeaderIfNeeded();
+      final int bufferCount = prepareBatch(view);
+      writeFully(bufferCount);
+      return FailureOrs.voidSuccess();
+    } catch (IOException e) {
+      return ioFailure(e);
+    }
+  }
+
+  /**
+   * Writes the end-of-stream marker (and the header, if no batch has been
+   * written). Doesn't close the channel.
+   */
+  public FailureOrVoid finish() {
+    Preconditions.checkState(!finished, "Stream already finished");
+    try {
+      writeHeaderIfNeeded();
+      scratch.clear();
+      scratch.putInt(0);
+      scratch.flip();
+      buffers[0] = scratch;
+      writeFully(1);
+      finished = true;
+      return FailureOrs.voidSuccess();
+    } catch (IOException e) {
+      return ioFailure(e);
+    }
+  }
+
+  private void writeHeaderIfNeeded() throws IOException {
+    if (headerWritten) {
+      return;
+    }
+    final byte[][] names = new byte[schema.attributeCount()][];
+    int length = 12;
+    for (int i = 0; i < schema.attributeCount(); ++i) {
+      names[i] = schema.getAttributeAt(i).getName().getBytes(UTF_8);
+      length += 9 + names[i].length;
+    }
+    ensureScratchCapacity(4 + length);
+    scratch.putInt(length);
+    scratch.putInt(MAGIC);
+    scratch.putInt(VERSION);
+    scratch.putInt(schema.attributeCount());
+    for (int i = 0; i < schema.attributeCount(); ++i) {
+      final Attribute attribute = schema.getAttributeAt(i);
+      scratch.putInt(attribute.getType().getNumber());
+      scratch.put((byte) attribute.getNullability().getNumber());
+      scratch.putInt(names[i].length);
+      scratch.put(names[i]);
+    }
+    scratch.flip();
+    buffers[0] = scratch;
+    writeFully(1);
+    headerWritten = true;
+  }
+
+  /**
+   * Fills the scratch buffer and points the remaining buffers at the
+   * variable-length sections. Returns the number of buffers to write.
+   */
+  private int prepareBatch(final View view) {
+    final int rowCount = view.rowCount();
+    final int columnCount = schema.attributeCount();
+    final int bitmapSize = (rowCount + 7) >> 3;
+    int fixedLength = 4 + columnCount * DIRECTORY_ENTRY_SIZE;
+    int variableLength = 0;
+    int bufferCount = 1;
+    for (int i = 0; i < columnCount; ++i) {
+      final Column column = view.column(i);
+      if (writesNulls(i, column)) {
+        fixedLength += bitmapSize;
+      }
+      fixedLength += rowCount * column.typeInfo().size();
+      if (column.typeInfo().isVariableLength()) {
+        final ByteBuffer section = variableLengthSection(column, rowCount);
+        sectionStarts[i] = section.position();
+        variableLength += section.remaining();
+        buffers[bufferCount++] = section;
+      }
+    }
+    ensureScratchCapacity(4 + fixedLength);
+    scratch.putInt(fixedLength + variableLength);
+    scratch.putInt(rowCount);
+    for (int i = 0, section = 1; i < columnCount; ++i) {
+      final Column column = view.column(i);
+      scratch.put((byte) (writesNulls(i, column) ? 1 : 0));
+      scratch.putInt(column.typeInfo().isVariableLength()
+          ? buffers[section++].remaining() : 0);
+    }
+    for (int i = 0; i < columnCount; ++i) {
+      final Column column = view.column(i);
+      if (writesNulls(i, column)) {
+        putBitmap(column.isNull(), column.isNullOffset(), rowCount);
+      }
+      putValues(column, rowCount, sectionStarts[i]);
+    }
+    scratch.flip();
+    buffers[0] = scratch;
+    return bufferCount;
+  }
+
+  /**
+   * Returns true if the batch has a NULL bitmap for the column: if the
+   * column has one, and the attribute is nullable. Columns of attributes
+   * that aren't have been checked for NULLs by write().
+   */
+  private boolean writesNulls(final int position, final Column column) {
+    return column.isNull() != null
+        && schema.getAttributeAt(position).isNullable();
+  }
+
+  private static boolean hasNulls(final Column column, final int rowCount) {
+    final boolean[] isNull = column.isNull();
+    if (isNull == null) {
+      return false;
+    }
+    final int offset = column.isNullOffset();
+    for (int i = 0; i < rowCount; ++i) {
+      if (isNull[offset + i]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns a buffer over the range of the column's arena that holds the
+   * values of the view's rows; usually all of it, or a contiguous part.
+   */
+  private static ByteBuffer variableLengthSection(final Column column,
+      final int rowCount) {
+    final long[] pieces = (long[]) column.data();
+    final int offset = column.offset();
+    int start = Integer.MAX_VALUE;
+    int end = 0;
+    for (int i = 0; i < rowCount; ++i) {
+      if (!column.isNull(i)) {
+        final long piece = pieces[offset + i];
+        start = Math.min(start, Arena.pieceOffset(piece));
+        end = Math.max(end, Arena.pieceOffset(piece)
+            + Arena.pieceLength(piece));
+      }
+    }
+    if (start > end) {
+      start = end;
+    }
+    final byte[] arena = column.arena() == null
+        ? new byte[0] : column.arena().buffer();
+    return ByteBuffer.wrap(arena, start, end - start);
+  }
+
+  private void putBitmap(final boolean[] isNull, final int offset,
+      final int rowCount) {
+    for (int i = 0; i < rowCount; i += 8) {
+      int bits = 0;
+      final int limit = Math.min(8, rowCount - i);
+      for (int j = 0; j < limit; ++j) {
+        if (isNull[offset + i + j]) {
+          bits |= 1 << j;
+        }
+      }
+      scratch.put((byte) bits);
+    }
+  }
+
+  private void putValues(final Column column, final int rowCount,
+      final int sectionStart) {
+    final int offset = column.offset();
+    switch (column.typeInfo().type()) {
+      case INT32:
+      case UINT32:
+      case DATE:
+      case DATA_TYPE:
+        scratch.asIntBuffer().put((int[]) column.data(), offset, rowCount);
+        break;
+      case INT64:
+      case UINT64:
+      case DATETIME:
+        scratch.asLongBuffer().put((long[]) column.data(), offset, rowCount);
+        break;
+      case FLOAT:
+        scratch.asFloatBuffer().put((float[]) column.data(), offset,
+            rowCount);
+        break;
+      case DOUBLE:
+        scratch.asDoubleBuffer().put((double[]) column.data(), offset,
+            rowCount);
+        break;
+      case BOOL: {
+        final boolean[] data = (boolean[]) column.data();
+        for (int i = 0; i < rowCount; ++i) {
+          scratch.put(data[offset + i] ? (byte) 1 : (byte) 0);
+        }
+        return;
+      }
+      case STRING:
+      case BINARY: {
+        final long[] pieces = (long[]) column.data();
+        final long rebase = (long) sectionStart << 32;
+        for (int i = 0; i < rowCount; ++i) {
+          scratch.putLong(column.isNull(i) ? 0 : pieces[offset + i] - rebase);
+        }
+        return;
+      }
+      default:
+        throw new IllegalStateException("Unsupported type: "
+            + column.typeInfo().name());
+    }
+    // The bulk puts above went through a view buffer; skip over the values.
+    scratch.position(scratch.position() + rowCount * column.typeInfo().size());
+  }
+
+  private void writeFully(final int bufferCount) throws IOException {
+    if (channel instanceof GatheringByteChannel) {
+      final GatheringByteChannel gathering = (GatheringByteChannel) channel;
+      long remaining = 0;
+      for (int i = 0; i < bufferCount; ++i) {
+        remaining += buffers[i].remaining();
+      }
+      while (remaining > 0) {
+        remaining -= gathering.write(buffers, 0, bufferCount);
+      }
+    } else {
+      for (int i = 0; i < bufferCount; ++i) {
+        while (buffers[i].hasRemaining()) {
+          channel.write(buffers[i]);
+        }
+      }
+    }
+    for (int i = 1; i < bufferCount; ++i) {
+      buffers[i] = null;
+    }
+  }
+
+  private void ensureScratchCapacity(final int capacity) {
+    if (scratch.capacity() < capacity) {
+      scratch = allocate(Math.max(capacity, scratch.capacity() * 2));
+    }
+    scratch.clear();
+  }
+
+  static ByteBuffer allocate(final int capacity) {
+    return ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static FailureOrVoid ioFailure(final IOException e) {
+    return FailureOrs.voidFailure(ioException(e));
+  }
+
+  static SupersonicException ioException(final IOException e) {
+    return new SupersonicException(ReturnCode.ERROR_GENERAL_IO_ERROR,
+        "I/O error: " + e.getMessage());
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.base.memory;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Append-only storage for variable-length values (STRING, BINARY). Values
+ * are referenced by 'pieces': a piece packs the offset of a value within the
+ * arena and its length into a single long, so that a column of variable-length
+ * values is a plain long[] plus the arena, like a StringPiece array in C++.
+ * 
+ * The arena grows by reallocating its buffer; pieces stay valid, but readers
+ * must fetch buffer() after the last append they depend on. Memory is
+ * reclaimed only by reset(), which invalidates all pieces.
+ */
+public class Arena {
+
+  private static final int DEFAULT_INITIAL_CAPACITY = 1024;
+
+  private byte[] buffer;
+  private int size;
+
+  public Arena() {
+    this(DEFAULT_INITIAL_CAPACITY);
+  }
+
+  public Arena(final int initialCapacity) {
+    Preconditions.checkArgument(initialCapacity >= 0,
+        "Capacity must be >= 0: %s", initialCapacity);
+    this.buffer = new byte[initialCapacity];
+    this.size = 0;
+  }
+
+  /**
+   * Copies the bytes into the arena, and returns the piece referencing them.
+   */
+  public long append(final byte[] bytes, final int offset, final int length) {
+    final int start = reserve(length);
+    System.arraycopy(bytes, offset, buffer, start, length);
+    return piece(start, length);
+  }
+
+  /**
+   * Copies the value referenced by a piece of another arena (or this one) into
+   * this arena, and returns the new piece.
+   */
+  public long append(final Arena source, final long piece) {
+    return append(source.buffer, pieceOffset(piece), pieceLength(piece));
+  }
+
+  /**
+   * Reserves length bytes at the end of the arena, and returns their offset.
+   * The caller fills buffer()[offset, offset + length).
+   */
+  public int reserve(final int length) {
+    final int start = size;
+    final int end = start + length;
+    if (end < 0) {
+      throw new OutOfMemoryError("Arena size exceeds 2GB");
+    }
+    if (end > buffer.length) {
+      buffer = Arrays.copyOf(buffer,
+          Math.max(end, Math.min(Integer.MAX_VALUE, buffer.length * 2)));
+    }
+    size = end;
+    return start;
+  }
+
+  /**
+   * Discards the bytes from size on, e.g. the unused end of a reserve() of
+   * an upper bound. Pieces referencing them become invalid.
+   */
+  public void truncate(final int size) {
+    Preconditions.checkPositionIndex(size, this.size);
+    this.size = size;
+  }
+
+  /**
+   * Returns the backing buffer. Valid until the next append() or reserve().
+   */
+  public byte[] buffer() {
+    return buffer;
+  }
+
+  /**
+   * Returns the number of bytes used.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of bytes allocated.
+   */
+  public int capacity() {
+    return buffer.length;
+  }
+
+  /**
+   * Discards all values, keeping the allocated buffer for reuse.
+   */
+  public void reset() {
+    size = 0;
+  }
+
+  /**
+   * Packs an offset and a length into a piece.
+   */
+  public static long piece(final int offset, final int length) {
+    return ((long) offset << 32) | (length & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Returns the offset of the value referenced by the piece.
+   */
+  public static int pieceOffset(final long piece) {
+    return (int) (piece >>> 32);
+  }
+
+  /**
+   * Returns the length of the value referenced by the piece.
+   */
+  public static int pieceLength(final long piece) {
+    return (int) piece;
+  }
+}
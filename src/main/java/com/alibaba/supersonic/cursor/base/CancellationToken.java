@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.base;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A flag that can be raised to cancel a running query, e.g. from a thread
+ * handling a kill request. Cursors registered with the token via watch() are
+ * interrupted when the token is cancelled, which makes the whole tree below
+ * them stop at the next block boundary and fail with INTERRUPTED.
+ * 
+ * Thread-safe.
+ */
+public class CancellationToken {
+
+  private volatile boolean cancelled;
+  private final List<Cursor> watched = new CopyOnWriteArrayList<Cursor>();
+
+  /**
+   * Cancels the query: interrupts all watched cursors. Idempotent.
+   */
+  public void cancel() {
+    if (cancelled) {
+      return;
+    }
+    cancelled = true;
+    for (Cursor cursor : watched) {
+      cursor.interrupt();
+    }
+  }
+
+  /**
+   * Returns true if cancel() has been called.
+   */
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Registers a cursor to be interrupted on cancellation. If the token has
+   * already been cancelled, interrupts the cursor right away.
+   */
+  public void watch(final Cursor cursor) {
+    watched.add(cursor);
+    if (cancelled) {
+      cursor.interrupt();
+    }
+  }
+
+  /**
+   * Unregisters a cursor registered by watch().
+   */
+  public void unwatch(final Cursor cursor) {
+    watched.remove(cursor);
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.base;
+
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.common.proto.CursorsProto.CursorId;
+
+/**
+ * A stream of blocks of data, all sharing the same schema. Cursors are pulled
+ * by their consumers: each call to {@link #next(int)} returns a read-only view
+ * over at most the requested number of rows, end of input, or a failure.
+ * 
+ * The view returned by next() remains valid only until the subsequent call to
+ * next(); consumers that need the data for longer must copy it.
+ */
+public interface Cursor {
+
+  /**
+   * Returns the schema of the views produced by this cursor.
+   */
+  TupleSchema schema();
+
+  /**
+   * Advances the cursor, returning a view over at most maxRowCount rows. The
+   * returned result is either a non-empty view, the end of input, or a
+   * failure.
+   * 
+   * @param maxRowCount the maximum number of rows the caller wants to get.
+   */
+  ResultView next(int maxRowCount);
+
+  /**
+   * Requests the cursor to stop processing. May be called from any thread,
+   * also while next() is in progress. Interruption is cooperative: the
+   * cursor (and, recursively, its children) checks for it at block
+   * boundaries and in long-running loops, and then fails with INTERRUPTED.
+   */
+  void interrupt();
+
+  /**
+   * Calls the transformer on each of the direct children of this cursor, and
+   * replaces the children with the transformed ones. Used by utilities that
+   * rewrite or decorate a whole cursor tree, e.g. to collect statistics.
+   * Leaf cursors do nothing.
+   */
+  void applyToChildren(CursorTransformer transformer);
+
+  /**
+   * Returns the identifier of this cursor's type.
+   */
+  CursorId getCursorId();
+
+  /**
+   * Appends a human-readable description of this cursor (and, if applicable,
+   * its children) to the target. For logging and debugging only.
+   */
+  void appendDebugDescription(StringBuilder target);
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.base;
+
+import com.alibaba.supersonic.base.exception.SupersonicException;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.google.common.base.Preconditions;
+
+/**
+ * The result of {@link Cursor#next(int)}. On success, carries either a view
+ * with at least one row, or a status code that indicates why there is no data
+ * (END_OF_INPUT, WAITING_ON_BARRIER). On failure, carries the exception.
+ * 
+ * Results are immutable. The no-data results are shared singletons, and
+ * cursors that repopulate the same output view on every call can create their
+ * data result once, with reusableSuccess(), so that the per-block path
+ * doesn't allocate.
+ */
+public class ResultView extends FailureOr<View> {
+
+  private static final ResultView EOS = new ResultView(null,
+      ReturnCode.END_OF_INPUT);
+  private static final ResultView WAITING_ON_BARRIER = new ResultView(null,
+      ReturnCode.WAITING_ON_BARRIER);
+
+  private final ReturnCode status;
+
+  private ResultView(final View view, final ReturnCode status) {
+    super(view, null);
+    this.status = status;
+  }
+
+  private ResultView(final SupersonicException exception) {
+    super(null, exception);
+    this.status = exception.getReturnCode();
+  }
+
+  /**
+   * Creates a result with data. The view must not be empty.
+   */
+  public static ResultView success(final View view) {
+    Preconditions.checkArgument(view.rowCount() > 0,
+        "Successful result must carry at least one row");
+    return new ResultView(view, ReturnCode.OK);
+  }
+
+  /**
+   * Creates a result with data, to be returned from every call to next() that
+   * has data. The caller must repopulate the view before each return, and
+   * must never return the result while the view is empty.
+   */
+  public static ResultView reusableSuccess(final View view) {
+    return new ResultView(Preconditions.checkNotNull(view), ReturnCode.OK);
+  }
+
+  /**
+   * Returns a result indicating that the cursor has no more data.
+   */
+  public static ResultView eos() {
+    return EOS;
+  }
+
+  /**
+   * Returns a result indicating that the cursor is waiting on a barrier.
+   */
+  public static ResultView waitingOnBarrier() {
+    return WAITING_ON_BARRIER;
+  }
+
+  /**
+   * Creates a failed result.
+   */
+  public static ResultView failure(final SupersonicException exception) {
+    return new ResultView(Preconditions.checkNotNull(exception));
+  }
+
+  /**
+   * Returns true if the result carries a view.
+   */
+  public boolean hasData() {
+    return isSuccess() && status == ReturnCode.OK;
+  }
+
+  /**
+   * Returns true if the cursor has reached the end of input.
+   */
+  public boolean isEos() {
+    return isSuccess() && status == ReturnCode.END_OF_INPUT;
+  }
+
+  /**
+   * Returns true if the cursor is waiting on a barrier.
+   */
+  public boolean isWaitingOnBarrier() {
+    return isSuccess() && status == ReturnCode.WAITING_ON_BARRIER;
+  }
+
+  /**
+   * Returns true if no more data will be returned, i.e. the cursor either
+   * reached the end of input, or failed.
+   */
+  public boolean isDone() {
+    return isFailure() || isEos();
+  }
+
+  /**
+   * Returns the view. Must be called only if hasData() is true.
+   */
+  public View view() {
+    Preconditions.checkState(hasData(), "No data; status: %s", status);
+    return get();
+  }
+
+  /**
+   * Returns the status code: OK, END_OF_INPUT, WAITING_ON_BARRIER, or the
+   * code of the failure.
+   */
+  public ReturnCode status() {
+    return status;
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import java.util.List;
+
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.CursorsProto.CursorId;
+import com.alibaba.supersonic.cursor.base.Cursor;
+import com.alibaba.supersonic.cursor.base.ResultView;
+import com.alibaba.supersonic.cursor.infrastructure.BasicCursor;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrVoid;
+import com.alibaba.supersonic.utils.exception.FailureOrs;
+import com.google.common.base.Preconditions;
+
+/**
+ * Aggregates all rows of its input, with an {@link IncrementalAggregator},
+ * and then returns a row per group: the group-by attributes, followed by the
+ * aggregations. Without group-by attributes, there is a single group (none
+ * if the input is empty).
+ * 
+ * The results are returned without copying, as views over the aggregator's
+ * state.
+ */
+public class AggregateCursor extends BasicCursor {
+
+  private final IncrementalAggregator aggregator;
+  private final boolean grouped;
+  private final View result;
+  private final ResultView success;
+  // The results over the whole input; null while it is being read.
+  private View aggregated;
+  private int position;
+
+  private AggregateCursor(final IncrementalAggregator aggregator,
+      final boolean grouped, final Cursor child) {
+    super(aggregator.schema(), child);
+    this.aggregator = aggregator;
+    this.grouped = grouped;
+    this.result = new View(aggregator.schema());
+    this.success = ResultView.reusableSuccess(result);
+  }
+
+  /**
+   * Creates a cursor that aggregates the child's rows, grouped by the
+   * specified attributes (none for a scalar aggregation).
+   */
+  public static FailureOr<AggregateCursor> create(final Cursor child,
+      final List<String> groupBy,
+      final AggregationSpecification specification) {
+    final FailureOr<IncrementalAggregator> aggregator =
+        IncrementalAggregator.create(child.schema(), groupBy, specification);
+    if (aggregator.isFailure()) {
+      return FailureOrs.failure(aggregator.exception());
+    }
+    return FailureOrs.success(new AggregateCursor(aggregator.get(),
+        !groupBy.isEmpty(), child));
+  }
+
+  @Override
+  public ResultView next(final int maxRowCount) {
+    Preconditions.checkArgument(maxRowCount > 0,
+        "Max row count must be positive: %s", maxRowCount);
+    while (aggregated == null) {
+      if (isInterrupted()) {
+        return interruptedResult();
+      }
+      final ResultView input = child(0).next(Integer.MAX_VALUE);
+      if (input.isEos()) {
+        aggregated = aggregator.result();
+      } else if (!input.hasData()) {
+        return input;
+      } else {
+        final FailureOrVoid updated = aggregator.update(input.view());
+        if (updated.isFailure()) {
+          return ResultView.failure(updated.exception());
+        }
+      }
+    }
+    if (isInterrupted()) {
+      return interruptedResult();
+    }
+    final int rowCount =
+        Math.min(maxRowCount, aggregated.rowCount() - position);
+    if (rowCount == 0) {
+      return ResultView.eos();
+    }
+    result.resetFromSubRange(aggregated, position, rowCount);
+    position += rowCount;
+    return success;
+  }
+
+  @Override
+  public CursorId getCursorId() {
+    return grouped ? CursorId.GROUP_AGGREGATE : CursorId.SCALAR_AGGREGATE;
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.alibaba.supersonic.proto.CommonEnums.Aggregation;
+
+/**
+ * Lists the aggregations to compute over each group: for each, the
+ * aggregation function, the name of the input attribute, the name of the
+ * result attribute, and the parameter of the function, if it takes one (the
+ * fraction of APPROX_QUANTILE and QUANTILE_ESTIMATE).
+ */
+public class AggregationSpecification {
+
+  /**
+   * A single aggregation.
+   */
+  public static final class Element {
+    private final Aggregation aggregation;
+    private final String input;
+    private final String output;
+    private final double parameter;
+
+    Element(final Aggregation aggregation, final String input,
+        final String output, final double parameter) {
+      this.aggregation = aggregation;
+      this.input = input;
+      this.output = output;
+      this.parameter = parameter;
+    }
+
+    public Aggregation aggregation() {
+      return aggregation;
+    }
+
+    /**
+     * Returns the name of the input attribute, or null for COUNT(*).
+     */
+    public String input() {
+      return input;
+    }
+
+    public String output() {
+      return output;
+    }
+
+    /**
+     * Returns the parameter, or NaN if none was given.
+     */
+    public double parameter() {
+      return parameter;
+    }
+
+    @Override
+    public String toString() {
+      return output + " = " + aggregation + "("
+          + (input == null ? "*" : input)
+          + (Double.isNaN(parameter) ? "" : ", " + parameter) + ")";
+    }
+  }
+
+  private final List<Element> elements = new ArrayList<Element>();
+
+  /**
+   * Adds an aggregation of the input attribute, to be returned as the output
+   * attribute. For COUNT, input may be null, to count all rows (including
+   * the ones with NULLs).
+   */
+  public AggregationSpecification addAggregation(
+      final Aggregation aggregation, final String input, final String output) {
+    return addAggregation(aggregation, input, output, Double.NaN);
+  }
+
+  /**
+   * Adds an aggregation that takes a parameter, e.g. APPROX_QUANTILE.
+   */
+  public AggregationSpecification addAggregation(
+      final Aggregation aggregation, final String input, final String output,
+      final double parameter) {
+    elements.add(new Element(aggregation, input, output, parameter));
+    return this;
+  }
+
+  public int size() {
+    return elements.size();
+  }
+
+  public Element aggregation(final int position) {
+    return elements.get(position);
+  }
+
+  public List<Element> aggregations() {
+    return Collections.unmodifiableList(elements);
+  }
+
+  @Override
+  public String toString() {
+    return elements.toString();
+  }
+}
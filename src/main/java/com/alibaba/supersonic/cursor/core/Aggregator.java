@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import com.alibaba.supersonic.base.exception.SupersonicException;
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.TypeInfo;
+import com.alibaba.supersonic.proto.CommonEnums.Aggregation;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrVoid;
+import com.alibaba.supersonic.utils.exception.FailureOrs;
+
+/**
+ * Computes one aggregation for every group, folding in input rows a batch at
+ * a time. The state of a group is its result so far (a sum, a count, or an
+ * input value), kept in an array indexed by group, and returned as a column
+ * over that array.
+ */
+abstract class Aggregator {
+
+  protected final Attribute resultAttribute;
+
+  protected Aggregator(final Attribute resultAttribute) {
+    this.resultAttribute = resultAttribute;
+  }
+
+  /**
+   * Creates the aggregator of the specification's element, whose input
+   * attribute (null for COUNT(*)) is given.
+   */
+  static FailureOr<Aggregator> create(
+      final AggregationSpecification.Element element, final Attribute input) {
+    final Aggregation aggregation = element.aggregation();
+    final String output = element.output();
+    if (input == null && aggregation != Aggregation.COUNT) {
+      return FailureOrs.failure(new SupersonicException(
+          ReturnCode.ERROR_ATTRIBUTE_MISSING,
+          "Only COUNT can be computed without an input attribute"));
+    }
+    switch (aggregation) {
+      case SUM:
+        if (!TypeInfo.getTypeInfo(input.getType()).isNumeric()) {
+          return invalidArgumentType(aggregation, input);
+        }
+        return FailureOrs.<Aggregator>success(new SumAggregator(
+            input.getType(), new Attribute(output, SumAggregator.resultType(
+                input.getType()), input.getNullability())));
+      case COUNT:
+        return FailureOrs.<Aggregator>success(new CountAggregator(
+            new Attribute(output, DataType.UINT64,
+                Nullability.NOT_NULLABLE)));
+      case MIN:
+      case MAX:
+        return FailureOrs.<Aggregator>success(new MinMaxAggregator(
+            aggregation == Aggregation.MIN, new Attribute(output,
+                input.getType(), input.getNullability())));
+      case FIRST:
+      case LAST:
+        return FailureOrs.<Aggregator>success(new FirstLastAggregator(
+            aggregation == Aggregation.FIRST, new Attribute(output,
+                input.getType(), input.getNullability())));
+      case APPROX_COUNT_DISTINCT:
+      case HLL_SKETCH:
+      case HLL_MERGE:
+      case HLL_ESTIMATE:
+        return DistinctCountAggregator.create(aggregation, input, output);
+      case APPROX_QUANTILE:
+      case QUANTILE_SKETCH:
+      case QUANTILE_MERGE:
+      case QUANTILE_ESTIMATE:
+        return QuantileAggregator.create(aggregation, input, output,
+            element.parameter());
+      default:
+        return FailureOrs.failure(new SupersonicException(
+            ReturnCode.ERROR_NOT_IMPLEMENTED, "Aggregation " + aggregation
+                + " is not supported"));
+    }
+  }
+
+  Attribute resultAttribute() {
+    return resultAttribute;
+  }
+
+  /**
+   * Checks that the rows of the input column (null for COUNT(*)) can be
+   * folded in, e.g. that serialized sketches are well-formed. Called on a
+   * batch before any aggregator updates anything, so that a batch is either
+   * folded in entirely or not at all. Most aggregations accept any input.
+   */
+  FailureOrVoid validate(final Column input, final int rowCount) {
+    return FailureOrs.voidSuccess();
+  }
+
+  /**
+   * Folds the rows of the input column (null for COUNT(*)) into the results
+   * of their groups, as found by the last insert() into the table. The
+   * results of the new groups are initialized first. The input has passed
+   * validate().
+   */
+  abstract void update(Column input, GroupTable groups, int rowCount);
+
+  /**
+   * Points the column at the results (of all groups), bringing them up to
+   * date first if they are computed lazily.
+   */
+  abstract void resetColumn(Column target);
+
+  static <T> FailureOr<T> invalidArgumentType(final Aggregation aggregation,
+      final Attribute input) {
+    return FailureOrs.failure(new SupersonicException(
+        ReturnCode.ERROR_INVALID_ARGUMENT_TYPE, "Can't compute "
+            + aggregation + " of " + input.getType() + " attribute '"
+            + input.getName() + "'"));
+  }
+
+  /**
+   * Returns true if any of the column's rows [0, rowCount) is not NULL.
+   */
+  static boolean hasValues(final Column column, final int rowCount) {
+    final boolean[] isNull = column.isNull();
+    if (isNull == null) {
+      return rowCount > 0;
+    }
+    final int offset = column.isNullOffset();
+    for (int i = 0; i < rowCount; ++i) {
+      if (!isNull[offset + i]) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
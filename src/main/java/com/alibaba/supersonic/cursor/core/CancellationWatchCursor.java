@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import com.alibaba.supersonic.base.exception.SupersonicException;
+import com.alibaba.supersonic.common.proto.CursorsProto.CursorId;
+import com.alibaba.supersonic.cursor.base.CancellationToken;
+import com.alibaba.supersonic.cursor.base.Cursor;
+import com.alibaba.supersonic.cursor.base.ResultView;
+import com.alibaba.supersonic.cursor.infrastructure.DecoratorCursor;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+
+/**
+ * Connects a cursor tree to a {@link CancellationToken}. When the token is
+ * cancelled, the tree is interrupted (so that operators deep in the tree stop
+ * at their next block boundary, even in the middle of a long next() call),
+ * and this cursor fails with INTERRUPTED.
+ * 
+ * Usually put at the root of the tree. Stops watching the token once the
+ * input is done.
+ */
+public class CancellationWatchCursor extends DecoratorCursor {
+
+  private final CancellationToken token;
+  private boolean watching;
+
+  public CancellationWatchCursor(final Cursor delegate,
+      final CancellationToken token) {
+    super(delegate);
+    this.token = token;
+    this.watching = true;
+    token.watch(this);
+  }
+
+  @Override
+  public ResultView next(final int maxRowCount) {
+    if (token.isCancelled()) {
+      unwatch();
+      return ResultView.failure(new SupersonicException(
+          ReturnCode.INTERRUPTED, "Query cancelled"));
+    }
+    ResultView result = delegate().next(maxRowCount);
+    if (result.isDone()) {
+      unwatch();
+    }
+    return result;
+  }
+
+  @Override
+  public CursorId getCursorId() {
+    return CursorId.CANCELLATION_WATCH;
+  }
+
+  private void unwatch() {
+    if (watching) {
+      token.unwatch(this);
+      watching = false;
+    }
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.BlockBuilder;
+import com.alibaba.supersonic.base.infrastructure.BlockPool;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.CursorsProto.CursorId;
+import com.alibaba.supersonic.cursor.base.Cursor;
+import com.alibaba.supersonic.cursor.base.ResultView;
+import com.alibaba.supersonic.cursor.infrastructure.BasicCursor;
+import com.google.common.base.Preconditions;
+
+/**
+ * Evens out the sizes of the blocks of its input, so that the operators
+ * downstream amortize their per-block costs over full-sized blocks, e.g.
+ * after a selective filter that leaves a few rows per block. Every returned
+ * block has the target number of rows (the smaller of the cursor's target
+ * and the maxRowCount asked for), except at the end of input and before a
+ * barrier.
+ * 
+ * Small blocks are concatenated by copying them into a block of the
+ * cursor's own (taken from the pool, if one is given, and given back at the
+ * end of input). Blocks of at least half the target size amortize well
+ * enough on their own, and are passed through without copying; those
+ * larger than the target are split into views over sub-ranges.
+ */
+public class CoalesceCursor extends BasicCursor {
+
+  public static final int DEFAULT_TARGET_ROW_COUNT = 1024;
+
+  private final int targetRowCount;
+  private final BlockPool pool;
+  // The rows of the child's last block not returned yet.
+  private final View pending;
+  private final View passedThrough;
+  private final ResultView passedThroughSuccess;
+  private BlockBuilder builder;
+  private ResultView copiedSuccess;
+  // The end of input or failure, once the child has returned it.
+  private ResultView done;
+
+  /**
+   * Creates a cursor that returns blocks of the default target size.
+   */
+  public CoalesceCursor(final Cursor child) {
+    this(child, DEFAULT_TARGET_ROW_COUNT, null);
+  }
+
+  /**
+   * Creates a cursor that returns blocks of targetRowCount rows, copied
+   * into a block from the pool (or a new one, if the pool is null).
+   */
+  public CoalesceCursor(final Cursor child, final int targetRowCount,
+      final BlockPool pool) {
+    super(child.schema(), child);
+    Preconditions.checkArgument(targetRowCount > 0,
+        "Target row count must be positive: %s", targetRowCount);
+    this.targetRowCount = targetRowCount;
+    this.pool = pool;
+    this.pending = new View(child.schema());
+    this.passedThrough = new View(child.schema());
+    this.passedThroughSuccess = ResultView.reusableSuccess(passedThrough);
+  }
+
+  @Override
+  public ResultView next(final int maxRowCount) {
+    Preconditions.checkArgument(maxRowCount > 0,
+        "Max row count must be positive: %s", maxRowCount);
+    if (done != null) {
+      return finish(done);
+    }
+    final int target = Math.min(maxRowCount, targetRowCount);
+    if (builder != null) {
+      builder.reset();
+    }
+    int copied = 0;
+    while (true) {
+      if (isInterrupted()) {
+        return finish(interruptedResult());
+      }
+      if (pending.rowCount() == 0) {
+        final ResultView input = child(0).next(targetRowCount);
+        if (!input.hasData()) {
+          if (copied == 0) {
+            return input.isWaitingOnBarrier() ? input : finish(input);
+          }
+          if (input.isDone()) {
+            done = input;
+          }
+          // Before the barrier, or the end of input: what there is.
+          return copiedSuccess;
+        }
+        pending.resetFrom(input.view());
+      }
+      final int available = pending.rowCount();
+      if (copied == 0 && available >= (target + 1) / 2) {
+        final int rowCount = Math.min(available, target);
+        passedThrough.resetFromSubRange(pending, 0, rowCount);
+        pending.advance(rowCount);
+        return passedThroughSuccess;
+      }
+      if (builder == null) {
+        builder = new BlockBuilder(pool == null
+            ? new Block(schema(), targetRowCount)
+            : pool.acquire(schema(), targetRowCount));
+        copiedSuccess = ResultView.reusableSuccess(builder.view());
+      }
+      final int rowCount = Math.min(available, target - copied);
+      builder.appendRows(pending, 0, rowCount);
+      pending.advance(rowCount);
+      copied += rowCount;
+      if (copied == target) {
+        return copiedSuccess;
+      }
+    }
+  }
+
+  @Override
+  public CursorId getCursorId() {
+    return CursorId.COALESCE;
+  }
+
+  @Override
+  public void appendDebugDescription(final StringBuilder target) {
+    target.append("Coalesce(").append(targetRowCount).append(", ");
+    child(0).appendDebugDescription(target);
+    target.append(')');
+  }
+
+  /**
+   * Remembers the final result, and gives the block back to the pool (once
+   * its last rows have been consumed).
+   */
+  private ResultView finish(final ResultView result) {
+    done = result;
+    if (builder != null) {
+      if (pool != null) {
+        pool.release(builder.block());
+      }
+      builder = null;
+      copiedSuccess = null;
+    }
+    return result;
+  }
+}
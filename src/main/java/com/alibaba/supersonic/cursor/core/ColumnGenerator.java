@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Describes how {@link GenerateCursor} fills a single column: which values
+ * appear (their cardinality), how often each of them appears (the
+ * distribution), and how many of them are NULL.
+ * 
+ * Values are derived from a non-negative 'value index' k, drawn from
+ * [0, cardinality): numeric types get k itself, BOOL gets k's lowest bit,
+ * DATE and DATETIME get k days/microseconds since the Epoch, STRING and BINARY
+ * get k's base-36 representation, and DATA_TYPE gets the k-th DataType.
+ * 
+ * Immutable.
+ */
+public final class ColumnGenerator {
+
+  private final long cardinality;
+  private final double skew;
+  private final double nullRate;
+
+  private ColumnGenerator(final long cardinality, final double skew,
+      final double nullRate) {
+    this.cardinality = cardinality;
+    this.skew = skew;
+    this.nullRate = nullRate;
+  }
+
+  /**
+   * Generates consecutive values: 0, 1, 2, ... All values are distinct.
+   */
+  public static ColumnGenerator sequence() {
+    return new ColumnGenerator(0, 0.0, 0.0);
+  }
+
+  /**
+   * Generates values with the specified cardinality, all equally likely.
+   */
+  public static ColumnGenerator uniform(final long cardinality) {
+    return skewed(cardinality, 0.0);
+  }
+
+  /**
+   * Generates values with the specified cardinality, following a power law:
+   * the value index is cardinality * u^(1 + skew), for u uniform in [0, 1).
+   * Skew 0 is uniform; the larger the skew, the more the small value indexes
+   * dominate (e.g. with skew 3, almost a third of the rows fall on the first
+   * 1% of the values).
+   */
+  public static ColumnGenerator skewed(final long cardinality,
+      final double skew) {
+    Preconditions.checkArgument(cardinality > 0,
+        "Cardinality must be positive: %s", cardinality);
+    Preconditions.checkArgument(skew >= 0.0, "Skew must be >= 0: %s", skew);
+    return new ColumnGenerator(cardinality, skew, 0.0);
+  }
+
+  /**
+   * Returns a generator like this one, but with about the specified fraction
+   * of values being NULL. The column must be nullable if nullRate > 0.
+   */
+  public ColumnGenerator withNullRate(final double nullRate) {
+    Preconditions.checkArgument(nullRate >= 0.0 && nullRate <= 1.0,
+        "Null rate must be in [0, 1]: %s", nullRate);
+    return new ColumnGenerator(cardinality, skew, nullRate);
+  }
+
+  /**
+   * Returns true for the sequence generator.
+   */
+  public boolean isSequence() {
+    return cardinality == 0;
+  }
+
+  /**
+   * Returns the number of distinct values; 0 for the sequence generator.
+   */
+  public long cardinality() {
+    return cardinality;
+  }
+
+  public double skew() {
+    return skew;
+  }
+
+  public double nullRate() {
+    return nullRate;
+  }
+}
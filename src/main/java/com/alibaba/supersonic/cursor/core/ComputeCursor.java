@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import java.util.List;
+
+import com.alibaba.supersonic.base.exception.SupersonicException;
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.CursorsProto.CursorId;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.ExpressionDescription;
+import com.alibaba.supersonic.cursor.base.Cursor;
+import com.alibaba.supersonic.cursor.base.ResultView;
+import com.alibaba.supersonic.cursor.infrastructure.BasicCursor;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.expression.infrastructure.ExpressionProgram;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrs;
+
+/**
+ * Computes expressions over the rows of its input, one block at a time. The
+ * result columns are those of the expressions, returned without copying;
+ * input attributes are passed through by referencing them (as VARIABLEs).
+ * Subexpressions that occur in more than one expression are evaluated once
+ * per block (see {@link ExpressionProgram}).
+ */
+public class ComputeCursor extends BasicCursor {
+
+  private final ExpressionProgram program;
+  private final Selection all;
+  private final View result;
+  private final ResultView success;
+
+  private ComputeCursor(final TupleSchema schema,
+      final ExpressionProgram program, final Cursor child) {
+    super(schema, child);
+    this.program = program;
+    this.all = new Selection();
+    this.result = new View(schema);
+    this.success = ResultView.reusableSuccess(result);
+  }
+
+  /**
+   * Creates a cursor that returns the expressions, evaluated over the child's
+   * rows, as attributes with the specified names.
+   */
+  public static FailureOr<ComputeCursor> create(final Cursor child,
+      final List<ExpressionDescription> expressions,
+      final List<String> names) {
+    final FailureOr<ExpressionProgram> program =
+        ExpressionProgram.compile(child.schema(), expressions);
+    if (program.isFailure()) {
+      return FailureOrs.failure(program.exception());
+    }
+    return create(child, program.get(), names);
+  }
+
+  /**
+   * Creates a cursor that evaluates the roots of a program compiled for the
+   * child's schema. The program must not be used by another cursor at the
+   * same time.
+   */
+  static FailureOr<ComputeCursor> create(final Cursor child,
+      final ExpressionProgram program, final List<String> names) {
+    final FailureOr<TupleSchema> schema = resultSchema(program, 0, names);
+    if (schema.isFailure()) {
+      return FailureOrs.failure(schema.exception());
+    }
+    return FailureOrs.success(
+        new ComputeCursor(schema.get(), program, child));
+  }
+
+  @Override
+  public ResultView next(final int maxRowCount) {
+    if (isInterrupted()) {
+      return interruptedResult();
+    }
+    final ResultView input = child(0).next(maxRowCount);
+    if (!input.hasData()) {
+      return input;
+    }
+    final View view = input.view();
+    program.beginBlock();
+    all.selectAll(view.rowCount());
+    for (int i = 0; i < program.rootCount(); ++i) {
+      final FailureOr<Column> column = program.root(i).evaluate(view, all);
+      if (column.isFailure()) {
+        return ResultView.failure(column.exception());
+      }
+      result.mutableColumn(i).resetFrom(column.get());
+    }
+    result.setRowCount(view.rowCount());
+    return success;
+  }
+
+  @Override
+  public CursorId getCursorId() {
+    return CursorId.COMPUTE;
+  }
+
+  @Override
+  public void appendDebugDescription(final StringBuilder target) {
+    target.append("Compute(").append(program.roots()).append(", ");
+    child(0).appendDebugDescription(target);
+    target.append(')');
+  }
+
+  /**
+   * Returns the schema of the results of the program's roots, starting with
+   * the first one, named as specified.
+   */
+  static FailureOr<TupleSchema> resultSchema(final ExpressionProgram program,
+      final int first, final List<String> names) {
+    if (names.size() != program.rootCount() - first) {
+      return FailureOrs.failure(new SupersonicException(
+          ReturnCode.ERROR_ATTRIBUTE_COUNT_MISMATCH, "Expected "
+              + (program.rootCount() - first) + " names, got "
+              + names.size()));
+    }
+    final TupleSchema.Builder builder = TupleSchema.builder();
+    for (int i = first; i < program.rootCount(); ++i) {
+      final BoundExpression root = program.root(i);
+      final String name = names.get(i - first);
+      if (!builder.addAttribute(new Attribute(name, root.resultType(),
+          root.resultAttribute().getNullability()))) {
+        return FailureOrs.failure(new SupersonicException(
+            ReturnCode.ERROR_ATTRIBUTE_EXISTS,
+            "Duplicate attribute name: " + name));
+      }
+    }
+    return FailureOrs.success(builder.build());
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import java.util.Arrays;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Column;
+
+/**
+ * COUNT of the non-NULL values of the input, or of all rows (COUNT(*)).
+ */
+final class CountAggregator extends Aggregator {
+
+  private long[] counts;
+
+  CountAggregator(final Attribute resultAttribute) {
+    super(resultAttribute);
+    this.counts = new long[16];
+  }
+
+  @Override
+  void update(final Column input, final GroupTable groups,
+      final int rowCount) {
+    final int groupCount = groups.groupCount();
+    if (groupCount > counts.length) {
+      counts = Arrays.copyOf(counts, Math.max(groupCount, counts.length * 2));
+    }
+    Arrays.fill(counts, groups.firstNewGroup(), groupCount, 0L);
+    final boolean[] isNull = input == null ? null : input.isNull();
+    if (groups.keyCount() == 0) {
+      long count = rowCount;
+      if (isNull != null) {
+        final int offset = input.isNullOffset();
+        for (int i = 0; i < rowCount; ++i) {
+          if (isNull[offset + i]) {
+            --count;
+          }
+        }
+      }
+      counts[0] += count;
+      return;
+    }
+    final int[] rowGroups = groups.rowGroups();
+    if (isNull == null) {
+      for (int i = 0; i < rowCount; ++i) {
+        ++counts[rowGroups[i]];
+      }
+    } else {
+      final int offset = input.isNullOffset();
+      for (int i = 0; i < rowCount; ++i) {
+        if (!isNull[offset + i]) {
+          ++counts[rowGroups[i]];
+        }
+      }
+    }
+  }
+
+  @Override
+  void resetColumn(final Column target) {
+    target.reset(counts, null);
+  }
+}
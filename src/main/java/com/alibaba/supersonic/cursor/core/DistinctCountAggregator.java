@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import java.util.Arrays;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.memory.Arena;
+import com.alibaba.supersonic.proto.CommonEnums.Aggregation;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrVoid;
+import com.alibaba.supersonic.utils.exception.FailureOrs;
+import com.alibaba.supersonic.utils.sketch.HyperLogLog;
+
+/**
+ * Estimates the number of distinct non-NULL values of the input with a
+ * {@link HyperLogLog} sketch per group (of about 1.6% standard error), in
+ * one phase or several:
+ * <ul>
+ * <li>APPROX_COUNT_DISTINCT of any type returns the estimate, as UINT64;
+ * <li>HLL_SKETCH of any type returns the serialized sketch, as BINARY;
+ * <li>HLL_MERGE of such sketches returns the serialized union, as BINARY;
+ * <li>HLL_ESTIMATE of such sketches returns the estimate of the union, as
+ * UINT64.
+ * </ul>
+ * A group with only NULLs estimates 0, or has an empty sketch.
+ */
+final class DistinctCountAggregator extends SketchAggregator {
+
+  private final DataType inputType;
+  // Whether the input is serialized sketches, and the result an estimate.
+  private final boolean merging;
+  private final boolean estimating;
+  private HyperLogLog[] sketches = new HyperLogLog[16];
+  private long[] hashes = new long[0];
+  private byte[] serialized;
+
+  private DistinctCountAggregator(final DataType inputType,
+      final boolean merging, final boolean estimating,
+      final Attribute resultAttribute) {
+    super(resultAttribute);
+    this.inputType = inputType;
+    this.merging = merging;
+    this.estimating = estimating;
+  }
+
+  static FailureOr<Aggregator> create(final Aggregation aggregation,
+      final Attribute input, final String output) {
+    final boolean merging = aggregation == Aggregation.HLL_MERGE
+        || aggregation == Aggregation.HLL_ESTIMATE;
+    final boolean estimating =
+        aggregation == Aggregation.APPROX_COUNT_DISTINCT
+            || aggregation == Aggregation.HLL_ESTIMATE;
+    if (merging && input.getType() != DataType.BINARY) {
+      return invalidArgumentType(aggregation, input);
+    }
+    return FailureOrs.<Aggregator>success(new DistinctCountAggregator(
+        input.getType(), merging, estimating, new Attribute(output,
+            estimating ? DataType.UINT64 : DataType.BINARY,
+            Nullability.NOT_NULLABLE)));
+  }
+
+  @Override
+  FailureOrVoid validate(final Column input, final int rowCount) {
+    if (!merging) {
+      return FailureOrs.voidSuccess();
+    }
+    final long[] data = (long[]) input.data();
+    final int offset = input.offset();
+    final byte[] buffer = input.arena().buffer();
+    final boolean[] isNull = input.isNull();
+    final int isNullOffset = input.isNullOffset();
+    for (int i = 0; i < rowCount; ++i) {
+      if (isNull == null || !isNull[isNullOffset + i]) {
+        final long piece = data[offset + i];
+        final FailureOrVoid valid = HyperLogLog.check(buffer,
+            Arena.pieceOffset(piece), Arena.pieceLength(piece),
+            HyperLogLog.DEFAULT_PRECISION);
+        if (valid.isFailure()) {
+          return valid;
+        }
+      }
+    }
+    return FailureOrs.voidSuccess();
+  }
+
+  @Override
+  void update(final Column input, final GroupTable groups,
+      final int rowCount) {
+    addGroups(groups.firstNewGroup(), groups.groupCount());
+    final int[] rowGroups = groups.rowGroups();
+    markChanged(input, rowGroups, rowCount);
+    if (merging) {
+      merge(input, rowGroups, rowCount);
+      return;
+    }
+    if (hashes.length < rowCount) {
+      hashes = new long[rowCount];
+    }
+    hash(input, rowCount);
+    final boolean[] isNull = input.isNull();
+    final int offset = input.isNullOffset();
+    for (int i = 0; i < rowCount; ++i) {
+      if (isNull == null || !isNull[offset + i]) {
+        sketches[rowGroups[i]].add(hashes[i]);
+      }
+    }
+  }
+
+  /**
+   * Hashes the column's rows into hashes, a type switch per column rather
+   * than per row. The hashes of NULL rows are garbage.
+   */
+  private void hash(final Column input, final int rowCount) {
+    final int offset = input.offset();
+    switch (inputType) {
+      case INT32:
+      case UINT32:
+      case DATE:
+      case DATA_TYPE: {
+        final int[] data = (int[]) input.data();
+        for (int i = 0; i < rowCount; ++i) {
+          hashes[i] = HyperLogLog.hash((long) data[offset + i]);
+        }
+        break;
+      }
+      case INT64:
+      case UINT64:
+      case DATETIME: {
+        final long[] data = (long[]) input.data();
+        for (int i = 0; i < rowCount; ++i) {
+          hashes[i] = HyperLogLog.hash(data[offset + i]);
+        }
+        break;
+      }
+      case FLOAT: {
+        final float[] data = (float[]) input.data();
+        for (int i = 0; i < rowCount; ++i) {
+          hashes[i] = HyperLogLog.hash((double) data[offset + i]);
+        }
+        break;
+      }
+      case DOUBLE: {
+        final double[] data = (double[]) input.data();
+        for (int i = 0; i < rowCount; ++i) {
+          hashes[i] = HyperLogLog.hash(data[offset + i]);
+        }
+        break;
+      }
+      case BOOL: {
+        final boolean[] data = (boolean[]) input.data();
+        for (int i = 0; i < rowCount; ++i) {
+          hashes[i] = HyperLogLog.hash(data[offset + i] ? 1L : 0L);
+        }
+        break;
+      }
+      case STRING:
+      case BINARY: {
+        final long[] data = (long[]) input.data();
+        final byte[] buffer = input.arena().buffer();
+        final boolean[] isNull = input.isNull();
+        final int isNullOffset = input.isNullOffset();
+        for (int i = 0; i < rowCount; ++i) {
+          // The pieces of NULL rows may be garbage.
+          if (isNull == null || !isNull[isNullOffset + i]) {
+            final long piece = data[offset + i];
+            hashes[i] = HyperLogLog.hash(buffer, Arena.pieceOffset(piece),
+                Arena.pieceLength(piece));
+          }
+        }
+        break;
+      }
+      default:
+        throw new IllegalStateException("Unsupported type: " + inputType);
+    }
+  }
+
+  private void merge(final Column input, final int[] rowGroups,
+      final int rowCount) {
+    final long[] data = (long[]) input.data();
+    final int offset = input.offset();
+    final byte[] buffer = input.arena().buffer();
+    final boolean[] isNull = input.isNull();
+    final int isNullOffset = input.isNullOffset();
+    for (int i = 0; i < rowCount; ++i) {
+      if (isNull == null || !isNull[isNullOffset + i]) {
+        final long piece = data[offset + i];
+        // Can't fail: validate() has checked the bytes.
+        sketches[rowGroups[i]].merge(buffer, Arena.pieceOffset(piece),
+            Arena.pieceLength(piece));
+      }
+    }
+  }
+
+  @Override
+  void growSketches(final int groupCount) {
+    if (groupCount > sketches.length) {
+      sketches = Arrays.copyOf(sketches, Math.max(groupCount,
+          sketches.length * 2));
+    }
+  }
+
+  @Override
+  void createSketch(final int group) {
+    sketches[group] = new HyperLogLog();
+  }
+
+  @Override
+  void updateResult(final int group) {
+    final HyperLogLog sketch = sketches[group];
+    if (estimating) {
+      ((GroupValues.Longs) results).data[group] = sketch.estimate();
+      return;
+    }
+    final int size = sketch.serializedSize();
+    if (serialized == null || serialized.length < size) {
+      serialized = new byte[size];
+    }
+    sketch.serialize(serialized, 0);
+    ((GroupValues.Pieces) results).setBytes(group, serialized, 0, size);
+  }
+}
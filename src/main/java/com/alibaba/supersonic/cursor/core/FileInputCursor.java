@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+
+import com.alibaba.supersonic.base.exception.SupersonicException;
+import com.alibaba.supersonic.base.infrastructure.ReadAheadChannel;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.base.infrastructure.ViewReader;
+import com.alibaba.supersonic.base.infrastructure.ViewWriter;
+import com.alibaba.supersonic.common.proto.CursorsProto.CursorId;
+import com.alibaba.supersonic.cursor.base.ResultView;
+import com.alibaba.supersonic.cursor.infrastructure.BasicCursor;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrVoid;
+import com.alibaba.supersonic.utils.exception.FailureOrs;
+import com.google.common.base.Preconditions;
+
+/**
+ * Scans a file of views written by a {@link ViewWriter}. The file is read
+ * ahead, in the background (see {@link ReadAheadChannel}), so that decoding
+ * a batch overlaps with reading the following ones, and the scan doesn't
+ * stall on every read. Batches larger than the maxRowCount asked for are
+ * returned in parts.
+ * 
+ * The file is closed at the end of input, on failure, or by close(), which
+ * must be called if the cursor isn't read to the end. interrupt() also
+ * wakes up a next() waiting on a read.
+ */
+public class FileInputCursor extends BasicCursor {
+
+  private final Path file;
+  private final ReadAheadChannel channel;
+  private final ViewReader reader;
+  // The rows of the last batch not returned yet.
+  private final View pending;
+  private final View result;
+  private final ResultView success;
+  private ResultView done;
+
+  private FileInputCursor(final Path file, final ReadAheadChannel channel,
+      final ViewReader reader) {
+    super(reader.schema());
+    this.file = file;
+    this.channel = channel;
+    this.reader = reader;
+    this.pending = new View(reader.schema());
+    this.result = new View(reader.schema());
+    this.success = ResultView.reusableSuccess(result);
+  }
+
+  /**
+   * Opens the file, reading ahead with the defaults of ReadAheadChannel.
+   */
+  public static FailureOr<FileInputCursor> open(final Path file) {
+    return open(file, null, ReadAheadChannel.DEFAULT_CHUNK_SIZE,
+        ReadAheadChannel.DEFAULT_MAX_CHUNKS_IN_FLIGHT);
+  }
+
+  /**
+   * Opens the file, reading up to maxChunksInFlight chunks of chunkSize
+   * bytes ahead, on ioPool (or the default pool, if null).
+   */
+  public static FailureOr<FileInputCursor> open(final Path file,
+      final ExecutorService ioPool, final int chunkSize,
+      final int maxChunksInFlight) {
+    final ReadAheadChannel channel;
+    try {
+      channel = ReadAheadChannel.open(file, ioPool, chunkSize,
+          maxChunksInFlight);
+    } catch (IOException e) {
+      return FailureOrs.failure(ioException(e));
+    }
+    final FailureOr<ViewReader> reader = ViewReader.open(channel);
+    if (reader.isFailure()) {
+      closeQuietly(channel);
+      return FailureOrs.failure(reader.exception());
+    }
+    return FailureOrs.success(
+        new FileInputCursor(file, channel, reader.get()));
+  }
+
+  @Override
+  public ResultView next(final int maxRowCount) {
+    Preconditions.checkArgument(maxRowCount > 0,
+        "Max row count must be positive: %s", maxRowCount);
+    if (done != null) {
+      return done;
+    }
+    if (isInterrupted()) {
+      return finish(interruptedResult());
+    }
+    if (pending.rowCount() == 0) {
+      final FailureOr<View> batch = reader.read();
+      if (batch.isFailure()) {
+        return finish(isInterrupted() ? interruptedResult()
+            : ResultView.failure(batch.exception()));
+      }
+      if (batch.get() == null) {
+        return finish(ResultView.eos());
+      }
+      pending.resetFrom(batch.get());
+    }
+    final int rowCount = Math.min(maxRowCount, pending.rowCount());
+    result.resetFromSubRange(pending, 0, rowCount);
+    pending.advance(rowCount);
+    return success;
+  }
+
+  @Override
+  public void interrupt() {
+    super.interrupt();
+    channel.cancel();
+  }
+
+  /**
+   * Closes the file, if it's still open. Further calls to next() return the
+   * end of input.
+   */
+  public FailureOrVoid close() {
+    if (done == null) {
+      done = ResultView.eos();
+    }
+    try {
+      channel.close();
+    } catch (IOException e) {
+      return FailureOrs.voidFailure(ioException(e));
+    }
+    return FailureOrs.voidSuccess();
+  }
+
+  @Override
+  public CursorId getCursorId() {
+    return CursorId.FILE_INPUT;
+  }
+
+  @Override
+  public void appendDebugDescription(final StringBuilder target) {
+    target.append("FileInput(").append(file).append(')');
+  }
+
+  private ResultView finish(final ResultView result) {
+    done = result;
+    closeQuietly(channel);
+    return result;
+  }
+
+  private static void closeQuietly(final ReadAheadChannel channel) {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      // Nothing was written; there is nothing to lose.
+    }
+  }
+
+  private static SupersonicException ioException(final IOException e) {
+    return new SupersonicException(ReturnCode.ERROR_GENERAL_IO_ERROR,
+        "I/O error: " + e.getMessage());
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alibaba.supersonic.base.exception.SupersonicException;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.BlockBuilder;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.CursorsProto.CursorId;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.ExpressionDescription;
+import com.alibaba.supersonic.cursor.base.Cursor;
+import com.alibaba.supersonic.cursor.base.ResultView;
+import com.alibaba.supersonic.cursor.infrastructure.BasicCursor;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.expression.infrastructure.ExpressionProgram;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrs;
+
+/**
+ * Returns the rows of its input for which the predicate is TRUE, projected
+ * to a list of expressions. The predicate and the projections are compiled
+ * together, so subexpressions they have in common are evaluated once per
+ * block; the projections are evaluated only on the rows that pass.
+ * 
+ * If all rows of a block pass, the result references the computed columns
+ * without copying; otherwise, the passing rows are gathered into a block of
+ * the cursor's own. Blocks in which no row passes are skipped.
+ */
+public class FilterCursor extends BasicCursor {
+
+  private final ExpressionProgram program;
+  private final Selection all;
+  private final Selection selected;
+  private final View computed;
+  private final ResultView success;
+  private BlockBuilder builder;
+  private ResultView gathered;
+
+  private FilterCursor(final TupleSchema schema,
+      final ExpressionProgram program, final Cursor child) {
+    super(schema, child);
+    this.program = program;
+    this.all = new Selection();
+    this.selected = new Selection();
+    this.computed = new View(schema);
+    this.success = ResultView.reusableSuccess(computed);
+  }
+
+  /**
+   * Creates a cursor that returns the projections (named as specified) of
+   * the child's rows that satisfy the predicate, which must be a BOOL.
+   */
+  public static FailureOr<FilterCursor> create(final Cursor child,
+      final ExpressionDescription predicate,
+      final List<ExpressionDescription> projections,
+      final List<String> names) {
+    final List<ExpressionDescription> roots =
+        new ArrayList<ExpressionDescription>(projections.size() + 1);
+    roots.add(predicate);
+    roots.addAll(projections);
+    final FailureOr<ExpressionProgram> program =
+        ExpressionProgram.compile(child.schema(), roots);
+    if (program.isFailure()) {
+      return FailureOrs.failure(program.exception());
+    }
+    return create(child, program.get(), names);
+  }
+
+  /**
+   * Creates a cursor over a program compiled for the child's schema, whose
+   * first root is the predicate and the others the projections. The program
+   * must not be used by another cursor at the same time.
+   */
+  static FailureOr<FilterCursor> create(final Cursor child,
+      final ExpressionProgram program, final List<String> names) {
+    if (program.root(0).resultType() != DataType.BOOL) {
+      return FailureOrs.failure(new SupersonicException(
+          ReturnCode.ERROR_ATTRIBUTE_TYPE_MISMATCH,
+          "Predicate must be BOOL: " + program.root(0)));
+    }
+    final FailureOr<TupleSchema> schema =
+        ComputeCursor.resultSchema(program, 1, names);
+    if (schema.isFailure()) {
+      return FailureOrs.failure(schema.exception());
+    }
+    return FailureOrs.success(new FilterCursor(schema.get(), program, child));
+  }
+
+  @Override
+  public ResultView next(final int maxRowCount) {
+    while (true) {
+      if (isInterrupted()) {
+        return interruptedResult();
+      }
+      final ResultView input = child(0).next(maxRowCount);
+      if (!input.hasData()) {
+        return input;
+      }
+      final View view = input.view();
+      final int rowCount = view.rowCount();
+      program.beginBlock();
+      all.selectAll(rowCount);
+      final FailureOr<Column> predicate =
+          program.root(0).evaluate(view, all);
+      if (predicate.isFailure()) {
+        return ResultView.failure(predicate.exception());
+      }
+      final Column p = predicate.get();
+      selected.selectTrue(all, (boolean[]) p.data(), p.offset(), p.isNull(),
+          p.isNullOffset());
+      if (selected.count() == 0) {
+        continue;
+      }
+      for (int i = 1; i < program.rootCount(); ++i) {
+        final FailureOr<Column> column =
+            program.root(i).evaluate(view, selected);
+        if (column.isFailure()) {
+          return ResultView.failure(column.exception());
+        }
+        computed.mutableColumn(i - 1).resetFrom(column.get());
+      }
+      computed.setRowCount(rowCount);
+      if (selected.isAll()) {
+        return success;
+      }
+      return gather(selected.count());
+    }
+  }
+
+  @Override
+  public CursorId getCursorId() {
+    return CursorId.FILTER;
+  }
+
+  @Override
+  public void appendDebugDescription(final StringBuilder target) {
+    target.append("Filter(").append(program.root(0)).append(", ")
+        .append(program.roots().subList(1, program.rootCount()))
+        .append(", ");
+    child(0).appendDebugDescription(target);
+    target.append(')');
+  }
+
+  private ResultView gather(final int count) {
+    if (builder == null || builder.block().rowCapacity() < count) {
+      builder = new BlockBuilder(new Block(schema(), count));
+      gathered = ResultView.reusableSuccess(builder.view());
+    } else {
+      builder.reset();
+    }
+    builder.appendSelectedRows(computed, selected.rows(), count);
+    return gathered;
+  }
+}
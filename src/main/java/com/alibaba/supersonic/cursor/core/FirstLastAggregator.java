@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import java.util.Arrays;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Column;
+
+/**
+ * FIRST or LAST value of the input, NULL included, in the order the rows
+ * were folded in.
+ */
+final class FirstLastAggregator extends Aggregator {
+
+  private final boolean first;
+  private final GroupValues values;
+  // LAST: the number of the last batch that set the group's value.
+  private int[] setInBatch;
+  private int batch;
+
+  FirstLastAggregator(final boolean first, final Attribute resultAttribute) {
+    super(resultAttribute);
+    this.first = first;
+    this.values = GroupValues.create(resultAttribute);
+    this.setInBatch = first ? null : new int[16];
+    this.batch = 0;
+  }
+
+  @Override
+  void update(final Column input, final GroupTable groups,
+      final int rowCount) {
+    final int groupCount = groups.groupCount();
+    values.ensureCapacity(groupCount);
+    if (first) {
+      for (int group = groups.firstNewGroup(); group < groupCount; ++group) {
+        values.set(group, input, groups.creatingRow(group));
+      }
+      return;
+    }
+    if (groupCount > setInBatch.length) {
+      setInBatch = Arrays.copyOf(setInBatch,
+          Math.max(groupCount, setInBatch.length * 2));
+    }
+    // Backwards, so that only the last row of each group is copied.
+    ++batch;
+    final int[] rowGroups = groups.rowGroups();
+    for (int i = rowCount - 1; i >= 0; --i) {
+      final int group = rowGroups[i];
+      if (setInBatch[group] != batch) {
+        setInBatch[group] = batch;
+        values.set(group, input, i);
+      }
+    }
+  }
+
+  @Override
+  void resetColumn(final Column target) {
+    values.resetColumn(target);
+  }
+}
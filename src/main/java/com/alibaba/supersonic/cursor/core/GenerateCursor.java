@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import com.alibaba.supersonic.base.exception.SupersonicException;
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.base.memory.Arena;
+import com.alibaba.supersonic.common.proto.CursorsProto.CursorId;
+import com.alibaba.supersonic.cursor.base.ResultView;
+import com.alibaba.supersonic.cursor.infrastructure.BasicCursor;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrs;
+import com.google.common.base.Preconditions;
+
+/**
+ * A cursor that returns synthetic data, generated as described by a
+ * {@link ColumnGenerator} per attribute. Intended for load testing: the data
+ * is generated into a single block that is reused across calls to next(), so
+ * the throughput is bounded by the generation itself, not by I/O or memory
+ * management.
+ * 
+ * The generated data is deterministic for a given seed.
+ */
+public class GenerateCursor extends BasicCursor {
+
+  public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+  // STRING and BINARY values of domains up to this size are generated once.
+  private static final int MAX_CACHED_DOMAIN_SIZE = 1 << 16;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final DataType[] DATA_TYPES = DataType.values();
+
+  private final ColumnState[] columns;
+  private final View result;
+  private final ResultView success;
+  private final int blockSize;
+  private long remainingRows;
+
+  private GenerateCursor(final TupleSchema schema,
+      final List<ColumnGenerator> generators, final long rowCount,
+      final int blockSize, final long seed) {
+    super(schema);
+    final Block block = new Block(schema, blockSize);
+    this.result = new View(schema);
+    this.success = ResultView.reusableSuccess(result);
+    this.blockSize = blockSize;
+    this.remainingRows = rowCount;
+    this.columns = new ColumnState[schema.attributeCount()];
+    for (int i = 0; i < columns.length; ++i) {
+      columns[i] = new ColumnState(block, i, generators.get(i), seed + i);
+      columns[i].bind(result.mutableColumn(i));
+    }
+  }
+
+  /**
+   * Creates a cursor that returns rowCount rows of the schema, in blocks of
+   * at most blockSize rows. There must be one generator per attribute, and
+   * only nullable attributes may have a non-zero null rate.
+   */
+  public static FailureOr<GenerateCursor> create(final TupleSchema schema,
+      final List<ColumnGenerator> generators, final long rowCount,
+      final int blockSize, final long seed) {
+    Preconditions.checkArgument(rowCount >= 0,
+        "Row count must be >= 0: %s", rowCount);
+    Preconditions.checkArgument(blockSize > 0,
+        "Block size must be positive: %s", blockSize);
+    if (generators.size() != schema.attributeCount()) {
+      return FailureOrs.failure(new SupersonicException(
+          ReturnCode.ERROR_ATTRIBUTE_COUNT_MISMATCH,
+          "Expected " + schema.attributeCount() + " generators, got "
+              + generators.size()));
+    }
+    for (int i = 0; i < schema.attributeCount(); ++i) {
+      Attribute attribute = schema.getAttributeAt(i);
+      if (generators.get(i).nullRate() > 0.0 && !attribute.isNullable()) {
+        return FailureOrs.failure(new SupersonicException(
+            ReturnCode.ERROR_INVALID_ARGUMENT_VALUE,
+            "Can't generate NULLs for non-nullable attribute '"
+                + attribute.getName() + "'"));
+      }
+    }
+    return FailureOrs.success(new GenerateCursor(schema, generators,
+        rowCount, blockSize, seed));
+  }
+
+  @Override
+  public ResultView next(final int maxRowCount) {
+    Preconditions.checkArgument(maxRowCount > 0,
+        "Max row count must be positive: %s", maxRowCount);
+    if (isInterrupted()) {
+      return interruptedResult();
+    }
+    if (remainingRows == 0) {
+      return ResultView.eos();
+    }
+    int rowCount = Math.min(maxRowCount, blockSize);
+    if (rowCount > remainingRows) {
+      rowCount = (int) remainingRows;
+    }
+    for (ColumnState column : columns) {
+      column.fill(rowCount);
+    }
+    result.setRowCount(rowCount);
+    remainingRows -= rowCount;
+    return success;
+  }
+
+  @Override
+  public CursorId getCursorId() {
+    return CursorId.GENERATE;
+  }
+
+  @Override
+  public void appendDebugDescription(final StringBuilder target) {
+    target.append("Generate(").append(schema().getHumanReadableSpecification())
+        .append("; ").append(remainingRows).append(" rows remaining)");
+  }
+
+  /**
+   * The generator state of a single column, writing into the cursor's block.
+   */
+  private static final class ColumnState {
+    private final DataType type;
+    private final ColumnGenerator generator;
+    private final Object values;
+    private final boolean[] isNull;
+    private final Arena arena;
+    private final long[] domain;
+    private long random;
+    private long sequence;
+
+    ColumnState(final Block block, final int column,
+        final ColumnGenerator generator, final long seed) {
+      this.type = block.schema().getAttributeAt(column).getType();
+      this.generator = generator;
+      this.values = block.data(column);
+      this.isNull = block.isNull(column);
+      this.random = seed * 0x9E3779B97F4A7C15L;
+      this.sequence = 0;
+      if (block.arena(column) != null && generator.cardinality() > 0
+          && generator.cardinality() <= MAX_CACHED_DOMAIN_SIZE) {
+        // Values of small domains are stored once, in an arena of their own;
+        // the generated pieces all point into it.
+        this.arena = new Arena();
+        this.domain = new long[(int) generator.cardinality()];
+        Arrays.fill(domain, -1L);
+      } else {
+        this.arena = block.arena(column);
+        this.domain = null;
+      }
+    }
+
+    void bind(final Column column) {
+      column.reset(values, arena, isNull);
+    }
+
+    void fill(final int rowCount) {
+      if (isNull != null) {
+        final double nullRate = generator.nullRate();
+        for (int i = 0; i < rowCount; ++i) {
+          isNull[i] = nextDouble() < nullRate;
+        }
+      }
+      switch (type) {
+        case INT32:
+        case UINT32:
+        case DATE: {
+          final int[] data = (int[]) values;
+          for (int i = 0; i < rowCount; ++i) data[i] = (int) nextIndex();
+          break;
+        }
+        case INT64:
+        case UINT64:
+        case DATETIME: {
+          final long[] data = (long[]) values;
+          for (int i = 0; i < rowCount; ++i) data[i] = nextIndex();
+          break;
+        }
+        case FLOAT: {
+          final float[] data = (float[]) values;
+          for (int i = 0; i < rowCount; ++i) data[i] = nextIndex();
+          break;
+        }
+        case DOUBLE: {
+          final double[] data = (double[]) values;
+          for (int i = 0; i < rowCount; ++i) data[i] = nextIndex();
+          break;
+        }
+        case BOOL: {
+          final boolean[] data = (boolean[]) values;
+          for (int i = 0; i < rowCount; ++i) data[i] = (nextIndex() & 1) != 0;
+          break;
+        }
+        case STRING:
+        case BINARY: {
+          final long[] data = (long[]) values;
+          if (domain == null) {
+            arena.reset();
+          }
+          for (int i = 0; i < rowCount; ++i) data[i] = piece(nextIndex());
+          break;
+        }
+        case DATA_TYPE: {
+          final int[] data = (int[]) values;
+          for (int i = 0; i < rowCount; ++i) {
+            data[i] = DATA_TYPES[(int) (nextIndex() % DATA_TYPES.length)]
+                .getNumber();
+          }
+          break;
+        }
+        default:
+          throw new IllegalStateException("Unsupported type: " + type);
+      }
+    }
+
+    private long nextIndex() {
+      if (generator.isSequence()) {
+        return sequence++;
+      }
+      double u = nextDouble();
+      if (generator.skew() != 0.0) {
+        u = Math.pow(u, 1.0 + generator.skew());
+      }
+      return Math.min((long) (u * generator.cardinality()),
+          generator.cardinality() - 1);
+    }
+
+    // SplitMix64; much cheaper than java.util.Random, and good enough here.
+    private long nextLong() {
+      long z = (random += 0x9E3779B97F4A7C15L);
+      z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+      z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+      return z ^ (z >>> 31);
+    }
+
+    private double nextDouble() {
+      return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    // Stores the base-36 representation of the index in the arena.
+    private long piece(final long index) {
+      if (domain != null && domain[(int) index] != -1L) {
+        return domain[(int) index];
+      }
+      final byte[] bytes = Long.toString(index, 36).getBytes(UTF_8);
+      final long piece = arena.append(bytes, 0, bytes.length);
+      if (domain != null) {
+        domain[(int) index] = piece;
+      }
+      return piece;
+    }
+  }
+}
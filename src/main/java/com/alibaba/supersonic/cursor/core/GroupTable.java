@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import java.util.Arrays;
+
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+
+/**
+ * Numbers the distinct group-by keys of input rows densely, in the order they
+ * are first seen, and keeps the keys as {@link GroupValues}. A hash table
+ * with open addressing and linear probing; the slots hold group numbers, and
+ * the hashes are kept per group, so that growing the table doesn't hash the
+ * keys again.
+ * 
+ * With no key columns, all rows belong to a single group.
+ */
+final class GroupTable {
+
+  private static final int INITIAL_SLOT_COUNT = 64;
+
+  private final int[] keyColumns;
+  private final GroupValues[] keys;
+  private final Column[] columns;
+  private int groupCount;
+  private int[] groupHashes;
+  // Group + 1, or 0 for an empty slot.
+  private int[] slots;
+
+  // The results of the last insert().
+  private int[] rowGroups;
+  private int[] rowHashes;
+  private int firstNewGroup;
+  // Indexed by group - firstNewGroup.
+  private int[] creatingRows;
+
+  /**
+   * Creates a table of the input's keyColumns (positions in the schema).
+   */
+  GroupTable(final TupleSchema schema, final int[] keyColumns) {
+    this.keyColumns = keyColumns;
+    this.keys = new GroupValues[keyColumns.length];
+    for (int i = 0; i < keyColumns.length; ++i) {
+      keys[i] = GroupValues.create(schema.getAttributeAt(keyColumns[i]));
+    }
+    this.columns = new Column[keyColumns.length];
+    this.groupCount = 0;
+    this.groupHashes = new int[INITIAL_SLOT_COUNT / 2];
+    this.slots = new int[INITIAL_SLOT_COUNT];
+    this.rowGroups = new int[0];
+    this.rowHashes = new int[0];
+    this.creatingRows = new int[0];
+  }
+
+  int keyCount() {
+    return keys.length;
+  }
+
+  GroupValues key(final int index) {
+    return keys[index];
+  }
+
+  int groupCount() {
+    return groupCount;
+  }
+
+  /**
+   * Returns the groups of the rows of the last insert(), by row.
+   */
+  int[] rowGroups() {
+    return rowGroups;
+  }
+
+  /**
+   * Returns the first group added by the last insert(); the groups from it
+   * to groupCount() - 1 are new.
+   */
+  int firstNewGroup() {
+    return firstNewGroup;
+  }
+
+  /**
+   * Returns the row (of the last insert()) that added the new group.
+   */
+  int creatingRow(final int group) {
+    return creatingRows[group - firstNewGroup];
+  }
+
+  /**
+   * Finds the groups of the view's rows, adding the keys not seen before.
+   */
+  void insert(final View view) {
+    final int rowCount = view.rowCount();
+    if (rowGroups.length < rowCount) {
+      rowGroups = new int[rowCount];
+      rowHashes = new int[rowCount];
+      creatingRows = new int[rowCount];
+    }
+    firstNewGroup = groupCount;
+    if (keys.length == 0) {
+      Arrays.fill(rowGroups, 0, rowCount, 0);
+      if (groupCount == 0 && rowCount > 0) {
+        groupCount = 1;
+        creatingRows[0] = 0;
+      }
+      return;
+    }
+    Arrays.fill(rowHashes, 0, rowCount, 0);
+    for (int i = 0; i < keys.length; ++i) {
+      columns[i] = view.column(keyColumns[i]);
+      keys[i].hash(columns[i], rowHashes, rowCount);
+    }
+    for (int row = 0; row < rowCount; ++row) {
+      rowGroups[row] = findOrAdd(row, mix(rowHashes[row]));
+    }
+  }
+
+  private int findOrAdd(final int row, final int hash) {
+    final int mask = slots.length - 1;
+    for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+      final int entry = slots[slot];
+      if (entry == 0) {
+        return add(row, hash, slot);
+      }
+      final int group = entry - 1;
+      if (groupHashes[group] == hash && keysEqual(row, group)) {
+        return group;
+      }
+    }
+  }
+
+  private boolean keysEqual(final int row, final int group) {
+    for (int i = 0; i < keys.length; ++i) {
+      if (!keys[i].equals(columns[i], row, group)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int add(final int row, final int hash, final int slot) {
+    final int group = groupCount++;
+    if (group == groupHashes.length) {
+      groupHashes = Arrays.copyOf(groupHashes, group * 2);
+    }
+    groupHashes[group] = hash;
+    for (int i = 0; i < keys.length; ++i) {
+      keys[i].ensureCapacity(groupCount);
+      keys[i].set(group, columns[i], row);
+    }
+    creatingRows[group - firstNewGroup] = row;
+    slots[slot] = group + 1;
+    // Keeps the load factor at most 1/2.
+    if (groupCount * 2 > slots.length) {
+      rehash(slots.length * 2);
+    }
+    return group;
+  }
+
+  private void rehash(final int slotCount) {
+    slots = new int[slotCount];
+    final int mask = slotCount - 1;
+    for (int group = 0; group < groupCount; ++group) {
+      int slot = groupHashes[group] & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = group + 1;
+    }
+  }
+
+  // The finalizer of MurmurHash3, so that the low bits (used for the slot)
+  // depend on all bits of the combined column hashes.
+  private static int mix(int hash) {
+    hash ^= hash >>> 16;
+    hash *= 0x85EBCA6B;
+    hash ^= hash >>> 13;
+    hash *= 0xC2B2AE35;
+    hash ^= hash >>> 16;
+    return hash;
+  }
+}
@@ -0,0 +1,547 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import java.util.Arrays;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.memory.Arena;
+
+/**
+ * The values of one attribute per group, in arrays that grow with the number
+ * of groups: the group-by keys of an aggregation, and the results of the
+ * aggregations that keep an input value (MIN, MAX, FIRST, LAST) or are read
+ * off a sketch (APPROX_COUNT_DISTINCT, HLL_SKETCH, ...). The arrays
+ * are those of a {@link Column} of the attribute's type, so the values are
+ * returned as a column without copying.
+ * 
+ * Variable-length values are copied into an arena owned by this object.
+ * Overwritten values are left there as garbage, until it outgrows the live
+ * values; then the live values are copied into a new arena.
+ */
+abstract class GroupValues {
+
+  private static final int INITIAL_CAPACITY = 16;
+  // Hash of a NULL, whatever the value stored for it.
+  private static final int NULL_HASH = 0x5BD1E995;
+
+  protected final Attribute attribute;
+  // Null if the attribute is not nullable.
+  protected boolean[] isNull;
+  protected int capacity;
+
+  GroupValues(final Attribute attribute) {
+    this.attribute = attribute;
+    this.capacity = INITIAL_CAPACITY;
+    this.isNull = attribute.isNullable() ? new boolean[capacity] : null;
+  }
+
+  /**
+   * Creates (empty) values of the attribute's type.
+   */
+  static GroupValues create(final Attribute attribute) {
+    switch (attribute.getType()) {
+      case INT32:
+      case UINT32:
+      case DATE:
+      case DATA_TYPE:
+        return new Ints(attribute);
+      case INT64:
+      case UINT64:
+      case DATETIME:
+        return new Longs(attribute);
+      case FLOAT:
+        return new Floats(attribute);
+      case DOUBLE:
+        return new Doubles(attribute);
+      case BOOL:
+        return new Bools(attribute);
+      case STRING:
+      case BINARY:
+        return new Pieces(attribute);
+      default:
+        throw new IllegalArgumentException("Unsupported type: "
+            + attribute.getType());
+    }
+  }
+
+  Attribute attribute() {
+    return attribute;
+  }
+
+  /**
+   * Makes room for the values of groups [0, groupCount).
+   */
+  final void ensureCapacity(final int groupCount) {
+    if (groupCount > capacity) {
+      capacity = Math.max(groupCount, capacity * 2);
+      grow(capacity);
+      if (isNull != null) {
+        isNull = Arrays.copyOf(isNull, capacity);
+      }
+    }
+  }
+
+  final boolean isNull(final int group) {
+    return isNull != null && isNull[group];
+  }
+
+  /**
+   * Points the column at the values (of all groups).
+   */
+  final void resetColumn(final Column target) {
+    target.reset(data(), arena(), isNull);
+  }
+
+  /**
+   * Sets the value of the group to the column's row, NULL included.
+   */
+  final void set(final int group, final Column column, final int row) {
+    final boolean rowIsNull = column.isNull(row);
+    if (isNull != null) {
+      isNull[group] = rowIsNull;
+    }
+    if (rowIsNull) {
+      clearValue(group);
+    } else {
+      setValue(group, column, row);
+    }
+  }
+
+  /**
+   * Called when the group's value is set to NULL.
+   */
+  void clearValue(final int group) {
+  }
+
+  /**
+   * Sets the value of the group to the value of the column's row, which is
+   * not NULL. Doesn't touch the group's NULL flag.
+   */
+  abstract void setValue(int group, Column column, int row);
+
+  /**
+   * Returns true if the column's row is equal to the group's value; NULLs
+   * are equal to each other, and so are floating-point zeros and NaNs.
+   */
+  abstract boolean equals(Column column, int row, int group);
+
+  /**
+   * Combines the hashes of the column's rows [0, rowCount) into hashes, as
+   * hashes[i] = hashes[i] * 31 + hash(row i). Equal values have equal hashes.
+   */
+  abstract void hash(Column column, int[] hashes, int rowCount);
+
+  /**
+   * Returns the array holding the values.
+   */
+  abstract Object data();
+
+  Arena arena() {
+    return null;
+  }
+
+  abstract void grow(int capacity);
+
+  private static boolean bothNull(final Column column, final int row,
+      final GroupValues values, final int group) {
+    return column.isNull(row) && values.isNull(group);
+  }
+
+  static final class Ints extends GroupValues {
+    int[] data = new int[capacity];
+
+    Ints(final Attribute attribute) {
+      super(attribute);
+    }
+
+    @Override
+    void setValue(final int group, final Column column, final int row) {
+      data[group] = column.getInt(row);
+    }
+
+    @Override
+    boolean equals(final Column column, final int row, final int group) {
+      if (column.isNull(row) || isNull(group)) {
+        return bothNull(column, row, this, group);
+      }
+      return column.getInt(row) == data[group];
+    }
+
+    @Override
+    void hash(final Column column, final int[] hashes, final int rowCount) {
+      final int[] values = (int[]) column.data();
+      final int offset = column.offset();
+      final boolean[] nulls = column.isNull();
+      final int nullsOffset = column.isNullOffset();
+      for (int i = 0; i < rowCount; ++i) {
+        if (nulls != null && nulls[nullsOffset + i]) {
+          hashes[i] = hashes[i] * 31 + NULL_HASH;
+          continue;
+        }
+        hashes[i] = hashes[i] * 31 + values[offset + i];
+      }
+    }
+
+    @Override
+    Object data() {
+      return data;
+    }
+
+    @Override
+    void grow(final int capacity) {
+      data = Arrays.copyOf(data, capacity);
+    }
+  }
+
+  static final class Longs extends GroupValues {
+    long[] data = new long[capacity];
+
+    Longs(final Attribute attribute) {
+      super(attribute);
+    }
+
+    @Override
+    void setValue(final int group, final Column column, final int row) {
+      data[group] = column.getLong(row);
+    }
+
+    @Override
+    boolean equals(final Column column, final int row, final int group) {
+      if (column.isNull(row) || isNull(group)) {
+        return bothNull(column, row, this, group);
+      }
+      return column.getLong(row) == data[group];
+    }
+
+    @Override
+    void hash(final Column column, final int[] hashes, final int rowCount) {
+      final long[] values = (long[]) column.data();
+      final int offset = column.offset();
+      final boolean[] nulls = column.isNull();
+      final int nullsOffset = column.isNullOffset();
+      for (int i = 0; i < rowCount; ++i) {
+        if (nulls != null && nulls[nullsOffset + i]) {
+          hashes[i] = hashes[i] * 31 + NULL_HASH;
+          continue;
+        }
+        final long value = values[offset + i];
+        hashes[i] = hashes[i] * 31 + (int) (value ^ (value >>> 32));
+      }
+    }
+
+    @Override
+    Object data() {
+      return data;
+    }
+
+    @Override
+    void grow(final int capacity) {
+      data = Arrays.copyOf(data, capacity);
+    }
+  }
+
+  static final class Floats extends GroupValues {
+    float[] data = new float[capacity];
+
+    Floats(final Attribute attribute) {
+      super(attribute);
+    }
+
+    @Override
+    void setValue(final int group, final Column column, final int row) {
+      data[group] = column.getFloat(row);
+    }
+
+    @Override
+    boolean equals(final Column column, final int row, final int group) {
+      if (column.isNull(row) || isNull(group)) {
+        return bothNull(column, row, this, group);
+      }
+      return bits(column.getFloat(row)) == bits(data[group]);
+    }
+
+    @Override
+    void hash(final Column column, final int[] hashes, final int rowCount) {
+      final float[] values = (float[]) column.data();
+      final int offset = column.offset();
+      final boolean[] nulls = column.isNull();
+      final int nullsOffset = column.isNullOffset();
+      for (int i = 0; i < rowCount; ++i) {
+        if (nulls != null && nulls[nullsOffset + i]) {
+          hashes[i] = hashes[i] * 31 + NULL_HASH;
+          continue;
+        }
+        hashes[i] = hashes[i] * 31 + bits(values[offset + i]);
+      }
+    }
+
+    @Override
+    Object data() {
+      return data;
+    }
+
+    @Override
+    void grow(final int capacity) {
+      data = Arrays.copyOf(data, capacity);
+    }
+
+    // Adding 0 turns -0 into +0; floatToIntBits() collapses the NaNs.
+    private static int bits(final float value) {
+      return Float.floatToIntBits(value + 0.0f);
+    }
+  }
+
+  static final class Doubles extends GroupValues {
+    double[] data = new double[capacity];
+
+    Doubles(final Attribute attribute) {
+      super(attribute);
+    }
+
+    @Override
+    void setValue(final int group, final Column column, final int row) {
+      data[group] = column.getDouble(row);
+    }
+
+    @Override
+    boolean equals(final Column column, final int row, final int group) {
+      if (column.isNull(row) || isNull(group)) {
+        return bothNull(column, row, this, group);
+      }
+      return bits(column.getDouble(row)) == bits(data[group]);
+    }
+
+    @Override
+    void hash(final Column column, final int[] hashes, final int rowCount) {
+      final double[] values = (double[]) column.data();
+      final int offset = column.offset();
+      final boolean[] nulls = column.isNull();
+      final int nullsOffset = column.isNullOffset();
+      for (int i = 0; i < rowCount; ++i) {
+        if (nulls != null && nulls[nullsOffset + i]) {
+          hashes[i] = hashes[i] * 31 + NULL_HASH;
+          continue;
+        }
+        final long bits = bits(values[offset + i]);
+        hashes[i] = hashes[i] * 31 + (int) (bits ^ (bits >>> 32));
+      }
+    }
+
+    @Override
+    Object data() {
+      return data;
+    }
+
+    @Override
+    void grow(final int capacity) {
+      data = Arrays.copyOf(data, capacity);
+    }
+
+    private static long bits(final double value) {
+      return Double.doubleToLongBits(value + 0.0);
+    }
+  }
+
+  static final class Bools extends GroupValues {
+    boolean[] data = new boolean[capacity];
+
+    Bools(final Attribute attribute) {
+      super(attribute);
+    }
+
+    @Override
+    void setValue(final int group, final Column column, final int row) {
+      data[group] = column.getBool(row);
+    }
+
+    @Override
+    boolean equals(final Column column, final int row, final int group) {
+      if (column.isNull(row) || isNull(group)) {
+        return bothNull(column, row, this, group);
+      }
+      return column.getBool(row) == data[group];
+    }
+
+    @Override
+    void hash(final Column column, final int[] hashes, final int rowCount) {
+      final boolean[] values = (boolean[]) column.data();
+      final int offset = column.offset();
+      final boolean[] nulls = column.isNull();
+      final int nullsOffset = column.isNullOffset();
+      for (int i = 0; i < rowCount; ++i) {
+        if (nulls != null && nulls[nullsOffset + i]) {
+          hashes[i] = hashes[i] * 31 + NULL_HASH;
+          continue;
+        }
+        hashes[i] = hashes[i] * 31 + (values[offset + i] ? 1 : 0);
+      }
+    }
+
+    @Override
+    Object data() {
+      return data;
+    }
+
+    @Override
+    void grow(final int capacity) {
+      data = Arrays.copyOf(data, capacity);
+    }
+  }
+
+  static final class Pieces extends GroupValues {
+    // Don't bother compacting arenas smaller than this.
+    private static final int MIN_GARBAGE = 64 * 1024;
+
+    long[] data = new long[capacity];
+    // Whether data[group] references a value in the arena.
+    boolean[] live = new boolean[capacity];
+    Arena arena = new Arena();
+    int garbage;
+
+    Pieces(final Attribute attribute) {
+      super(attribute);
+    }
+
+    @Override
+    void setValue(final int group, final Column column, final int row) {
+      final long piece = column.getPiece(row);
+      setBytes(group, column.arena().buffer(), Arena.pieceOffset(piece),
+          Arena.pieceLength(piece));
+    }
+
+    /**
+     * Sets the value of the group to a copy of the bytes. Doesn't touch the
+     * group's NULL flag.
+     */
+    void setBytes(final int group, final byte[] bytes, final int offset,
+        final int length) {
+      if (live[group]) {
+        garbage += Arena.pieceLength(data[group]);
+      }
+      data[group] = arena.append(bytes, offset, length);
+      live[group] = true;
+      if (garbage > MIN_GARBAGE && garbage > arena.size() / 2) {
+        compact();
+      }
+    }
+
+    @Override
+    void clearValue(final int group) {
+      if (live[group]) {
+        garbage += Arena.pieceLength(data[group]);
+        live[group] = false;
+      }
+    }
+
+    @Override
+    boolean equals(final Column column, final int row, final int group) {
+      if (column.isNull(row) || isNull(group)) {
+        return bothNull(column, row, this, group);
+      }
+      final long piece = column.getPiece(row);
+      final int length = Arena.pieceLength(piece);
+      if (length != Arena.pieceLength(data[group])) {
+        return false;
+      }
+      final byte[] source = column.arena().buffer();
+      final int sourceOffset = Arena.pieceOffset(piece);
+      final byte[] target = arena.buffer();
+      final int targetOffset = Arena.pieceOffset(data[group]);
+      for (int i = 0; i < length; ++i) {
+        if (source[sourceOffset + i] != target[targetOffset + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    void hash(final Column column, final int[] hashes, final int rowCount) {
+      final long[] pieces = (long[]) column.data();
+      final int offset = column.offset();
+      final byte[] buffer = column.arena().buffer();
+      final boolean[] nulls = column.isNull();
+      final int nullsOffset = column.isNullOffset();
+      for (int i = 0; i < rowCount; ++i) {
+        if (nulls != null && nulls[nullsOffset + i]) {
+          hashes[i] = hashes[i] * 31 + NULL_HASH;
+          continue;
+        }
+        final long piece = pieces[offset + i];
+        final int start = Arena.pieceOffset(piece);
+        final int end = start + Arena.pieceLength(piece);
+        int hash = 0;
+        for (int j = start; j < end; ++j) {
+          hash = hash * 31 + buffer[j];
+        }
+        hashes[i] = hashes[i] * 31 + hash;
+      }
+    }
+
+    @Override
+    Object data() {
+      return data;
+    }
+
+    @Override
+    Arena arena() {
+      return arena;
+    }
+
+    @Override
+    void grow(final int capacity) {
+      data = Arrays.copyOf(data, capacity);
+      live = Arrays.copyOf(live, capacity);
+    }
+
+    /**
+     * Compares the column's row with the group's value, as unsigned bytes.
+     * Neither may be NULL.
+     */
+    int compare(final Column column, final int row, final int group) {
+      final long piece = column.getPiece(row);
+      final byte[] source = column.arena().buffer();
+      final int sourceOffset = Arena.pieceOffset(piece);
+      final int sourceLength = Arena.pieceLength(piece);
+      final byte[] target = arena.buffer();
+      final int targetOffset = Arena.pieceOffset(data[group]);
+      final int targetLength = Arena.pieceLength(data[group]);
+      final int length = Math.min(sourceLength, targetLength);
+      for (int i = 0; i < length; ++i) {
+        final int difference = (source[sourceOffset + i] & 0xFF)
+            - (target[targetOffset + i] & 0xFF);
+        if (difference != 0) {
+          return difference;
+        }
+      }
+      return sourceLength - targetLength;
+    }
+
+    private void compact() {
+      final Arena compacted = new Arena(arena.size() - garbage);
+      for (int i = 0; i < capacity; ++i) {
+        if (live[i]) {
+          data[i] = compacted.append(arena, data[i]);
+        }
+      }
+      arena = compacted;
+      garbage = 0;
+    }
+  }
+}
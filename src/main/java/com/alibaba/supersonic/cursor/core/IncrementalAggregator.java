@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import java.util.List;
+
+import com.alibaba.supersonic.base.exception.SupersonicException;
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.cursor.base.Cursor;
+import com.alibaba.supersonic.cursor.base.ResultView;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrVoid;
+import com.alibaba.supersonic.utils.exception.FailureOrs;
+
+/**
+ * Groups rows by the values of the group-by attributes, and computes the
+ * aggregations of an {@link AggregationSpecification} for each group,
+ * incrementally: the input is given in batches (e.g. the rows appended to a
+ * table since the last batch), and each batch updates the results of the
+ * previous ones, instead of aggregating all rows again. After each batch,
+ * result() returns the results over all the rows seen so far.
+ * 
+ * The aggregations supported (SUM, COUNT, MIN, MAX, FIRST, LAST, and the
+ * approximate ones with sketches) can all be updated from their current
+ * state and the new rows alone, so that a batch costs time proportional to
+ * its size, and the state (group keys, and results or sketches) memory
+ * proportional to the number of groups.
+ * 
+ * Usage:
+ * 
+ *   IncrementalAggregator aggregator = IncrementalAggregator.create(schema,
+ *       Arrays.asList("country"), new AggregationSpecification()
+ *           .addAggregation(Aggregation.SUM, "amount", "total")
+ *           .addAggregation(Aggregation.COUNT, null, "orders")).get();
+ *   for (each micro-batch) {
+ *     aggregator.update(batch);
+ *     publish(aggregator.result());
+ *   }
+ * 
+ * The result has a row per group: the group-by attributes, then the
+ * aggregations. Groups are numbered in the order they first appeared, and
+ * keep their rows from one batch to the next. With no group-by attributes,
+ * there is a single group (after the first row).
+ */
+public class IncrementalAggregator {
+
+  private final TupleSchema inputSchema;
+  private final TupleSchema resultSchema;
+  private final GroupTable groups;
+  private final Aggregator[] aggregators;
+  // Positions of the aggregators' inputs; -1 for COUNT(*).
+  private final int[] inputColumns;
+  private final View result;
+
+  private IncrementalAggregator(final TupleSchema inputSchema,
+      final TupleSchema resultSchema, final GroupTable groups,
+      final Aggregator[] aggregators, final int[] inputColumns) {
+    this.inputSchema = inputSchema;
+    this.resultSchema = resultSchema;
+    this.groups = groups;
+    this.aggregators = aggregators;
+    this.inputColumns = inputColumns;
+    this.result = new View(resultSchema);
+  }
+
+  /**
+   * Creates an aggregator of input with the schema, grouped by the
+   * attributes with the specified names (none for a single group).
+   */
+  public static FailureOr<IncrementalAggregator> create(
+      final TupleSchema inputSchema, final List<String> groupBy,
+      final AggregationSpecification specification) {
+    final TupleSchema.Builder builder = TupleSchema.builder();
+    final int[] keyColumns = new int[groupBy.size()];
+    for (int i = 0; i < keyColumns.length; ++i) {
+      keyColumns[i] = inputSchema.lookupAttributePosition(groupBy.get(i));
+      if (keyColumns[i] < 0) {
+        return missingAttribute(groupBy.get(i));
+      }
+      if (!builder.addAttribute(inputSchema.getAttributeAt(keyColumns[i]))) {
+        return duplicateAttribute(groupBy.get(i));
+      }
+    }
+    final Aggregator[] aggregators = new Aggregator[specification.size()];
+    final int[] inputColumns = new int[aggregators.length];
+    for (int i = 0; i < aggregators.length; ++i) {
+      final AggregationSpecification.Element element =
+          specification.aggregation(i);
+      Attribute input = null;
+      inputColumns[i] = -1;
+      if (element.input() != null) {
+        inputColumns[i] = inputSchema.lookupAttributePosition(
+            element.input());
+        if (inputColumns[i] < 0) {
+          return missingAttribute(element.input());
+        }
+        input = inputSchema.getAttributeAt(inputColumns[i]);
+      }
+      final FailureOr<Aggregator> aggregator =
+          Aggregator.create(element, input);
+      if (aggregator.isFailure()) {
+        return FailureOrs.failure(aggregator.exception());
+      }
+      aggregators[i] = aggregator.get();
+      if (!builder.addAttribute(aggregators[i].resultAttribute())) {
+        return duplicateAttribute(element.output());
+      }
+    }
+    return FailureOrs.success(new IncrementalAggregator(inputSchema,
+        builder.build(), new GroupTable(inputSchema, keyColumns),
+        aggregators, inputColumns));
+  }
+
+  /**
+   * Returns the schema of the results.
+   */
+  public TupleSchema schema() {
+    return resultSchema;
+  }
+
+  /**
+   * Returns the number of groups seen so far.
+   */
+  public int groupCount() {
+    return groups.groupCount();
+  }
+
+  /**
+   * Folds the view's rows into the results. The view must have the input
+   * schema's column types, and no NULLs in the attributes that are not
+   * nullable in the input schema. On failure (e.g. malformed sketches to
+   * merge), none of the rows is folded in, and the aggregator can still be
+   * used.
+   */
+  public FailureOrVoid update(final View input) {
+    if (!input.schema().equalByType(inputSchema)) {
+      return FailureOrs.voidFailure(new SupersonicException(
+          ReturnCode.ERROR_ATTRIBUTE_TYPE_MISMATCH, "Expected input of "
+              + inputSchema + ", got " + input.schema()));
+    }
+    final int rowCount = input.rowCount();
+    if (rowCount == 0) {
+      return FailureOrs.voidSuccess();
+    }
+    // The group keys and the aggregators don't look at the NULL flags of
+    // attributes that aren't nullable.
+    for (int i = 0; i < inputSchema.attributeCount(); ++i) {
+      if (!inputSchema.getAttributeAt(i).isNullable()
+          && hasNulls(input.column(i), rowCount)) {
+        return FailureOrs.voidFailure(new SupersonicException(
+            ReturnCode.ERROR_ATTRIBUTE_IS_NULLABLE, "NULLs in attribute '"
+                + inputSchema.getAttributeAt(i).getName()
+                + "', which is not nullable"));
+      }
+    }
+    for (int i = 0; i < aggregators.length; ++i) {
+      final FailureOrVoid valid =
+          aggregators[i].validate(inputColumn(input, i), rowCount);
+      if (valid.isFailure()) {
+        return valid;
+      }
+    }
+    groups.insert(input);
+    for (int i = 0; i < aggregators.length; ++i) {
+      aggregators[i].update(inputColumn(input, i), groups, rowCount);
+    }
+    return FailureOrs.voidSuccess();
+  }
+
+  /**
+   * Folds all rows of the cursor into the results: a micro-batch. Stops at
+   * the end of input, or when the cursor waits on a barrier (the rows
+   * available so far); the cursor may then be updated from again later.
+   */
+  public FailureOrVoid update(final Cursor input) {
+    while (true) {
+      final ResultView next = input.next(Integer.MAX_VALUE);
+      if (next.isFailure()) {
+        return FailureOrs.voidFailure(next.exception());
+      }
+      if (!next.hasData()) {
+        return FailureOrs.voidSuccess();
+      }
+      final FailureOrVoid updated = update(next.view());
+      if (updated.isFailure()) {
+        return updated;
+      }
+    }
+  }
+
+  /**
+   * Returns the results over all rows folded in so far, a row per group.
+   * The view is over the aggregator's state, not a copy: it is valid until
+   * the next update().
+   */
+  public View result() {
+    int column = 0;
+    for (int i = 0; i < groups.keyCount(); ++i) {
+      groups.key(i).resetColumn(result.mutableColumn(column++));
+    }
+    for (Aggregator aggregator : aggregators) {
+      aggregator.resetColumn(result.mutableColumn(column++));
+    }
+    result.setRowCount(groups.groupCount());
+    return result;
+  }
+
+  private Column inputColumn(final View input, final int aggregator) {
+    return inputColumns[aggregator] < 0 ? null
+        : input.column(inputColumns[aggregator]);
+  }
+
+  private static boolean hasNulls(final Column column, final int rowCount) {
+    final boolean[] isNull = column.isNull();
+    if (isNull == null) {
+      return false;
+    }
+    final int offset = column.isNullOffset();
+    for (int i = 0; i < rowCount; ++i) {
+      if (isNull[offset + i]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static <T> FailureOr<T> missingAttribute(final String name) {
+    return FailureOrs.failure(new SupersonicException(
+        ReturnCode.ERROR_ATTRIBUTE_MISSING, "No attribute '" + name + "'"));
+  }
+
+  private static <T> FailureOr<T> duplicateAttribute(final String name) {
+    return FailureOrs.failure(new SupersonicException(
+        ReturnCode.ERROR_ATTRIBUTE_EXISTS,
+        "Duplicate attribute name: " + name));
+  }
+}
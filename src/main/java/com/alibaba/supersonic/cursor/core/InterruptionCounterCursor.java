@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.alibaba.supersonic.common.proto.CursorsProto.CursorId;
+import com.alibaba.supersonic.cursor.base.Cursor;
+import com.alibaba.supersonic.cursor.infrastructure.DecoratorCursor;
+
+/**
+ * A decorator that counts how many times it has been interrupted. For testing
+ * that interruptions reach every part of a cursor tree.
+ */
+public class InterruptionCounterCursor extends DecoratorCursor {
+
+  private final AtomicInteger interruptionCount = new AtomicInteger();
+
+  public InterruptionCounterCursor(final Cursor delegate) {
+    super(delegate);
+  }
+
+  @Override
+  public void interrupt() {
+    interruptionCount.incrementAndGet();
+    super.interrupt();
+  }
+
+  /**
+   * Returns the number of calls to interrupt() so far.
+   */
+  public int interruptionCount() {
+    return interruptionCount.get();
+  }
+
+  @Override
+  public CursorId getCursorId() {
+    return CursorId.INTERRUPTION_COUNTER;
+  }
+}
@@ -0,0 +1,299 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.expression.core.NumericKernels;
+import com.alibaba.supersonic.expression.core.NumericKernelsLoader;
+
+/**
+ * MIN or MAX of the non-NULL values of the input, of any type: numbers
+ * (unsigned ones compared as such, floating point ones as by Math.min and
+ * Math.max), BOOLs (FALSE < TRUE), and STRINGs and BINARYs (bytewise). The
+ * result of a group with only NULLs is NULL.
+ */
+final class MinMaxAggregator extends Aggregator {
+
+  private static final NumericKernels NUMERIC = NumericKernelsLoader.kernels();
+
+  private final boolean min;
+  private final GroupValues values;
+
+  MinMaxAggregator(final boolean min, final Attribute resultAttribute) {
+    super(resultAttribute);
+    this.min = min;
+    this.values = GroupValues.create(resultAttribute);
+  }
+
+  @Override
+  void update(final Column input, final GroupTable groups,
+      final int rowCount) {
+    final int groupCount = groups.groupCount();
+    values.ensureCapacity(groupCount);
+    for (int group = groups.firstNewGroup(); group < groupCount; ++group) {
+      values.set(group, input, groups.creatingRow(group));
+    }
+    if (groups.keyCount() == 0 && updateAll(input, rowCount)) {
+      return;
+    }
+    final int[] rowGroups = groups.rowGroups();
+    switch (resultAttribute.getType()) {
+      case INT32:
+      case DATE:
+      case DATA_TYPE:
+        updateInts(input, rowGroups, rowCount, 0);
+        break;
+      case UINT32:
+        updateInts(input, rowGroups, rowCount, Integer.MIN_VALUE);
+        break;
+      case INT64:
+      case DATETIME:
+        updateLongs(input, rowGroups, rowCount, 0L);
+        break;
+      case UINT64:
+        updateLongs(input, rowGroups, rowCount, Long.MIN_VALUE);
+        break;
+      case FLOAT:
+        updateFloats(input, rowGroups, rowCount);
+        break;
+      case DOUBLE:
+        updateDoubles(input, rowGroups, rowCount);
+        break;
+      case BOOL:
+        updateBools(input, rowGroups, rowCount);
+        break;
+      case STRING:
+      case BINARY:
+        updatePieces(input, rowGroups, rowCount);
+        break;
+      default:
+        throw new IllegalStateException("Unsupported type: "
+            + resultAttribute.getType());
+    }
+  }
+
+  @Override
+  void resetColumn(final Column target) {
+    values.resetColumn(target);
+  }
+
+  /**
+   * Folds all rows into group 0 with the MIN / MAX kernels. Returns false
+   * (having done nothing) if there is no kernel for the type.
+   */
+  private boolean updateAll(final Column input, final int rowCount) {
+    if (!hasValues(input, rowCount)) {
+      return true;
+    }
+    final int offset = input.offset();
+    final boolean[] isNull = input.isNull();
+    final int isNullOffset = input.isNullOffset();
+    // The group's value, if any, is the initial value of the kernel: the
+    // MIN / MAX of a non-empty input doesn't depend on it otherwise.
+    final boolean empty = values.isNull(0);
+    switch (resultAttribute.getType()) {
+      case INT32:
+      case DATE:
+      case DATA_TYPE: {
+        final int[] data = ((GroupValues.Ints) values).data;
+        final int[] source = (int[]) input.data();
+        final int initial = empty ? source[offset + firstValue(input)]
+            : data[0];
+        data[0] = min
+            ? NUMERIC.min(source, offset, isNull, isNullOffset, rowCount,
+                initial)
+            : NUMERIC.max(source, offset, isNull, isNullOffset, rowCount,
+                initial);
+        break;
+      }
+      case INT64:
+      case DATETIME: {
+        final long[] data = ((GroupValues.Longs) values).data;
+        final long[] source = (long[]) input.data();
+        final long initial = empty ? source[offset + firstValue(input)]
+            : data[0];
+        data[0] = min
+            ? NUMERIC.min(source, offset, isNull, isNullOffset, rowCount,
+                initial)
+            : NUMERIC.max(source, offset, isNull, isNullOffset, rowCount,
+                initial);
+        break;
+      }
+      case FLOAT: {
+        final float[] data = ((GroupValues.Floats) values).data;
+        final float[] source = (float[]) input.data();
+        final float initial = empty ? source[offset + firstValue(input)]
+            : data[0];
+        data[0] = min
+            ? NUMERIC.min(source, offset, isNull, isNullOffset, rowCount,
+                initial)
+            : NUMERIC.max(source, offset, isNull, isNullOffset, rowCount,
+                initial);
+        break;
+      }
+      case DOUBLE: {
+        final double[] data = ((GroupValues.Doubles) values).data;
+        final double[] source = (double[]) input.data();
+        final double initial = empty ? source[offset + firstValue(input)]
+            : data[0];
+        data[0] = min
+            ? NUMERIC.min(source, offset, isNull, isNullOffset, rowCount,
+                initial)
+            : NUMERIC.max(source, offset, isNull, isNullOffset, rowCount,
+                initial);
+        break;
+      }
+      default:
+        return false;
+    }
+    if (empty) {
+      values.isNull[0] = false;
+    }
+    return true;
+  }
+
+  // Returns the first non-NULL row; there must be one.
+  private static int firstValue(final Column input) {
+    int row = 0;
+    while (input.isNull(row)) {
+      ++row;
+    }
+    return row;
+  }
+
+  // Unsigned values are compared as signed ones, with the sign bit flipped.
+  private void updateInts(final Column input, final int[] groups,
+      final int rowCount, final int flip) {
+    final int[] data = ((GroupValues.Ints) values).data;
+    final int[] source = (int[]) input.data();
+    final int offset = input.offset();
+    for (int i = 0; i < rowCount; ++i) {
+      if (input.isNull(i)) {
+        continue;
+      }
+      final int group = groups[i];
+      final int value = source[offset + i];
+      if (values.isNull(group)) {
+        values.set(group, input, i);
+      } else if (min ? (value ^ flip) < (data[group] ^ flip)
+          : (value ^ flip) > (data[group] ^ flip)) {
+        data[group] = value;
+      }
+    }
+  }
+
+  private void updateLongs(final Column input, final int[] groups,
+      final int rowCount, final long flip) {
+    final long[] data = ((GroupValues.Longs) values).data;
+    final long[] source = (long[]) input.data();
+    final int offset = input.offset();
+    for (int i = 0; i < rowCount; ++i) {
+      if (input.isNull(i)) {
+        continue;
+      }
+      final int group = groups[i];
+      final long value = source[offset + i];
+      if (values.isNull(group)) {
+        values.set(group, input, i);
+      } else if (min ? (value ^ flip) < (data[group] ^ flip)
+          : (value ^ flip) > (data[group] ^ flip)) {
+        data[group] = value;
+      }
+    }
+  }
+
+  private void updateFloats(final Column input, final int[] groups,
+      final int rowCount) {
+    final float[] data = ((GroupValues.Floats) values).data;
+    final float[] source = (float[]) input.data();
+    final int offset = input.offset();
+    for (int i = 0; i < rowCount; ++i) {
+      if (input.isNull(i)) {
+        continue;
+      }
+      final int group = groups[i];
+      if (values.isNull(group)) {
+        values.set(group, input, i);
+      } else {
+        final float value = source[offset + i];
+        data[group] = min ? Math.min(data[group], value)
+            : Math.max(data[group], value);
+      }
+    }
+  }
+
+  private void updateDoubles(final Column input, final int[] groups,
+      final int rowCount) {
+    final double[] data = ((GroupValues.Doubles) values).data;
+    final double[] source = (double[]) input.data();
+    final int offset = input.offset();
+    for (int i = 0; i < rowCount; ++i) {
+      if (input.isNull(i)) {
+        continue;
+      }
+      final int group = groups[i];
+      if (values.isNull(group)) {
+        values.set(group, input, i);
+      } else {
+        final double value = source[offset + i];
+        data[group] = min ? Math.min(data[group], value)
+            : Math.max(data[group], value);
+      }
+    }
+  }
+
+  // MIN is AND, MAX is OR.
+  private void updateBools(final Column input, final int[] groups,
+      final int rowCount) {
+    final boolean[] data = ((GroupValues.Bools) values).data;
+    final boolean[] source = (boolean[]) input.data();
+    final int offset = input.offset();
+    for (int i = 0; i < rowCount; ++i) {
+      if (input.isNull(i)) {
+        continue;
+      }
+      final int group = groups[i];
+      if (values.isNull(group)) {
+        values.set(group, input, i);
+      } else if (min) {
+        data[group] &= source[offset + i];
+      } else {
+        data[group] |= source[offset + i];
+      }
+    }
+  }
+
+  private void updatePieces(final Column input, final int[] groups,
+      final int rowCount) {
+    final GroupValues.Pieces pieces = (GroupValues.Pieces) values;
+    for (int i = 0; i < rowCount; ++i) {
+      if (input.isNull(i)) {
+        continue;
+      }
+      final int group = groups[i];
+      if (values.isNull(group)) {
+        values.set(group, input, i);
+      } else {
+        final int comparison = pieces.compare(input, i, group);
+        if (min ? comparison < 0 : comparison > 0) {
+          pieces.setValue(group, input, i);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,446 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.alibaba.supersonic.base.exception.SupersonicException;
+import com.alibaba.supersonic.common.proto.CursorsProto.AggregationDescription;
+import com.alibaba.supersonic.common.proto.CursorsProto.CursorId;
+import com.alibaba.supersonic.common.proto.CursorsProto.NamedExpression;
+import com.alibaba.supersonic.common.proto.CursorsProto.OperatorDescription;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.ExpressionDescription;
+import com.alibaba.supersonic.cursor.base.Cursor;
+import com.alibaba.supersonic.cursor.base.ResultView;
+import com.alibaba.supersonic.cursor.infrastructure.DecoratorCursor;
+import com.alibaba.supersonic.cursor.infrastructure.PlanFingerprint;
+import com.alibaba.supersonic.expression.infrastructure.ExpressionProgram;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrs;
+import com.google.common.base.Preconditions;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * Instantiates cursor trees from their descriptions (see
+ * {@link OperatorDescription}), e.g. plans that a router ships, serialized,
+ * to the workers that execute them. The leaves of a plan are VIEW operators,
+ * which read the inputs supplied by the caller under the names the plan
+ * gives. Supported are VIEW, COMPUTE, FILTER, GROUP_AGGREGATE and
+ * SCALAR_AGGREGATE; other operators (e.g. joins) fail with
+ * ERROR_NOT_IMPLEMENTED.
+ * 
+ * Plans that are executed over and over are prepared once per shape: the
+ * serialized plan, with the names and schemas of the inputs. The builder
+ * keeps the prepared plans of the last capacity shapes used. A prepared plan
+ * is parsed, and keeps the compiled expression programs of its operators
+ * for reuse: a new cursor tree takes idle programs, and gives them back once
+ * it is done (i.e. reached the end of input or failed). Trees abandoned
+ * before that keep theirs, to be garbage collected.
+ * 
+ * Usage, on a worker:
+ * 
+ *   FailureOr<Cursor> plan = builder.build(serializedPlan,
+ *       ImmutableMap.of("t", scanOfT));
+ * 
+ * Thread-safe.
+ */
+public class PlanBuilder {
+
+  // Bounds the programs kept per operator, after a burst of executions.
+  private static final int MAX_IDLE_PROGRAMS = 16;
+
+  private final int capacity;
+  // In access order, i.e. least recently used first.
+  private final LinkedHashMap<PlanFingerprint, PreparedOperator> plans;
+  private long hitCount;
+  private long missCount;
+
+  /**
+   * Creates a builder that keeps the prepared plans of up to capacity
+   * shapes.
+   */
+  public PlanBuilder(final int capacity) {
+    Preconditions.checkArgument(capacity >= 0,
+        "Capacity must be >= 0: %s", capacity);
+    this.capacity = capacity;
+    this.plans = new LinkedHashMap<PlanFingerprint, PreparedOperator>(16,
+        0.75f, true);
+  }
+
+  /**
+   * Builds the cursor tree of the plan, reading the specified inputs.
+   */
+  public FailureOr<Cursor> build(final OperatorDescription plan,
+      final Map<String, ? extends Cursor> sources) {
+    return build(plan.toByteArray(), plan, sources);
+  }
+
+  /**
+   * Builds the cursor tree of a serialized OperatorDescription, reading the
+   * specified inputs. The plan is parsed only if its shape isn't cached.
+   */
+  public FailureOr<Cursor> build(final byte[] plan,
+      final Map<String, ? extends Cursor> sources) {
+    return build(plan, null, sources);
+  }
+
+  /**
+   * Returns the number of cached plan shapes.
+   */
+  public synchronized int size() {
+    return plans.size();
+  }
+
+  public synchronized long hitCount() {
+    return hitCount;
+  }
+
+  public synchronized long missCount() {
+    return missCount;
+  }
+
+  /**
+   * Drops all prepared plans.
+   */
+  public synchronized void invalidateAll() {
+    plans.clear();
+  }
+
+  /**
+   * Returns the number of idle programs kept by the prepared plans. For
+   * tests.
+   */
+  synchronized int idleProgramCount() {
+    int result = 0;
+    for (PreparedOperator plan : plans.values()) {
+      result += plan.idleProgramCount();
+    }
+    return result;
+  }
+
+  private FailureOr<Cursor> build(final byte[] serialized,
+      final OperatorDescription parsed,
+      final Map<String, ? extends Cursor> sources) {
+    final PlanFingerprint shape = shape(serialized, sources);
+    PreparedOperator prepared = lookup(shape);
+    final boolean miss = prepared == null;
+    if (miss) {
+      OperatorDescription plan = parsed;
+      if (plan == null) {
+        try {
+          plan = OperatorDescription.parseFrom(serialized);
+        } catch (InvalidProtocolBufferException e) {
+          return FailureOrs.failure(new SupersonicException(
+              ReturnCode.ERROR_BAD_PROTO, "Malformed plan: "
+                  + e.getMessage()));
+        }
+      }
+      final FailureOr<PreparedOperator> prepare = prepare(plan);
+      if (prepare.isFailure()) {
+        return FailureOrs.failure(prepare.exception());
+      }
+      prepared = prepare.get();
+    }
+    final Pipeline pipeline = new Pipeline();
+    final FailureOr<Cursor> root = instantiate(prepared, sources, pipeline);
+    if (root.isFailure()) {
+      pipeline.release();
+      return root;
+    }
+    // Only plans that instantiate are cached; failures are not.
+    if (miss) {
+      put(shape, prepared);
+    }
+    if (pipeline.isEmpty()) {
+      return root;
+    }
+    return FailureOrs.<Cursor>success(new PipelineCursor(root.get(),
+        pipeline));
+  }
+
+  private static PlanFingerprint shape(final byte[] plan,
+      final Map<String, ? extends Cursor> sources) {
+    final PlanFingerprint.Builder shape =
+        PlanFingerprint.builder().addParameter(plan);
+    final Map<String, ? extends Cursor> sorted = sources instanceof TreeMap
+        ? sources : new TreeMap<String, Cursor>(sources);
+    for (Map.Entry<String, ? extends Cursor> source : sorted.entrySet()) {
+      shape.addParameter(source.getKey());
+      shape.addSchema(source.getValue().schema());
+    }
+    return shape.build();
+  }
+
+  private synchronized PreparedOperator lookup(final PlanFingerprint shape) {
+    final PreparedOperator prepared = plans.get(shape);
+    if (prepared == null) {
+      ++missCount;
+    } else {
+      ++hitCount;
+    }
+    return prepared;
+  }
+
+  private synchronized void put(final PlanFingerprint shape,
+      final PreparedOperator prepared) {
+    if (capacity == 0 || plans.containsKey(shape)) {
+      return;
+    }
+    if (plans.size() == capacity) {
+      plans.remove(plans.keySet().iterator().next());
+    }
+    plans.put(shape, prepared);
+  }
+
+  /**
+   * Checks the structure of the plan, and converts it into prepared
+   * operators. Schemas are checked when the operators are instantiated.
+   */
+  private static FailureOr<PreparedOperator> prepare(
+      final OperatorDescription operator) {
+    final int childCount = operator.getId() == CursorId.VIEW ? 0 : 1;
+    switch (operator.getId()) {
+      case VIEW:
+        if (!operator.hasSource()) {
+          return badPlan("VIEW without a source");
+        }
+        break;
+      case COMPUTE:
+      case GROUP_AGGREGATE:
+      case SCALAR_AGGREGATE:
+        break;
+      case FILTER:
+        if (!operator.hasPredicate()) {
+          return badPlan("FILTER without a predicate");
+        }
+        break;
+      default:
+        return FailureOrs.failure(new SupersonicException(
+            ReturnCode.ERROR_NOT_IMPLEMENTED, "Can't build "
+                + operator.getId() + " cursors"));
+    }
+    if (operator.getChildCount() != childCount) {
+      return badPlan(operator.getId() + " must have " + childCount
+          + " children, has " + operator.getChildCount());
+    }
+    if (operator.getId() == CursorId.SCALAR_AGGREGATE
+        && operator.getGroupByCount() > 0) {
+      return badPlan("SCALAR_AGGREGATE with group-by attributes");
+    }
+    final PreparedOperator[] children = new PreparedOperator[childCount];
+    for (int i = 0; i < childCount; ++i) {
+      final FailureOr<PreparedOperator> child =
+          prepare(operator.getChild(i));
+      if (child.isFailure()) {
+        return child;
+      }
+      children[i] = child.get();
+    }
+    return FailureOrs.success(new PreparedOperator(operator, children));
+  }
+
+  private static FailureOr<Cursor> instantiate(
+      final PreparedOperator operator,
+      final Map<String, ? extends Cursor> sources, final Pipeline pipeline) {
+    if (operator.id == CursorId.VIEW) {
+      final Cursor source = sources.get(operator.source);
+      if (source == null) {
+        return FailureOrs.failure(new SupersonicException(
+            ReturnCode.ERROR_INVALID_ARGUMENT_VALUE, "No input named '"
+                + operator.source + "'"));
+      }
+      return FailureOrs.success(source);
+    }
+    final FailureOr<Cursor> child =
+        instantiate(operator.children[0], sources, pipeline);
+    if (child.isFailure()) {
+      return child;
+    }
+    switch (operator.id) {
+      case COMPUTE:
+      case FILTER: {
+        final FailureOr<ExpressionProgram> program =
+            operator.takeProgram(child.get());
+        if (program.isFailure()) {
+          return FailureOrs.failure(program.exception());
+        }
+        pipeline.add(operator, program.get());
+        if (operator.id == CursorId.COMPUTE) {
+          return upcast(ComputeCursor.create(child.get(), program.get(),
+              operator.names));
+        }
+        return upcast(FilterCursor.create(child.get(), program.get(),
+            operator.names));
+      }
+      default:
+        return upcast(AggregateCursor.create(child.get(), operator.groupBy,
+            operator.aggregations));
+    }
+  }
+
+  private static FailureOr<Cursor> upcast(
+      final FailureOr<? extends Cursor> cursor) {
+    if (cursor.isFailure()) {
+      return FailureOrs.failure(cursor.exception());
+    }
+    return FailureOrs.<Cursor>success(cursor.get());
+  }
+
+  private static <T> FailureOr<T> badPlan(final String message) {
+    return FailureOrs.failure(new SupersonicException(
+        ReturnCode.ERROR_BAD_PROTO, "Invalid plan: " + message));
+  }
+
+  /**
+   * An operator of a plan, with its parameters converted for instantiation,
+   * and the idle programs compiled for it. The programs of a cached plan are
+   * compiled for the same input schemas, as these are part of its shape.
+   */
+  private static final class PreparedOperator {
+    final CursorId id;
+    final PreparedOperator[] children;
+    final String source;
+    // COMPUTE and FILTER: the roots of the program (the predicate first).
+    final List<ExpressionDescription> roots;
+    final List<String> names;
+    final List<String> groupBy;
+    final AggregationSpecification aggregations;
+    private final ArrayDeque<ExpressionProgram> idle =
+        new ArrayDeque<ExpressionProgram>();
+
+    PreparedOperator(final OperatorDescription operator,
+        final PreparedOperator[] children) {
+      this.id = operator.getId();
+      this.children = children;
+      this.source = operator.getSource();
+      this.roots = new ArrayList<ExpressionDescription>(
+          operator.getOutputCount() + 1);
+      this.names = new ArrayList<String>(operator.getOutputCount());
+      if (operator.hasPredicate()) {
+        roots.add(operator.getPredicate());
+      }
+      for (NamedExpression output : operator.getOutputList()) {
+        roots.add(output.getExpression());
+        names.add(output.getName());
+      }
+      this.groupBy = operator.getGroupByList();
+      this.aggregations = new AggregationSpecification();
+      for (AggregationDescription aggregation
+          : operator.getAggregationList()) {
+        aggregations.addAggregation(aggregation.getAggregation(),
+            aggregation.hasInput() ? aggregation.getInput() : null,
+            aggregation.getOutput(), aggregation.hasParameter()
+                ? aggregation.getParameter() : Double.NaN);
+      }
+    }
+
+    /**
+     * Returns an idle program, or compiles a new one for the child.
+     */
+    FailureOr<ExpressionProgram> takeProgram(final Cursor child) {
+      synchronized (idle) {
+        final ExpressionProgram program = idle.poll();
+        if (program != null) {
+          return FailureOrs.success(program);
+        }
+      }
+      return ExpressionProgram.compile(child.schema(), roots);
+    }
+
+    void releaseProgram(final ExpressionProgram program) {
+      synchronized (idle) {
+        if (idle.size() < MAX_IDLE_PROGRAMS) {
+          idle.push(program);
+        }
+      }
+    }
+
+    // Of this operator and the ones below it.
+    int idleProgramCount() {
+      int result;
+      synchronized (idle) {
+        result = idle.size();
+      }
+      for (PreparedOperator child : children) {
+        result += child.idleProgramCount();
+      }
+      return result;
+    }
+  }
+
+  /**
+   * The programs taken by a cursor tree.
+   */
+  private static final class Pipeline {
+    private final List<PreparedOperator> operators =
+        new ArrayList<PreparedOperator>();
+    private final List<ExpressionProgram> programs =
+        new ArrayList<ExpressionProgram>();
+
+    void add(final PreparedOperator operator,
+        final ExpressionProgram program) {
+      operators.add(operator);
+      programs.add(program);
+    }
+
+    boolean isEmpty() {
+      return programs.isEmpty();
+    }
+
+    void release() {
+      for (int i = 0; i < programs.size(); ++i) {
+        operators.get(i).releaseProgram(programs.get(i));
+      }
+      operators.clear();
+      programs.clear();
+    }
+  }
+
+  /**
+   * The root of a built tree; gives the tree's programs back once done, and
+   * from then on returns the final result without calling the tree (whose
+   * programs may be in use by another one).
+   */
+  private static final class PipelineCursor extends DecoratorCursor {
+    private final Pipeline pipeline;
+    private ResultView done;
+
+    PipelineCursor(final Cursor root, final Pipeline pipeline) {
+      super(root);
+      this.pipeline = pipeline;
+    }
+
+    @Override
+    public ResultView next(final int maxRowCount) {
+      if (done != null) {
+        return done;
+      }
+      final ResultView result = super.next(maxRowCount);
+      if (result.isDone()) {
+        done = result;
+        pipeline.release();
+      }
+      return result;
+    }
+  }
+}
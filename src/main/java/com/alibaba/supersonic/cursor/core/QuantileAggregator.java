@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import java.util.Arrays;
+
+import com.alibaba.supersonic.base.exception.SupersonicException;
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.TypeInfo;
+import com.alibaba.supersonic.base.memory.Arena;
+import com.alibaba.supersonic.proto.CommonEnums.Aggregation;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrVoid;
+import com.alibaba.supersonic.utils.exception.FailureOrs;
+import com.alibaba.supersonic.utils.sketch.KllSketch;
+
+/**
+ * Estimates quantiles of the non-NULL values of the input with a
+ * {@link KllSketch} per group (of under 1% rank error), in one phase or two:
+ * <ul>
+ * <li>APPROX_QUANTILE of a number returns the estimate of the quantile given
+ * by the parameter, in [0, 1], as a DOUBLE; NULL if the group has only NULLs;
+ * <li>QUANTILE_SKETCH of a number returns the serialized sketch, as BINARY;
+ * <li>QUANTILE_MERGE of such sketches returns the serialized union, as BINARY;
+ * <li>QUANTILE_ESTIMATE of such sketches returns the estimate of the quantile
+ * of their union, as APPROX_QUANTILE.
+ * </ul>
+ * NaNs are ignored, like NULLs.
+ */
+final class QuantileAggregator extends SketchAggregator {
+
+  private final DataType inputType;
+  // Whether the input is serialized sketches, and the result an estimate
+  // (of the fraction).
+  private final boolean merging;
+  private final boolean estimating;
+  private final double fraction;
+  private KllSketch[] sketches = new KllSketch[16];
+  // When merging, the sketches of the rows of the batch, decoded by
+  // validate(); null for NULL rows.
+  private KllSketch[] decoded = new KllSketch[0];
+  private byte[] serialized;
+
+  private QuantileAggregator(final DataType inputType,
+      final boolean merging, final boolean estimating, final double fraction,
+      final Attribute resultAttribute) {
+    super(resultAttribute);
+    this.inputType = inputType;
+    this.merging = merging;
+    this.estimating = estimating;
+    this.fraction = fraction;
+  }
+
+  static FailureOr<Aggregator> create(final Aggregation aggregation,
+      final Attribute input, final String output, final double fraction) {
+    final boolean merging = aggregation == Aggregation.QUANTILE_MERGE
+        || aggregation == Aggregation.QUANTILE_ESTIMATE;
+    final boolean estimating = aggregation == Aggregation.APPROX_QUANTILE
+        || aggregation == Aggregation.QUANTILE_ESTIMATE;
+    if (merging ? input.getType() != DataType.BINARY
+        : !TypeInfo.getTypeInfo(input.getType()).isNumeric()) {
+      return invalidArgumentType(aggregation, input);
+    }
+    if (estimating) {
+      if (!(fraction >= 0 && fraction <= 1)) {
+        return FailureOrs.failure(new SupersonicException(
+            ReturnCode.ERROR_INVALID_ARGUMENT_VALUE, "The fraction of "
+                + aggregation + " must be in [0, 1], got " + fraction));
+      }
+      return FailureOrs.<Aggregator>success(new QuantileAggregator(
+          input.getType(), merging, true, fraction, new Attribute(output,
+              DataType.DOUBLE, Nullability.NULLABLE)));
+    }
+    return FailureOrs.<Aggregator>success(new QuantileAggregator(
+        input.getType(), merging, false, Double.NaN, new Attribute(output,
+            DataType.BINARY, Nullability.NOT_NULLABLE)));
+  }
+
+  @Override
+  FailureOrVoid validate(final Column input, final int rowCount) {
+    if (!merging) {
+      return FailureOrs.voidSuccess();
+    }
+    if (decoded.length < rowCount) {
+      decoded = new KllSketch[rowCount];
+    }
+    final long[] data = (long[]) input.data();
+    final int offset = input.offset();
+    final byte[] buffer = input.arena().buffer();
+    final boolean[] isNull = input.isNull();
+    final int isNullOffset = input.isNullOffset();
+    for (int i = 0; i < rowCount; ++i) {
+      decoded[i] = null;
+      if (isNull == null || !isNull[isNullOffset + i]) {
+        final long piece = data[offset + i];
+        final FailureOr<KllSketch> sketch = KllSketch.fromBytes(buffer,
+            Arena.pieceOffset(piece), Arena.pieceLength(piece));
+        if (sketch.isFailure()) {
+          Arrays.fill(decoded, 0, i, null);
+          return FailureOrs.voidFailure(sketch.exception());
+        }
+        decoded[i] = sketch.get();
+      }
+    }
+    return FailureOrs.voidSuccess();
+  }
+
+  @Override
+  void update(final Column input, final GroupTable groups,
+      final int rowCount) {
+    addGroups(groups.firstNewGroup(), groups.groupCount());
+    final int[] rowGroups = groups.rowGroups();
+    markChanged(input, rowGroups, rowCount);
+    final boolean[] isNull = input.isNull();
+    final int isNullOffset = input.isNullOffset();
+    final int offset = input.offset();
+    switch (inputType) {
+      case INT32: {
+        final int[] data = (int[]) input.data();
+        for (int i = 0; i < rowCount; ++i) {
+          if (isNull == null || !isNull[isNullOffset + i]) {
+            sketches[rowGroups[i]].add(data[offset + i]);
+          }
+        }
+        break;
+      }
+      case UINT32: {
+        final int[] data = (int[]) input.data();
+        for (int i = 0; i < rowCount; ++i) {
+          if (isNull == null || !isNull[isNullOffset + i]) {
+            sketches[rowGroups[i]].add(data[offset + i] & 0xFFFFFFFFL);
+          }
+        }
+        break;
+      }
+      case INT64: {
+        final long[] data = (long[]) input.data();
+        for (int i = 0; i < rowCount; ++i) {
+          if (isNull == null || !isNull[isNullOffset + i]) {
+            sketches[rowGroups[i]].add(data[offset + i]);
+          }
+        }
+        break;
+      }
+      case UINT64: {
+        final long[] data = (long[]) input.data();
+        for (int i = 0; i < rowCount; ++i) {
+          if (isNull == null || !isNull[isNullOffset + i]) {
+            sketches[rowGroups[i]].add(unsignedToDouble(data[offset + i]));
+          }
+        }
+        break;
+      }
+      case FLOAT: {
+        final float[] data = (float[]) input.data();
+        for (int i = 0; i < rowCount; ++i) {
+          if (isNull == null || !isNull[isNullOffset + i]) {
+            sketches[rowGroups[i]].add(data[offset + i]);
+          }
+        }
+        break;
+      }
+      case DOUBLE: {
+        final double[] data = (double[]) input.data();
+        for (int i = 0; i < rowCount; ++i) {
+          if (isNull == null || !isNull[isNullOffset + i]) {
+            sketches[rowGroups[i]].add(data[offset + i]);
+          }
+        }
+        break;
+      }
+      case BINARY:
+        for (int i = 0; i < rowCount; ++i) {
+          if (decoded[i] != null) {
+            sketches[rowGroups[i]].merge(decoded[i]);
+            decoded[i] = null;
+          }
+        }
+        break;
+      default:
+        throw new IllegalStateException("Unsupported type: " + inputType);
+    }
+  }
+
+  private static double unsignedToDouble(final long value) {
+    if (value >= 0) {
+      return value;
+    }
+    // Halve (keeping the low bit, for correct rounding), convert, double.
+    return ((value >>> 1) | (value & 1)) * 2.0;
+  }
+
+  @Override
+  void growSketches(final int groupCount) {
+    if (groupCount > sketches.length) {
+      sketches = Arrays.copyOf(sketches, Math.max(groupCount,
+          sketches.length * 2));
+    }
+  }
+
+  @Override
+  void createSketch(final int group) {
+    sketches[group] = new KllSketch();
+  }
+
+  @Override
+  void updateResult(final int group) {
+    final KllSketch sketch = sketches[group];
+    if (estimating) {
+      final GroupValues.Doubles doubles = (GroupValues.Doubles) results;
+      doubles.isNull[group] = sketch.count() == 0;
+      doubles.data[group] = sketch.quantile(fraction);
+      return;
+    }
+    final int size = sketch.serializedSize();
+    if (serialized == null || serialized.length < size) {
+      serialized = new byte[size];
+    }
+    sketch.serialize(serialized, 0);
+    ((GroupValues.Pieces) results).setBytes(group, serialized, 0, size);
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.CursorsProto.CursorId;
+import com.alibaba.supersonic.cursor.base.ResultView;
+import com.alibaba.supersonic.cursor.infrastructure.BasicCursor;
+import com.google.common.base.Preconditions;
+
+/**
+ * A cursor that returns the same block over and over, until the requested
+ * number of rows has been returned. The returned views are sub-ranges of the
+ * block, so no data is copied or generated; useful for driving pipelines at
+ * memory speed in load tests and benchmarks.
+ * 
+ * The block must not be modified while the cursor is in use.
+ */
+public class RepeatingBlockCursor extends BasicCursor {
+
+  private final View block;
+  private final View result;
+  private final ResultView success;
+  private long remainingRows;
+  private int position;
+
+  /**
+   * Creates a cursor that returns rowCount rows, cycling through the block.
+   * The block must have at least one row.
+   */
+  public RepeatingBlockCursor(final View block, final long rowCount) {
+    super(block.schema());
+    Preconditions.checkArgument(block.rowCount() > 0,
+        "Can't repeat an empty block");
+    Preconditions.checkArgument(rowCount >= 0,
+        "Row count must be >= 0: %s", rowCount);
+    this.block = block;
+    this.result = new View(block.schema());
+    this.success = ResultView.reusableSuccess(result);
+    this.remainingRows = rowCount;
+    this.position = 0;
+  }
+
+  @Override
+  public ResultView next(final int maxRowCount) {
+    Preconditions.checkArgument(maxRowCount > 0,
+        "Max row count must be positive: %s", maxRowCount);
+    if (isInterrupted()) {
+      return interruptedResult();
+    }
+    if (remainingRows == 0) {
+      return ResultView.eos();
+    }
+    int rowCount = Math.min(maxRowCount, block.rowCount() - position);
+    if (rowCount > remainingRows) {
+      rowCount = (int) remainingRows;
+    }
+    result.resetFromSubRange(block, position, rowCount);
+    position += rowCount;
+    if (position == block.rowCount()) {
+      position = 0;
+    }
+    remainingRows -= rowCount;
+    return success;
+  }
+
+  @Override
+  public CursorId getCursorId() {
+    return CursorId.REPEATING_BLOCK;
+  }
+
+  @Override
+  public void appendDebugDescription(final StringBuilder target) {
+    target.append("RepeatingBlock(").append(block.rowCount())
+        .append(" rows, ").append(remainingRows).append(" remaining)");
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import java.util.Arrays;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Column;
+
+/**
+ * An aggregation whose state per group is a sketch, rather than its result.
+ * Reading a result off a sketch (an estimate, or its serialized bytes) costs
+ * far more than updating it with a row, so results are kept in
+ * {@link GroupValues}, and recomputed by resetColumn() for only the groups
+ * whose sketch changed since the last call.
+ */
+abstract class SketchAggregator extends Aggregator {
+
+  protected final GroupValues results;
+  // The groups whose result is out of date; changed[group] iff listed.
+  private boolean[] changed = new boolean[16];
+  private int[] changedGroups = new int[16];
+  private int changedCount;
+
+  protected SketchAggregator(final Attribute resultAttribute) {
+    super(resultAttribute);
+    this.results = GroupValues.create(resultAttribute);
+  }
+
+  /**
+   * Makes room for the groups [0, groupCount), and creates the sketches of
+   * the new ones, from firstNewGroup on.
+   */
+  protected final void addGroups(final int firstNewGroup,
+      final int groupCount) {
+    results.ensureCapacity(groupCount);
+    if (groupCount > changed.length) {
+      changed = Arrays.copyOf(changed, Math.max(groupCount,
+          changed.length * 2));
+    }
+    growSketches(groupCount);
+    for (int group = firstNewGroup; group < groupCount; ++group) {
+      createSketch(group);
+      markChanged(group);
+    }
+  }
+
+  /**
+   * Records that the group's sketch was updated.
+   */
+  protected final void markChanged(final int group) {
+    if (!changed[group]) {
+      changed[group] = true;
+      if (changedCount == changedGroups.length) {
+        changedGroups = Arrays.copyOf(changedGroups, changedCount * 2);
+      }
+      changedGroups[changedCount++] = group;
+    }
+  }
+
+  /**
+   * Records that the sketches of the rows' groups were updated; rows that
+   * are NULL in the column don't count.
+   */
+  protected final void markChanged(final Column input, final int[] rowGroups,
+      final int rowCount) {
+    final boolean[] isNull = input.isNull();
+    final int offset = input.isNullOffset();
+    for (int i = 0; i < rowCount; ++i) {
+      if (isNull == null || !isNull[offset + i]) {
+        markChanged(rowGroups[i]);
+      }
+    }
+  }
+
+  @Override
+  final void resetColumn(final Column target) {
+    for (int i = 0; i < changedCount; ++i) {
+      final int group = changedGroups[i];
+      updateResult(group);
+      changed[group] = false;
+    }
+    changedCount = 0;
+    results.resetColumn(target);
+  }
+
+  /**
+   * Makes room for the sketches of groups [0, groupCount).
+   */
+  abstract void growSketches(int groupCount);
+
+  abstract void createSketch(int group);
+
+  /**
+   * Sets the result of the group, in results, from its sketch.
+   */
+  abstract void updateResult(int group);
+}
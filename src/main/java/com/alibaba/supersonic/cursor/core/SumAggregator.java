@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import java.util.Arrays;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.expression.core.NumericKernels;
+import com.alibaba.supersonic.expression.core.NumericKernelsLoader;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+
+/**
+ * SUM of the non-NULL values of the input. Integers are summed as INT64
+ * (UINT64 for the unsigned ones), with wrap-around on overflow; floating
+ * point numbers as DOUBLE. The sum of a group with only NULLs is NULL.
+ */
+final class SumAggregator extends Aggregator {
+
+  private static final NumericKernels NUMERIC = NumericKernelsLoader.kernels();
+
+  private final DataType inputType;
+  private final boolean floatingPoint;
+  private long[] longSums;
+  private double[] doubleSums;
+  // Null if the input is not nullable; otherwise true for the groups with
+  // only NULLs so far.
+  private boolean[] isNull;
+  private int capacity;
+
+  SumAggregator(final DataType inputType, final Attribute resultAttribute) {
+    super(resultAttribute);
+    this.inputType = inputType;
+    this.floatingPoint = resultAttribute.getType() == DataType.DOUBLE;
+    this.capacity = 16;
+    if (floatingPoint) {
+      doubleSums = new double[capacity];
+    } else {
+      longSums = new long[capacity];
+    }
+    this.isNull = resultAttribute.isNullable() ? new boolean[capacity] : null;
+  }
+
+  /**
+   * Returns the type of the sums of a numeric type.
+   */
+  static DataType resultType(final DataType inputType) {
+    switch (inputType) {
+      case UINT32:
+      case UINT64:
+        return DataType.UINT64;
+      case FLOAT:
+      case DOUBLE:
+        return DataType.DOUBLE;
+      default:
+        return DataType.INT64;
+    }
+  }
+
+  @Override
+  void update(final Column input, final GroupTable groups,
+      final int rowCount) {
+    initialize(groups.firstNewGroup(), groups.groupCount());
+    if (groups.keyCount() == 0 && inputType != DataType.UINT32) {
+      sum(input, rowCount);
+    } else {
+      sum(input, groups.rowGroups(), rowCount);
+    }
+    if (isNull != null) {
+      clearNulls(input, groups.rowGroups(), rowCount);
+    }
+  }
+
+  @Override
+  void resetColumn(final Column target) {
+    target.reset(floatingPoint ? doubleSums : longSums, isNull);
+  }
+
+  private void initialize(final int firstNewGroup, final int groupCount) {
+    if (groupCount > capacity) {
+      capacity = Math.max(groupCount, capacity * 2);
+      if (floatingPoint) {
+        doubleSums = Arrays.copyOf(doubleSums, capacity);
+      } else {
+        longSums = Arrays.copyOf(longSums, capacity);
+      }
+      if (isNull != null) {
+        isNull = Arrays.copyOf(isNull, capacity);
+      }
+    }
+    if (floatingPoint) {
+      Arrays.fill(doubleSums, firstNewGroup, groupCount, 0.0);
+    } else {
+      Arrays.fill(longSums, firstNewGroup, groupCount, 0L);
+    }
+    if (isNull != null) {
+      Arrays.fill(isNull, firstNewGroup, groupCount, true);
+    }
+  }
+
+  // All rows in group 0, with the sum kernels.
+  private void sum(final Column input, final int rowCount) {
+    final int offset = input.offset();
+    final boolean[] inputIsNull = input.isNull();
+    final int isNullOffset = input.isNullOffset();
+    switch (inputType) {
+      case INT32:
+        longSums[0] = NUMERIC.sum((int[]) input.data(), offset, inputIsNull,
+            isNullOffset, rowCount, longSums[0]);
+        break;
+      case INT64:
+      case UINT64:
+        longSums[0] = NUMERIC.sum((long[]) input.data(), offset, inputIsNull,
+            isNullOffset, rowCount, longSums[0]);
+        break;
+      case FLOAT:
+        doubleSums[0] = NUMERIC.sum((float[]) input.data(), offset,
+            inputIsNull, isNullOffset, rowCount, doubleSums[0]);
+        break;
+      case DOUBLE:
+        doubleSums[0] = NUMERIC.sum((double[]) input.data(), offset,
+            inputIsNull, isNullOffset, rowCount, doubleSums[0]);
+        break;
+      default:
+        throw new IllegalStateException("Unsupported type: " + inputType);
+    }
+  }
+
+  private void sum(final Column input, final int[] groups,
+      final int rowCount) {
+    final int offset = input.offset();
+    final boolean[] inputIsNull = input.isNull();
+    final int isNullOffset = input.isNullOffset();
+    // The values of NULL rows may be anything, e.g. a NaN; skipped.
+    switch (inputType) {
+      case INT32: {
+        final int[] values = (int[]) input.data();
+        for (int i = 0; i < rowCount; ++i) {
+          if (inputIsNull == null || !inputIsNull[isNullOffset + i]) {
+            longSums[groups[i]] += values[offset + i];
+          }
+        }
+        break;
+      }
+      case UINT32: {
+        final int[] values = (int[]) input.data();
+        for (int i = 0; i < rowCount; ++i) {
+          if (inputIsNull == null || !inputIsNull[isNullOffset + i]) {
+            longSums[groups[i]] += values[offset + i] & 0xFFFFFFFFL;
+          }
+        }
+        break;
+      }
+      case INT64:
+      case UINT64: {
+        final long[] values = (long[]) input.data();
+        for (int i = 0; i < rowCount; ++i) {
+          if (inputIsNull == null || !inputIsNull[isNullOffset + i]) {
+            longSums[groups[i]] += values[offset + i];
+          }
+        }
+        break;
+      }
+      case FLOAT: {
+        final float[] values = (float[]) input.data();
+        for (int i = 0; i < rowCount; ++i) {
+          if (inputIsNull == null || !inputIsNull[isNullOffset + i]) {
+            doubleSums[groups[i]] += values[offset + i];
+          }
+        }
+        break;
+      }
+      case DOUBLE: {
+        final double[] values = (double[]) input.data();
+        for (int i = 0; i < rowCount; ++i) {
+          if (inputIsNull == null || !inputIsNull[isNullOffset + i]) {
+            doubleSums[groups[i]] += values[offset + i];
+          }
+        }
+        break;
+      }
+      default:
+        throw new IllegalStateException("Unsupported type: " + inputType);
+    }
+  }
+
+  // Marks the groups that got a non-NULL value as not NULL.
+  private void clearNulls(final Column input, final int[] groups,
+      final int rowCount) {
+    final boolean[] inputIsNull = input.isNull();
+    final int isNullOffset = input.isNullOffset();
+    for (int i = 0; i < rowCount; ++i) {
+      if (inputIsNull == null || !inputIsNull[isNullOffset + i]) {
+        isNull[groups[i]] = false;
+      }
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.infrastructure;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alibaba.supersonic.base.exception.SupersonicException;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.common.proto.CursorsProto.CursorId;
+import com.alibaba.supersonic.cursor.base.Cursor;
+import com.alibaba.supersonic.cursor.base.CursorTransformer;
+import com.alibaba.supersonic.cursor.base.ResultView;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.google.common.base.Preconditions;
+
+/**
+ * A convenience base class for cursors. Holds the schema and the (optional)
+ * children, and implements the tree-wide operations by delegating to them.
+ */
+public abstract class BasicCursor implements Cursor {
+
+  private final TupleSchema schema;
+  private final List<Cursor> children;
+  private volatile boolean interrupted;
+
+  /**
+   * Creates a leaf cursor (one without children).
+   */
+  protected BasicCursor(final TupleSchema schema) {
+    this.schema = schema;
+    this.children = new ArrayList<Cursor>(0);
+  }
+
+  /**
+   * Creates a cursor with the specified children.
+   */
+  protected BasicCursor(final TupleSchema schema, final Cursor... children) {
+    this.schema = schema;
+    this.children = new ArrayList<Cursor>(children.length);
+    for (Cursor child : children) {
+      this.children.add(Preconditions.checkNotNull(child));
+    }
+  }
+
+  @Override
+  public TupleSchema schema() {
+    return schema;
+  }
+
+  /**
+   * Marks this cursor as interrupted, and interrupts the children.
+   */
+  @Override
+  public void interrupt() {
+    interrupted = true;
+    for (Cursor child : children) {
+      child.interrupt();
+    }
+  }
+
+  @Override
+  public void applyToChildren(final CursorTransformer transformer) {
+    for (int i = 0; i < children.size(); ++i) {
+      children.set(i, transformer.transform(children.get(i)));
+    }
+  }
+
+  @Override
+  public void appendDebugDescription(final StringBuilder target) {
+    target.append(getCursorId().name());
+    if (!children.isEmpty()) {
+      target.append('(');
+      for (int i = 0; i < children.size(); ++i) {
+        if (i > 0) target.append(", ");
+        children.get(i).appendDebugDescription(target);
+      }
+      target.append(')');
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    appendDebugDescription(result);
+    return result.toString();
+  }
+
+  /**
+   * Returns true if interrupt() has been called. Subclasses must check it at
+   * the beginning of next(), and periodically in loops that can run for a
+   * long time (e.g. when consuming the whole input), and return
+   * interruptedResult() if set. A volatile read; cheap enough to check once
+   * per block.
+   */
+  protected boolean isInterrupted() {
+    return interrupted;
+  }
+
+  /**
+   * Returns the failure to propagate after an interruption.
+   */
+  protected ResultView interruptedResult() {
+    return ResultView.failure(new SupersonicException(ReturnCode.INTERRUPTED,
+        getCursorId().name() + " interrupted"));
+  }
+
+  /**
+   * Returns the number of children.
+   */
+  protected int childCount() {
+    return children.size();
+  }
+
+  /**
+   * Returns the child at the specified position.
+   */
+  protected Cursor child(final int position) {
+    Preconditions.checkElementIndex(position, children.size());
+    return children.get(position);
+  }
+
+  /**
+   * Returns the cursor id. Subclasses must override; UNKNOWN_ID by default.
+   */
+  @Override
+  public CursorId getCursorId() {
+    return CursorId.UNKNOWN_ID;
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.infrastructure;
+
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.CursorsProto.CursorId;
+import com.alibaba.supersonic.cursor.base.ResultView;
+import com.alibaba.supersonic.cursor.infrastructure.ResultCache.CachedResult;
+import com.google.common.base.Preconditions;
+
+/**
+ * Replays a result cached by a {@link ResultCache}, returning sub-ranges of
+ * the cached views. Copies nothing.
+ */
+class CachedResultCursor extends BasicCursor {
+
+  private final CachedResult cached;
+  private final View result;
+  private final ResultView success;
+  private int viewIndex;
+  private int position;
+
+  CachedResultCursor(final CachedResult cached) {
+    super(cached.schema());
+    this.cached = cached;
+    this.result = new View(cached.schema());
+    this.success = ResultView.reusableSuccess(result);
+    this.viewIndex = 0;
+    this.position = 0;
+  }
+
+  @Override
+  public ResultView next(final int maxRowCount) {
+    Preconditions.checkArgument(maxRowCount > 0,
+        "Max row count must be positive: %s", maxRowCount);
+    if (isInterrupted()) {
+      return interruptedResult();
+    }
+    if (viewIndex == cached.viewCount()) {
+      return ResultView.eos();
+    }
+    final View view = cached.view(viewIndex);
+    final int rowCount = Math.min(maxRowCount, view.rowCount() - position);
+    result.resetFromSubRange(view, position, rowCount);
+    position += rowCount;
+    if (position == view.rowCount()) {
+      ++viewIndex;
+      position = 0;
+    }
+    return success;
+  }
+
+  @Override
+  public CursorId getCursorId() {
+    return CursorId.VIEW;
+  }
+}
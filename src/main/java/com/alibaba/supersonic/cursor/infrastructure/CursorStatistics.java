@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.infrastructure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.common.proto.CursorsProto.CursorId;
+
+/**
+ * Per-operator counters collected by a {@link ReadStatisticsCursor}. The
+ * statistics of a profiled cursor tree form a tree themselves, mirroring the
+ * shape of the cursor tree; see {@link QueryProfiler}.
+ * 
+ * Times and allocations are inclusive, i.e. they include what was spent in
+ * the children while the operator was pulling from them. The 'self' getters
+ * subtract the children's share, so the operator with the highest self time
+ * is the hot one.
+ * 
+ * Not thread-safe; the counters are updated by the thread that drives the
+ * cursor, and may be read concurrently (e.g. via JMX) with no guarantee of a
+ * consistent snapshot.
+ */
+public class CursorStatistics implements CursorStatisticsMXBean {
+
+  private final CursorId cursorId;
+  private final String description;
+  private final int rowWidth;
+  private final List<CursorStatistics> children =
+      new ArrayList<CursorStatistics>();
+
+  private volatile long nextCalls;
+  private volatile long blocksOut;
+  private volatile long rowsOut;
+  private volatile long wallTimeNanos;
+  private volatile long cpuTimeNanos;
+  private volatile long allocatedBytes;
+
+  CursorStatistics(final CursorId cursorId, final String description,
+      final TupleSchema schema) {
+    this.cursorId = cursorId;
+    this.description = description;
+    this.rowWidth = schema.fixedWidthRowSize();
+  }
+
+  /**
+   * Records a single call to next() that returned rowCount rows (0 if no
+   * data was returned) and took the specified time and allocations.
+   */
+  void record(final int rowCount, final long wallNanos, final long cpuNanos,
+      final long allocated) {
+    nextCalls++;
+    if (rowCount > 0) {
+      blocksOut++;
+      rowsOut += rowCount;
+    }
+    wallTimeNanos += wallNanos;
+    cpuTimeNanos += cpuNanos;
+    allocatedBytes += allocated;
+  }
+
+  void addChild(final CursorStatistics child) {
+    children.add(child);
+  }
+
+  /**
+   * Returns the statistics of the operator's inputs.
+   */
+  public List<CursorStatistics> children() {
+    return Collections.unmodifiableList(children);
+  }
+
+  @Override
+  public String getCursorId() {
+    return cursorId.name();
+  }
+
+  @Override
+  public String getDescription() {
+    return description;
+  }
+
+  @Override
+  public long getNextCalls() {
+    return nextCalls;
+  }
+
+  @Override
+  public long getBlocksOut() {
+    return blocksOut;
+  }
+
+  @Override
+  public long getRowsOut() {
+    return rowsOut;
+  }
+
+  /**
+   * Returns the total number of rows produced by the children.
+   */
+  @Override
+  public long getRowsIn() {
+    long result = 0;
+    for (CursorStatistics child : children) {
+      result += child.getRowsOut();
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of bytes produced, estimated from the fixed-width
+   * sizes of the schema's types.
+   */
+  @Override
+  public long getBytesOut() {
+    return rowsOut * rowWidth;
+  }
+
+  @Override
+  public long getWallTimeNanos() {
+    return wallTimeNanos;
+  }
+
+  @Override
+  public long getSelfWallTimeNanos() {
+    long result = wallTimeNanos;
+    for (CursorStatistics child : children) {
+      result -= child.getWallTimeNanos();
+    }
+    return Math.max(result, 0);
+  }
+
+  @Override
+  public long getCpuTimeNanos() {
+    return cpuTimeNanos;
+  }
+
+  @Override
+  public long getSelfCpuTimeNanos() {
+    long result = cpuTimeNanos;
+    for (CursorStatistics child : children) {
+      result -= child.getCpuTimeNanos();
+    }
+    return Math.max(result, 0);
+  }
+
+  @Override
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  @Override
+  public long getSelfAllocatedBytes() {
+    long result = allocatedBytes;
+    for (CursorStatistics child : children) {
+      result -= child.getAllocatedBytes();
+    }
+    return Math.max(result, 0);
+  }
+
+  /**
+   * Returns the node in this subtree with the highest self wall time.
+   */
+  public CursorStatistics hottest() {
+    CursorStatistics result = this;
+    for (CursorStatistics child : children) {
+      CursorStatistics candidate = child.hottest();
+      if (candidate.getSelfWallTimeNanos() > result.getSelfWallTimeNanos()) {
+        result = candidate;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Appends a human-readable rendering of this subtree, one operator per
+   * line, children indented below their parent.
+   */
+  public void appendProfile(final StringBuilder target) {
+    appendProfile(target, 0);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    appendProfile(result);
+    return result.toString();
+  }
+
+  private void appendProfile(final StringBuilder target, final int depth) {
+    for (int i = 0; i < depth; ++i) target.append("  ");
+    target.append(cursorId.name())
+        .append(": rows in=").append(getRowsIn())
+        .append(", rows out=").append(rowsOut)
+        .append(", blocks=").append(blocksOut)
+        .append(", bytes=").append(getBytesOut())
+        .append(", wall=").append(wallTimeNanos / 1000).append("us")
+        .append(" (self ").append(getSelfWallTimeNanos() / 1000).append("us)")
+        .append(", cpu=").append(cpuTimeNanos / 1000).append("us")
+        .append(" (self ").append(getSelfCpuTimeNanos() / 1000).append("us)")
+        .append(", allocated=").append(allocatedBytes)
+        .append(" (self ").append(getSelfAllocatedBytes()).append(")")
+        .append('\n');
+    for (CursorStatistics child : children) {
+      child.appendProfile(target, depth + 1);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.infrastructure;
+
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.common.proto.CursorsProto.CursorId;
+import com.alibaba.supersonic.cursor.base.Cursor;
+import com.alibaba.supersonic.cursor.base.CursorTransformer;
+import com.alibaba.supersonic.cursor.base.ResultView;
+import com.google.common.base.Preconditions;
+
+/**
+ * A cursor that forwards all calls to a delegate. Subclasses override the
+ * methods whose behavior they want to augment, e.g. to collect statistics
+ * about the data passing through.
+ * 
+ * The decorator is transparent to tree-wide operations: applyToChildren
+ * reaches the children of the delegate, not the delegate itself.
+ */
+public class DecoratorCursor implements Cursor {
+
+  private final Cursor delegate;
+
+  public DecoratorCursor(final Cursor delegate) {
+    this.delegate = Preconditions.checkNotNull(delegate);
+  }
+
+  /**
+   * Returns the decorated cursor.
+   */
+  public final Cursor delegate() {
+    return delegate;
+  }
+
+  @Override
+  public TupleSchema schema() {
+    return delegate.schema();
+  }
+
+  @Override
+  public ResultView next(final int maxRowCount) {
+    return delegate.next(maxRowCount);
+  }
+
+  @Override
+  public void interrupt() {
+    delegate.interrupt();
+  }
+
+  @Override
+  public void applyToChildren(final CursorTransformer transformer) {
+    delegate.applyToChildren(transformer);
+  }
+
+  @Override
+  public CursorId getCursorId() {
+    return CursorId.DECORATOR;
+  }
+
+  @Override
+  public void appendDebugDescription(final StringBuilder target) {
+    delegate.appendDebugDescription(target);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    appendDebugDescription(result);
+    return result.toString();
+  }
+}
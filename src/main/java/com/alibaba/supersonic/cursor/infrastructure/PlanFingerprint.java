@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.infrastructure;
+
+import java.nio.charset.Charset;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.common.proto.CursorsProto.CursorId;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.ExpressionDescription;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * A 128-bit hash that identifies the result of a query plan, for use as a
+ * {@link ResultCache} key. Computed over a canonical description of the
+ * plan: the operator tree in pre-order (each operator with its number of
+ * children), the operators' parameters and expressions, and the versions of
+ * the input sources. Two plans get the same fingerprint iff they are
+ * described by the same sequence of calls; each call is tagged and length
+ * prefixed, so that different sequences don't collide by concatenation.
+ * 
+ * Usage, for FILTER(GENERATE) reading table t at version 42:
+ * 
+ *   PlanFingerprint key = PlanFingerprint.builder()
+ *       .addOperator(CursorId.FILTER, 1).addExpression(predicate)
+ *       .addOperator(CursorId.GENERATE, 0).addSchema(schema)
+ *       .addSource("t", 42)
+ *       .build();
+ * 
+ * Immutable.
+ */
+public final class PlanFingerprint {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final int OPERATOR = 1;
+  private static final int EXPRESSION = 2;
+  private static final int SCHEMA = 3;
+  private static final int LONG_PARAMETER = 4;
+  private static final int STRING_PARAMETER = 5;
+  private static final int SOURCE = 6;
+  private static final int BYTES_PARAMETER = 7;
+
+  private final HashCode hash;
+
+  private PlanFingerprint(final HashCode hash) {
+    this.hash = hash;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Accumulates the description of a plan. Not thread-safe.
+   */
+  public static final class Builder {
+    private final Hasher hasher = Hashing.murmur3_128().newHasher();
+
+    private Builder() {
+    }
+
+    /**
+     * Adds an operator; its parameters, and then its children (in order)
+     * follow.
+     */
+    public Builder addOperator(final CursorId id, final int childCount) {
+      hasher.putInt(OPERATOR).putInt(id.getNumber()).putInt(childCount);
+      return this;
+    }
+
+    /**
+     * Adds an expression parameter. Expressions are compared by their
+     * serialized form, which is canonical for a given message.
+     */
+    public Builder addExpression(final ExpressionDescription expression) {
+      putBytes(EXPRESSION, expression.toByteArray());
+      return this;
+    }
+
+    public Builder addSchema(final TupleSchema schema) {
+      hasher.putInt(SCHEMA).putInt(schema.attributeCount());
+      for (int i = 0; i < schema.attributeCount(); ++i) {
+        final Attribute attribute = schema.getAttributeAt(i);
+        putString(attribute.getName());
+        hasher.putInt(attribute.getType().getNumber());
+        hasher.putInt(attribute.getNullability().getNumber());
+      }
+      return this;
+    }
+
+    public Builder addParameter(final long value) {
+      hasher.putInt(LONG_PARAMETER).putLong(value);
+      return this;
+    }
+
+    public Builder addParameter(final String value) {
+      hasher.putInt(STRING_PARAMETER);
+      putString(value);
+      return this;
+    }
+
+    /**
+     * Adds an opaque parameter, e.g. a serialized plan.
+     */
+    public Builder addParameter(final byte[] value) {
+      putBytes(BYTES_PARAMETER, value);
+      return this;
+    }
+
+    /**
+     * Adds an input source, with the version of its contents. The version
+     * must change whenever the contents do, so that cached results of plans
+     * reading the source aren't served after an update.
+     */
+    public Builder addSource(final String name, final long version) {
+      hasher.putInt(SOURCE);
+      putString(name);
+      hasher.putLong(version);
+      return this;
+    }
+
+    public PlanFingerprint build() {
+      return new PlanFingerprint(hasher.hash());
+    }
+
+    private void putString(final String value) {
+      final byte[] bytes = value.getBytes(UTF_8);
+      hasher.putInt(bytes.length).putBytes(bytes);
+    }
+
+    private void putBytes(final int tag, final byte[] bytes) {
+      hasher.putInt(tag).putInt(bytes.length).putBytes(bytes);
+    }
+  }
+
+  @Override
+  public boolean equals(final Object other) {
+    return other instanceof PlanFingerprint
+        && hash.equals(((PlanFingerprint) other).hash);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return hash.toString();
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.infrastructure;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.alibaba.supersonic.base.exception.SupersonicException;
+import com.alibaba.supersonic.cursor.base.Cursor;
+import com.alibaba.supersonic.cursor.base.CursorTransformer;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrVoid;
+import com.alibaba.supersonic.utils.exception.FailureOrs;
+
+/**
+ * Instruments a whole cursor tree with {@link ReadStatisticsCursor}s, so that
+ * each operator's statistics can be inspected after (or during) the query.
+ * 
+ * Usage:
+ * 
+ *   ReadStatisticsCursor profiled = new QueryProfiler().instrument(root);
+ *   ... drain profiled ...
+ *   LOG.info(profiled.statistics());                  // the profile tree.
+ *   CursorStatistics hot = profiled.statistics().hottest();
+ * 
+ * The profile tree can also be exported via JMX; see registerMBeans().
+ */
+public class QueryProfiler implements CursorTransformer {
+
+  static final String JMX_DOMAIN = "com.alibaba.supersonic";
+
+  private final boolean measureCpuTime;
+  private final boolean measureAllocations;
+  private final Deque<CursorStatistics> parents =
+      new ArrayDeque<CursorStatistics>();
+
+  /**
+   * Creates a profiler that measures everything the JVM supports.
+   */
+  public QueryProfiler() {
+    this(true, true);
+  }
+
+  public QueryProfiler(final boolean measureCpuTime,
+      final boolean measureAllocations) {
+    this.measureCpuTime = measureCpuTime;
+    this.measureAllocations = measureAllocations;
+  }
+
+  /**
+   * Decorates every cursor in the tree rooted at root. Returns the new root,
+   * whose statistics are the root of the profile tree.
+   */
+  public ReadStatisticsCursor instrument(final Cursor root) {
+    return (ReadStatisticsCursor) transform(root);
+  }
+
+  /**
+   * Decorates the cursor and, recursively, its children.
+   */
+  @Override
+  public Cursor transform(final Cursor cursor) {
+    ReadStatisticsCursor decorated = new ReadStatisticsCursor(cursor,
+        measureCpuTime, measureAllocations);
+    if (!parents.isEmpty()) {
+      parents.peek().addChild(decorated.statistics());
+    }
+    parents.push(decorated.statistics());
+    try {
+      cursor.applyToChildren(this);
+    } finally {
+      parents.pop();
+    }
+    return decorated;
+  }
+
+  /**
+   * Registers each node of the profile tree as an MXBean, under
+   * com.alibaba.supersonic:type=CursorStatistics,query=...,path=..., where
+   * the path lists child positions from the root, e.g. "0.1". Returns the
+   * registered names, to be passed to unregisterMBeans() when the query is
+   * done.
+   */
+  public static FailureOr<List<ObjectName>> registerMBeans(
+      final MBeanServer server, final String queryName,
+      final CursorStatistics root) {
+    List<ObjectName> names = new ArrayList<ObjectName>();
+    try {
+      register(server, queryName, root, "0", names);
+    } catch (JMException e) {
+      unregisterMBeans(server, names);
+      return FailureOrs.failure(new SupersonicException(
+          ReturnCode.ERROR_UNKNOWN_ERROR,
+          "Can't register query profile '" + queryName + "': "
+              + e.getMessage()));
+    }
+    return FailureOrs.success(names);
+  }
+
+  /**
+   * Unregisters MXBeans registered by registerMBeans().
+   */
+  public static FailureOrVoid unregisterMBeans(final MBeanServer server,
+      final List<ObjectName> names) {
+    SupersonicException first = null;
+    for (ObjectName name : names) {
+      try {
+        server.unregisterMBean(name);
+      } catch (JMException e) {
+        if (first == null) {
+          first = new SupersonicException(ReturnCode.ERROR_UNKNOWN_ERROR,
+              "Can't unregister " + name + ": " + e.getMessage());
+        }
+      }
+    }
+    return first == null ? FailureOrs.voidSuccess()
+        : FailureOrs.voidFailure(first);
+  }
+
+  private static void register(final MBeanServer server,
+      final String queryName, final CursorStatistics node, final String path,
+      final List<ObjectName> names) throws JMException {
+    ObjectName name = new ObjectName(JMX_DOMAIN
+        + ":type=CursorStatistics,query=" + ObjectName.quote(queryName)
+        + ",path=" + path + ",cursor=" + node.getCursorId());
+    server.registerMBean(node, name);
+    names.add(name);
+    for (int i = 0; i < node.children().size(); ++i) {
+      register(server, queryName, node.children().get(i), path + "." + i,
+          names);
+    }
+  }
+}
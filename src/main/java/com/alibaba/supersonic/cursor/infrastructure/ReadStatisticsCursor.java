@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.infrastructure;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import com.alibaba.supersonic.common.proto.CursorsProto.CursorId;
+import com.alibaba.supersonic.cursor.base.Cursor;
+import com.alibaba.supersonic.cursor.base.ResultView;
+
+/**
+ * A decorator that records {@link CursorStatistics} about the data read from
+ * the decorated cursor: rows, blocks, bytes, and the wall time, CPU time and
+ * heap allocations spent in its next() calls.
+ * 
+ * CPU time and allocations are measured per thread, using the platform's
+ * ThreadMXBean; each measurement costs a few hundred nanoseconds, so they can
+ * be turned off for cursors that return very small blocks. They are also
+ * skipped if the JVM doesn't support them.
+ */
+public class ReadStatisticsCursor extends DecoratorCursor {
+
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+  private final CursorStatistics statistics;
+  private final boolean measureCpuTime;
+  private final boolean measureAllocations;
+
+  /**
+   * Creates a decorator that measures everything the JVM supports.
+   */
+  public ReadStatisticsCursor(final Cursor delegate) {
+    this(delegate, true, true);
+  }
+
+  public ReadStatisticsCursor(final Cursor delegate,
+      final boolean measureCpuTime, final boolean measureAllocations) {
+    super(delegate);
+    this.statistics = new CursorStatistics(delegate.getCursorId(),
+        delegate.toString(), delegate.schema());
+    this.measureCpuTime = measureCpuTime
+        && THREADS.isCurrentThreadCpuTimeSupported()
+        && THREADS.isThreadCpuTimeEnabled();
+    this.measureAllocations = measureAllocations && allocationsSupported();
+  }
+
+  @Override
+  public ResultView next(final int maxRowCount) {
+    final long cpuStart = measureCpuTime ? THREADS.getCurrentThreadCpuTime() : 0;
+    final long allocatedStart = measureAllocations ? allocatedBytes() : 0;
+    final long wallStart = System.nanoTime();
+    ResultView result = delegate().next(maxRowCount);
+    final long wall = System.nanoTime() - wallStart;
+    final long cpu =
+        measureCpuTime ? THREADS.getCurrentThreadCpuTime() - cpuStart : 0;
+    final long allocated =
+        measureAllocations ? allocatedBytes() - allocatedStart : 0;
+    statistics.record(result.hasData() ? result.view().rowCount() : 0,
+        wall, cpu, allocated);
+    return result;
+  }
+
+  /**
+   * Returns the statistics collected so far.
+   */
+  public CursorStatistics statistics() {
+    return statistics;
+  }
+
+  @Override
+  public CursorId getCursorId() {
+    return CursorId.READ_STATISTICS;
+  }
+
+  private static boolean allocationsSupported() {
+    if (!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+      return false;
+    }
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) THREADS;
+    return threads.isThreadAllocatedMemorySupported()
+        && threads.isThreadAllocatedMemoryEnabled();
+  }
+
+  private static long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) THREADS)
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.infrastructure;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.cursor.base.Cursor;
+import com.google.common.base.Preconditions;
+
+/**
+ * Caches the materialized results of query plans, keyed by
+ * {@link PlanFingerprint}, so that plans that are issued over and over (e.g.
+ * by dashboards) are served without re-execution. The cache holds at most
+ * memoryBudget bytes of result blocks, evicting the least recently used
+ * results when full. Results larger than the whole budget are not cached.
+ * 
+ * Usage:
+ * 
+ *   Cursor result = cache.lookup(key);
+ *   if (result == null) {
+ *     result = cache.cache(key, buildPlan());
+ *   }
+ * 
+ * A result is cached when the caching cursor reaches the end of its input;
+ * results of cursors that fail, are interrupted or aren't fully read are
+ * dropped. The key must capture everything the result depends on, including
+ * the versions of the input sources; stale entries are not detected, only
+ * aged out (or dropped with invalidateAll()).
+ * 
+ * Thread-safe. Cached blocks are shared, read-only, by all the cursors that
+ * replay them.
+ */
+public class ResultCache {
+
+  private final long memoryBudget;
+  // In access order, i.e. least recently used first.
+  private final LinkedHashMap<PlanFingerprint, CachedResult> entries;
+  private long memoryUsage;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  public ResultCache(final long memoryBudget) {
+    Preconditions.checkArgument(memoryBudget >= 0,
+        "Memory budget must be >= 0: %s", memoryBudget);
+    this.memoryBudget = memoryBudget;
+    this.entries = new LinkedHashMap<PlanFingerprint, CachedResult>(16,
+        0.75f, true);
+  }
+
+  /**
+   * Returns a cursor that replays the cached result of the plan, or null if
+   * the result is not in the cache.
+   */
+  public synchronized Cursor lookup(final PlanFingerprint key) {
+    CachedResult result = entries.get(key);
+    if (result == null) {
+      ++missCount;
+      return null;
+    }
+    ++hitCount;
+    return new CachedResultCursor(result);
+  }
+
+  /**
+   * Returns a cursor that passes the plan's results through, and adds them
+   * to the cache under the key once the plan is fully read.
+   */
+  public Cursor cache(final PlanFingerprint key, final Cursor plan) {
+    return new ResultCachingCursor(this, key, plan);
+  }
+
+  /**
+   * Drops all cached results.
+   */
+  public synchronized void invalidateAll() {
+    entries.clear();
+    memoryUsage = 0;
+  }
+
+  public long memoryBudget() {
+    return memoryBudget;
+  }
+
+  /**
+   * Returns the memory held by the cached results, in bytes.
+   */
+  public synchronized long memoryUsage() {
+    return memoryUsage;
+  }
+
+  /**
+   * Returns the number of cached results.
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long hitCount() {
+    return hitCount;
+  }
+
+  public synchronized long missCount() {
+    return missCount;
+  }
+
+  public synchronized long evictionCount() {
+    return evictionCount;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "ResultCache(" + entries.size() + " results, " + memoryUsage
+        + "/" + memoryBudget + " bytes, " + hitCount + " hits, " + missCount
+        + " misses, " + evictionCount + " evictions)";
+  }
+
+  synchronized void put(final PlanFingerprint key,
+      final CachedResult result) {
+    if (result.memoryUsage() > memoryBudget) {
+      return;
+    }
+    CachedResult previous = entries.put(key, result);
+    if (previous != null) {
+      memoryUsage -= previous.memoryUsage();
+    }
+    memoryUsage += result.memoryUsage();
+    Iterator<Map.Entry<PlanFingerprint, CachedResult>> eldest =
+        entries.entrySet().iterator();
+    while (memoryUsage > memoryBudget) {
+      CachedResult evicted = eldest.next().getValue();
+      eldest.remove();
+      memoryUsage -= evicted.memoryUsage();
+      ++evictionCount;
+    }
+  }
+
+  /**
+   * A materialized plan result: a sequence of views over blocks owned by
+   * the cache. Immutable.
+   */
+  static final class CachedResult {
+    private final TupleSchema schema;
+    private final View[] views;
+    private final long memoryUsage;
+
+    CachedResult(final TupleSchema schema, final View[] views,
+        final long memoryUsage) {
+      this.schema = schema;
+      this.views = views;
+      this.memoryUsage = memoryUsage;
+    }
+
+    TupleSchema schema() {
+      return schema;
+    }
+
+    int viewCount() {
+      return views.length;
+    }
+
+    View view(final int index) {
+      return views[index];
+    }
+
+    long memoryUsage() {
+      return memoryUsage;
+    }
+  }
+}
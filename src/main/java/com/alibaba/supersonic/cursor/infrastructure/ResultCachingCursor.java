@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.infrastructure;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.BlockBuilder;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.cursor.base.Cursor;
+import com.alibaba.supersonic.cursor.base.ResultView;
+import com.alibaba.supersonic.cursor.infrastructure.ResultCache.CachedResult;
+
+/**
+ * Passes the results of its delegate through, copying them into blocks; at
+ * the end of input, hands the blocks over to a {@link ResultCache}. Stops
+ * copying (and caches nothing) if the delegate fails, or if the copy grows
+ * beyond the cache's memory budget.
+ */
+class ResultCachingCursor extends DecoratorCursor {
+
+  private static final int BLOCK_CAPACITY = 1024;
+
+  private final ResultCache cache;
+  private final PlanFingerprint key;
+  private List<View> views;
+  private BlockBuilder builder;
+  // The memory used by the blocks filled up so far (not including builder's).
+  private long memoryUsage;
+
+  ResultCachingCursor(final ResultCache cache, final PlanFingerprint key,
+      final Cursor delegate) {
+    super(delegate);
+    this.cache = cache;
+    this.key = key;
+    this.views = new ArrayList<View>();
+    this.builder = null;
+    this.memoryUsage = 0;
+  }
+
+  @Override
+  public ResultView next(final int maxRowCount) {
+    final ResultView result = delegate().next(maxRowCount);
+    if (views == null) {
+      return result;
+    }
+    if (result.hasData()) {
+      append(result.view());
+    } else if (result.isEos()) {
+      finish();
+    } else if (result.isFailure()) {
+      abandon();
+    }
+    return result;
+  }
+
+  private void append(final View view) {
+    int offset = 0;
+    while (offset < view.rowCount()) {
+      if (builder == null) {
+        builder = new BlockBuilder(new Block(schema(), BLOCK_CAPACITY));
+      }
+      offset += builder.appendRows(view, offset, view.rowCount() - offset);
+      if (builder.isFull()) {
+        flush();
+      }
+    }
+    final long usage = memoryUsage
+        + (builder == null ? 0 : builder.block().memoryUsage());
+    if (usage > cache.memoryBudget()) {
+      abandon();
+    }
+  }
+
+  private void flush() {
+    views.add(new View(builder.view()));
+    memoryUsage += builder.block().memoryUsage();
+    builder = null;
+  }
+
+  private void finish() {
+    if (builder != null && builder.rowCount() > 0) {
+      flush();
+    }
+    cache.put(key, new CachedResult(schema(),
+        views.toArray(new View[views.size()]), memoryUsage));
+    abandon();
+  }
+
+  private void abandon() {
+    views = null;
+    builder = null;
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.base;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.TypeInfo;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrs;
+
+/**
+ * An expression bound to the schema of its input: its result type is known,
+ * and it can be evaluated, one block at a time, on views of that schema.
+ * Evaluation is column-at-a-time: each call computes the result for a whole
+ * block (or a {@link Selection} of its rows), with the loops in the
+ * expression's kernel, not in the caller.
+ * 
+ * The result is a column owned by the expression, valid until the next
+ * evaluation. Expressions are therefore not thread-safe, and a bound tree
+ * must not be shared between concurrently executing cursors.
+ */
+public abstract class BoundExpression {
+
+  private final Attribute attribute;
+  private final TypeInfo typeInfo;
+  private final List<BoundExpression> children;
+  private final View output;
+  private final FailureOr<Column> success;
+  private Block block;
+
+  protected BoundExpression(final Attribute attribute,
+      final BoundExpression... children) {
+    this.attribute = attribute;
+    this.typeInfo = TypeInfo.getTypeInfo(attribute.getType());
+    this.children = Collections.unmodifiableList(
+        Arrays.asList(children.clone()));
+    this.output = new View(TupleSchema.singleton(attribute.getName(),
+        attribute.getType(), attribute.getNullability()));
+    this.success = FailureOrs.success(output.mutableColumn(0));
+    this.block = null;
+  }
+
+  /**
+   * Evaluates the expression on the selected rows of the input, and returns
+   * the result column (valid until the next call), or a failure. Rows of the
+   * result that are not selected have undefined values.
+   */
+  public abstract FailureOr<Column> evaluate(View input, Selection selection);
+
+  /**
+   * Returns the attribute describing the result (its name, type and
+   * nullability).
+   */
+  public final Attribute resultAttribute() {
+    return attribute;
+  }
+
+  public final DataType resultType() {
+    return attribute.getType();
+  }
+
+  public final TypeInfo resultTypeInfo() {
+    return typeInfo;
+  }
+
+  public final boolean isNullable() {
+    return attribute.isNullable();
+  }
+
+  public final List<BoundExpression> children() {
+    return children;
+  }
+
+  public final BoundExpression child(final int index) {
+    return children.get(index);
+  }
+
+  /**
+   * Returns true if the result depends only on the input (e.g. false for
+   * random number generators). Only deterministic expressions may be folded
+   * or shared.
+   */
+  public boolean isDeterministic() {
+    for (BoundExpression child : children) {
+      if (!child.isDeterministic()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Appends a human-readable description, e.g. ADD(a, 1). For logging and
+   * debugging only.
+   */
+  public void appendDescription(final StringBuilder target) {
+    target.append(getClass().getSimpleName());
+    appendChildren(target);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    appendDescription(result);
+    return result.toString();
+  }
+
+  /**
+   * Appends the description of the children, in parentheses.
+   */
+  protected final void appendChildren(final StringBuilder target) {
+    target.append('(');
+    for (int i = 0; i < children.size(); ++i) {
+      if (i > 0) target.append(", ");
+      children.get(i).appendDescription(target);
+    }
+    target.append(')');
+  }
+
+  /**
+   * Returns the block for the result of the current evaluation, with room
+   * for rowCount rows, and points the result column at it. The block is
+   * reused across evaluations (and reallocated if too small); its
+   * variable-length values are discarded.
+   */
+  protected final Block outputBlock(final int rowCount) {
+    if (block == null || block.rowCapacity() < rowCount) {
+      block = new Block(output.schema(), block == null ? rowCount
+          : Math.max(rowCount, block.rowCapacity() * 2));
+    } else {
+      block.reset();
+    }
+    output.mutableColumn(0).resetFrom(block.view().column(0));
+    return block;
+  }
+
+  /**
+   * Returns the result column, as last set by outputBlock() or
+   * resultColumn().resetFrom(...) (for expressions that return their
+   * input's data).
+   */
+  protected final Column resultColumn() {
+    return output.mutableColumn(0);
+  }
+
+  /**
+   * Returns the (preallocated) success result, holding the result column.
+   */
+  protected final FailureOr<Column> success() {
+    return success;
+  }
+
+  /**
+   * Sets the NULL flags of the output block's rows 0 .. rowCount - 1 to the
+   * OR of the arguments' flags. Does nothing if the result is not nullable.
+   */
+  protected static void propagateNulls(final Block output, final int rowCount,
+      final Column... arguments) {
+    final boolean[] isNull = output.isNull(0);
+    if (isNull == null) {
+      return;
+    }
+    boolean first = true;
+    for (Column argument : arguments) {
+      final boolean[] argumentIsNull = argument.isNull();
+      if (argumentIsNull == null) {
+        continue;
+      }
+      final int offset = argument.isNullOffset();
+      if (first) {
+        System.arraycopy(argumentIsNull, offset, isNull, 0, rowCount);
+        first = false;
+      } else {
+        for (int i = 0; i < rowCount; ++i) {
+          isNull[i] |= argumentIsNull[offset + i];
+        }
+      }
+    }
+    if (first) {
+      Arrays.fill(isNull, 0, rowCount, false);
+    }
+  }
+}
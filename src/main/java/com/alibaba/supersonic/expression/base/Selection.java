@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.base;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The rows of a block that an expression is evaluated on: either all rows
+ * (0 .. count - 1), or a sorted subset, listed by position. Expressions need
+ * to compute correct results only for the selected rows; results (and NULL
+ * flags) at other positions are undefined.
+ * 
+ * Cheap kernels usually ignore the selection and compute all rows, which is
+ * faster than the indirection; expensive ones, and ones that can fail (e.g.
+ * on division by zero), honor it.
+ * 
+ * Mutable, so that evaluators can reuse one per block.
+ */
+public final class Selection {
+
+  private int[] rows;
+  // Scratch space for addAll().
+  private int[] spare;
+  private int count;
+  private boolean all;
+  // Incremented on every change, so that results computed for a selection
+  // can be recognized as still valid.
+  private int version;
+
+  public Selection() {
+    this.rows = new int[0];
+    this.spare = new int[0];
+    this.count = 0;
+    this.all = true;
+    this.version = 0;
+  }
+
+  /**
+   * Returns a new selection of all rowCount rows.
+   */
+  public static Selection all(final int rowCount) {
+    Selection result = new Selection();
+    result.selectAll(rowCount);
+    return result;
+  }
+
+  /**
+   * Selects all rowCount rows.
+   */
+  public void selectAll(final int rowCount) {
+    this.all = true;
+    this.count = rowCount;
+    ++version;
+  }
+
+  /**
+   * Returns true if all rows are selected; then rows() is not valid.
+   */
+  public boolean isAll() {
+    return all;
+  }
+
+  /**
+   * Returns the number of selected rows.
+   */
+  public int count() {
+    return count;
+  }
+
+  /**
+   * Returns a number that changes whenever the selection does.
+   */
+  public int version() {
+    return version;
+  }
+
+  /**
+   * Returns the k-th selected row.
+   */
+  public int row(final int k) {
+    return all ? k : rows[k];
+  }
+
+  /**
+   * Returns the positions of the selected rows, in rows()[0 .. count()).
+   * Only valid if !isAll().
+   */
+  public int[] rows() {
+    Preconditions.checkState(!all, "All rows selected");
+    return rows;
+  }
+
+  /**
+   * Replaces the selection with a copy of another one.
+   */
+  public void copyFrom(final Selection other) {
+    if (other.all) {
+      selectAll(other.count);
+      return;
+    }
+    ensureCapacity(other.count);
+    System.arraycopy(other.rows, 0, rows, 0, other.count);
+    this.count = other.count;
+    this.all = false;
+    ++version;
+  }
+
+  /**
+   * Replaces the selection with the rows of within whose value is TRUE (not
+   * NULL, and not FALSE) in the BOOL column given by values and isNull (the
+   * latter may be null). Rows are read at values[valuesOffset + row].
+   * The selection may be within itself.
+   */
+  public void selectTrue(final Selection within, final boolean[] values,
+      final int valuesOffset, final boolean[] isNull,
+      final int isNullOffset) {
+    select(within, values, valuesOffset, isNull, isNullOffset, true);
+  }
+
+  /**
+   * Like selectTrue(), but selects the rows whose value is FALSE or NULL.
+   */
+  public void selectNotTrue(final Selection within, final boolean[] values,
+      final int valuesOffset, final boolean[] isNull,
+      final int isNullOffset) {
+    select(within, values, valuesOffset, isNull, isNullOffset, false);
+  }
+
+  /**
+   * Replaces the selection with the rows of within whose value is not
+   * decided, i.e. is NULL, or the opposite of decisive (which is FALSE for
+   * AND, and TRUE for OR). The selection may be within itself.
+   */
+  public void selectUndecided(final Selection within, final boolean[] values,
+      final int valuesOffset, final boolean[] isNull, final int isNullOffset,
+      final boolean decisive) {
+    // For OR, the undecided rows are those that are not TRUE.
+    if (decisive) {
+      select(within, values, valuesOffset, isNull, isNullOffset, false);
+    } else {
+      ensureCapacity(within.count);
+      int selected = 0;
+      for (int k = 0; k < within.count; ++k) {
+        final int i = within.all ? k : within.rows[k];
+        rows[selected] = i;
+        selected += values[valuesOffset + i]
+            || (isNull != null && isNull[isNullOffset + i]) ? 1 : 0;
+      }
+      setSelected(within, selected);
+    }
+  }
+
+  /**
+   * Returns true if every row selected by other is also selected by this
+   * selection. Both must be selections of the same block.
+   */
+  public boolean containsAll(final Selection other) {
+    if (all) {
+      return other.count <= count;
+    }
+    if (other.all) {
+      return other.count == 0;
+    }
+    if (other.count > count) {
+      return false;
+    }
+    int j = 0;
+    for (int k = 0; k < other.count; ++k) {
+      final int row = other.rows[k];
+      while (j < count && rows[j] < row) {
+        ++j;
+      }
+      if (j == count || rows[j] != row) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Adds the rows selected by other (a selection of the same block).
+   */
+  public void addAll(final Selection other) {
+    if (all) {
+      return;
+    }
+    if (other.all) {
+      selectAll(other.count);
+      return;
+    }
+    if (spare.length < count + other.count) {
+      spare = new int[Math.max(count + other.count, rows.length * 2)];
+    }
+    int i = 0;
+    int j = 0;
+    int merged = 0;
+    while (i < count && j < other.count) {
+      final int a = rows[i];
+      final int b = other.rows[j];
+      spare[merged++] = a <= b ? a : b;
+      i += a <= b ? 1 : 0;
+      j += b <= a ? 1 : 0;
+    }
+    while (i < count) spare[merged++] = rows[i++];
+    while (j < other.count) spare[merged++] = other.rows[j++];
+    final int[] swap = rows;
+    rows = spare;
+    spare = swap;
+    this.count = merged;
+    ++version;
+  }
+
+  private void select(final Selection within, final boolean[] values,
+      final int valuesOffset, final boolean[] isNull, final int isNullOffset,
+      final boolean wanted) {
+    ensureCapacity(within.count);
+    int selected = 0;
+    if (within.all) {
+      if (isNull == null) {
+        for (int i = 0; i < within.count; ++i) {
+          rows[selected] = i;
+          selected += values[valuesOffset + i] == wanted ? 1 : 0;
+        }
+      } else {
+        for (int i = 0; i < within.count; ++i) {
+          rows[selected] = i;
+          selected += (values[valuesOffset + i]
+              && !isNull[isNullOffset + i]) == wanted ? 1 : 0;
+        }
+      }
+    } else {
+      final int[] withinRows = within.rows;
+      for (int k = 0; k < within.count; ++k) {
+        final int i = withinRows[k];
+        rows[selected] = i;
+        selected += (values[valuesOffset + i]
+            && (isNull == null || !isNull[isNullOffset + i])) == wanted
+            ? 1 : 0;
+      }
+    }
+    setSelected(within, selected);
+  }
+
+  private void setSelected(final Selection within, final int selected) {
+    if (within.all && selected == within.count) {
+      selectAll(selected);
+    } else {
+      this.count = selected;
+      this.all = false;
+      ++version;
+    }
+  }
+
+  private void ensureCapacity(final int capacity) {
+    if (rows.length < capacity) {
+      rows = new int[Math.max(capacity, rows.length * 2)];
+    }
+  }
+
+  @Override
+  public String toString() {
+    return all ? "all " + count + " rows"
+        : Arrays.toString(Arrays.copyOf(rows, count));
+  }
+}
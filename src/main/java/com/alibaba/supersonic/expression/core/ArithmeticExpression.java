@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import com.alibaba.supersonic.base.exception.SupersonicException;
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrs;
+
+/**
+ * Binary arithmetic on numeric arguments of the same type (the binder casts
+ * them to a common type): ADD, SUBTRACT, MULTIPLY, CPP_DIVIDE (C++ semantics:
+ * integer division for integers), MODULUS, and DIVIDE_SIGNALING,
+ * DIVIDE_NULLING and DIVIDE_QUIET (on DOUBLEs; they differ in what division
+ * by zero yields: a failure, NULL, or an IEEE infinity / NaN). Integer
+ * division by zero fails. Unsigned types use unsigned division. Also
+ * BITWISE_AND, BITWISE_OR and BITWISE_XOR, on integers.
+ * 
+ * ADD, SUBTRACT, MULTIPLY and the bitwise operations are computed for all
+ * rows, regardless of the selection, by the {@link NumericKernels} (as are
+ * the floating point divisions that can't fail); the integer divisions only
+ * for the selected ones.
+ */
+public class ArithmeticExpression extends BoundExpression {
+
+  private static final NumericKernels NUMERIC = NumericKernelsLoader.kernels();
+
+  private final OperationType operation;
+
+  public ArithmeticExpression(final OperationType operation,
+      final Attribute attribute, final BoundExpression left,
+      final BoundExpression right) {
+    super(attribute, left, right);
+    this.operation = operation;
+  }
+
+  public OperationType operation() {
+    return operation;
+  }
+
+  @Override
+  public FailureOr<Column> evaluate(final View input,
+      final Selection selection) {
+    final FailureOr<Column> left = child(0).evaluate(input, selection);
+    if (left.isFailure()) {
+      return left;
+    }
+    final FailureOr<Column> right = child(1).evaluate(input, selection);
+    if (right.isFailure()) {
+      return right;
+    }
+    final int rowCount = input.rowCount();
+    final Block output = outputBlock(rowCount);
+    propagateNulls(output, rowCount, left.get(), right.get());
+    final Column a = left.get();
+    final Column b = right.get();
+    switch (resultType()) {
+      case INT32:
+      case UINT32:
+        return evaluateInt(a, b, output, rowCount, selection);
+      case INT64:
+      case UINT64:
+        return evaluateLong(a, b, output, rowCount, selection);
+      case FLOAT:
+        return evaluateFloat(a, b, output, rowCount);
+      case DOUBLE:
+        return evaluateDouble(a, b, output, rowCount, selection);
+      default:
+        throw new IllegalStateException("Unsupported type: " + resultType());
+    }
+  }
+
+  @Override
+  public void appendDescription(final StringBuilder target) {
+    target.append(operation.name());
+    appendChildren(target);
+  }
+
+  private FailureOr<Column> evaluateInt(final Column left, final Column right,
+      final Block output, final int rowCount, final Selection selection) {
+    final int[] a = (int[]) left.data();
+    final int[] b = (int[]) right.data();
+    final int ao = left.offset();
+    final int bo = right.offset();
+    final int[] out = output.intData(0);
+    switch (operation) {
+      case ADD:
+      case SUBTRACT:
+      case MULTIPLY:
+      case BITWISE_AND:
+      case BITWISE_OR:
+      case BITWISE_XOR:
+        NUMERIC.arithmetic(operation, a, ao, b, bo, out, rowCount);
+        break;
+      case CPP_DIVIDE:
+      case MODULUS: {
+        final boolean unsigned = resultType() == DataType.UINT32;
+        final boolean divide = operation == OperationType.CPP_DIVIDE;
+        final boolean[] isNull = output.isNull(0);
+        for (int k = 0; k < selection.count(); ++k) {
+          final int i = selection.row(k);
+          if (isNull != null && isNull[i]) {
+            continue;
+          }
+          final int divisor = b[bo + i];
+          if (divisor == 0) {
+            return divisionByZero();
+          }
+          out[i] = unsigned
+              ? (divide ? Integer.divideUnsigned(a[ao + i], divisor)
+                  : Integer.remainderUnsigned(a[ao + i], divisor))
+              : (divide ? a[ao + i] / divisor : a[ao + i] % divisor);
+        }
+        break;
+      }
+      default:
+        throw unsupported();
+    }
+    return success();
+  }
+
+  private FailureOr<Column> evaluateLong(final Column left,
+      final Column right, final Block output, final int rowCount,
+      final Selection selection) {
+    final long[] a = (long[]) left.data();
+    final long[] b = (long[]) right.data();
+    final int ao = left.offset();
+    final int bo = right.offset();
+    final long[] out = output.longData(0);
+    switch (operation) {
+      case ADD:
+      case SUBTRACT:
+      case MULTIPLY:
+      case BITWISE_AND:
+      case BITWISE_OR:
+      case BITWISE_XOR:
+        NUMERIC.arithmetic(operation, a, ao, b, bo, out, rowCount);
+        break;
+      case CPP_DIVIDE:
+      case MODULUS: {
+        final boolean unsigned = resultType() == DataType.UINT64;
+        final boolean divide = operation == OperationType.CPP_DIVIDE;
+        final boolean[] isNull = output.isNull(0);
+        for (int k = 0; k < selection.count(); ++k) {
+          final int i = selection.row(k);
+          if (isNull != null && isNull[i]) {
+            continue;
+          }
+          final long divisor = b[bo + i];
+          if (divisor == 0) {
+            return divisionByZero();
+          }
+          out[i] = unsigned
+              ? (divide ? Long.divideUnsigned(a[ao + i], divisor)
+                  : Long.remainderUnsigned(a[ao + i], divisor))
+              : (divide ? a[ao + i] / divisor : a[ao + i] % divisor);
+        }
+        break;
+      }
+      default:
+        throw unsupported();
+    }
+    return success();
+  }
+
+  private FailureOr<Column> evaluateFloat(final Column left,
+      final Column right, final Block output, final int rowCount) {
+    final float[] a = (float[]) left.data();
+    final float[] b = (float[]) right.data();
+    final int ao = left.offset();
+    final int bo = right.offset();
+    final float[] out = output.floatData(0);
+    switch (operation) {
+      case ADD:
+      case SUBTRACT:
+      case MULTIPLY:
+      case CPP_DIVIDE:
+        NUMERIC.arithmetic(operation, a, ao, b, bo, out, rowCount);
+        break;
+      case MODULUS:
+        for (int i = 0; i < rowCount; ++i) out[i] = a[ao + i] % b[bo + i];
+        break;
+      default:
+        throw unsupported();
+    }
+    return success();
+  }
+
+  private FailureOr<Column> evaluateDouble(final Column left,
+      final Column right, final Block output, final int rowCount,
+      final Selection selection) {
+    final double[] a = (double[]) left.data();
+    final double[] b = (double[]) right.data();
+    final int ao = left.offset();
+    final int bo = right.offset();
+    final double[] out = output.doubleData(0);
+    switch (operation) {
+      case ADD:
+      case SUBTRACT:
+      case MULTIPLY:
+      case CPP_DIVIDE:
+      case DIVIDE_QUIET:
+        NUMERIC.arithmetic(operation, a, ao, b, bo, out, rowCount);
+        break;
+      case MODULUS:
+        for (int i = 0; i < rowCount; ++i) out[i] = a[ao + i] % b[bo + i];
+        break;
+      case DIVIDE_SIGNALING:
+      case DIVIDE_NULLING: {
+        final boolean[] isNull = output.isNull(0);
+        final boolean nulling = operation == OperationType.DIVIDE_NULLING;
+        for (int k = 0; k < selection.count(); ++k) {
+          final int i = selection.row(k);
+          if (isNull != null && isNull[i]) {
+            continue;
+          }
+          final double divisor = b[bo + i];
+          if (divisor == 0) {
+            if (!nulling) {
+              return divisionByZero();
+            }
+            isNull[i] = true;
+          } else {
+            out[i] = a[ao + i] / divisor;
+          }
+        }
+        break;
+      }
+      default:
+        throw unsupported();
+    }
+    return success();
+  }
+
+  private IllegalStateException unsupported() {
+    return new IllegalStateException(operation + " not supported for "
+        + resultType());
+  }
+
+  private static FailureOr<Column> divisionByZero() {
+    return FailureOrs.failure(new SupersonicException(
+        ReturnCode.ERROR_EVALUATION_ERROR, "Division by zero"));
+  }
+}
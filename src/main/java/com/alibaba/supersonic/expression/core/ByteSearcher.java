@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import java.util.Arrays;
+
+/**
+ * Finds occurrences of a fixed byte sequence (the needle) in byte ranges,
+ * e.g. in the pieces of an arena, with the Boyer-Moore-Horspool algorithm.
+ * As UTF-8 is self-synchronizing, a byte match of a UTF-8 needle in a UTF-8
+ * haystack is also a character match.
+ */
+final class ByteSearcher {
+
+  private final byte[] needle;
+  // For each byte value, how far the needle can be shifted when the byte
+  // aligned with the needle's last position mismatches.
+  private final int[] shift;
+
+  ByteSearcher(final byte[] needle) {
+    this.needle = needle.clone();
+    this.shift = new int[256];
+    Arrays.fill(shift, Math.max(needle.length, 1));
+    for (int j = 0; j < needle.length - 1; ++j) {
+      shift[needle[j] & 0xFF] = needle.length - 1 - j;
+    }
+  }
+
+  int needleLength() {
+    return needle.length;
+  }
+
+  /**
+   * Returns the position of the first occurrence of the needle in
+   * haystack[from .. to), or -1 if there is none.
+   */
+  int indexOf(final byte[] haystack, final int from, final int to) {
+    final int length = needle.length;
+    if (length == 0) {
+      return from;
+    }
+    final int last = length - 1;
+    final byte lastByte = needle[last];
+    int start = from;
+    while (start + last < to) {
+      final byte b = haystack[start + last];
+      if (b == lastByte && matchesAt(haystack, start, last)) {
+        return start;
+      }
+      start += shift[b & 0xFF];
+    }
+    return -1;
+  }
+
+  /**
+   * Returns true if haystack[from .. to) is equal to the needle.
+   */
+  boolean equalTo(final byte[] haystack, final int from, final int to) {
+    return to - from == needle.length
+        && matchesAt(haystack, from, needle.length);
+  }
+
+  /**
+   * Returns the position of the first occurrence of needle[needleFrom ..
+   * needleTo) in haystack[from .. to), or -1; for needles that change from
+   * row to row.
+   */
+  static int indexOf(final byte[] haystack, final int from, final int to,
+      final byte[] needle, final int needleFrom, final int needleTo) {
+    final int length = needleTo - needleFrom;
+    if (length == 0) {
+      return from;
+    }
+    final byte first = needle[needleFrom];
+    for (int start = from; start + length <= to; ++start) {
+      if (haystack[start] != first) {
+        continue;
+      }
+      int j = 1;
+      while (j < length && haystack[start + j] == needle[needleFrom + j]) {
+        ++j;
+      }
+      if (j == length) {
+        return start;
+      }
+    }
+    return -1;
+  }
+
+  // Compares the first length bytes of the needle.
+  private boolean matchesAt(final byte[] haystack, final int start,
+      final int length) {
+    for (int j = 0; j < length; ++j) {
+      if (haystack[start + j] != needle[j]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
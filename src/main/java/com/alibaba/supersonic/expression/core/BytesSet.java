@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import java.util.List;
+
+import com.alibaba.supersonic.base.memory.Arena;
+
+/**
+ * A set of byte sequences (e.g. of UTF-8 strings), for membership tests of
+ * arena pieces without decoding or copying them: an open-addressing hash
+ * table with linear probing, whose entries are pieces of the set's own
+ * arena. Immutable once built.
+ */
+final class BytesSet {
+
+  private final Arena arena;
+  private final long[] table;
+  private final int[] hashes;
+  private final boolean[] used;
+  private final int mask;
+  private final int size;
+
+  BytesSet(final List<byte[]> values) {
+    this.arena = new Arena();
+    // Load factor at most 0.5.
+    final int capacity = Integer.highestOneBit(Math.max(values.size(), 1)) << 2;
+    this.table = new long[capacity];
+    this.hashes = new int[capacity];
+    this.used = new boolean[capacity];
+    this.mask = capacity - 1;
+    int count = 0;
+    for (byte[] value : values) {
+      final int hash = hash(value, 0, value.length);
+      if (!contains(value, 0, value.length, hash)) {
+        int slot = hash & mask;
+        while (used[slot]) {
+          slot = (slot + 1) & mask;
+        }
+        table[slot] = arena.append(value, 0, value.length);
+        hashes[slot] = hash;
+        used[slot] = true;
+        ++count;
+      }
+    }
+    this.size = count;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns true if bytes[from .. to) is in the set.
+   */
+  boolean contains(final byte[] bytes, final int from, final int to) {
+    return contains(bytes, from, to, hash(bytes, from, to));
+  }
+
+  private boolean contains(final byte[] bytes, final int from, final int to,
+      final int hash) {
+    final byte[] buffer = arena.buffer();
+    int slot = hash & mask;
+    while (used[slot]) {
+      if (hashes[slot] == hash && equal(buffer, table[slot], bytes, from, to)) {
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  private static boolean equal(final byte[] buffer, final long piece,
+      final byte[] bytes, final int from, final int to) {
+    final int length = Arena.pieceLength(piece);
+    if (length != to - from) {
+      return false;
+    }
+    final int offset = Arena.pieceOffset(piece);
+    for (int j = 0; j < length; ++j) {
+      if (buffer[offset + j] != bytes[from + j]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // FNV-1a, with a final mix so that the low bits (used for the slot)
+  // depend on all bytes.
+  private static int hash(final byte[] bytes, final int from, final int to) {
+    int h = 0x811C9DC5;
+    for (int i = from; i < to; ++i) {
+      h = (h ^ (bytes[i] & 0xFF)) * 0x01000193;
+    }
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    return h;
+  }
+}
@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+
+/**
+ * Converts between the numeric types, BOOL, DATE and DATETIME (with C-like
+ * semantics: floating point values are truncated, integers wrap around;
+ * DATE to DATETIME gives midnight UTC), and between STRING and BINARY.
+ */
+public class CastExpression extends BoundExpression {
+
+  private long[] longs;
+  private double[] doubles;
+
+  public CastExpression(final Attribute attribute,
+      final BoundExpression argument) {
+    super(attribute, argument);
+    this.longs = new long[0];
+    this.doubles = new double[0];
+  }
+
+  /**
+   * Returns true if values of type from can be cast to type to.
+   */
+  public static boolean isSupported(final DataType from, final DataType to) {
+    return from == to || (isScalar(from) && isScalar(to))
+        || (isBytes(from) && isBytes(to));
+  }
+
+  @Override
+  public FailureOr<Column> evaluate(final View input,
+      final Selection selection) {
+    final FailureOr<Column> argument = child(0).evaluate(input, selection);
+    if (argument.isFailure()) {
+      return argument;
+    }
+    final Column source = argument.get();
+    final int rowCount = input.rowCount();
+    final Block output = outputBlock(rowCount);
+    propagateNulls(output, rowCount, source);
+    final DataType from = child(0).resultType();
+    switch (resultType()) {
+      case INT64:
+      case UINT64:
+        toLongs(source, rowCount, output.longData(0));
+        break;
+      case DATETIME: {
+        final long[] out = output.longData(0);
+        toLongs(source, rowCount, out);
+        if (from == DataType.DATE) {
+          for (int i = 0; i < rowCount; ++i) {
+            out[i] *= DateTimes.MICROS_PER_DAY;
+          }
+        }
+        break;
+      }
+      case INT32:
+      case UINT32:
+      case DATE: {
+        final long[] values = longs(rowCount);
+        toLongs(source, rowCount, values);
+        final int[] out = output.intData(0);
+        if (from == DataType.DATETIME && resultType() == DataType.DATE) {
+          for (int i = 0; i < rowCount; ++i) {
+            out[i] = (int) DateTimes.days(values[i]);
+          }
+        } else {
+          for (int i = 0; i < rowCount; ++i) out[i] = (int) values[i];
+        }
+        break;
+      }
+      case DOUBLE:
+        toDoubles(source, rowCount, output.doubleData(0));
+        break;
+      case FLOAT: {
+        final double[] values = doubles(rowCount);
+        toDoubles(source, rowCount, values);
+        final float[] out = output.floatData(0);
+        for (int i = 0; i < rowCount; ++i) out[i] = (float) values[i];
+        break;
+      }
+      case BOOL: {
+        final boolean[] out = output.boolData(0);
+        if (from == DataType.FLOAT || from == DataType.DOUBLE) {
+          final double[] values = doubles(rowCount);
+          toDoubles(source, rowCount, values);
+          for (int i = 0; i < rowCount; ++i) out[i] = values[i] != 0;
+        } else {
+          final long[] values = longs(rowCount);
+          toLongs(source, rowCount, values);
+          for (int i = 0; i < rowCount; ++i) out[i] = values[i] != 0;
+        }
+        break;
+      }
+      case STRING:
+      case BINARY:
+        Kernels.copySelected(source, selection, output);
+        break;
+      default:
+        throw new IllegalStateException("Unsupported cast to "
+            + resultType());
+    }
+    return success();
+  }
+
+  @Override
+  public void appendDescription(final StringBuilder target) {
+    target.append("CAST_TO_").append(resultType().name());
+    appendChildren(target);
+  }
+
+  private static void toLongs(final Column source, final int rowCount,
+      final long[] out) {
+    final int offset = source.offset();
+    switch (source.typeInfo().type()) {
+      case INT32:
+      case DATE:
+      case DATA_TYPE: {
+        final int[] in = (int[]) source.data();
+        for (int i = 0; i < rowCount; ++i) out[i] = in[offset + i];
+        break;
+      }
+      case UINT32: {
+        final int[] in = (int[]) source.data();
+        for (int i = 0; i < rowCount; ++i) {
+          out[i] = in[offset + i] & 0xFFFFFFFFL;
+        }
+        break;
+      }
+      case INT64:
+      case UINT64:
+      case DATETIME:
+        System.arraycopy(source.data(), offset, out, 0, rowCount);
+        break;
+      case FLOAT: {
+        final float[] in = (float[]) source.data();
+        for (int i = 0; i < rowCount; ++i) out[i] = (long) in[offset + i];
+        break;
+      }
+      case DOUBLE: {
+        final double[] in = (double[]) source.data();
+        for (int i = 0; i < rowCount; ++i) out[i] = (long) in[offset + i];
+        break;
+      }
+      case BOOL: {
+        final boolean[] in = (boolean[]) source.data();
+        for (int i = 0; i < rowCount; ++i) out[i] = in[offset + i] ? 1 : 0;
+        break;
+      }
+      default:
+        throw new IllegalStateException("Unsupported cast from "
+            + source.typeInfo().name());
+    }
+  }
+
+  private static void toDoubles(final Column source, final int rowCount,
+      final double[] out) {
+    final int offset = source.offset();
+    switch (source.typeInfo().type()) {
+      case INT32:
+      case DATE:
+      case DATA_TYPE: {
+        final int[] in = (int[]) source.data();
+        for (int i = 0; i < rowCount; ++i) out[i] = in[offset + i];
+        break;
+      }
+      case UINT32: {
+        final int[] in = (int[]) source.data();
+        for (int i = 0; i < rowCount; ++i) {
+          out[i] = in[offset + i] & 0xFFFFFFFFL;
+        }
+        break;
+      }
+      case INT64:
+      case DATETIME: {
+        final long[] in = (long[]) source.data();
+        for (int i = 0; i < rowCount; ++i) out[i] = in[offset + i];
+        break;
+      }
+      case UINT64: {
+        final long[] in = (long[]) source.data();
+        for (int i = 0; i < rowCount; ++i) {
+          final long value = in[offset + i];
+          // Halve (keeping the lowest bit, for correct rounding) to make the
+          // value fit a signed long, convert, and double.
+          out[i] = value >= 0 ? value
+              : ((value >>> 1) | (value & 1)) * 2.0;
+        }
+        break;
+      }
+      case FLOAT: {
+        final float[] in = (float[]) source.data();
+        for (int i = 0; i < rowCount; ++i) out[i] = in[offset + i];
+        break;
+      }
+      case DOUBLE:
+        System.arraycopy(source.data(), offset, out, 0, rowCount);
+        break;
+      case BOOL: {
+        final boolean[] in = (boolean[]) source.data();
+        for (int i = 0; i < rowCount; ++i) out[i] = in[offset + i] ? 1 : 0;
+        break;
+      }
+      default:
+        throw new IllegalStateException("Unsupported cast from "
+            + source.typeInfo().name());
+    }
+  }
+
+  private long[] longs(final int rowCount) {
+    if (longs.length < rowCount) {
+      longs = new long[rowCount];
+    }
+    return longs;
+  }
+
+  private double[] doubles(final int rowCount) {
+    if (doubles.length < rowCount) {
+      doubles = new double[rowCount];
+    }
+    return doubles;
+  }
+
+  private static boolean isScalar(final DataType type) {
+    switch (type) {
+      case INT32:
+      case UINT32:
+      case INT64:
+      case UINT64:
+      case FLOAT:
+      case DOUBLE:
+      case BOOL:
+      case DATE:
+      case DATETIME:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isBytes(final DataType type) {
+    return type == DataType.STRING || type == DataType.BINARY;
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.base.memory.Arena;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+
+/**
+ * Compares two arguments of the same type: EQUAL, NOT_EQUAL, LESS and
+ * LESS_OR_EQUAL (the binder rewrites GREATER and GREATER_OR_EQUAL by
+ * swapping the arguments). Unsigned integers compare as unsigned; STRING
+ * and BINARY, byte-wise (unsigned), on the arenas' bytes.
+ * 
+ * Fixed-width types are compared for all rows (numbers, by the
+ * {@link NumericKernels}); variable-length ones, only for the selected rows.
+ */
+public class ComparisonExpression extends BoundExpression {
+
+  private static final NumericKernels NUMERIC = NumericKernelsLoader.kernels();
+
+  private final OperationType operation;
+
+  public ComparisonExpression(final OperationType operation,
+      final Attribute attribute, final BoundExpression left,
+      final BoundExpression right) {
+    super(attribute, left, right);
+    this.operation = operation;
+  }
+
+  public OperationType operation() {
+    return operation;
+  }
+
+  @Override
+  public FailureOr<Column> evaluate(final View input,
+      final Selection selection) {
+    final FailureOr<Column> left = child(0).evaluate(input, selection);
+    if (left.isFailure()) {
+      return left;
+    }
+    final FailureOr<Column> right = child(1).evaluate(input, selection);
+    if (right.isFailure()) {
+      return right;
+    }
+    final int rowCount = input.rowCount();
+    final Block output = outputBlock(rowCount);
+    propagateNulls(output, rowCount, left.get(), right.get());
+    final Column a = left.get();
+    final Column b = right.get();
+    final boolean[] out = output.boolData(0);
+    switch (child(0).resultType()) {
+      case INT32:
+      case DATE:
+      case DATA_TYPE:
+      case UINT32:
+        NUMERIC.compare(operation, (int[]) a.data(), a.offset(),
+            (int[]) b.data(), b.offset(),
+            child(0).resultType() == DataType.UINT32, out, rowCount);
+        break;
+      case INT64:
+      case DATETIME:
+      case UINT64:
+        NUMERIC.compare(operation, (long[]) a.data(), a.offset(),
+            (long[]) b.data(), b.offset(),
+            child(0).resultType() == DataType.UINT64, out, rowCount);
+        break;
+      case FLOAT:
+        NUMERIC.compare(operation, (float[]) a.data(), a.offset(),
+            (float[]) b.data(), b.offset(), out, rowCount);
+        break;
+      case DOUBLE:
+        NUMERIC.compare(operation, (double[]) a.data(), a.offset(),
+            (double[]) b.data(), b.offset(), out, rowCount);
+        break;
+      case BOOL:
+        compareBools(a, b, out, rowCount);
+        break;
+      case STRING:
+      case BINARY:
+        compareBytes(a, b, output.isNull(0), out, selection);
+        break;
+      default:
+        throw new IllegalStateException("Unsupported type: "
+            + child(0).resultType());
+    }
+    return success();
+  }
+
+  @Override
+  public void appendDescription(final StringBuilder target) {
+    target.append(operation.name());
+    appendChildren(target);
+  }
+
+  private void compareBools(final Column left, final Column right,
+      final boolean[] out, final int rowCount) {
+    final boolean[] a = (boolean[]) left.data();
+    final boolean[] b = (boolean[]) right.data();
+    final int ao = left.offset();
+    final int bo = right.offset();
+    switch (operation) {
+      case EQUAL:
+        for (int i = 0; i < rowCount; ++i) out[i] = a[ao + i] == b[bo + i];
+        break;
+      case NOT_EQUAL:
+        for (int i = 0; i < rowCount; ++i) out[i] = a[ao + i] != b[bo + i];
+        break;
+      case LESS:
+        for (int i = 0; i < rowCount; ++i) out[i] = !a[ao + i] & b[bo + i];
+        break;
+      case LESS_OR_EQUAL:
+        for (int i = 0; i < rowCount; ++i) out[i] = !a[ao + i] | b[bo + i];
+        break;
+      default:
+        throw unsupported();
+    }
+  }
+
+  private void compareBytes(final Column left, final Column right,
+      final boolean[] isNull, final boolean[] out,
+      final Selection selection) {
+    final long[] a = (long[]) left.data();
+    final long[] b = (long[]) right.data();
+    final int ao = left.offset();
+    final int bo = right.offset();
+    final byte[] aBytes = left.arena().buffer();
+    final byte[] bBytes = right.arena().buffer();
+    for (int k = 0; k < selection.count(); ++k) {
+      final int i = selection.row(k);
+      if (isNull != null && isNull[i]) {
+        continue;
+      }
+      final int result = compare(aBytes, a[ao + i], bBytes, b[bo + i]);
+      switch (operation) {
+        case EQUAL:
+          out[i] = result == 0;
+          break;
+        case NOT_EQUAL:
+          out[i] = result != 0;
+          break;
+        case LESS:
+          out[i] = result < 0;
+          break;
+        case LESS_OR_EQUAL:
+          out[i] = result <= 0;
+          break;
+        default:
+          throw unsupported();
+      }
+    }
+  }
+
+  /**
+   * Compares two byte sequences given by arena pieces, lexicographically,
+   * with bytes as unsigned.
+   */
+  static int compare(final byte[] a, final long aPiece, final byte[] b,
+      final long bPiece) {
+    final int aStart = Arena.pieceOffset(aPiece);
+    final int aLength = Arena.pieceLength(aPiece);
+    final int bStart = Arena.pieceOffset(bPiece);
+    final int bLength = Arena.pieceLength(bPiece);
+    final int length = Math.min(aLength, bLength);
+    for (int j = 0; j < length; ++j) {
+      final int difference = (a[aStart + j] & 0xFF) - (b[bStart + j] & 0xFF);
+      if (difference != 0) {
+        return difference;
+      }
+    }
+    return aLength - bLength;
+  }
+
+  private IllegalStateException unsupported() {
+    return new IllegalStateException(operation + " not supported");
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import java.util.Arrays;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+
+/**
+ * AND (or OR) of any number of BOOL conjuncts, with short-circuit
+ * evaluation: each conjunct is evaluated only on the rows that the previous
+ * ones haven't decided yet (i.e. that weren't FALSE, for AND, or TRUE, for
+ * OR). NULLs follow SQL's three-valued logic, as in {@link LogicExpression}.
+ * 
+ * The conjuncts are reordered as the evaluation goes, so that those that
+ * decide the most rows per unit of time run first. Each conjunct's cost (the
+ * time it takes) and the number of rows it decides are measured; every
+ * REORDER_PERIOD evaluations, the conjuncts are sorted by time per decided
+ * row, and the measurements are halved, so that the order follows changes
+ * in the data. The order doesn't affect the result, except that a conjunct
+ * that would fail (e.g. on division by zero) may not be evaluated on the
+ * rows that fail it, as in any short-circuit evaluation.
+ */
+public class ConjunctionExpression extends BoundExpression {
+
+  static final int REORDER_PERIOD = 16;
+
+  private final OperationType operation;
+  // The value that decides the result: FALSE for AND, TRUE for OR.
+  private final boolean decisive;
+  private final int[] order;
+  private final double[] evaluatedRows;
+  private final double[] decidedRows;
+  private final double[] nanos;
+  private final Selection remaining;
+  private int evaluations;
+
+  public ConjunctionExpression(final OperationType operation,
+      final Attribute attribute, final BoundExpression... conjuncts) {
+    super(attribute, conjuncts);
+    if (operation != OperationType.AND && operation != OperationType.OR) {
+      throw new IllegalArgumentException("Not a conjunction: " + operation);
+    }
+    this.operation = operation;
+    this.decisive = operation == OperationType.OR;
+    this.order = new int[conjuncts.length];
+    for (int i = 0; i < order.length; ++i) {
+      order[i] = i;
+    }
+    this.evaluatedRows = new double[conjuncts.length];
+    this.decidedRows = new double[conjuncts.length];
+    this.nanos = new double[conjuncts.length];
+    this.remaining = new Selection();
+  }
+
+  public OperationType operation() {
+    return operation;
+  }
+
+  /**
+   * Returns the indexes of the conjuncts (children), in the order in which
+   * they are currently evaluated.
+   */
+  public int[] evaluationOrder() {
+    return order.clone();
+  }
+
+  @Override
+  public FailureOr<Column> evaluate(final View input,
+      final Selection selection) {
+    final int rowCount = input.rowCount();
+    final Block output = outputBlock(rowCount);
+    final boolean[] out = output.boolData(0);
+    final boolean[] isNull = output.isNull(0);
+    if (selection.isAll()) {
+      Arrays.fill(out, 0, rowCount, !decisive);
+      if (isNull != null) {
+        Arrays.fill(isNull, 0, rowCount, false);
+      }
+    } else {
+      for (int k = 0; k < selection.count(); ++k) {
+        final int i = selection.row(k);
+        out[i] = !decisive;
+        if (isNull != null) {
+          isNull[i] = false;
+        }
+      }
+    }
+    remaining.copyFrom(selection);
+    for (int index : order) {
+      final int before = remaining.count();
+      if (before == 0) {
+        break;
+      }
+      final long start = System.nanoTime();
+      final FailureOr<Column> result = child(index).evaluate(input, remaining);
+      if (result.isFailure()) {
+        return result;
+      }
+      final Column conjunct = result.get();
+      final boolean[] values = (boolean[]) conjunct.data();
+      final int offset = conjunct.offset();
+      final boolean[] valueIsNull = conjunct.isNull();
+      final int nullOffset = conjunct.isNullOffset();
+      if (valueIsNull == null) {
+        for (int k = 0; k < before; ++k) {
+          final int i = remaining.row(k);
+          if (values[offset + i] == decisive) {
+            out[i] = decisive;
+          }
+        }
+      } else {
+        for (int k = 0; k < before; ++k) {
+          final int i = remaining.row(k);
+          if (valueIsNull[nullOffset + i]) {
+            isNull[i] = true;
+          } else if (values[offset + i] == decisive) {
+            out[i] = decisive;
+            isNull[i] = false;
+          }
+        }
+      }
+      remaining.selectUndecided(remaining, values, offset, valueIsNull,
+          nullOffset, decisive);
+      evaluatedRows[index] += before;
+      decidedRows[index] += before - remaining.count();
+      nanos[index] += System.nanoTime() - start;
+    }
+    if (++evaluations % REORDER_PERIOD == 0) {
+      reorder();
+    }
+    return success();
+  }
+
+  @Override
+  public void appendDescription(final StringBuilder target) {
+    target.append(operation.name());
+    appendChildren(target);
+  }
+
+  // Sorts the conjuncts by time per decided row. Conjuncts that haven't been
+  // evaluated recently go first, so that they get measured again.
+  private void reorder() {
+    final double[] rank = new double[order.length];
+    for (int i = 0; i < order.length; ++i) {
+      rank[i] = evaluatedRows[i] == 0 ? 0
+          : nanos[i] / Math.max(decidedRows[i], 0.5);
+      evaluatedRows[i] *= 0.5;
+      decidedRows[i] *= 0.5;
+      nanos[i] *= 0.5;
+    }
+    for (int i = 1; i < order.length; ++i) {
+      final int index = order[i];
+      int j = i - 1;
+      while (j >= 0 && rank[order[j]] > rank[index]) {
+        order[j + 1] = order[j];
+        --j;
+      }
+      order[j + 1] = index;
+    }
+  }
+}
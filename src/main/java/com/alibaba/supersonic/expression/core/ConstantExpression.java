@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.base.memory.Arena;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+
+/**
+ * A constant (possibly NULL) of any type. The value is boxed as returned by
+ * {@link Column#get(int)}: Integer for INT32, UINT32 and DATE, Long for
+ * INT64, UINT64 and DATETIME, Float, Double, Boolean, String for STRING,
+ * byte[] for BINARY, and DataType for DATA_TYPE.
+ * 
+ * The result block is filled once, and refilled only when a larger block
+ * comes in.
+ */
+public class ConstantExpression extends BoundExpression {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final Object value;
+  private int filledRows;
+
+  public ConstantExpression(final DataType type, final Object value) {
+    super(new Attribute(describe(type, value), type,
+        value == null ? Nullability.NULLABLE : Nullability.NOT_NULLABLE));
+    this.value = value;
+    this.filledRows = -1;
+  }
+
+  /**
+   * Returns a NULL of the specified type.
+   */
+  public static ConstantExpression nullOf(final DataType type) {
+    return new ConstantExpression(type, null);
+  }
+
+  /**
+   * Returns a constant holding the value of the column at the row.
+   */
+  public static ConstantExpression fromColumn(final Column column,
+      final int row) {
+    return new ConstantExpression(column.typeInfo().type(),
+        column.isNull(row) ? null : column.get(row));
+  }
+
+  /**
+   * Returns the value, or null for NULL.
+   */
+  public Object value() {
+    return value;
+  }
+
+  public boolean isNull() {
+    return value == null;
+  }
+
+  @Override
+  public FailureOr<Column> evaluate(final View input,
+      final Selection selection) {
+    final int rowCount = input.rowCount();
+    if (rowCount > filledRows) {
+      final Block output = outputBlock(rowCount);
+      fill(output, output.rowCapacity());
+      filledRows = output.rowCapacity();
+    }
+    return success();
+  }
+
+  @Override
+  public void appendDescription(final StringBuilder target) {
+    target.append(resultAttribute().getName());
+  }
+
+  private void fill(final Block output, final int rowCount) {
+    if (value == null) {
+      Arrays.fill(output.isNull(0), 0, rowCount, true);
+      return;
+    }
+    switch (resultType()) {
+      case INT32:
+      case UINT32:
+      case DATE:
+        Arrays.fill(output.intData(0), 0, rowCount, (Integer) value);
+        break;
+      case DATA_TYPE:
+        Arrays.fill(output.intData(0), 0, rowCount,
+            ((DataType) value).getNumber());
+        break;
+      case INT64:
+      case UINT64:
+      case DATETIME:
+        Arrays.fill(output.longData(0), 0, rowCount, (Long) value);
+        break;
+      case FLOAT:
+        Arrays.fill(output.floatData(0), 0, rowCount, (Float) value);
+        break;
+      case DOUBLE:
+        Arrays.fill(output.doubleData(0), 0, rowCount, (Double) value);
+        break;
+      case BOOL:
+        Arrays.fill(output.boolData(0), 0, rowCount, (Boolean) value);
+        break;
+      case STRING:
+      case BINARY: {
+        final byte[] bytes = resultType() == DataType.STRING
+            ? ((String) value).getBytes(UTF_8) : (byte[]) value;
+        final Arena arena = output.arena(0);
+        Arrays.fill(output.longData(0), 0, rowCount,
+            arena.append(bytes, 0, bytes.length));
+        break;
+      }
+      default:
+        throw new IllegalStateException("Unsupported type: " + resultType());
+    }
+  }
+
+  private static String describe(final DataType type, final Object value) {
+    if (value == null) {
+      return "NULL";
+    }
+    switch (type) {
+      case STRING:
+        return "'" + value + "'";
+      case BINARY:
+        return Arrays.toString((byte[]) value);
+      default:
+        return String.valueOf(value);
+    }
+  }
+}
@@ -0,0 +1,423 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alibaba.supersonic.base.exception.SupersonicException;
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.base.memory.Arena;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrs;
+
+/**
+ * DATE_FORMAT_UTC and DATE_FORMAT_LOCAL: formats a DATETIME, in UTC or in
+ * the JVM's default time zone, with a constant strftime-style format (in
+ * the C locale). Supported conversions: %Y %C %y %m %d %e %j %H %I %M %S %p
+ * %a %A %b %h %B %u %w %s %F %T %R %D %n %t and %%.
+ * 
+ * The format is compiled once, and each selected row is written straight
+ * into the result's arena, without intermediate Strings.
+ */
+public class DateFormatExpression extends BoundExpression {
+
+  private static final byte[][] WEEKDAYS = names("Monday", "Tuesday",
+      "Wednesday", "Thursday", "Friday", "Saturday", "Sunday");
+  private static final byte[][] MONTHS = names("January", "February",
+      "March", "April", "May", "June", "July", "August", "September",
+      "October", "November", "December");
+
+  private final OperationType operation;
+  private final String format;
+  // The compiled format: a conversion character per element, or 0 for a
+  // literal (in literals).
+  private final char[] conversions;
+  private final byte[][] literals;
+  // An upper bound of the length of a result.
+  private final int maxLength;
+  // Set for DATE_FORMAT_LOCAL.
+  private final ZoneOffsets zone;
+  private long[] local;
+  // The date of the last formatted day.
+  private long day;
+  private long civil;
+
+  private DateFormatExpression(final OperationType operation,
+      final Attribute attribute, final BoundExpression argument,
+      final String format, final List<Character> conversions,
+      final List<byte[]> literals, final boolean utc) {
+    super(attribute, argument);
+    this.operation = operation;
+    this.format = format;
+    this.conversions = new char[conversions.size()];
+    this.literals = new byte[conversions.size()][];
+    int maxLength = 0;
+    for (int i = 0; i < this.conversions.length; ++i) {
+      this.conversions[i] = conversions.get(i);
+      this.literals[i] = literals.get(i);
+      maxLength += this.conversions[i] == 0 ? this.literals[i].length
+          : maxLength(this.conversions[i]);
+    }
+    this.maxLength = maxLength;
+    this.zone = utc ? null : ZoneOffsets.local();
+    this.local = new long[0];
+    this.day = 0;
+    this.civil = DateTimes.civil(0);
+  }
+
+  /**
+   * Compiles the format; fails if it has unsupported conversions. The
+   * DATETIMEs are formatted in UTC if utc is set (whatever the operation,
+   * e.g. for DATEs cast to DATETIMEs), in local time otherwise.
+   */
+  public static FailureOr<DateFormatExpression> create(
+      final OperationType operation, final Attribute attribute,
+      final BoundExpression argument, final String format,
+      final boolean utc) {
+    final String expanded = expand(format);
+    final List<Character> conversions = new ArrayList<Character>();
+    final List<byte[]> literals = new ArrayList<byte[]>();
+    final StringBuilder literal = new StringBuilder();
+    for (int i = 0; i < expanded.length(); ++i) {
+      final char c = expanded.charAt(i);
+      if (c != '%') {
+        literal.append(c);
+        continue;
+      }
+      if (i + 1 == expanded.length()) {
+        return invalidFormat(format, "ends with '%'");
+      }
+      final char conversion = expanded.charAt(++i);
+      if (conversion == '%') {
+        literal.append('%');
+        continue;
+      }
+      if (maxLength(conversion) < 0) {
+        return invalidFormat(format,
+            "unsupported conversion %" + conversion);
+      }
+      if (literal.length() > 0) {
+        conversions.add((char) 0);
+        literals.add(literal.toString().getBytes(Utf8.UTF_8));
+        literal.setLength(0);
+      }
+      conversions.add(conversion);
+      literals.add(null);
+    }
+    if (literal.length() > 0) {
+      conversions.add((char) 0);
+      literals.add(literal.toString().getBytes(Utf8.UTF_8));
+    }
+    return FailureOrs.success(new DateFormatExpression(operation, attribute,
+        argument, format, conversions, literals, utc));
+  }
+
+  public OperationType operation() {
+    return operation;
+  }
+
+  @Override
+  public FailureOr<Column> evaluate(final View input,
+      final Selection selection) {
+    final FailureOr<Column> argument = child(0).evaluate(input, selection);
+    if (argument.isFailure()) {
+      return argument;
+    }
+    final int rowCount = input.rowCount();
+    final Block output = outputBlock(rowCount);
+    final Column source = argument.get();
+    propagateNulls(output, rowCount, source);
+    final boolean[] isNull = output.isNull(0);
+    final long[] out = output.longData(0);
+    final Arena arena = output.arena(0);
+    final long[] utc = (long[]) source.data();
+    final int utcOffset = source.offset();
+    long[] micros = utc;
+    int offset = utcOffset;
+    if (zone != null) {
+      if (local.length < rowCount) {
+        local = new long[rowCount];
+      }
+      zone.toLocal(utc, utcOffset, local, rowCount);
+      micros = local;
+      offset = 0;
+    }
+    for (int k = 0; k < selection.count(); ++k) {
+      final int i = selection.row(k);
+      if (isNull != null && isNull[i]) {
+        continue;
+      }
+      final int start = arena.reserve(maxLength);
+      final int end = format(micros[offset + i], utc[utcOffset + i],
+          arena.buffer(), start);
+      arena.truncate(end);
+      out[i] = Arena.piece(start, end - start);
+    }
+    return success();
+  }
+
+  // Writes the datetime (in local time, if formatting in local time) to the
+  // buffer, at position; returns the end of the written bytes.
+  private int format(final long micros, final long utc, final byte[] buffer,
+      int position) {
+    final long days = DateTimes.days(micros);
+    if (days != day) {
+      day = days;
+      civil = DateTimes.civil(days);
+    }
+    final int seconds =
+        (int) ((micros - days * DateTimes.MICROS_PER_DAY)
+            / DateTimes.MICROS_PER_SECOND);
+    for (int i = 0; i < conversions.length; ++i) {
+      switch (conversions[i]) {
+        case 0: {
+          final byte[] literal = literals[i];
+          System.arraycopy(literal, 0, buffer, position, literal.length);
+          position += literal.length;
+          break;
+        }
+        case 'Y':
+          position = writeSigned(buffer, position, DateTimes.year(civil), 4);
+          break;
+        case 'C':
+          position = writeSigned(buffer, position,
+              Math.floorDiv(DateTimes.year(civil), 100), 2);
+          break;
+        case 'y':
+          position = write(buffer, position,
+              Math.floorMod(DateTimes.year(civil), 100), 2, '0');
+          break;
+        case 'm':
+          position = write(buffer, position, DateTimes.month(civil), 2, '0');
+          break;
+        case 'd':
+          position = write(buffer, position, DateTimes.day(civil), 2, '0');
+          break;
+        case 'e':
+          position = write(buffer, position, DateTimes.day(civil), 2, ' ');
+          break;
+        case 'j':
+          position = write(buffer, position,
+              DateTimes.yearDay(days, civil), 3, '0');
+          break;
+        case 'H':
+          position = write(buffer, position, seconds / 3600, 2, '0');
+          break;
+        case 'I':
+          position = write(buffer, position, (seconds / 3600 + 11) % 12 + 1,
+              2, '0');
+          break;
+        case 'M':
+          position = write(buffer, position, seconds / 60 % 60, 2, '0');
+          break;
+        case 'S':
+          position = write(buffer, position, seconds % 60, 2, '0');
+          break;
+        case 'p':
+          buffer[position++] = seconds < 12 * 3600 ? (byte) 'A' : (byte) 'P';
+          buffer[position++] = 'M';
+          break;
+        case 'a':
+          position = write(buffer, position,
+              WEEKDAYS[DateTimes.weekday(days)], 3);
+          break;
+        case 'A': {
+          final byte[] name = WEEKDAYS[DateTimes.weekday(days)];
+          position = write(buffer, position, name, name.length);
+          break;
+        }
+        case 'b':
+        case 'h':
+          position = write(buffer, position,
+              MONTHS[DateTimes.month(civil) - 1], 3);
+          break;
+        case 'B': {
+          final byte[] name = MONTHS[DateTimes.month(civil) - 1];
+          position = write(buffer, position, name, name.length);
+          break;
+        }
+        case 'u':
+          buffer[position++] = (byte) ('1' + DateTimes.weekday(days));
+          break;
+        case 'w':
+          buffer[position++] =
+              (byte) ('0' + (DateTimes.weekday(days) + 1) % 7);
+          break;
+        case 's':
+          position = writeSigned(buffer, position,
+              Math.floorDiv(utc, DateTimes.MICROS_PER_SECOND), 1);
+          break;
+        default:
+          throw new IllegalStateException("Unexpected conversion: "
+              + conversions[i]);
+      }
+    }
+    return position;
+  }
+
+  // Writes a signed number (a year, century or number of seconds), with at
+  // least width digits.
+  private static int writeSigned(final byte[] buffer, int position,
+      final long value, final int width) {
+    if (value < 0) {
+      buffer[position++] = '-';
+    }
+    return write(buffer, position, Math.abs(value), width, '0');
+  }
+
+  // Writes a non-negative number, padded to width with the pad character.
+  private static int write(final byte[] buffer, final int position,
+      long value, final int width, final char pad) {
+    // Most of the conversions.
+    if (width == 2 && value < 100) {
+      final int digits = (int) value;
+      buffer[position] = digits < 10 ? (byte) pad : (byte) ('0' + digits / 10);
+      buffer[position + 1] = (byte) ('0' + digits % 10);
+      return position + 2;
+    }
+    if (width == 4 && value < 10000) {
+      final int digits = (int) value;
+      buffer[position] = (byte) ('0' + digits / 1000);
+      buffer[position + 1] = (byte) ('0' + digits / 100 % 10);
+      buffer[position + 2] = (byte) ('0' + digits / 10 % 10);
+      buffer[position + 3] = (byte) ('0' + digits % 10);
+      return position + 4;
+    }
+    int digits = 1;
+    for (long rest = value / 10; rest > 0; rest /= 10) {
+      ++digits;
+    }
+    final int length = Math.max(digits, width);
+    int end = position + length;
+    for (int i = end - 1; i >= end - digits; --i) {
+      buffer[i] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    for (int i = position; i < end - digits; ++i) {
+      buffer[i] = (byte) pad;
+    }
+    return end;
+  }
+
+  private static int write(final byte[] buffer, final int position,
+      final byte[] name, final int length) {
+    System.arraycopy(name, 0, buffer, position, length);
+    return position + length;
+  }
+
+  // Replaces the composite conversions (%F, %T, %R, %D) with their
+  // definitions, and %n and %t with the characters.
+  private static String expand(final String format) {
+    final StringBuilder result = new StringBuilder(format.length());
+    for (int i = 0; i < format.length(); ++i) {
+      final char c = format.charAt(i);
+      if (c != '%' || i + 1 == format.length()) {
+        result.append(c);
+        continue;
+      }
+      final char conversion = format.charAt(++i);
+      switch (conversion) {
+        case 'F':
+          result.append("%Y-%m-%d");
+          break;
+        case 'T':
+          result.append("%H:%M:%S");
+          break;
+        case 'R':
+          result.append("%H:%M");
+          break;
+        case 'D':
+          result.append("%m/%d/%y");
+          break;
+        case 'n':
+          result.append('\n');
+          break;
+        case 't':
+          result.append('\t');
+          break;
+        default:
+          result.append('%').append(conversion);
+      }
+    }
+    return result.toString();
+  }
+
+  // Returns an upper bound of the length of the conversion, or -1 if it
+  // isn't supported.
+  private static int maxLength(final char conversion) {
+    switch (conversion) {
+      case 'Y':
+      case 'C':
+        return 12;
+      case 's':
+        return 20;
+      case 'y':
+      case 'm':
+      case 'd':
+      case 'e':
+      case 'H':
+      case 'I':
+      case 'M':
+      case 'S':
+      case 'p':
+        return 2;
+      case 'j':
+      case 'a':
+      case 'b':
+      case 'h':
+        return 3;
+      case 'A':
+      case 'B':
+        return 9;
+      case 'u':
+      case 'w':
+        return 1;
+      default:
+        return -1;
+    }
+  }
+
+  private static byte[][] names(final String... names) {
+    final byte[][] result = new byte[names.length][];
+    for (int i = 0; i < names.length; ++i) {
+      result[i] = names[i].getBytes(Utf8.UTF_8);
+    }
+    return result;
+  }
+
+  private static <T> FailureOr<T> invalidFormat(final String format,
+      final String problem) {
+    return FailureOrs.failure(new SupersonicException(
+        ReturnCode.ERROR_INVALID_ARGUMENT_VALUE,
+        "Invalid date format '" + format + "': " + problem));
+  }
+
+  @Override
+  public void appendDescription(final StringBuilder target) {
+    target.append(operation.name()).append('(');
+    child(0).appendDescription(target);
+    target.append(", \"").append(format).append("\")");
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+
+/**
+ * ADD_MINUTE, ADD_DAY, ADD_WEEK, ADD_MONTH and ADD_YEAR: adds an INT64
+ * number of periods (possibly negative) to a DATETIME, or (except for
+ * ADD_MINUTE) to a DATE. Adding months or years keeps the day of the month
+ * and the time of the day, except that a day past the end of the resulting
+ * month becomes its last day. Computed in UTC, for all rows; the results
+ * wrap around on overflow, like the integer arithmetic. The calendar
+ * arithmetic is done once per run of rows on the same day (with the same
+ * number of months to add).
+ */
+public class DateTimeAddExpression extends BoundExpression {
+
+  private final OperationType operation;
+
+  public DateTimeAddExpression(final OperationType operation,
+      final Attribute attribute, final BoundExpression value,
+      final BoundExpression count) {
+    super(attribute, value, count);
+    this.operation = operation;
+  }
+
+  public OperationType operation() {
+    return operation;
+  }
+
+  @Override
+  public FailureOr<Column> evaluate(final View input,
+      final Selection selection) {
+    final FailureOr<Column> left = child(0).evaluate(input, selection);
+    if (left.isFailure()) {
+      return left;
+    }
+    final FailureOr<Column> right = child(1).evaluate(input, selection);
+    if (right.isFailure()) {
+      return right;
+    }
+    final int rowCount = input.rowCount();
+    final Block output = outputBlock(rowCount);
+    final Column value = left.get();
+    final Column count = right.get();
+    propagateNulls(output, rowCount, value, count);
+    final long[] counts = (long[]) count.data();
+    final int countOffset = count.offset();
+    final int offset = value.offset();
+    if (resultType() == DataType.DATE) {
+      final int[] from = (int[]) value.data();
+      final int[] out = output.intData(0);
+      switch (operation) {
+        case ADD_DAY:
+        case ADD_WEEK: {
+          final int days = operation == OperationType.ADD_WEEK ? 7 : 1;
+          for (int i = 0; i < rowCount; ++i) {
+            out[i] = (int) (from[offset + i] + counts[countOffset + i] * days);
+          }
+          break;
+        }
+        default: {
+          final long monthsPerPeriod = monthsPerPeriod();
+          // The last day and number of months added, and the result
+          // (adding 0 months to day 0 gives day 0).
+          long day = 0;
+          long added = 0;
+          long result = 0;
+          for (int i = 0; i < rowCount; ++i) {
+            final long current = from[offset + i];
+            final long months = counts[countOffset + i] * monthsPerPeriod;
+            if (current != day || months != added) {
+              day = current;
+              added = months;
+              result = DateTimes.addMonths(day, added);
+            }
+            out[i] = (int) result;
+          }
+        }
+      }
+      return success();
+    }
+    final long[] from = (long[]) value.data();
+    final long[] out = output.longData(0);
+    switch (operation) {
+      case ADD_MINUTE:
+      case ADD_DAY:
+      case ADD_WEEK: {
+        final long unit = operation == OperationType.ADD_MINUTE
+            ? DateTimes.MICROS_PER_MINUTE
+            : operation == OperationType.ADD_DAY ? DateTimes.MICROS_PER_DAY
+                : DateTimes.MICROS_PER_WEEK;
+        for (int i = 0; i < rowCount; ++i) {
+          out[i] = from[offset + i] + counts[countOffset + i] * unit;
+        }
+        break;
+      }
+      default: {
+        final long monthsPerPeriod = monthsPerPeriod();
+        long day = 0;
+        long added = 0;
+        long result = 0;
+        for (int i = 0; i < rowCount; ++i) {
+          final long micros = from[offset + i];
+          final long current = DateTimes.days(micros);
+          final long months = counts[countOffset + i] * monthsPerPeriod;
+          if (current != day || months != added) {
+            day = current;
+            added = months;
+            result = DateTimes.addMonths(day, added);
+          }
+          out[i] = (result - day) * DateTimes.MICROS_PER_DAY + micros;
+        }
+      }
+    }
+    return success();
+  }
+
+  private long monthsPerPeriod() {
+    switch (operation) {
+      case ADD_MONTH:
+        return 1;
+      case ADD_YEAR:
+        return 12;
+      default:
+        throw new IllegalStateException("Unexpected operation: "
+            + operation);
+    }
+  }
+
+  @Override
+  public void appendDescription(final StringBuilder target) {
+    target.append(operation.name());
+    appendChildren(target);
+  }
+}
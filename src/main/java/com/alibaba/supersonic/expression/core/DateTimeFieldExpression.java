@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+
+/**
+ * Extracts a field (INT32) from a DATETIME or a DATE: YEAR, MONTH, DAY,
+ * WEEKDAY, YEARDAY, HOUR, MINUTE and QUARTER, in UTC or in the JVM's default
+ * time zone (the _LOCAL variants), and SECOND and MICROSECOND. DATEs are
+ * calendar days, with no time zone, so the _UTC and _LOCAL variants are the
+ * same for them; the binder doesn't pass DATEs to the time-of-day fields.
+ * 
+ * Computed for all rows, with integer arithmetic only. Fields of the date
+ * are computed once per distinct day in a run of rows, which is the common
+ * case for time-ordered data.
+ */
+public class DateTimeFieldExpression extends BoundExpression {
+
+  private final OperationType operation;
+  // Set for the _LOCAL variants on DATETIMEs.
+  private final ZoneOffsets zone;
+  // Scratch space, reused across blocks.
+  private long[] local;
+  private long[] days;
+
+  public DateTimeFieldExpression(final OperationType operation,
+      final Attribute attribute, final BoundExpression argument) {
+    super(attribute, argument);
+    this.operation = operation;
+    this.zone = isLocal(operation)
+        && argument.resultType() == DataType.DATETIME
+        ? ZoneOffsets.local() : null;
+    this.local = new long[0];
+    this.days = new long[0];
+  }
+
+  public OperationType operation() {
+    return operation;
+  }
+
+  /**
+   * Returns true for the fields that depend on the time of the day (and
+   * are therefore 0 for DATEs).
+   */
+  public static boolean isTimeOfDay(final OperationType operation) {
+    switch (operation) {
+      case HOUR_UTC:
+      case HOUR_LOCAL:
+      case MINUTE_UTC:
+      case MINUTE_LOCAL:
+      case SECOND:
+      case MICROSECOND:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isLocal(final OperationType operation) {
+    switch (operation) {
+      case YEAR_LOCAL:
+      case MONTH_LOCAL:
+      case DAY_LOCAL:
+      case WEEKDAY_LOCAL:
+      case YEARDAY_LOCAL:
+      case HOUR_LOCAL:
+      case MINUTE_LOCAL:
+      case QUARTER_LOCAL:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  @Override
+  public FailureOr<Column> evaluate(final View input,
+      final Selection selection) {
+    final FailureOr<Column> argument = child(0).evaluate(input, selection);
+    if (argument.isFailure()) {
+      return argument;
+    }
+    final int rowCount = input.rowCount();
+    final Block output = outputBlock(rowCount);
+    final Column source = argument.get();
+    propagateNulls(output, rowCount, source);
+    final int[] out = output.intData(0);
+    final long[] days = days(rowCount);
+    if (child(0).resultType() == DataType.DATE) {
+      final int[] from = (int[]) source.data();
+      final int offset = source.offset();
+      for (int i = 0; i < rowCount; ++i) days[i] = from[offset + i];
+      dateField(days, rowCount, out);
+      return success();
+    }
+    long[] micros = (long[]) source.data();
+    int offset = source.offset();
+    if (zone != null) {
+      zone.toLocal(micros, offset, local(rowCount), rowCount);
+      micros = local;
+      offset = 0;
+    }
+    switch (operation) {
+      case HOUR_UTC:
+      case HOUR_LOCAL:
+        for (int i = 0; i < rowCount; ++i) {
+          out[i] = (int) (DateTimes.timeOfDay(micros[offset + i])
+              / DateTimes.MICROS_PER_HOUR);
+        }
+        break;
+      case MINUTE_UTC:
+      case MINUTE_LOCAL:
+        for (int i = 0; i < rowCount; ++i) {
+          out[i] = (int) (Math.floorMod(micros[offset + i],
+              DateTimes.MICROS_PER_HOUR) / DateTimes.MICROS_PER_MINUTE);
+        }
+        break;
+      case SECOND:
+        for (int i = 0; i < rowCount; ++i) {
+          out[i] = (int) (Math.floorMod(micros[offset + i],
+              DateTimes.MICROS_PER_MINUTE) / DateTimes.MICROS_PER_SECOND);
+        }
+        break;
+      case MICROSECOND:
+        for (int i = 0; i < rowCount; ++i) {
+          out[i] = (int) Math.floorMod(micros[offset + i],
+              DateTimes.MICROS_PER_SECOND);
+        }
+        break;
+      default:
+        for (int i = 0; i < rowCount; ++i) {
+          days[i] = DateTimes.days(micros[offset + i]);
+        }
+        dateField(days, rowCount, out);
+    }
+    return success();
+  }
+
+  // Computes a field of the date for each of the days.
+  private void dateField(final long[] days, final int rowCount,
+      final int[] out) {
+    if (operation == OperationType.WEEKDAY_UTC
+        || operation == OperationType.WEEKDAY_LOCAL) {
+      for (int i = 0; i < rowCount; ++i) {
+        out[i] = DateTimes.weekday(days[i]);
+      }
+      return;
+    }
+    if (rowCount == 0) {
+      return;
+    }
+    long day = days[0];
+    int value = dateField(day);
+    for (int i = 0; i < rowCount; ++i) {
+      if (days[i] != day) {
+        day = days[i];
+        value = dateField(day);
+      }
+      out[i] = value;
+    }
+  }
+
+  private int dateField(final long day) {
+    final long civil = DateTimes.civil(day);
+    switch (operation) {
+      case YEAR_UTC:
+      case YEAR_LOCAL:
+        return DateTimes.year(civil);
+      case MONTH_UTC:
+      case MONTH_LOCAL:
+        return DateTimes.month(civil);
+      case DAY_UTC:
+      case DAY_LOCAL:
+        return DateTimes.day(civil);
+      case YEARDAY_UTC:
+      case YEARDAY_LOCAL:
+        return DateTimes.yearDay(day, civil);
+      case QUARTER_UTC:
+      case QUARTER_LOCAL:
+        return DateTimes.quarter(civil);
+      default:
+        throw new IllegalStateException("Unexpected operation: "
+            + operation);
+    }
+  }
+
+  private long[] local(final int rowCount) {
+    if (local.length < rowCount) {
+      local = new long[rowCount];
+    }
+    return local;
+  }
+
+  private long[] days(final int rowCount) {
+    if (days.length < rowCount) {
+      days = new long[rowCount];
+    }
+    return days;
+  }
+
+  @Override
+  public void appendDescription(final StringBuilder target) {
+    target.append(operation.name());
+    appendChildren(target);
+  }
+}
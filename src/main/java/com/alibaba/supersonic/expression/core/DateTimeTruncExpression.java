@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+
+/**
+ * TRUNC_TO_SECOND, _MINUTE, _HOUR, _DAY, _MONTH, _QUARTER and _YEAR: the
+ * start (in UTC) of the period that contains the DATETIME. TRUNC_TO_MONTH,
+ * _QUARTER and _YEAR also take DATEs, and return DATEs; the binder replaces
+ * the finer truncations of DATEs with their argument.
+ * 
+ * Computed for all rows. The start of the period is computed once per
+ * distinct day in a run of rows.
+ */
+public class DateTimeTruncExpression extends BoundExpression {
+
+  private final OperationType operation;
+
+  public DateTimeTruncExpression(final OperationType operation,
+      final Attribute attribute, final BoundExpression argument) {
+    super(attribute, argument);
+    this.operation = operation;
+  }
+
+  public OperationType operation() {
+    return operation;
+  }
+
+  @Override
+  public FailureOr<Column> evaluate(final View input,
+      final Selection selection) {
+    final FailureOr<Column> argument = child(0).evaluate(input, selection);
+    if (argument.isFailure()) {
+      return argument;
+    }
+    final int rowCount = input.rowCount();
+    final Block output = outputBlock(rowCount);
+    final Column source = argument.get();
+    propagateNulls(output, rowCount, source);
+    final int offset = source.offset();
+    if (resultType() == DataType.DATE) {
+      final int[] from = (int[]) source.data();
+      final int[] out = output.intData(0);
+      long day = 0;
+      long start = periodStart(day);
+      for (int i = 0; i < rowCount; ++i) {
+        if (from[offset + i] != day) {
+          day = from[offset + i];
+          start = periodStart(day);
+        }
+        out[i] = (int) start;
+      }
+      return success();
+    }
+    final long[] from = (long[]) source.data();
+    final long[] out = output.longData(0);
+    switch (operation) {
+      case TRUNC_TO_SECOND:
+        truncate(from, offset, out, rowCount, DateTimes.MICROS_PER_SECOND);
+        break;
+      case TRUNC_TO_MINUTE:
+        truncate(from, offset, out, rowCount, DateTimes.MICROS_PER_MINUTE);
+        break;
+      case TRUNC_TO_HOUR:
+        truncate(from, offset, out, rowCount, DateTimes.MICROS_PER_HOUR);
+        break;
+      case TRUNC_TO_DAY:
+        truncate(from, offset, out, rowCount, DateTimes.MICROS_PER_DAY);
+        break;
+      default: {
+        long day = 0;
+        long start = periodStart(day) * DateTimes.MICROS_PER_DAY;
+        for (int i = 0; i < rowCount; ++i) {
+          final long current = DateTimes.days(from[offset + i]);
+          if (current != day) {
+            day = current;
+            start = periodStart(day) * DateTimes.MICROS_PER_DAY;
+          }
+          out[i] = start;
+        }
+      }
+    }
+    return success();
+  }
+
+  private static void truncate(final long[] from, final int offset,
+      final long[] out, final int rowCount, final long unit) {
+    for (int i = 0; i < rowCount; ++i) {
+      final long micros = from[offset + i];
+      out[i] = micros - Math.floorMod(micros, unit);
+    }
+  }
+
+  // Returns the first day of the month, quarter or year of the day.
+  private long periodStart(final long day) {
+    final long civil = DateTimes.civil(day);
+    switch (operation) {
+      case TRUNC_TO_MONTH:
+        return DateTimes.firstDayOfMonth(day, civil);
+      case TRUNC_TO_QUARTER:
+        return DateTimes.firstDayOfQuarter(civil);
+      case TRUNC_TO_YEAR:
+        return DateTimes.firstDayOfYear(civil);
+      default:
+        throw new IllegalStateException("Unexpected operation: "
+            + operation);
+    }
+  }
+
+  @Override
+  public void appendDescription(final StringBuilder target) {
+    target.append(operation.name());
+    appendChildren(target);
+  }
+}
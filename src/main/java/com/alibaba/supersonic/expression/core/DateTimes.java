@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+/**
+ * Calendar arithmetic on the engine's representations of time: DATETIME is
+ * the number of microseconds, and DATE the number of days, since the Epoch
+ * (1970-01-01, UTC). Dates are in the proleptic Gregorian calendar.
+ * 
+ * Everything is plain integer arithmetic, with no Calendar or java.time
+ * objects, so that the kernels can call it once per row without allocating.
+ * The conversions between day numbers and (year, month, day) are those of
+ * H. Hinnant's "chrono-Compatible Low-Level Date Algorithms", which are
+ * exact over the whole range of the types.
+ */
+final class DateTimes {
+
+  static final long MICROS_PER_SECOND = 1000L * 1000;
+  static final long MICROS_PER_MINUTE = 60 * MICROS_PER_SECOND;
+  static final long MICROS_PER_HOUR = 60 * MICROS_PER_MINUTE;
+  static final long MICROS_PER_DAY = 24 * MICROS_PER_HOUR;
+  static final long MICROS_PER_WEEK = 7 * MICROS_PER_DAY;
+
+  // Days from 0000-03-01, the start of the calendar used internally (with
+  // the leap day at the end of the year), to 1970-01-01.
+  private static final long EPOCH_SHIFT = 719468;
+  // Days in 400 years.
+  private static final long DAYS_PER_ERA = 146097;
+
+  private DateTimes() {
+  }
+
+  /**
+   * Returns the day (since the Epoch) of the datetime.
+   */
+  static long days(final long micros) {
+    return Math.floorDiv(micros, MICROS_PER_DAY);
+  }
+
+  /**
+   * Returns the microseconds since midnight of the datetime.
+   */
+  static long timeOfDay(final long micros) {
+    return Math.floorMod(micros, MICROS_PER_DAY);
+  }
+
+  /**
+   * Returns the date of the day, packed into a long: see year(), month() and
+   * day() to unpack it.
+   */
+  static long civil(final long days) {
+    final long shifted = days + EPOCH_SHIFT;
+    final long era = Math.floorDiv(shifted, DAYS_PER_ERA);
+    final long dayOfEra = shifted - era * DAYS_PER_ERA;
+    final long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524
+        - dayOfEra / 146096) / 365;
+    final long dayOfYear =
+        dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    // The month, counted from March = 0.
+    final long shiftedMonth = (5 * dayOfYear + 2) / 153;
+    final long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+    final long month = shiftedMonth < 10 ? shiftedMonth + 3
+        : shiftedMonth - 9;
+    final long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+    return (year << 9) | (month << 5) | day;
+  }
+
+  static int year(final long civil) {
+    return (int) (civil >> 9);
+  }
+
+  /**
+   * Returns the month, 1-12.
+   */
+  static int month(final long civil) {
+    return (int) (civil >> 5) & 15;
+  }
+
+  /**
+   * Returns the day of the month, 1-31.
+   */
+  static int day(final long civil) {
+    return (int) civil & 31;
+  }
+
+  /**
+   * Returns the day (since the Epoch) of the date. The day of the month
+   * must be valid for the month.
+   */
+  static long daysFromCivil(final long year, final int month,
+      final int day) {
+    final long shiftedYear = month <= 2 ? year - 1 : year;
+    final long era = Math.floorDiv(shiftedYear, 400L);
+    final long yearOfEra = shiftedYear - era * 400;
+    final long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5
+        + day - 1;
+    final long dayOfEra =
+        yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * DAYS_PER_ERA + dayOfEra - EPOCH_SHIFT;
+  }
+
+  /**
+   * Returns the day of the week, 0-6, Monday = 0.
+   */
+  static int weekday(final long days) {
+    // 1970-01-01 was a Thursday.
+    return (int) Math.floorMod(days + 3, 7L);
+  }
+
+  /**
+   * Returns the day of the year of the date, 1-366.
+   */
+  static int yearDay(final long days, final long civil) {
+    return (int) (days - daysFromCivil(year(civil), 1, 1)) + 1;
+  }
+
+  /**
+   * Returns the quarter of the year of the date, 1-4.
+   */
+  static int quarter(final long civil) {
+    return (month(civil) + 2) / 3;
+  }
+
+  static boolean isLeapYear(final long year) {
+    return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+  }
+
+  /**
+   * Returns the number of days in the month of the year.
+   */
+  static int daysInMonth(final long year, final int month) {
+    if (month == 2) {
+      return isLeapYear(year) ? 29 : 28;
+    }
+    // 31 for Jan, Mar, May, Jul, Aug, Oct and Dec.
+    return 30 + ((month + (month >> 3)) & 1);
+  }
+
+  /**
+   * Adds months to the day (since the Epoch). If the day of the month
+   * doesn't exist in the resulting month, returns the month's last day
+   * (e.g. Jan 31 + 1 month = Feb 28, or 29).
+   */
+  static long addMonths(final long days, final long months) {
+    final long civil = civil(days);
+    final long total = year(civil) * 12L + month(civil) - 1 + months;
+    final long year = Math.floorDiv(total, 12L);
+    final int month = (int) Math.floorMod(total, 12L) + 1;
+    return daysFromCivil(year, month,
+        Math.min(day(civil), daysInMonth(year, month)));
+  }
+
+  /**
+   * Returns the first day of the month of the day (since the Epoch).
+   */
+  static long firstDayOfMonth(final long days, final long civil) {
+    return days - day(civil) + 1;
+  }
+
+  /**
+   * Returns the first day of the quarter of the day (since the Epoch).
+   */
+  static long firstDayOfQuarter(final long civil) {
+    return daysFromCivil(year(civil), month(civil) - (month(civil) - 1) % 3,
+        1);
+  }
+
+  /**
+   * Returns the first day of the year of the day (since the Epoch).
+   */
+  static long firstDayOfYear(final long civil) {
+    return daysFromCivil(year(civil), 1, 1);
+  }
+}
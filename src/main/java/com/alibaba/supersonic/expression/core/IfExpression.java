@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+
+/**
+ * IF(condition, then, otherwise), and IFNULL(value, substitute). Each branch
+ * is evaluated only for the rows that take it, so e.g. IF(b != 0, a / b, 0)
+ * never divides by zero.
+ */
+public class IfExpression extends BoundExpression {
+
+  private final boolean ifNull;
+  private final Selection taken;
+  private final Selection notTaken;
+
+  private IfExpression(final boolean ifNull, final Attribute attribute,
+      final BoundExpression... arguments) {
+    super(attribute, arguments);
+    this.ifNull = ifNull;
+    this.taken = new Selection();
+    this.notTaken = new Selection();
+  }
+
+  /**
+   * Returns IF(condition, then, otherwise); the branches must be of the
+   * result's type.
+   */
+  public static IfExpression ifThenElse(final Attribute attribute,
+      final BoundExpression condition, final BoundExpression then,
+      final BoundExpression otherwise) {
+    return new IfExpression(false, attribute, condition, then, otherwise);
+  }
+
+  /**
+   * Returns IFNULL(value, substitute); both must be of the result's type.
+   */
+  public static IfExpression ifNull(final Attribute attribute,
+      final BoundExpression value, final BoundExpression substitute) {
+    return new IfExpression(true, attribute, value, substitute);
+  }
+
+  @Override
+  public FailureOr<Column> evaluate(final View input,
+      final Selection selection) {
+    return ifNull ? evaluateIfNull(input, selection)
+        : evaluateIf(input, selection);
+  }
+
+  private FailureOr<Column> evaluateIf(final View input,
+      final Selection selection) {
+    final FailureOr<Column> condition = child(0).evaluate(input, selection);
+    if (condition.isFailure()) {
+      return condition;
+    }
+    final Column c = condition.get();
+    final boolean[] values = (boolean[]) c.data();
+    taken.selectTrue(selection, values, c.offset(), c.isNull(),
+        c.isNullOffset());
+    notTaken.selectNotTrue(selection, values, c.offset(), c.isNull(),
+        c.isNullOffset());
+    final Block output = outputBlock(input.rowCount());
+    if (taken.count() > 0) {
+      final FailureOr<Column> then = child(1).evaluate(input, taken);
+      if (then.isFailure()) {
+        return then;
+      }
+      Kernels.copySelected(then.get(), taken, output);
+    }
+    if (notTaken.count() > 0) {
+      final FailureOr<Column> otherwise = child(2).evaluate(input, notTaken);
+      if (otherwise.isFailure()) {
+        return otherwise;
+      }
+      Kernels.copySelected(otherwise.get(), notTaken, output);
+    }
+    return success();
+  }
+
+  private FailureOr<Column> evaluateIfNull(final View input,
+      final Selection selection) {
+    final FailureOr<Column> value = child(0).evaluate(input, selection);
+    if (value.isFailure()) {
+      return value;
+    }
+    final Column v = value.get();
+    final Block output = outputBlock(input.rowCount());
+    if (v.isNull() == null) {
+      Kernels.copySelected(v, selection, output);
+      return success();
+    }
+    taken.selectTrue(selection, v.isNull(), v.isNullOffset(), null, 0);
+    notTaken.selectNotTrue(selection, v.isNull(), v.isNullOffset(), null, 0);
+    Kernels.copySelected(v, notTaken, output);
+    if (taken.count() > 0) {
+      final FailureOr<Column> substitute = child(1).evaluate(input, taken);
+      if (substitute.isFailure()) {
+        return substitute;
+      }
+      Kernels.copySelected(substitute.get(), taken, output);
+    }
+    return success();
+  }
+
+  @Override
+  public void appendDescription(final StringBuilder target) {
+    target.append(ifNull ? "IFNULL" : "IF");
+    appendChildren(target);
+  }
+}
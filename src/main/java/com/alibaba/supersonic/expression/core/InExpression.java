@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.base.memory.Arena;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+
+/**
+ * IN(value, c1, c2, ...): TRUE if the value is equal to one of the
+ * constants. NULL if the value is NULL, or if it isn't found and one of the
+ * constants is NULL. The constants must be of the value's type.
+ * 
+ * The constants are compiled, once, into a set for the type: a
+ * set of longs (of the bits, for floating point types; -0.0 matches 0.0,
+ * NaN matches nothing), a set of byte sequences for STRING and BINARY, or
+ * two flags for BOOL.
+ */
+public class InExpression extends BoundExpression {
+
+  private final LongSet longs;
+  private final BytesSet bytes;
+  private final boolean containsTrue;
+  private final boolean containsFalse;
+  private final boolean containsNull;
+
+  public InExpression(final Attribute attribute, final BoundExpression value,
+      final ConstantExpression... list) {
+    super(attribute, concat(value, list));
+    final DataType type = value.resultType();
+    final List<byte[]> byteValues = new ArrayList<byte[]>();
+    final long[] longValues = new long[list.length];
+    int longCount = 0;
+    boolean anyNull = false;
+    boolean anyTrue = false;
+    boolean anyFalse = false;
+    for (ConstantExpression constant : list) {
+      if (constant.resultType() != type) {
+        throw new IllegalArgumentException("Type mismatch: " + constant
+            + " in a list of " + type);
+      }
+      final Object item = constant.value();
+      if (item == null) {
+        anyNull = true;
+        continue;
+      }
+      switch (type) {
+        case INT32:
+        case UINT32:
+        case DATE:
+          longValues[longCount++] = (Integer) item;
+          break;
+        case DATA_TYPE:
+          longValues[longCount++] = ((DataType) item).getNumber();
+          break;
+        case INT64:
+        case UINT64:
+        case DATETIME:
+          longValues[longCount++] = (Long) item;
+          break;
+        case FLOAT:
+        case DOUBLE: {
+          final double number = ((Number) item).doubleValue();
+          if (!Double.isNaN(number)) {
+            longValues[longCount++] = doubleKey(number);
+          }
+          break;
+        }
+        case BOOL:
+          anyTrue |= (Boolean) item;
+          anyFalse |= !(Boolean) item;
+          break;
+        case STRING:
+          byteValues.add(((String) item).getBytes(Utf8.UTF_8));
+          break;
+        case BINARY:
+          byteValues.add((byte[]) item);
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported type: " + type);
+      }
+    }
+    this.containsNull = anyNull;
+    this.containsTrue = anyTrue;
+    this.containsFalse = anyFalse;
+    final long[] keys = new long[longCount];
+    System.arraycopy(longValues, 0, keys, 0, longCount);
+    this.longs = new LongSet(keys);
+    this.bytes = new BytesSet(byteValues);
+  }
+
+  @Override
+  public FailureOr<Column> evaluate(final View input,
+      final Selection selection) {
+    final FailureOr<Column> argument = child(0).evaluate(input, selection);
+    if (argument.isFailure()) {
+      return argument;
+    }
+    final Column value = argument.get();
+    final int rowCount = input.rowCount();
+    final Block output = outputBlock(rowCount);
+    propagateNulls(output, rowCount, value);
+    final boolean[] out = output.boolData(0);
+    final boolean[] isNull = output.isNull(0);
+    final int offset = value.offset();
+    switch (value.typeInfo().type()) {
+      case INT32:
+      case UINT32:
+      case DATE:
+      case DATA_TYPE: {
+        final int[] data = (int[]) value.data();
+        for (int k = 0; k < selection.count(); ++k) {
+          final int i = selection.row(k);
+          out[i] = longs.contains(data[offset + i]);
+        }
+        break;
+      }
+      case INT64:
+      case UINT64:
+      case DATETIME: {
+        final long[] data = (long[]) value.data();
+        for (int k = 0; k < selection.count(); ++k) {
+          final int i = selection.row(k);
+          out[i] = longs.contains(data[offset + i]);
+        }
+        break;
+      }
+      case FLOAT: {
+        final float[] data = (float[]) value.data();
+        for (int k = 0; k < selection.count(); ++k) {
+          final int i = selection.row(k);
+          out[i] = longs.contains(doubleKey(data[offset + i]));
+        }
+        break;
+      }
+      case DOUBLE: {
+        final double[] data = (double[]) value.data();
+        for (int k = 0; k < selection.count(); ++k) {
+          final int i = selection.row(k);
+          out[i] = longs.contains(doubleKey(data[offset + i]));
+        }
+        break;
+      }
+      case BOOL: {
+        final boolean[] data = (boolean[]) value.data();
+        for (int k = 0; k < selection.count(); ++k) {
+          final int i = selection.row(k);
+          out[i] = data[offset + i] ? containsTrue : containsFalse;
+        }
+        break;
+      }
+      case STRING:
+      case BINARY: {
+        final long[] pieces = (long[]) value.data();
+        final byte[] buffer = value.arena().buffer();
+        for (int k = 0; k < selection.count(); ++k) {
+          final int i = selection.row(k);
+          if (isNull != null && isNull[i]) {
+            continue;
+          }
+          final long piece = pieces[offset + i];
+          final int from = Arena.pieceOffset(piece);
+          out[i] = bytes.contains(buffer, from,
+              from + Arena.pieceLength(piece));
+        }
+        break;
+      }
+      default:
+        throw new IllegalStateException("Unsupported type: "
+            + value.typeInfo().name());
+    }
+    if (containsNull) {
+      for (int k = 0; k < selection.count(); ++k) {
+        final int i = selection.row(k);
+        isNull[i] |= !out[i];
+      }
+    }
+    return success();
+  }
+
+  @Override
+  public void appendDescription(final StringBuilder target) {
+    target.append("IN");
+    appendChildren(target);
+  }
+
+  // The bits of the value, with -0.0 mapped to 0.0, so that they compare
+  // equal. NaN constants are left out of the set, so NaNs match nothing.
+  private static long doubleKey(final double value) {
+    return value == 0 ? 0L : Double.doubleToRawLongBits(value);
+  }
+
+  private static BoundExpression[] concat(final BoundExpression value,
+      final ConstantExpression[] list) {
+    final BoundExpression[] result = new BoundExpression[list.length + 1];
+    result[0] = value;
+    System.arraycopy(list, 0, result, 1, list.length);
+    return result;
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import java.util.Arrays;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+
+/**
+ * IS_NULL: TRUE for NULL rows of the argument, FALSE otherwise. Never NULL.
+ */
+public class IsNullExpression extends BoundExpression {
+
+  public IsNullExpression(final Attribute attribute,
+      final BoundExpression argument) {
+    super(attribute, argument);
+  }
+
+  @Override
+  public FailureOr<Column> evaluate(final View input,
+      final Selection selection) {
+    final FailureOr<Column> argument = child(0).evaluate(input, selection);
+    if (argument.isFailure()) {
+      return argument;
+    }
+    final int rowCount = input.rowCount();
+    final Block output = outputBlock(rowCount);
+    final boolean[] isNull = argument.get().isNull();
+    if (isNull == null) {
+      Arrays.fill(output.boolData(0), 0, rowCount, false);
+    } else {
+      System.arraycopy(isNull, argument.get().isNullOffset(),
+          output.boolData(0), 0, rowCount);
+    }
+    return success();
+  }
+
+  @Override
+  public void appendDescription(final StringBuilder target) {
+    target.append("IS_NULL");
+    appendChildren(target);
+  }
+}
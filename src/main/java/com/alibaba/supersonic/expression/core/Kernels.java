@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.memory.Arena;
+import com.alibaba.supersonic.expression.base.Selection;
+
+/**
+ * Loops shared by the expressions.
+ */
+final class Kernels {
+
+  private Kernels() {
+  }
+
+  /**
+   * Copies the selected rows (values and NULL flags) of the source to the
+   * same positions of the target block's single column. Variable-length
+   * values are copied into the target's arena.
+   */
+  static void copySelected(final Column source, final Selection selection,
+      final Block target) {
+    final int offset = source.offset();
+    final boolean[] isNull = target.isNull(0);
+    if (isNull != null) {
+      for (int k = 0; k < selection.count(); ++k) {
+        final int i = selection.row(k);
+        isNull[i] = source.isNull(i);
+      }
+    }
+    switch (source.typeInfo().type()) {
+      case INT32:
+      case UINT32:
+      case DATE:
+      case DATA_TYPE: {
+        final int[] from = (int[]) source.data();
+        final int[] to = target.intData(0);
+        for (int k = 0; k < selection.count(); ++k) {
+          final int i = selection.row(k);
+          to[i] = from[offset + i];
+        }
+        break;
+      }
+      case INT64:
+      case UINT64:
+      case DATETIME: {
+        final long[] from = (long[]) source.data();
+        final long[] to = target.longData(0);
+        for (int k = 0; k < selection.count(); ++k) {
+          final int i = selection.row(k);
+          to[i] = from[offset + i];
+        }
+        break;
+      }
+      case FLOAT: {
+        final float[] from = (float[]) source.data();
+        final float[] to = target.floatData(0);
+        for (int k = 0; k < selection.count(); ++k) {
+          final int i = selection.row(k);
+          to[i] = from[offset + i];
+        }
+        break;
+      }
+      case DOUBLE: {
+        final double[] from = (double[]) source.data();
+        final double[] to = target.doubleData(0);
+        for (int k = 0; k < selection.count(); ++k) {
+          final int i = selection.row(k);
+          to[i] = from[offset + i];
+        }
+        break;
+      }
+      case BOOL: {
+        final boolean[] from = (boolean[]) source.data();
+        final boolean[] to = target.boolData(0);
+        for (int k = 0; k < selection.count(); ++k) {
+          final int i = selection.row(k);
+          to[i] = from[offset + i];
+        }
+        break;
+      }
+      case STRING:
+      case BINARY: {
+        final long[] from = (long[]) source.data();
+        final long[] to = target.longData(0);
+        final Arena arena = target.arena(0);
+        for (int k = 0; k < selection.count(); ++k) {
+          final int i = selection.row(k);
+          if (!source.isNull(i)) {
+            to[i] = arena.append(source.arena(), from[offset + i]);
+          }
+        }
+        break;
+      }
+      default:
+        throw new IllegalStateException("Unsupported type: "
+            + source.typeInfo().name());
+    }
+  }
+}
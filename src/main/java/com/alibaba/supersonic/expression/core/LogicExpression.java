@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+
+/**
+ * Boolean logic with SQL's three-valued semantics: AND, OR, XOR and NOT.
+ * (The binder rewrites AND_NOT(a, b) as AND(a, NOT(b)).) FALSE AND NULL is
+ * FALSE, and TRUE OR NULL is TRUE; otherwise, NULL arguments give NULL.
+ * AND and OR evaluate both arguments on all rows; the binder uses
+ * {@link ConjunctionExpression}, which short-circuits, instead.
+ */
+public class LogicExpression extends BoundExpression {
+
+  private final OperationType operation;
+
+  public LogicExpression(final OperationType operation,
+      final Attribute attribute, final BoundExpression... arguments) {
+    super(attribute, arguments);
+    this.operation = operation;
+  }
+
+  public OperationType operation() {
+    return operation;
+  }
+
+  @Override
+  public FailureOr<Column> evaluate(final View input,
+      final Selection selection) {
+    final FailureOr<Column> left = child(0).evaluate(input, selection);
+    if (left.isFailure()) {
+      return left;
+    }
+    final int rowCount = input.rowCount();
+    if (operation == OperationType.NOT) {
+      final Block output = outputBlock(rowCount);
+      propagateNulls(output, rowCount, left.get());
+      final boolean[] a = (boolean[]) left.get().data();
+      final int ao = left.get().offset();
+      final boolean[] out = output.boolData(0);
+      for (int i = 0; i < rowCount; ++i) out[i] = !a[ao + i];
+      return success();
+    }
+    final FailureOr<Column> right = child(1).evaluate(input, selection);
+    if (right.isFailure()) {
+      return right;
+    }
+    final Block output = outputBlock(rowCount);
+    final Column l = left.get();
+    final Column r = right.get();
+    final boolean[] a = (boolean[]) l.data();
+    final boolean[] b = (boolean[]) r.data();
+    final int ao = l.offset();
+    final int bo = r.offset();
+    final boolean[] out = output.boolData(0);
+    final boolean[] isNull = output.isNull(0);
+    if (operation == OperationType.XOR || isNull == null) {
+      propagateNulls(output, rowCount, l, r);
+      switch (operation) {
+        case AND:
+          for (int i = 0; i < rowCount; ++i) out[i] = a[ao + i] & b[bo + i];
+          break;
+        case OR:
+          for (int i = 0; i < rowCount; ++i) out[i] = a[ao + i] | b[bo + i];
+          break;
+        case XOR:
+          for (int i = 0; i < rowCount; ++i) out[i] = a[ao + i] ^ b[bo + i];
+          break;
+        default:
+          throw new IllegalStateException(operation + " not supported");
+      }
+      return success();
+    }
+    final boolean[] aNull = l.isNull();
+    final boolean[] bNull = r.isNull();
+    final int aNullOffset = l.isNullOffset();
+    final int bNullOffset = r.isNullOffset();
+    // A row is NULL iff an argument is NULL, and the other one doesn't
+    // decide the result (FALSE for AND, TRUE for OR).
+    final boolean decisive = operation == OperationType.OR;
+    for (int i = 0; i < rowCount; ++i) {
+      final boolean aIsNull = aNull != null && aNull[aNullOffset + i];
+      final boolean bIsNull = bNull != null && bNull[bNullOffset + i];
+      final boolean aDecides = !aIsNull && a[ao + i] == decisive;
+      final boolean bDecides = !bIsNull && b[bo + i] == decisive;
+      isNull[i] = (aIsNull || bIsNull) && !aDecides && !bDecides;
+      out[i] = decisive ? aDecides || bDecides
+          : !aIsNull && !bIsNull && a[ao + i] && b[bo + i];
+    }
+    return success();
+  }
+
+  @Override
+  public void appendDescription(final StringBuilder target) {
+    target.append(operation.name());
+    appendChildren(target);
+  }
+}
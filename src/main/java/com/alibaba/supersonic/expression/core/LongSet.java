@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import java.util.Arrays;
+
+/**
+ * A set of primitive longs, for membership tests in kernels: small sets are
+ * kept as a sorted array (searched with binary search), larger ones as an
+ * open-addressing hash table with linear probing. Immutable once built; no
+ * boxing on lookups.
+ */
+final class LongSet {
+
+  // Sets up to this size are searched, rather than hashed.
+  static final int MAX_SORTED_SIZE = 16;
+
+  private final int size;
+  private final long[] sorted;
+  private final long[] table;
+  private final boolean[] used;
+  private final int mask;
+
+  LongSet(final long[] values) {
+    final long[] distinct = distinct(values);
+    this.size = distinct.length;
+    if (distinct.length <= MAX_SORTED_SIZE) {
+      this.sorted = distinct;
+      this.table = null;
+      this.used = null;
+      this.mask = 0;
+      return;
+    }
+    // Load factor at most 0.5.
+    final int capacity = Integer.highestOneBit(distinct.length) << 2;
+    this.sorted = null;
+    this.table = new long[capacity];
+    this.used = new boolean[capacity];
+    this.mask = capacity - 1;
+    for (long value : distinct) {
+      int slot = slot(value);
+      while (used[slot]) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = value;
+      used[slot] = true;
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean contains(final long value) {
+    if (sorted != null) {
+      return Arrays.binarySearch(sorted, value) >= 0;
+    }
+    int slot = slot(value);
+    while (used[slot]) {
+      if (table[slot] == value) {
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  private int slot(final long value) {
+    // The finalizer of MurmurHash3, to spread clustered keys.
+    long h = value;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    return (int) h & mask;
+  }
+
+  private static long[] distinct(final long[] values) {
+    final long[] sorted = values.clone();
+    Arrays.sort(sorted);
+    int count = 0;
+    for (int i = 0; i < sorted.length; ++i) {
+      if (i == 0 || sorted[i] != sorted[i - 1]) {
+        sorted[count++] = sorted[i];
+      }
+    }
+    return Arrays.copyOf(sorted, count);
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+
+/**
+ * The loops over numeric columns that are worth specializing for the
+ * hardware: element-wise arithmetic and comparisons, and the SUM, MIN and
+ * MAX of a column. Arrays are passed with the offset of their first
+ * element (as in {@link com.alibaba.supersonic.base.infrastructure.Column});
+ * results are written from index 0.
+ * 
+ * {@link ScalarNumericKernels} implements them with plain loops. Faster
+ * implementations (e.g. with SIMD instructions) are found through
+ * {@link NumericKernelsLoader}, and must give the same results, except for
+ * the order in which floating point sums are computed.
+ */
+public interface NumericKernels {
+
+  /**
+   * Computes ADD, SUBTRACT, MULTIPLY, BITWISE_AND, BITWISE_OR or
+   * BITWISE_XOR element-wise; integers wrap around. Also used for the
+   * unsigned types.
+   */
+  void arithmetic(OperationType operation, int[] left, int leftOffset,
+      int[] right, int rightOffset, int[] result, int count);
+
+  void arithmetic(OperationType operation, long[] left, int leftOffset,
+      long[] right, int rightOffset, long[] result, int count);
+
+  /**
+   * Computes ADD, SUBTRACT, MULTIPLY, or the IEEE division (CPP_DIVIDE or
+   * DIVIDE_QUIET) element-wise.
+   */
+  void arithmetic(OperationType operation, float[] left, int leftOffset,
+      float[] right, int rightOffset, float[] result, int count);
+
+  void arithmetic(OperationType operation, double[] left, int leftOffset,
+      double[] right, int rightOffset, double[] result, int count);
+
+  /**
+   * Computes EQUAL, NOT_EQUAL, LESS or LESS_OR_EQUAL element-wise. If
+   * unsigned is set, the integers compare as unsigned.
+   */
+  void compare(OperationType operation, int[] left, int leftOffset,
+      int[] right, int rightOffset, boolean unsigned, boolean[] result,
+      int count);
+
+  void compare(OperationType operation, long[] left, int leftOffset,
+      long[] right, int rightOffset, boolean unsigned, boolean[] result,
+      int count);
+
+  void compare(OperationType operation, float[] left, int leftOffset,
+      float[] right, int rightOffset, boolean[] result, int count);
+
+  void compare(OperationType operation, double[] left, int leftOffset,
+      double[] right, int rightOffset, boolean[] result, int count);
+
+  /**
+   * Returns initial plus the sum of the count values that are not NULL.
+   * isNull may be null, if there are no NULLs. Integers are summed as
+   * (wrapping) longs, FLOATs as DOUBLEs.
+   */
+  long sum(int[] values, int offset, boolean[] isNull, int isNullOffset,
+      int count, long initial);
+
+  long sum(long[] values, int offset, boolean[] isNull, int isNullOffset,
+      int count, long initial);
+
+  double sum(float[] values, int offset, boolean[] isNull, int isNullOffset,
+      int count, double initial);
+
+  double sum(double[] values, int offset, boolean[] isNull,
+      int isNullOffset, int count, double initial);
+
+  /**
+   * Returns the minimum of initial and of the count values that are not
+   * NULL. For FLOAT and DOUBLE, as Math.min(): NaN if any value is NaN.
+   */
+  int min(int[] values, int offset, boolean[] isNull, int isNullOffset,
+      int count, int initial);
+
+  long min(long[] values, int offset, boolean[] isNull, int isNullOffset,
+      int count, long initial);
+
+  float min(float[] values, int offset, boolean[] isNull, int isNullOffset,
+      int count, float initial);
+
+  double min(double[] values, int offset, boolean[] isNull,
+      int isNullOffset, int count, double initial);
+
+  /**
+   * Returns the maximum of initial and of the count values that are not
+   * NULL. For FLOAT and DOUBLE, as Math.max(): NaN if any value is NaN.
+   */
+  int max(int[] values, int offset, boolean[] isNull, int isNullOffset,
+      int count, int initial);
+
+  long max(long[] values, int offset, boolean[] isNull, int isNullOffset,
+      int count, long initial);
+
+  float max(float[] values, int offset, boolean[] isNull, int isNullOffset,
+      int count, float initial);
+
+  double max(double[] values, int offset, boolean[] isNull,
+      int isNullOffset, int count, double initial);
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Picks the {@link NumericKernels} once, when first used: the first
+ * implementation registered with {@link ServiceLoader} (e.g. the Vector API
+ * kernels of the supersonic-java-vector module) that can be loaded, or
+ * {@link ScalarNumericKernels}.
+ * 
+ * Implementations may depend on modules that are not always present (the
+ * Vector API needs --add-modules jdk.incubator.vector); if they fail to
+ * load, the scalar kernels are used. Setting the system property
+ * supersonic.kernels=scalar forces the scalar kernels.
+ */
+public final class NumericKernelsLoader {
+
+  public static final String PROPERTY = "supersonic.kernels";
+
+  private static final NumericKernels KERNELS = load();
+
+  private NumericKernelsLoader() {
+  }
+
+  /**
+   * Returns the kernels to use.
+   */
+  public static NumericKernels kernels() {
+    return KERNELS;
+  }
+
+  private static NumericKernels load() {
+    if (!"scalar".equals(System.getProperty(PROPERTY))) {
+      final Iterator<NumericKernels> providers = ServiceLoader.load(
+          NumericKernels.class, NumericKernels.class.getClassLoader())
+          .iterator();
+      while (true) {
+        try {
+          if (!providers.hasNext()) {
+            break;
+          }
+          return providers.next();
+        } catch (ServiceConfigurationError e) {
+          // Try the next one.
+        } catch (LinkageError e) {
+          // E.g. the Vector API module isn't there.
+        }
+      }
+    }
+    return new ScalarNumericKernels();
+  }
+}
@@ -0,0 +1,400 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.alibaba.supersonic.base.exception.SupersonicException;
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.base.memory.Arena;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrs;
+
+/**
+ * Regular expression matching on a STRING, with a constant pattern
+ * (java.util.regex syntax), compiled once:
+ * - REGEXP_PARTIAL: TRUE if the pattern matches a substring;
+ * - REGEXP_FULL: TRUE if it matches the whole string;
+ * - REGEXP_EXTRACT: the first group (or the whole match, if the pattern has
+ *   no groups) of the first match; NULL if there is none;
+ * - REGEXP_REPLACE: the string with all matches replaced. The replacement
+ *   may refer to groups as \1 .. \9.
+ * 
+ * The engine is skipped where possible. A literal that every match must
+ * contain is extracted from the pattern, and searched for in the bytes
+ * first; rows without it don't match. Patterns that are plain literals
+ * don't use the engine at all. ASCII strings are matched in place, through
+ * a reusable CharSequence over the arena bytes; others are decoded. The
+ * results of REGEXP_EXTRACT reference the input's bytes, without copying.
+ */
+public class RegexpExpression extends BoundExpression {
+
+  private static final String METACHARACTERS = ".^$*+?()[]{}|\\";
+
+  private final OperationType operation;
+  private final Pattern pattern;
+  private final String replacement;
+  // A literal that occurs in every match, or null.
+  private final ByteSearcher literal;
+  // True if the pattern matches only the literal.
+  private final boolean isLiteral;
+  private final Matcher matcher;
+  private final Utf8.AsciiSequence ascii;
+  private final StringBuffer replaced;
+
+  private RegexpExpression(final OperationType operation,
+      final Attribute attribute, final BoundExpression argument,
+      final Pattern pattern, final String replacement) {
+    super(attribute, argument);
+    this.operation = operation;
+    this.pattern = pattern;
+    this.replacement = replacement;
+    final String required = requiredLiteral(pattern.pattern());
+    this.literal = required == null || required.isEmpty() ? null
+        : new ByteSearcher(required.getBytes(Utf8.UTF_8));
+    this.isLiteral = literal != null && required.equals(pattern.pattern());
+    this.matcher = pattern.matcher("");
+    this.ascii = new Utf8.AsciiSequence();
+    this.replaced = new StringBuffer();
+  }
+
+  /**
+   * Compiles the pattern; fails if it is invalid. The replacement (for
+   * REGEXP_REPLACE only; null otherwise) uses \1 .. \9 for groups.
+   */
+  public static FailureOr<RegexpExpression> create(
+      final OperationType operation, final Attribute attribute,
+      final BoundExpression argument, final String pattern,
+      final String replacement) {
+    try {
+      return FailureOrs.success(new RegexpExpression(operation, attribute,
+          argument, Pattern.compile(pattern),
+          replacement == null ? null : toJavaReplacement(replacement)));
+    } catch (PatternSyntaxException e) {
+      return FailureOrs.failure(new SupersonicException(
+          ReturnCode.ERROR_INVALID_ARGUMENT_VALUE,
+          "Invalid regular expression: " + e.getMessage()));
+    }
+  }
+
+  public OperationType operation() {
+    return operation;
+  }
+
+  @Override
+  public FailureOr<Column> evaluate(final View input,
+      final Selection selection) {
+    final FailureOr<Column> argument = child(0).evaluate(input, selection);
+    if (argument.isFailure()) {
+      return argument;
+    }
+    final Column strings = argument.get();
+    final int rowCount = input.rowCount();
+    final Block output = outputBlock(rowCount);
+    propagateNulls(output, rowCount, strings);
+    final boolean[] isNull = output.isNull(0);
+    final long[] pieces = (long[]) strings.data();
+    final int offset = strings.offset();
+    final byte[] bytes = strings.arena().buffer();
+    switch (operation) {
+      case REGEXP_PARTIAL:
+      case REGEXP_FULL: {
+        final boolean full = operation == OperationType.REGEXP_FULL;
+        final boolean[] out = output.boolData(0);
+        for (int k = 0; k < selection.count(); ++k) {
+          final int i = selection.row(k);
+          if (isNull != null && isNull[i]) {
+            continue;
+          }
+          final long piece = pieces[offset + i];
+          final int from = Arena.pieceOffset(piece);
+          out[i] = matches(bytes, from, from + Arena.pieceLength(piece), full);
+        }
+        break;
+      }
+      case REGEXP_EXTRACT: {
+        final long[] out = output.longData(0);
+        for (int k = 0; k < selection.count(); ++k) {
+          final int i = selection.row(k);
+          if (isNull[i]) {
+            continue;
+          }
+          final long piece = pieces[offset + i];
+          final int from = Arena.pieceOffset(piece);
+          final int to = from + Arena.pieceLength(piece);
+          isNull[i] = true;
+          if (literal != null && literal.indexOf(bytes, from, to) < 0) {
+            continue;
+          }
+          final boolean isAscii = Utf8.isAscii(bytes, from, to);
+          final CharSequence text = text(bytes, from, to, isAscii);
+          if (!matcher.reset(text).find()) {
+            continue;
+          }
+          final int group = matcher.groupCount() > 0 ? 1 : 0;
+          final int start = matcher.start(group);
+          if (start < 0) {
+            continue;
+          }
+          final int end = matcher.end(group);
+          isNull[i] = false;
+          out[i] = isAscii ? Arena.piece(from + start, end - start)
+              : Arena.piece(from + Utf8.encodedLength(text, 0, start),
+                  Utf8.encodedLength(text, start, end));
+        }
+        // The extracted values are pieces of the input's arena.
+        resultColumn().reset(out, strings.arena(), isNull);
+        break;
+      }
+      case REGEXP_REPLACE: {
+        final long[] out = output.longData(0);
+        final Arena arena = output.arena(0);
+        for (int k = 0; k < selection.count(); ++k) {
+          final int i = selection.row(k);
+          if (isNull != null && isNull[i]) {
+            continue;
+          }
+          final long piece = pieces[offset + i];
+          out[i] = replace(bytes, piece, strings.arena(), arena);
+        }
+        break;
+      }
+      default:
+        throw new IllegalStateException(operation + " not supported");
+    }
+    return success();
+  }
+
+  @Override
+  public void appendDescription(final StringBuilder target) {
+    target.append(operation.name()).append('(');
+    child(0).appendDescription(target);
+    target.append(", '").append(pattern.pattern()).append('\'');
+    if (replacement != null) {
+      target.append(", '").append(replacement).append('\'');
+    }
+    target.append(')');
+  }
+
+  private boolean matches(final byte[] bytes, final int from, final int to,
+      final boolean full) {
+    if (isLiteral) {
+      return full ? literal.equalTo(bytes, from, to)
+          : literal.indexOf(bytes, from, to) >= 0;
+    }
+    if (literal != null && literal.indexOf(bytes, from, to) < 0) {
+      return false;
+    }
+    matcher.reset(text(bytes, from, to, Utf8.isAscii(bytes, from, to)));
+    return full ? matcher.matches() : matcher.find();
+  }
+
+  private long replace(final byte[] bytes, final long piece,
+      final Arena source, final Arena target) {
+    final int from = Arena.pieceOffset(piece);
+    final int to = from + Arena.pieceLength(piece);
+    if (literal != null && literal.indexOf(bytes, from, to) < 0) {
+      return target.append(source, piece);
+    }
+    matcher.reset(text(bytes, from, to, Utf8.isAscii(bytes, from, to)));
+    if (!matcher.find()) {
+      return target.append(source, piece);
+    }
+    replaced.setLength(0);
+    do {
+      matcher.appendReplacement(replaced, replacement);
+    } while (matcher.find());
+    matcher.appendTail(replaced);
+    return Utf8.append(target, replaced);
+  }
+
+  private CharSequence text(final byte[] bytes, final int from, final int to,
+      final boolean isAscii) {
+    return isAscii ? ascii.reset(bytes, from, to - from)
+        : new String(bytes, from, to - from, Utf8.UTF_8);
+  }
+
+  /**
+   * Returns the longest literal that every match of the pattern contains
+   * (possibly empty), or null if it can't be determined. Conservative: looks
+   * only at characters outside groups and classes, and gives up on
+   * alternations and flags.
+   */
+  static String requiredLiteral(final String pattern) {
+    if (pattern.indexOf('|') >= 0 || pattern.contains("(?")
+        || pattern.contains("\\Q")) {
+      return null;
+    }
+    String best = "";
+    final StringBuilder run = new StringBuilder();
+    int depth = 0;
+    int i = 0;
+    while (i < pattern.length()) {
+      final char c = pattern.charAt(i);
+      if (c == '\\' && i + 1 < pattern.length()) {
+        final char escaped = pattern.charAt(i + 1);
+        if (depth == 0 && !Character.isLetterOrDigit(escaped)) {
+          run.append(escaped);
+          i += 2;
+          continue;
+        }
+        // A class, an anchor, a back reference or a character given by its
+        // code: ends the run, and its operands are not literals.
+        i = skipEscape(pattern, i);
+      } else if (c == '[') {
+        i = skipClass(pattern, i);
+      } else if (c == '(' || c == ')') {
+        depth += c == '(' ? 1 : -1;
+        ++i;
+      } else if (c == '?' || c == '*' || c == '{') {
+        // The preceding character is optional.
+        if (run.length() > 0) {
+          run.setLength(run.length() - 1);
+        }
+        i = c == '{' ? pattern.indexOf('}', i) + 1 : i + 1;
+        if (i == 0) {
+          return null;
+        }
+        i = skipQuantifierModifier(pattern, i);
+      } else if (c == '+') {
+        // The preceding character is required, but may repeat.
+        i = skipQuantifierModifier(pattern, i + 1);
+      } else if (depth == 0 && METACHARACTERS.indexOf(c) < 0) {
+        run.append(c);
+        ++i;
+        continue;
+      } else {
+        ++i;
+      }
+      best = longer(best, run);
+      run.setLength(0);
+    }
+    best = longer(best, run);
+    for (int j = 0; j < best.length(); ++j) {
+      if (Character.isSurrogate(best.charAt(j))) {
+        return null;
+      }
+    }
+    return best;
+  }
+
+  private static String longer(final String best, final StringBuilder run) {
+    return run.length() > best.length() ? run.toString() : best;
+  }
+
+  /**
+   * Returns the index after the escape at start, including its operands:
+   * the digits of hexadecimal ('x', 'u') and octal ('0') escapes and of back
+   * references, the control character of 'c', and the name or property of
+   * 'N', 'k', 'p' and 'P'. These must not be taken for literals.
+   */
+  private static int skipEscape(final String pattern, final int start) {
+    final int length = pattern.length();
+    final char escaped = pattern.charAt(start + 1);
+    int i = start + 2;
+    switch (escaped) {
+      case 'x':
+        if (i < length && pattern.charAt(i) == '{') {
+          return skipPast(pattern, i, '}');
+        }
+        return Math.min(i + 2, length);
+      case 'u':
+        return Math.min(i + 4, length);
+      case '0': {
+        final int end = Math.min(i + 3, length);
+        while (i < end && pattern.charAt(i) >= '0'
+            && pattern.charAt(i) <= '7') {
+          ++i;
+        }
+        return i;
+      }
+      case 'c':
+        return Math.min(i + 1, length);
+      case 'k':
+        return skipPast(pattern, i, '>');
+      case 'N':
+      case 'p':
+      case 'P':
+        if (i < length && pattern.charAt(i) == '{') {
+          return skipPast(pattern, i, '}');
+        }
+        return Math.min(i + 1, length);
+      default:
+        if (escaped >= '1' && escaped <= '9') {
+          while (i < length && Character.isDigit(pattern.charAt(i))) {
+            ++i;
+          }
+        }
+        return i;
+    }
+  }
+
+  private static int skipPast(final String pattern, final int from,
+      final char terminator) {
+    final int end = pattern.indexOf(terminator, from);
+    return end < 0 ? pattern.length() : end + 1;
+  }
+
+  private static int skipClass(final String pattern, final int start) {
+    int i = start + 1;
+    if (i < pattern.length() && pattern.charAt(i) == '^') ++i;
+    if (i < pattern.length() && pattern.charAt(i) == ']') ++i;
+    while (i < pattern.length() && pattern.charAt(i) != ']') {
+      i += pattern.charAt(i) == '\\' ? 2 : 1;
+    }
+    return i + 1;
+  }
+
+  private static int skipQuantifierModifier(final String pattern,
+      final int i) {
+    return i < pattern.length()
+        && (pattern.charAt(i) == '?' || pattern.charAt(i) == '+') ? i + 1 : i;
+  }
+
+  /**
+   * Converts a replacement with \1 .. \9 group references (and \\ for a
+   * backslash) to the syntax of Matcher.appendReplacement().
+   */
+  static String toJavaReplacement(final String replacement) {
+    final StringBuilder result = new StringBuilder();
+    for (int i = 0; i < replacement.length(); ++i) {
+      final char c = replacement.charAt(i);
+      if (c == '\\' && i + 1 < replacement.length()
+          && Character.isDigit(replacement.charAt(i + 1))) {
+        result.append('$').append(replacement.charAt(++i));
+      } else if (c == '\\' && i + 1 < replacement.length()
+          && replacement.charAt(i + 1) == '\\') {
+        result.append("\\\\");
+        ++i;
+      } else if (c == '\\' || c == '$') {
+        result.append('\\').append(c);
+      } else {
+        result.append(c);
+      }
+    }
+    return result.toString();
+  }
+}
@@ -0,0 +1,521 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+
+/**
+ * The {@link NumericKernels} as plain loops (which the JIT compiler may
+ * still vectorize). Also the fallback of the other implementations: the
+ * range versions of the element-wise kernels compute rows from to to - 1,
+ * e.g. the ones left after the last full vector.
+ */
+public class ScalarNumericKernels implements NumericKernels {
+
+  @Override
+  public void arithmetic(final OperationType operation, final int[] left,
+      final int leftOffset, final int[] right, final int rightOffset,
+      final int[] result, final int count) {
+    arithmetic(operation, left, leftOffset, right, rightOffset, result, 0,
+        count);
+  }
+
+  protected static void arithmetic(final OperationType operation,
+      final int[] a, final int ao, final int[] b, final int bo,
+      final int[] out, final int from, final int to) {
+    switch (operation) {
+      case ADD:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] + b[bo + i];
+        break;
+      case SUBTRACT:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] - b[bo + i];
+        break;
+      case MULTIPLY:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] * b[bo + i];
+        break;
+      case BITWISE_AND:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] & b[bo + i];
+        break;
+      case BITWISE_OR:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] | b[bo + i];
+        break;
+      case BITWISE_XOR:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] ^ b[bo + i];
+        break;
+      default:
+        throw unsupported(operation);
+    }
+  }
+
+  @Override
+  public void arithmetic(final OperationType operation, final long[] left,
+      final int leftOffset, final long[] right, final int rightOffset,
+      final long[] result, final int count) {
+    arithmetic(operation, left, leftOffset, right, rightOffset, result, 0,
+        count);
+  }
+
+  protected static void arithmetic(final OperationType operation,
+      final long[] a, final int ao, final long[] b, final int bo,
+      final long[] out, final int from, final int to) {
+    switch (operation) {
+      case ADD:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] + b[bo + i];
+        break;
+      case SUBTRACT:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] - b[bo + i];
+        break;
+      case MULTIPLY:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] * b[bo + i];
+        break;
+      case BITWISE_AND:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] & b[bo + i];
+        break;
+      case BITWISE_OR:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] | b[bo + i];
+        break;
+      case BITWISE_XOR:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] ^ b[bo + i];
+        break;
+      default:
+        throw unsupported(operation);
+    }
+  }
+
+  @Override
+  public void arithmetic(final OperationType operation, final float[] left,
+      final int leftOffset, final float[] right, final int rightOffset,
+      final float[] result, final int count) {
+    arithmetic(operation, left, leftOffset, right, rightOffset, result, 0,
+        count);
+  }
+
+  protected static void arithmetic(final OperationType operation,
+      final float[] a, final int ao, final float[] b, final int bo,
+      final float[] out, final int from, final int to) {
+    switch (operation) {
+      case ADD:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] + b[bo + i];
+        break;
+      case SUBTRACT:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] - b[bo + i];
+        break;
+      case MULTIPLY:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] * b[bo + i];
+        break;
+      case CPP_DIVIDE:
+      case DIVIDE_QUIET:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] / b[bo + i];
+        break;
+      default:
+        throw unsupported(operation);
+    }
+  }
+
+  @Override
+  public void arithmetic(final OperationType operation, final double[] left,
+      final int leftOffset, final double[] right, final int rightOffset,
+      final double[] result, final int count) {
+    arithmetic(operation, left, leftOffset, right, rightOffset, result, 0,
+        count);
+  }
+
+  protected static void arithmetic(final OperationType operation,
+      final double[] a, final int ao, final double[] b, final int bo,
+      final double[] out, final int from, final int to) {
+    switch (operation) {
+      case ADD:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] + b[bo + i];
+        break;
+      case SUBTRACT:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] - b[bo + i];
+        break;
+      case MULTIPLY:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] * b[bo + i];
+        break;
+      case CPP_DIVIDE:
+      case DIVIDE_QUIET:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] / b[bo + i];
+        break;
+      default:
+        throw unsupported(operation);
+    }
+  }
+
+  @Override
+  public void compare(final OperationType operation, final int[] left,
+      final int leftOffset, final int[] right, final int rightOffset,
+      final boolean unsigned, final boolean[] result, final int count) {
+    compare(operation, left, leftOffset, right, rightOffset, unsigned, result,
+        0, count);
+  }
+
+  protected static void compare(final OperationType operation,
+      final int[] a, final int ao, final int[] b, final int bo,
+      final boolean unsigned, final boolean[] out, final int from,
+      final int to) {
+    // Flipping the sign bit maps the unsigned order to the signed order.
+    final int flip = unsigned ? Integer.MIN_VALUE : 0;
+    switch (operation) {
+      case EQUAL:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] == b[bo + i];
+        break;
+      case NOT_EQUAL:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] != b[bo + i];
+        break;
+      case LESS:
+        for (int i = from; i < to; ++i) {
+          out[i] = (a[ao + i] ^ flip) < (b[bo + i] ^ flip);
+        }
+        break;
+      case LESS_OR_EQUAL:
+        for (int i = from; i < to; ++i) {
+          out[i] = (a[ao + i] ^ flip) <= (b[bo + i] ^ flip);
+        }
+        break;
+      default:
+        throw unsupported(operation);
+    }
+  }
+
+  @Override
+  public void compare(final OperationType operation, final long[] left,
+      final int leftOffset, final long[] right, final int rightOffset,
+      final boolean unsigned, final boolean[] result, final int count) {
+    compare(operation, left, leftOffset, right, rightOffset, unsigned, result,
+        0, count);
+  }
+
+  protected static void compare(final OperationType operation,
+      final long[] a, final int ao, final long[] b, final int bo,
+      final boolean unsigned, final boolean[] out, final int from,
+      final int to) {
+    // Flipping the sign bit maps the unsigned order to the signed order.
+    final long flip = unsigned ? Long.MIN_VALUE : 0;
+    switch (operation) {
+      case EQUAL:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] == b[bo + i];
+        break;
+      case NOT_EQUAL:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] != b[bo + i];
+        break;
+      case LESS:
+        for (int i = from; i < to; ++i) {
+          out[i] = (a[ao + i] ^ flip) < (b[bo + i] ^ flip);
+        }
+        break;
+      case LESS_OR_EQUAL:
+        for (int i = from; i < to; ++i) {
+          out[i] = (a[ao + i] ^ flip) <= (b[bo + i] ^ flip);
+        }
+        break;
+      default:
+        throw unsupported(operation);
+    }
+  }
+
+  @Override
+  public void compare(final OperationType operation, final float[] left,
+      final int leftOffset, final float[] right, final int rightOffset,
+      final boolean[] result, final int count) {
+    compare(operation, left, leftOffset, right, rightOffset, result, 0,
+        count);
+  }
+
+  protected static void compare(final OperationType operation,
+      final float[] a, final int ao, final float[] b, final int bo,
+      final boolean[] out, final int from, final int to) {
+    switch (operation) {
+      case EQUAL:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] == b[bo + i];
+        break;
+      case NOT_EQUAL:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] != b[bo + i];
+        break;
+      case LESS:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] < b[bo + i];
+        break;
+      case LESS_OR_EQUAL:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] <= b[bo + i];
+        break;
+      default:
+        throw unsupported(operation);
+    }
+  }
+
+  @Override
+  public void compare(final OperationType operation, final double[] left,
+      final int leftOffset, final double[] right, final int rightOffset,
+      final boolean[] result, final int count) {
+    compare(operation, left, leftOffset, right, rightOffset, result, 0,
+        count);
+  }
+
+  protected static void compare(final OperationType operation,
+      final double[] a, final int ao, final double[] b, final int bo,
+      final boolean[] out, final int from, final int to) {
+    switch (operation) {
+      case EQUAL:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] == b[bo + i];
+        break;
+      case NOT_EQUAL:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] != b[bo + i];
+        break;
+      case LESS:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] < b[bo + i];
+        break;
+      case LESS_OR_EQUAL:
+        for (int i = from; i < to; ++i) out[i] = a[ao + i] <= b[bo + i];
+        break;
+      default:
+        throw unsupported(operation);
+    }
+  }
+
+  @Override
+  public long sum(final int[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final long initial) {
+    long result = initial;
+    if (isNull == null) {
+      for (int i = 0; i < count; ++i) {
+        result = result + values[offset + i];
+      }
+    } else {
+      for (int i = 0; i < count; ++i) {
+        if (!isNull[isNullOffset + i]) {
+          result = result + values[offset + i];
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public long sum(final long[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final long initial) {
+    long result = initial;
+    if (isNull == null) {
+      for (int i = 0; i < count; ++i) {
+        result = result + values[offset + i];
+      }
+    } else {
+      for (int i = 0; i < count; ++i) {
+        if (!isNull[isNullOffset + i]) {
+          result = result + values[offset + i];
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public double sum(final float[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final double initial) {
+    double result = initial;
+    if (isNull == null) {
+      for (int i = 0; i < count; ++i) {
+        result = result + values[offset + i];
+      }
+    } else {
+      for (int i = 0; i < count; ++i) {
+        if (!isNull[isNullOffset + i]) {
+          result = result + values[offset + i];
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public double sum(final double[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final double initial) {
+    double result = initial;
+    if (isNull == null) {
+      for (int i = 0; i < count; ++i) {
+        result = result + values[offset + i];
+      }
+    } else {
+      for (int i = 0; i < count; ++i) {
+        if (!isNull[isNullOffset + i]) {
+          result = result + values[offset + i];
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public int min(final int[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final int initial) {
+    int result = initial;
+    if (isNull == null) {
+      for (int i = 0; i < count; ++i) {
+        result = Math.min(result, values[offset + i]);
+      }
+    } else {
+      for (int i = 0; i < count; ++i) {
+        if (!isNull[isNullOffset + i]) {
+          result = Math.min(result, values[offset + i]);
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public long min(final long[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final long initial) {
+    long result = initial;
+    if (isNull == null) {
+      for (int i = 0; i < count; ++i) {
+        result = Math.min(result, values[offset + i]);
+      }
+    } else {
+      for (int i = 0; i < count; ++i) {
+        if (!isNull[isNullOffset + i]) {
+          result = Math.min(result, values[offset + i]);
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public float min(final float[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final float initial) {
+    float result = initial;
+    if (isNull == null) {
+      for (int i = 0; i < count; ++i) {
+        result = Math.min(result, values[offset + i]);
+      }
+    } else {
+      for (int i = 0; i < count; ++i) {
+        if (!isNull[isNullOffset + i]) {
+          result = Math.min(result, values[offset + i]);
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public double min(final double[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final double initial) {
+    double result = initial;
+    if (isNull == null) {
+      for (int i = 0; i < count; ++i) {
+        result = Math.min(result, values[offset + i]);
+      }
+    } else {
+      for (int i = 0; i < count; ++i) {
+        if (!isNull[isNullOffset + i]) {
+          result = Math.min(result, values[offset + i]);
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public int max(final int[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final int initial) {
+    int result = initial;
+    if (isNull == null) {
+      for (int i = 0; i < count; ++i) {
+        result = Math.max(result, values[offset + i]);
+      }
+    } else {
+      for (int i = 0; i < count; ++i) {
+        if (!isNull[isNullOffset + i]) {
+          result = Math.max(result, values[offset + i]);
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public long max(final long[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final long initial) {
+    long result = initial;
+    if (isNull == null) {
+      for (int i = 0; i < count; ++i) {
+        result = Math.max(result, values[offset + i]);
+      }
+    } else {
+      for (int i = 0; i < count; ++i) {
+        if (!isNull[isNullOffset + i]) {
+          result = Math.max(result, values[offset + i]);
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public float max(final float[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final float initial) {
+    float result = initial;
+    if (isNull == null) {
+      for (int i = 0; i < count; ++i) {
+        result = Math.max(result, values[offset + i]);
+      }
+    } else {
+      for (int i = 0; i < count; ++i) {
+        if (!isNull[isNullOffset + i]) {
+          result = Math.max(result, values[offset + i]);
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public double max(final double[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final double initial) {
+    double result = initial;
+    if (isNull == null) {
+      for (int i = 0; i < count; ++i) {
+        result = Math.max(result, values[offset + i]);
+      }
+    } else {
+      for (int i = 0; i < count; ++i) {
+        if (!isNull[isNullOffset + i]) {
+          result = Math.max(result, values[offset + i]);
+        }
+      }
+    }
+    return result;
+  }
+
+  protected static IllegalStateException unsupported(
+      final OperationType operation) {
+    return new IllegalStateException(operation + " not supported");
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.base.memory.Arena;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+
+/**
+ * STRING_OFFSET(haystack, needle): the position (in bytes, counted from 1)
+ * of the first occurrence of needle in haystack, or 0 if there is none.
+ * Searches the arena bytes directly; a constant needle is preprocessed
+ * once.
+ */
+public class StringOffsetExpression extends BoundExpression {
+
+  // Set if the needle is a non-NULL constant.
+  private final ByteSearcher searcher;
+
+  public StringOffsetExpression(final Attribute attribute,
+      final BoundExpression haystack, final BoundExpression needle) {
+    super(attribute, haystack, needle);
+    if (needle instanceof ConstantExpression
+        && !((ConstantExpression) needle).isNull()) {
+      this.searcher = new ByteSearcher(
+          ((String) ((ConstantExpression) needle).value())
+              .getBytes(Utf8.UTF_8));
+    } else {
+      this.searcher = null;
+    }
+  }
+
+  @Override
+  public FailureOr<Column> evaluate(final View input,
+      final Selection selection) {
+    final FailureOr<Column> left = child(0).evaluate(input, selection);
+    if (left.isFailure()) {
+      return left;
+    }
+    final FailureOr<Column> right = child(1).evaluate(input, selection);
+    if (right.isFailure()) {
+      return right;
+    }
+    final int rowCount = input.rowCount();
+    final Block output = outputBlock(rowCount);
+    final Column haystack = left.get();
+    final Column needle = right.get();
+    propagateNulls(output, rowCount, haystack, needle);
+    final boolean[] isNull = output.isNull(0);
+    final int[] out = output.intData(0);
+    final long[] haystacks = (long[]) haystack.data();
+    final int haystackOffset = haystack.offset();
+    final byte[] bytes = haystack.arena().buffer();
+    final long[] needles = (long[]) needle.data();
+    final int needleOffset = needle.offset();
+    final byte[] needleBytes = needle.arena().buffer();
+    for (int k = 0; k < selection.count(); ++k) {
+      final int i = selection.row(k);
+      if (isNull != null && isNull[i]) {
+        continue;
+      }
+      final long piece = haystacks[haystackOffset + i];
+      final int from = Arena.pieceOffset(piece);
+      final int to = from + Arena.pieceLength(piece);
+      final int position;
+      if (searcher != null) {
+        position = searcher.indexOf(bytes, from, to);
+      } else {
+        final long needlePiece = needles[needleOffset + i];
+        final int needleFrom = Arena.pieceOffset(needlePiece);
+        position = ByteSearcher.indexOf(bytes, from, to, needleBytes,
+            needleFrom, needleFrom + Arena.pieceLength(needlePiece));
+      }
+      out[i] = position < 0 ? 0 : position - from + 1;
+    }
+    return success();
+  }
+
+  @Override
+  public void appendDescription(final StringBuilder target) {
+    target.append("STRING_OFFSET");
+    appendChildren(target);
+  }
+}
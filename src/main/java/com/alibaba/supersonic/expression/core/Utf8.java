@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import java.nio.charset.Charset;
+
+import com.alibaba.supersonic.base.memory.Arena;
+
+/**
+ * UTF-8 helpers for kernels that work on the bytes of arena pieces, falling
+ * back to Java strings only when they have to.
+ */
+final class Utf8 {
+
+  static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private Utf8() {
+  }
+
+  /**
+   * Returns true if bytes[from .. to) are all ASCII; then the bytes are also
+   * the UTF-16 characters, and character positions are byte positions.
+   */
+  static boolean isAscii(final byte[] bytes, final int from, final int to) {
+    for (int i = from; i < to; ++i) {
+      if (bytes[i] < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of bytes that text[from .. to) takes in UTF-8.
+   */
+  static int encodedLength(final CharSequence text, final int from,
+      final int to) {
+    int length = 0;
+    for (int i = from; i < to; ++i) {
+      final char c = text.charAt(i);
+      if (c < 0x80) {
+        length += 1;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < to
+          && Character.isLowSurrogate(text.charAt(i + 1))) {
+        length += 4;
+        ++i;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Encodes the text into the arena, without intermediate copies, and
+   * returns the piece. Unpaired surrogates are encoded as '?', as by
+   * String.getBytes().
+   */
+  static long append(final Arena arena, final CharSequence text) {
+    final int length = text.length();
+    final int start = arena.reserve(encodedLength(text, 0, length));
+    final byte[] buffer = arena.buffer();
+    int position = start;
+    for (int i = 0; i < length; ++i) {
+      final char c = text.charAt(i);
+      if (c < 0x80) {
+        buffer[position++] = (byte) c;
+      } else if (c < 0x800) {
+        buffer[position++] = (byte) (0xC0 | (c >> 6));
+        buffer[position++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i + 1 < length
+          && Character.isLowSurrogate(text.charAt(i + 1))) {
+        final int codePoint = Character.toCodePoint(c, text.charAt(++i));
+        buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+        buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        // Takes 3 bytes in encodedLength(); pad to keep the lengths equal.
+        buffer[position++] = (byte) '?';
+        buffer[position++] = (byte) '?';
+        buffer[position++] = (byte) '?';
+      } else {
+        buffer[position++] = (byte) (0xE0 | (c >> 12));
+        buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        buffer[position++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+    return Arena.piece(start, position - start);
+  }
+
+  /**
+   * A reusable CharSequence over ASCII bytes, so that the regular expression
+   * engine can run on arena bytes without decoding them into a String.
+   */
+  static final class AsciiSequence implements CharSequence {
+    private byte[] bytes;
+    private int offset;
+    private int length;
+
+    AsciiSequence reset(final byte[] bytes, final int offset,
+        final int length) {
+      this.bytes = bytes;
+      this.offset = offset;
+      this.length = length;
+      return this;
+    }
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public char charAt(final int index) {
+      if (index < 0 || index >= length) {
+        throw new IndexOutOfBoundsException("Index: " + index);
+      }
+      return (char) bytes[offset + index];
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+      return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return new String(bytes, offset, length, UTF_8);
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The UTC offsets of a time zone, as a table of transitions, so that
+ * DATETIMEs can be converted to local time without going through the
+ * java.time objects for every row.
+ * 
+ * The table covers the years 1900 to 2200, and is built once per zone; it is
+ * immutable and shared. Datetimes outside of that range are looked up in the
+ * zone's rules (which allocates).
+ */
+final class ZoneOffsets {
+
+  private static final long FIRST_SECOND =
+      Instant.parse("1900-01-01T00:00:00Z").getEpochSecond();
+  private static final long LAST_SECOND =
+      Instant.parse("2200-01-01T00:00:00Z").getEpochSecond();
+
+  private static final ConcurrentMap<ZoneId, ZoneOffsets> CACHE =
+      new ConcurrentHashMap<ZoneId, ZoneOffsets>();
+
+  private final ZoneRules rules;
+  // offsets[i] is in effect from transitions[i - 1] (inclusive; the start of
+  // the table for i = 0) to transitions[i] (exclusive; the end of the table
+  // for the last one). In microseconds.
+  private final long[] transitions;
+  private final long[] offsets;
+  private final long first;
+  private final long last;
+
+  private ZoneOffsets(final ZoneId zone) {
+    this.rules = zone.getRules();
+    this.first = FIRST_SECOND * DateTimes.MICROS_PER_SECOND;
+    this.last = LAST_SECOND * DateTimes.MICROS_PER_SECOND;
+    long[] transitions = new long[64];
+    long[] offsets = new long[65];
+    int count = 0;
+    Instant instant = Instant.ofEpochSecond(FIRST_SECOND);
+    offsets[0] = micros(rules.getOffset(instant));
+    while (true) {
+      final ZoneOffsetTransition transition = rules.nextTransition(instant);
+      if (transition == null
+          || transition.toEpochSecond() >= LAST_SECOND) {
+        break;
+      }
+      if (count == transitions.length) {
+        transitions = Arrays.copyOf(transitions, count * 2);
+        offsets = Arrays.copyOf(offsets, count * 2 + 1);
+      }
+      instant = transition.getInstant();
+      transitions[count] =
+          transition.toEpochSecond() * DateTimes.MICROS_PER_SECOND;
+      offsets[++count] = micros(transition.getOffsetAfter());
+    }
+    this.transitions = Arrays.copyOf(transitions, count);
+    this.offsets = Arrays.copyOf(offsets, count + 1);
+  }
+
+  /**
+   * Returns the (cached) offsets of the zone.
+   */
+  static ZoneOffsets of(final ZoneId zone) {
+    ZoneOffsets offsets = CACHE.get(zone);
+    if (offsets == null) {
+      offsets = new ZoneOffsets(zone);
+      final ZoneOffsets existing = CACHE.putIfAbsent(zone, offsets);
+      if (existing != null) {
+        offsets = existing;
+      }
+    }
+    return offsets;
+  }
+
+  /**
+   * Returns the offsets of the JVM's default time zone.
+   */
+  static ZoneOffsets local() {
+    return of(ZoneId.systemDefault());
+  }
+
+  /**
+   * Converts count datetimes from UTC to local time (i.e. adds the offset in
+   * effect at each of them). As consecutive datetimes are usually close
+   * together, the transition found for one row is tried first for the next.
+   */
+  void toLocal(final long[] source, final int offset, final long[] target,
+      final int count) {
+    int index = 0;
+    // The range of datetimes for which offsets[index] is in effect.
+    long from = Long.MAX_VALUE;
+    long to = Long.MIN_VALUE;
+    for (int i = 0; i < count; ++i) {
+      final long micros = source[offset + i];
+      if (micros < from || micros >= to) {
+        if (micros < first || micros >= last) {
+          target[i] = micros + offsetOutsideTable(micros);
+          continue;
+        }
+        index = find(micros);
+        from = index == 0 ? first : transitions[index - 1];
+        to = index == transitions.length ? last : transitions[index];
+      }
+      target[i] = micros + offsets[index];
+    }
+  }
+
+  // Returns the index of the offset in effect at the datetime.
+  private int find(final long micros) {
+    final int position = Arrays.binarySearch(transitions, micros);
+    // A transition's own instant uses the offset after it.
+    return position >= 0 ? position + 1 : -position - 1;
+  }
+
+  private long offsetOutsideTable(final long micros) {
+    return micros(rules.getOffset(Instant.ofEpochSecond(
+        Math.floorDiv(micros, DateTimes.MICROS_PER_SECOND))));
+  }
+
+  private static long micros(final ZoneOffset offset) {
+    return offset.getTotalSeconds() * DateTimes.MICROS_PER_SECOND;
+  }
+}
@@ -0,0 +1,931 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.infrastructure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.alibaba.supersonic.base.exception.SupersonicException;
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.Constant;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.ExpressionDescription;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.ExpressionType;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationDescription;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.expression.core.ArithmeticExpression;
+import com.alibaba.supersonic.expression.core.CastExpression;
+import com.alibaba.supersonic.expression.core.ComparisonExpression;
+import com.alibaba.supersonic.expression.core.ConjunctionExpression;
+import com.alibaba.supersonic.expression.core.ConstantExpression;
+import com.alibaba.supersonic.expression.core.DateFormatExpression;
+import com.alibaba.supersonic.expression.core.DateTimeAddExpression;
+import com.alibaba.supersonic.expression.core.DateTimeFieldExpression;
+import com.alibaba.supersonic.expression.core.DateTimeTruncExpression;
+import com.alibaba.supersonic.expression.core.IfExpression;
+import com.alibaba.supersonic.expression.core.InExpression;
+import com.alibaba.supersonic.expression.core.IsNullExpression;
+import com.alibaba.supersonic.expression.core.LogicExpression;
+import com.alibaba.supersonic.expression.core.RegexpExpression;
+import com.alibaba.supersonic.expression.core.StringOffsetExpression;
+import com.alibaba.supersonic.expression.core.VariableExpression;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrs;
+import com.google.protobuf.ByteString;
+
+/**
+ * Binds {@link ExpressionDescription}s to the schema of their input,
+ * resolving attribute names, checking argument types and inferring result
+ * types.
+ * 
+ * Numeric arguments of different types are promoted to a common type: DOUBLE
+ * if either is FLOAT or DOUBLE, UINT64 if both are unsigned, INT64
+ * otherwise. Some operations are rewritten into simpler ones: NEGATE(x) into
+ * SUBTRACT(0, x), BITWISE_NOT(x) into BITWISE_XOR(x, -1), GREATER(a, b)
+ * into LESS(b, a), AND_NOT(a, b) into AND(a, NOT(b)), and the divisions
+ * (other than CPP_DIVIDE) cast their arguments to DOUBLE. Casts of
+ * constants are folded. Nested ANDs (and ORs) are flattened into one
+ * {@link ConjunctionExpression}.
+ * 
+ * The datetime functions take DATETIMEs or DATEs; DATEs are cast to
+ * DATETIMEs (midnight UTC) where the function needs a time of the day. The
+ * _LOCAL variants use the JVM's default time zone at the time of binding.
+ * 
+ * Operations that are not implemented yet fail with ERROR_NOT_IMPLEMENTED.
+ */
+public class ExpressionBinder {
+
+  private final TupleSchema schema;
+  // Set when binding for an ExpressionProgram: the (serialized) subtrees
+  // that are shared, and those already bound.
+  private final ExpressionProgram program;
+  private final Set<ByteString> shared;
+  private final Map<ByteString, BoundExpression> bound;
+
+  public ExpressionBinder(final TupleSchema schema) {
+    this(schema, null, Collections.<ByteString>emptySet());
+  }
+
+  ExpressionBinder(final TupleSchema schema, final ExpressionProgram program,
+      final Set<ByteString> shared) {
+    this.schema = schema;
+    this.program = program;
+    this.shared = shared;
+    this.bound = new HashMap<ByteString, BoundExpression>();
+  }
+
+  /**
+   * Binds the expression to the schema.
+   */
+  public FailureOr<BoundExpression> bind(
+      final ExpressionDescription description) {
+    if (shared.isEmpty()) {
+      return bindUnshared(description);
+    }
+    final ByteString key = description.toByteString();
+    if (!shared.contains(key)) {
+      return bindUnshared(description);
+    }
+    BoundExpression expression = bound.get(key);
+    if (expression == null) {
+      final FailureOr<BoundExpression> result = bindUnshared(description);
+      if (result.isFailure()) {
+        return result;
+      }
+      expression = new SharedExpression(program, result.get());
+      bound.put(key, expression);
+    }
+    return FailureOrs.success(expression);
+  }
+
+  /**
+   * Evaluates an expression that doesn't depend on its input (e.g. a tree of
+   * constants) and returns its value, or a failure if the evaluation fails.
+   */
+  public static FailureOr<ConstantExpression> evaluateConstant(
+      final BoundExpression expression) {
+    final View input = new View(TupleSchema.empty());
+    input.setRowCount(1);
+    final FailureOr<Column> result =
+        expression.evaluate(input, Selection.all(1));
+    if (result.isFailure()) {
+      return FailureOrs.failure(result.exception());
+    }
+    return FailureOrs.success(ConstantExpression.fromColumn(result.get(), 0));
+  }
+
+  /**
+   * Converts a common.DataType into a DataType; fails for NULL_TYPE.
+   */
+  public static FailureOr<DataType> toDataType(
+      final com.alibaba.supersonic.common.proto.CommonEnums.DataType type) {
+    final DataType result = DataType.valueOf(type.getNumber());
+    if (result == null) {
+      return failure(ReturnCode.ERROR_INVALID_ARGUMENT_TYPE,
+          "Type " + type + " can't be used here; use a CAST");
+    }
+    return FailureOrs.success(result);
+  }
+
+  private FailureOr<BoundExpression> bindUnshared(
+      final ExpressionDescription description) {
+    switch (description.getType()) {
+      case CONSTANT:
+        return bindConstant(description.getConstant());
+      case VARIABLE: {
+        final String name = description.getVariable().getName();
+        final int position = schema.lookupAttributePosition(name);
+        if (position < 0) {
+          return failure(ReturnCode.ERROR_ATTRIBUTE_MISSING,
+              "No attribute '" + name + "' in " + schema);
+        }
+        return success(new VariableExpression(
+            schema.getAttributeAt(position), position));
+      }
+      case OPERATION:
+        return bindOperation(description.getOperation());
+      default:
+        return failure(ReturnCode.ERROR_NOT_IMPLEMENTED,
+            "Expressions of type " + description.getType()
+            + " are not supported");
+    }
+  }
+
+  private static FailureOr<BoundExpression> bindConstant(
+      final Constant constant) {
+    final FailureOr<DataType> type = toDataType(constant.getType());
+    if (type.isFailure()) {
+      return FailureOrs.failure(type.exception());
+    }
+    final Object value;
+    switch (type.get()) {
+      case INT32:
+        value = constant.hasInt32Value() ? constant.getInt32Value() : null;
+        break;
+      case UINT32:
+        value = constant.hasUint32Value() ? constant.getUint32Value() : null;
+        break;
+      case DATE:
+        value = constant.hasDateValue() ? constant.getDateValue() : null;
+        break;
+      case INT64:
+        value = constant.hasInt64Value() ? constant.getInt64Value() : null;
+        break;
+      case UINT64:
+        value = constant.hasUint64Value() ? constant.getUint64Value() : null;
+        break;
+      case DATETIME:
+        value = constant.hasDatetimeValue() ? constant.getDatetimeValue()
+            : null;
+        break;
+      case FLOAT:
+        value = constant.hasFloatValue() ? constant.getFloatValue() : null;
+        break;
+      case DOUBLE:
+        value = constant.hasDoubleValue() ? constant.getDoubleValue() : null;
+        break;
+      case BOOL:
+        value = constant.hasBoolValue() ? constant.getBoolValue() : null;
+        break;
+      case STRING:
+        value = constant.hasStringValue() ? constant.getStringValue() : null;
+        break;
+      case BINARY:
+        value = constant.hasBinaryValue()
+            ? constant.getBinaryValue().toByteArray() : null;
+        break;
+      case DATA_TYPE: {
+        if (!constant.hasDataTypeValue()) {
+          value = null;
+          break;
+        }
+        final FailureOr<DataType> dataType =
+            toDataType(constant.getDataTypeValue());
+        if (dataType.isFailure()) {
+          return FailureOrs.failure(dataType.exception());
+        }
+        value = dataType.get();
+        break;
+      }
+      default:
+        throw new IllegalStateException("Unexpected type: " + type.get());
+    }
+    return success(new ConstantExpression(type.get(), value));
+  }
+
+  private FailureOr<BoundExpression> bindOperation(
+      final OperationDescription operation) {
+    final OperationType type = operation.getType();
+    final List<ExpressionDescription> arguments = operation.getArgumentList();
+    final int expected = argumentCount(type);
+    if (expected < 0) {
+      return failure(ReturnCode.ERROR_NOT_IMPLEMENTED,
+          "Operation " + type + " is not supported yet");
+    }
+    if (type == OperationType.IN ? arguments.size() < expected
+        : arguments.size() != expected) {
+      return failure(ReturnCode.ERROR_BAD_PROTO, type + " takes " + expected
+          + " arguments, got " + arguments.size());
+    }
+    if (type == OperationType.CAST) {
+      return bindCast(arguments);
+    }
+    final BoundExpression[] bound = new BoundExpression[arguments.size()];
+    for (int i = 0; i < bound.length; ++i) {
+      final FailureOr<BoundExpression> argument = bind(arguments.get(i));
+      if (argument.isFailure()) {
+        return argument;
+      }
+      bound[i] = argument.get();
+    }
+    switch (type) {
+      case ADD:
+      case SUBTRACT:
+      case MULTIPLY:
+      case CPP_DIVIDE:
+      case MODULUS:
+        return arithmetic(type, bound[0], bound[1], null, false);
+      case NEGATE: {
+        if (!isNumeric(bound[0].resultType())) {
+          return invalidArgument(type, bound[0]);
+        }
+        final FailureOr<BoundExpression> zero =
+            cast(new ConstantExpression(DataType.INT32, 0),
+                bound[0].resultType());
+        if (zero.isFailure()) {
+          return zero;
+        }
+        return arithmetic(OperationType.SUBTRACT, zero.get(), bound[0],
+            null, false);
+      }
+      case BITWISE_AND:
+      case BITWISE_OR:
+      case BITWISE_XOR:
+        return bitwise(type, bound[0], bound[1]);
+      case BITWISE_NOT: {
+        if (!isInteger(bound[0].resultType())) {
+          return invalidArgument(type, bound[0]);
+        }
+        final FailureOr<BoundExpression> ones =
+            cast(new ConstantExpression(DataType.INT32, -1),
+                bound[0].resultType());
+        if (ones.isFailure()) {
+          return ones;
+        }
+        return bitwise(OperationType.BITWISE_XOR, bound[0], ones.get());
+      }
+      case DIVIDE:
+      case DIVIDE_SIGNALING:
+        return arithmetic(OperationType.DIVIDE_SIGNALING, bound[0], bound[1],
+            DataType.DOUBLE, false);
+      case DIVIDE_NULLING:
+        return arithmetic(type, bound[0], bound[1], DataType.DOUBLE, true);
+      case DIVIDE_QUIET:
+        return arithmetic(type, bound[0], bound[1], DataType.DOUBLE, false);
+      case EQUAL:
+      case NOT_EQUAL:
+      case LESS:
+      case LESS_OR_EQUAL:
+        return comparison(type, bound[0], bound[1]);
+      case GREATER:
+        return comparison(OperationType.LESS, bound[1], bound[0]);
+      case GREATER_OR_EQUAL:
+        return comparison(OperationType.LESS_OR_EQUAL, bound[1], bound[0]);
+      case AND:
+      case OR:
+      case XOR:
+      case NOT:
+        return logic(type, bound);
+      case AND_NOT: {
+        final FailureOr<BoundExpression> not =
+            logic(OperationType.NOT, bound[1]);
+        if (not.isFailure()) {
+          return not;
+        }
+        return logic(OperationType.AND, bound[0], not.get());
+      }
+      case IS_NULL:
+        return success(new IsNullExpression(
+            attribute(type, DataType.BOOL, false, bound), bound[0]));
+      case IF:
+        return ifThenElse(bound[0], bound[1], bound[2]);
+      case IFNULL:
+        return ifNull(bound[0], bound[1]);
+      case IN:
+        return in(bound);
+      case REGEXP_PARTIAL:
+      case REGEXP_FULL:
+      case REGEXP_EXTRACT:
+      case REGEXP_REPLACE:
+        return regexp(type, bound);
+      case STRING_OFFSET: {
+        if (bound[0].resultType() != DataType.STRING) {
+          return invalidArgument(type, bound[0]);
+        }
+        if (bound[1].resultType() != DataType.STRING) {
+          return invalidArgument(type, bound[1]);
+        }
+        return success(new StringOffsetExpression(
+            attribute(type, DataType.INT32, false, bound), bound[0],
+            bound[1]));
+      }
+      case YEAR_UTC:
+      case YEAR_LOCAL:
+      case MONTH_UTC:
+      case MONTH_LOCAL:
+      case DAY_UTC:
+      case DAY_LOCAL:
+      case WEEKDAY_UTC:
+      case WEEKDAY_LOCAL:
+      case YEARDAY_UTC:
+      case YEARDAY_LOCAL:
+      case HOUR_UTC:
+      case HOUR_LOCAL:
+      case MINUTE_UTC:
+      case MINUTE_LOCAL:
+      case SECOND:
+      case MICROSECOND:
+      case QUARTER_UTC:
+      case QUARTER_LOCAL:
+        return dateTimeField(type, bound[0]);
+      case TRUNC_TO_SECOND:
+      case TRUNC_TO_MINUTE:
+      case TRUNC_TO_HOUR:
+      case TRUNC_TO_DAY:
+      case TRUNC_TO_MONTH:
+      case TRUNC_TO_QUARTER:
+      case TRUNC_TO_YEAR:
+        return truncate(type, bound[0]);
+      case ADD_MINUTE:
+      case ADD_DAY:
+      case ADD_WEEK:
+      case ADD_MONTH:
+      case ADD_YEAR:
+        return addToDateTime(type, bound[0], bound[1]);
+      case DATE_FORMAT_UTC:
+      case DATE_FORMAT_LOCAL:
+        return dateFormat(type, bound[0], bound[1]);
+      default:
+        throw new IllegalStateException("Unexpected operation: " + type);
+    }
+  }
+
+  /**
+   * Returns the number of arguments of the operation (the minimum, for IN),
+   * or -1 if it is not supported.
+   */
+  private static int argumentCount(final OperationType type) {
+    switch (type) {
+      case NEGATE:
+      case NOT:
+      case BITWISE_NOT:
+      case IS_NULL:
+      case YEAR_UTC:
+      case YEAR_LOCAL:
+      case MONTH_UTC:
+      case MONTH_LOCAL:
+      case DAY_UTC:
+      case DAY_LOCAL:
+      case WEEKDAY_UTC:
+      case WEEKDAY_LOCAL:
+      case YEARDAY_UTC:
+      case YEARDAY_LOCAL:
+      case HOUR_UTC:
+      case HOUR_LOCAL:
+      case MINUTE_UTC:
+      case MINUTE_LOCAL:
+      case SECOND:
+      case MICROSECOND:
+      case QUARTER_UTC:
+      case QUARTER_LOCAL:
+      case TRUNC_TO_SECOND:
+      case TRUNC_TO_MINUTE:
+      case TRUNC_TO_HOUR:
+      case TRUNC_TO_DAY:
+      case TRUNC_TO_MONTH:
+      case TRUNC_TO_QUARTER:
+      case TRUNC_TO_YEAR:
+        return 1;
+      case ADD:
+      case SUBTRACT:
+      case MULTIPLY:
+      case CPP_DIVIDE:
+      case MODULUS:
+      case BITWISE_AND:
+      case BITWISE_OR:
+      case BITWISE_XOR:
+      case DIVIDE:
+      case DIVIDE_SIGNALING:
+      case DIVIDE_NULLING:
+      case DIVIDE_QUIET:
+      case EQUAL:
+      case NOT_EQUAL:
+      case LESS:
+      case LESS_OR_EQUAL:
+      case GREATER:
+      case GREATER_OR_EQUAL:
+      case AND:
+      case OR:
+      case XOR:
+      case AND_NOT:
+      case IFNULL:
+      case CAST:
+      case REGEXP_PARTIAL:
+      case REGEXP_FULL:
+      case REGEXP_EXTRACT:
+      case STRING_OFFSET:
+      case ADD_MINUTE:
+      case ADD_DAY:
+      case ADD_WEEK:
+      case ADD_MONTH:
+      case ADD_YEAR:
+      case DATE_FORMAT_UTC:
+      case DATE_FORMAT_LOCAL:
+      case IN:  // The minimum; IN takes a list.
+        return 2;
+      case IF:
+      case REGEXP_REPLACE:
+        return 3;
+      default:
+        return -1;
+    }
+  }
+
+  private FailureOr<BoundExpression> bindCast(
+      final List<ExpressionDescription> arguments) {
+    final ExpressionDescription target = arguments.get(1);
+    if (target.getType() != ExpressionType.CONSTANT
+        || !target.getConstant().hasDataTypeValue()) {
+      return failure(ReturnCode.ERROR_BAD_PROTO,
+          "The second argument of CAST must be a DATA_TYPE constant");
+    }
+    final FailureOr<DataType> type =
+        toDataType(target.getConstant().getDataTypeValue());
+    if (type.isFailure()) {
+      return FailureOrs.failure(type.exception());
+    }
+    final ExpressionDescription argument = arguments.get(0);
+    if (argument.getType() == ExpressionType.CONSTANT
+        && argument.getConstant().getType()
+            == com.alibaba.supersonic.common.proto.CommonEnums.DataType
+                .NULL_TYPE) {
+      return success(ConstantExpression.nullOf(type.get()));
+    }
+    final FailureOr<BoundExpression> bound = bind(argument);
+    if (bound.isFailure()) {
+      return bound;
+    }
+    return cast(bound.get(), type.get());
+  }
+
+  private static FailureOr<BoundExpression> cast(
+      final BoundExpression argument, final DataType type) {
+    if (argument.resultType() == type) {
+      return success(argument);
+    }
+    if (!CastExpression.isSupported(argument.resultType(), type)) {
+      return failure(ReturnCode.ERROR_INVALID_ARGUMENT_TYPE,
+          "Can't cast " + argument + " to " + type);
+    }
+    final BoundExpression result = new CastExpression(new Attribute(
+        "CAST_TO_" + type.name() + "(" + argument + ")", type,
+        argument.resultAttribute().getNullability()), argument);
+    if (argument instanceof ConstantExpression) {
+      final FailureOr<ConstantExpression> folded = evaluateConstant(result);
+      if (folded.isSuccess()) {
+        return success(folded.get());
+      }
+    }
+    return success(result);
+  }
+
+  private static FailureOr<BoundExpression> arithmetic(
+      final OperationType type, final BoundExpression left,
+      final BoundExpression right, final DataType resultType,
+      final boolean nullable) {
+    if (!isNumeric(left.resultType())) {
+      return invalidArgument(type, left);
+    }
+    if (!isNumeric(right.resultType())) {
+      return invalidArgument(type, right);
+    }
+    final DataType common = resultType != null ? resultType
+        : commonType(left.resultType(), right.resultType());
+    final FailureOr<BoundExpression> a = cast(left, common);
+    if (a.isFailure()) {
+      return a;
+    }
+    final FailureOr<BoundExpression> b = cast(right, common);
+    if (b.isFailure()) {
+      return b;
+    }
+    return success(new ArithmeticExpression(type,
+        attribute(type, common, nullable, a.get(), b.get()), a.get(),
+        b.get()));
+  }
+
+  private static FailureOr<BoundExpression> bitwise(final OperationType type,
+      final BoundExpression left, final BoundExpression right) {
+    if (!isInteger(left.resultType())) {
+      return invalidArgument(type, left);
+    }
+    if (!isInteger(right.resultType())) {
+      return invalidArgument(type, right);
+    }
+    return arithmetic(type, left, right, null, false);
+  }
+
+  private static FailureOr<BoundExpression> comparison(
+      final OperationType type, final BoundExpression left,
+      final BoundExpression right) {
+    final DataType common = commonType(left.resultType(),
+        right.resultType());
+    if (common == null) {
+      return failure(ReturnCode.ERROR_ATTRIBUTE_TYPE_MISMATCH,
+          "Can't compare " + left + " to " + right);
+    }
+    final FailureOr<BoundExpression> a = cast(left, common);
+    if (a.isFailure()) {
+      return a;
+    }
+    final FailureOr<BoundExpression> b = cast(right, common);
+    if (b.isFailure()) {
+      return b;
+    }
+    return success(new ComparisonExpression(type,
+        attribute(type, DataType.BOOL, false, a.get(), b.get()), a.get(),
+        b.get()));
+  }
+
+  private static FailureOr<BoundExpression> logic(final OperationType type,
+      final BoundExpression... arguments) {
+    for (BoundExpression argument : arguments) {
+      if (argument.resultType() != DataType.BOOL) {
+        return invalidArgument(type, argument);
+      }
+    }
+    if (type != OperationType.AND && type != OperationType.OR) {
+      return success(new LogicExpression(type,
+          attribute(type, DataType.BOOL, false, arguments), arguments));
+    }
+    // Chains of ANDs (or ORs) are flattened into a single conjunction, whose
+    // conjuncts can be reordered.
+    final List<BoundExpression> conjuncts = new ArrayList<BoundExpression>();
+    for (BoundExpression argument : arguments) {
+      if (argument instanceof ConjunctionExpression
+          && ((ConjunctionExpression) argument).operation() == type) {
+        conjuncts.addAll(argument.children());
+      } else {
+        conjuncts.add(argument);
+      }
+    }
+    final BoundExpression[] flattened =
+        conjuncts.toArray(new BoundExpression[conjuncts.size()]);
+    return success(new ConjunctionExpression(type,
+        attribute(type, DataType.BOOL, false, flattened), flattened));
+  }
+
+  private static FailureOr<BoundExpression> ifThenElse(
+      final BoundExpression condition, final BoundExpression then,
+      final BoundExpression otherwise) {
+    if (condition.resultType() != DataType.BOOL) {
+      return invalidArgument(OperationType.IF, condition);
+    }
+    final DataType common = commonType(then.resultType(),
+        otherwise.resultType());
+    if (common == null) {
+      return failure(ReturnCode.ERROR_ATTRIBUTE_TYPE_MISMATCH,
+          "IF branches of different types: " + then + ", " + otherwise);
+    }
+    final FailureOr<BoundExpression> a = cast(then, common);
+    if (a.isFailure()) {
+      return a;
+    }
+    final FailureOr<BoundExpression> b = cast(otherwise, common);
+    if (b.isFailure()) {
+      return b;
+    }
+    final Attribute attribute = new Attribute(
+        describe(OperationType.IF, condition, a.get(), b.get()), common,
+        nullability(then.isNullable() || otherwise.isNullable()));
+    return success(IfExpression.ifThenElse(attribute, condition, a.get(),
+        b.get()));
+  }
+
+  private static FailureOr<BoundExpression> ifNull(
+      final BoundExpression value, final BoundExpression substitute) {
+    final DataType common = commonType(value.resultType(),
+        substitute.resultType());
+    if (common == null) {
+      return failure(ReturnCode.ERROR_ATTRIBUTE_TYPE_MISMATCH,
+          "IFNULL arguments of different types: " + value + ", "
+          + substitute);
+    }
+    final FailureOr<BoundExpression> a = cast(value, common);
+    if (a.isFailure()) {
+      return a;
+    }
+    final FailureOr<BoundExpression> b = cast(substitute, common);
+    if (b.isFailure()) {
+      return b;
+    }
+    final Attribute attribute = new Attribute(
+        describe(OperationType.IFNULL, a.get(), b.get()), common,
+        nullability(value.isNullable() && substitute.isNullable()));
+    return success(IfExpression.ifNull(attribute, a.get(), b.get()));
+  }
+
+  private static FailureOr<BoundExpression> in(
+      final BoundExpression[] arguments) {
+    DataType common = arguments[0].resultType();
+    for (int i = 1; i < arguments.length && common != null; ++i) {
+      common = commonType(common, arguments[i].resultType());
+    }
+    if (common == null) {
+      return failure(ReturnCode.ERROR_ATTRIBUTE_TYPE_MISMATCH,
+          "IN arguments of different types: " + describe(OperationType.IN,
+              arguments));
+    }
+    final BoundExpression[] cast = new BoundExpression[arguments.length];
+    boolean constant = true;
+    boolean nullable = arguments[0].isNullable();
+    for (int i = 0; i < arguments.length; ++i) {
+      final FailureOr<BoundExpression> argument = cast(arguments[i], common);
+      if (argument.isFailure()) {
+        return argument;
+      }
+      cast[i] = argument.get();
+      constant &= i == 0 || cast[i] instanceof ConstantExpression;
+      nullable |= i > 0 && cast[i].isNullable();
+    }
+    if (!constant) {
+      // A list of expressions: IN is a disjunction of equalities.
+      final BoundExpression[] equalities =
+          new BoundExpression[arguments.length - 1];
+      for (int i = 1; i < cast.length; ++i) {
+        final FailureOr<BoundExpression> equality =
+            comparison(OperationType.EQUAL, cast[0], cast[i]);
+        if (equality.isFailure()) {
+          return equality;
+        }
+        equalities[i - 1] = equality.get();
+      }
+      return equalities.length == 1 ? success(equalities[0])
+          : logic(OperationType.OR, equalities);
+    }
+    final ConstantExpression[] list = new ConstantExpression[cast.length - 1];
+    System.arraycopy(cast, 1, list, 0, list.length);
+    return success(new InExpression(new Attribute(
+        describe(OperationType.IN, cast), DataType.BOOL,
+        nullability(nullable)), cast[0], list));
+  }
+
+  private static FailureOr<BoundExpression> regexp(final OperationType type,
+      final BoundExpression[] arguments) {
+    for (BoundExpression argument : arguments) {
+      if (argument.resultType() != DataType.STRING) {
+        return invalidArgument(type, argument);
+      }
+    }
+    for (int i = 1; i < arguments.length; ++i) {
+      if (!(arguments[i] instanceof ConstantExpression)
+          || ((ConstantExpression) arguments[i]).isNull()) {
+        return failure(ReturnCode.ERROR_INVALID_ARGUMENT_VALUE, type
+            + " needs a non-NULL constant pattern (and replacement), got "
+            + arguments[i]);
+      }
+    }
+    final String pattern =
+        (String) ((ConstantExpression) arguments[1]).value();
+    final String replacement = arguments.length > 2
+        ? (String) ((ConstantExpression) arguments[2]).value() : null;
+    final Attribute attribute = type == OperationType.REGEXP_EXTRACT
+        ? new Attribute(describe(type, arguments), DataType.STRING,
+            Nullability.NULLABLE)
+        : attribute(type, type == OperationType.REGEXP_REPLACE
+            ? DataType.STRING : DataType.BOOL, false, arguments[0]);
+    final FailureOr<RegexpExpression> result = RegexpExpression.create(type,
+        attribute, arguments[0], pattern, replacement);
+    if (result.isFailure()) {
+      return FailureOrs.failure(result.exception());
+    }
+    return success(result.get());
+  }
+
+  private static FailureOr<BoundExpression> dateTimeField(
+      final OperationType type, final BoundExpression argument) {
+    BoundExpression value = argument;
+    OperationType field = type;
+    if (argument.resultType() == DataType.DATE
+        && DateTimeFieldExpression.isTimeOfDay(type)) {
+      final FailureOr<BoundExpression> cast =
+          cast(argument, DataType.DATETIME);
+      if (cast.isFailure()) {
+        return cast;
+      }
+      value = cast.get();
+      // DATEs have no time zone: take the time of their midnight UTC.
+      if (type == OperationType.HOUR_LOCAL) {
+        field = OperationType.HOUR_UTC;
+      } else if (type == OperationType.MINUTE_LOCAL) {
+        field = OperationType.MINUTE_UTC;
+      }
+    } else if (argument.resultType() != DataType.DATETIME
+        && argument.resultType() != DataType.DATE) {
+      return invalidArgument(type, argument);
+    }
+    return success(new DateTimeFieldExpression(field,
+        attribute(type, DataType.INT32, false, argument), value));
+  }
+
+  private static FailureOr<BoundExpression> truncate(
+      final OperationType type, final BoundExpression argument) {
+    if (argument.resultType() == DataType.DATE) {
+      switch (type) {
+        case TRUNC_TO_MONTH:
+        case TRUNC_TO_QUARTER:
+        case TRUNC_TO_YEAR:
+          break;
+        default:
+          // DATEs are whole days already.
+          return success(argument);
+      }
+    } else if (argument.resultType() != DataType.DATETIME) {
+      return invalidArgument(type, argument);
+    }
+    return success(new DateTimeTruncExpression(type,
+        attribute(type, argument.resultType(), false, argument), argument));
+  }
+
+  private static FailureOr<BoundExpression> addToDateTime(
+      final OperationType type, final BoundExpression value,
+      final BoundExpression count) {
+    if (!isInteger(count.resultType())) {
+      return invalidArgument(type, count);
+    }
+    final FailureOr<BoundExpression> periods = cast(count, DataType.INT64);
+    if (periods.isFailure()) {
+      return periods;
+    }
+    BoundExpression base = value;
+    if (value.resultType() == DataType.DATE
+        && type == OperationType.ADD_MINUTE) {
+      final FailureOr<BoundExpression> cast = cast(value, DataType.DATETIME);
+      if (cast.isFailure()) {
+        return cast;
+      }
+      base = cast.get();
+    } else if (value.resultType() != DataType.DATETIME
+        && value.resultType() != DataType.DATE) {
+      return invalidArgument(type, value);
+    }
+    return success(new DateTimeAddExpression(type,
+        attribute(type, base.resultType(), false, base, periods.get()), base,
+        periods.get()));
+  }
+
+  private static FailureOr<BoundExpression> dateFormat(
+      final OperationType type, final BoundExpression value,
+      final BoundExpression format) {
+    if (format.resultType() != DataType.STRING
+        || !(format instanceof ConstantExpression)
+        || ((ConstantExpression) format).isNull()) {
+      return failure(ReturnCode.ERROR_INVALID_ARGUMENT_VALUE, type
+          + " needs a non-NULL constant STRING format, got " + format);
+    }
+    final boolean isDate = value.resultType() == DataType.DATE;
+    if (!isDate && value.resultType() != DataType.DATETIME) {
+      return invalidArgument(type, value);
+    }
+    final FailureOr<BoundExpression> datetime =
+        cast(value, DataType.DATETIME);
+    if (datetime.isFailure()) {
+      return datetime;
+    }
+    // DATEs have no time zone; they are formatted as they are.
+    final FailureOr<DateFormatExpression> result =
+        DateFormatExpression.create(type,
+            attribute(type, DataType.STRING, false, value, format),
+            datetime.get(), (String) ((ConstantExpression) format).value(),
+            isDate || type == OperationType.DATE_FORMAT_UTC);
+    if (result.isFailure()) {
+      return FailureOrs.failure(result.exception());
+    }
+    return success(result.get());
+  }
+
+  /**
+   * Returns the type that both types can be converted to, or null if there
+   * isn't one.
+   */
+  static DataType commonType(final DataType a, final DataType b) {
+    if (a == b) {
+      return a;
+    }
+    if (!isNumeric(a) || !isNumeric(b)) {
+      return null;
+    }
+    if (a == DataType.FLOAT || a == DataType.DOUBLE
+        || b == DataType.FLOAT || b == DataType.DOUBLE) {
+      return DataType.DOUBLE;
+    }
+    if (isUnsigned(a) && isUnsigned(b)) {
+      return DataType.UINT64;
+    }
+    return DataType.INT64;
+  }
+
+  static boolean isNumeric(final DataType type) {
+    switch (type) {
+      case INT32:
+      case UINT32:
+      case INT64:
+      case UINT64:
+      case FLOAT:
+      case DOUBLE:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isInteger(final DataType type) {
+    return type == DataType.INT32 || type == DataType.UINT32
+        || type == DataType.INT64 || type == DataType.UINT64;
+  }
+
+  private static boolean isUnsigned(final DataType type) {
+    return type == DataType.UINT32 || type == DataType.UINT64;
+  }
+
+  /**
+   * Returns the attribute of the result of the operation; it is nullable if
+   * any of the arguments is, or if nullable is set.
+   */
+  private static Attribute attribute(final OperationType type,
+      final DataType resultType, final boolean nullable,
+      final BoundExpression... arguments) {
+    boolean anyNullable = nullable;
+    for (BoundExpression argument : arguments) {
+      anyNullable |= argument.isNullable();
+    }
+    return new Attribute(describe(type, arguments), resultType,
+        nullability(anyNullable));
+  }
+
+  private static String describe(final OperationType type,
+      final BoundExpression... arguments) {
+    StringBuilder result = new StringBuilder(type.name()).append('(');
+    for (int i = 0; i < arguments.length; ++i) {
+      if (i > 0) result.append(", ");
+      arguments[i].appendDescription(result);
+    }
+    return result.append(')').toString();
+  }
+
+  private static Nullability nullability(final boolean nullable) {
+    return nullable ? Nullability.NULLABLE : Nullability.NOT_NULLABLE;
+  }
+
+  private static FailureOr<BoundExpression> invalidArgument(
+      final OperationType type, final BoundExpression argument) {
+    return failure(ReturnCode.ERROR_INVALID_ARGUMENT_TYPE, type
+        + " doesn't accept " + argument + " of type "
+        + argument.resultType());
+  }
+
+  private static FailureOr<BoundExpression> success(
+      final BoundExpression expression) {
+    return FailureOrs.success(expression);
+  }
+
+  private static <T> FailureOr<T> failure(final ReturnCode code,
+      final String message) {
+    return FailureOrs.failure(new SupersonicException(code, message));
+  }
+}
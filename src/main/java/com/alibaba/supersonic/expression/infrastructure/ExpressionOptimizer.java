@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.infrastructure;
+
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.ExpressionDescription;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.ExpressionType;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationDescription;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.core.ConstantExpression;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+
+/**
+ * Rewrites expression descriptions before they are bound.
+ * 
+ * Currently folds constants: every operation whose arguments are all
+ * constants (after folding) is evaluated once, at planning time, and
+ * replaced by its value. Operations that can't be bound, aren't
+ * deterministic or fail (e.g. divide by zero) are left alone, so that
+ * errors are reported, if at all, only when the rows that trigger them are
+ * evaluated.
+ */
+public final class ExpressionOptimizer {
+
+  private static final ExpressionBinder CONSTANT_BINDER =
+      new ExpressionBinder(TupleSchema.empty());
+
+  private ExpressionOptimizer() {
+  }
+
+  /**
+   * Returns the description with constant subexpressions folded.
+   */
+  public static ExpressionDescription foldConstants(
+      final ExpressionDescription description) {
+    if (description.getType() != ExpressionType.OPERATION) {
+      return description;
+    }
+    final OperationDescription operation = description.getOperation();
+    final OperationDescription.Builder folded =
+        OperationDescription.newBuilder(operation).clearArgument();
+    boolean constant = true;
+    boolean changed = false;
+    for (ExpressionDescription argument : operation.getArgumentList()) {
+      final ExpressionDescription foldedArgument = foldConstants(argument);
+      changed |= foldedArgument != argument;
+      constant &= foldedArgument.getType() == ExpressionType.CONSTANT;
+      folded.addArgument(foldedArgument);
+    }
+    final ExpressionDescription result = !changed ? description
+        : ExpressionDescription.newBuilder(description).setOperation(folded)
+            .build();
+    if (!constant || operation.getArgumentCount() == 0) {
+      return result;
+    }
+    final FailureOr<BoundExpression> bound = CONSTANT_BINDER.bind(result);
+    if (bound.isFailure() || !bound.get().isDeterministic()) {
+      return result;
+    }
+    final FailureOr<ConstantExpression> value =
+        ExpressionBinder.evaluateConstant(bound.get());
+    if (value.isFailure()) {
+      return result;
+    }
+    return Expressions.constant(value.get().resultType(),
+        value.get().value());
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.infrastructure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.ExpressionDescription;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.ExpressionType;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrs;
+import com.google.protobuf.ByteString;
+
+/**
+ * A set of expressions evaluated together on the same blocks, e.g. the
+ * predicate and the projections of a filter. Compiling the program folds
+ * constants, and binds identical subtrees (anywhere in the set) to a single
+ * node, which is evaluated once per block.
+ * 
+ * Call {@link #beginBlock()} before evaluating the roots on a new block (or
+ * on new contents of the same block); shared results are reused only until
+ * then.
+ */
+public final class ExpressionProgram {
+
+  private final TupleSchema inputSchema;
+  private final List<BoundExpression> roots;
+  private int sharedCount;
+  private long generation;
+
+  private ExpressionProgram(final TupleSchema inputSchema) {
+    this.inputSchema = inputSchema;
+    this.roots = new ArrayList<BoundExpression>();
+  }
+
+  /**
+   * Compiles the expressions for inputs of the specified schema.
+   */
+  public static FailureOr<ExpressionProgram> compile(
+      final TupleSchema inputSchema,
+      final List<ExpressionDescription> descriptions) {
+    final ExpressionProgram program = new ExpressionProgram(inputSchema);
+    final List<ExpressionDescription> folded =
+        new ArrayList<ExpressionDescription>(descriptions.size());
+    final Map<ByteString, Integer> occurrences =
+        new HashMap<ByteString, Integer>();
+    for (ExpressionDescription description : descriptions) {
+      final ExpressionDescription root =
+          ExpressionOptimizer.foldConstants(description);
+      folded.add(root);
+      count(root, occurrences);
+    }
+    final Set<ByteString> shared = new HashSet<ByteString>();
+    for (Map.Entry<ByteString, Integer> entry : occurrences.entrySet()) {
+      if (entry.getValue() > 1) {
+        shared.add(entry.getKey());
+      }
+    }
+    program.sharedCount = shared.size();
+    final ExpressionBinder binder =
+        new ExpressionBinder(inputSchema, program, shared);
+    for (ExpressionDescription root : folded) {
+      final FailureOr<BoundExpression> bound = binder.bind(root);
+      if (bound.isFailure()) {
+        return FailureOrs.failure(bound.exception());
+      }
+      program.roots.add(bound.get());
+    }
+    return FailureOrs.success(program);
+  }
+
+  /**
+   * Marks the start of the evaluation of a new block.
+   */
+  public void beginBlock() {
+    ++generation;
+  }
+
+  public TupleSchema inputSchema() {
+    return inputSchema;
+  }
+
+  public int rootCount() {
+    return roots.size();
+  }
+
+  public BoundExpression root(final int index) {
+    return roots.get(index);
+  }
+
+  public List<BoundExpression> roots() {
+    return Collections.unmodifiableList(roots);
+  }
+
+  /**
+   * Returns the number of distinct subexpressions that are evaluated once per
+   * block, on behalf of several occurrences.
+   */
+  public int sharedExpressionCount() {
+    return sharedCount;
+  }
+
+  long generation() {
+    return generation;
+  }
+
+  // Counts the occurrences of the operations in the tree. Constants and
+  // variables are cheap to evaluate, and aren't shared. The subtrees of an
+  // operation that has been seen before are not counted again, so that only
+  // the largest repeated subtrees are shared.
+  private static void count(final ExpressionDescription description,
+      final Map<ByteString, Integer> occurrences) {
+    if (description.getType() != ExpressionType.OPERATION) {
+      return;
+    }
+    final ByteString key = description.toByteString();
+    final Integer seen = occurrences.get(key);
+    occurrences.put(key, seen == null ? 1 : seen + 1);
+    if (seen != null) {
+      return;
+    }
+    for (ExpressionDescription argument
+        : description.getOperation().getArgumentList()) {
+      count(argument, occurrences);
+    }
+  }
+}
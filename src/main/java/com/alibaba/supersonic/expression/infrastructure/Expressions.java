@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.infrastructure;
+
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.Constant;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.ExpressionDescription;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.ExpressionType;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationDescription;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.Variable;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.google.protobuf.ByteString;
+
+/**
+ * Static helpers that build {@link ExpressionDescription}s.
+ */
+public final class Expressions {
+
+  private Expressions() {
+  }
+
+  /**
+   * Returns a reference to the input attribute with the specified name.
+   */
+  public static ExpressionDescription variable(final String name) {
+    return ExpressionDescription.newBuilder()
+        .setType(ExpressionType.VARIABLE)
+        .setVariable(Variable.newBuilder().setName(name))
+        .build();
+  }
+
+  /**
+   * Returns the operation applied to the arguments.
+   */
+  public static ExpressionDescription operation(final OperationType type,
+      final ExpressionDescription... arguments) {
+    final OperationDescription.Builder operation =
+        OperationDescription.newBuilder().setType(type);
+    for (ExpressionDescription argument : arguments) {
+      operation.addArgument(argument);
+    }
+    return ExpressionDescription.newBuilder()
+        .setType(ExpressionType.OPERATION)
+        .setOperation(operation)
+        .build();
+  }
+
+  /**
+   * Returns CAST(argument) to the specified type.
+   */
+  public static ExpressionDescription cast(final DataType type,
+      final ExpressionDescription argument) {
+    return operation(OperationType.CAST, argument,
+        constant(DataType.DATA_TYPE, type));
+  }
+
+  /**
+   * Returns a constant of the specified type, boxed as by
+   * {@link com.alibaba.supersonic.base.infrastructure.Column#get(int)}; a
+   * null value gives a NULL of the type.
+   */
+  public static ExpressionDescription constant(final DataType type,
+      final Object value) {
+    final Constant.Builder constant =
+        Constant.newBuilder().setType(toProto(type));
+    if (value != null) {
+      switch (type) {
+        case INT32:
+          constant.setInt32Value((Integer) value);
+          break;
+        case UINT32:
+          constant.setUint32Value((Integer) value);
+          break;
+        case DATE:
+          constant.setDateValue((Integer) value);
+          break;
+        case INT64:
+          constant.setInt64Value((Long) value);
+          break;
+        case UINT64:
+          constant.setUint64Value((Long) value);
+          break;
+        case DATETIME:
+          constant.setDatetimeValue((Long) value);
+          break;
+        case FLOAT:
+          constant.setFloatValue((Float) value);
+          break;
+        case DOUBLE:
+          constant.setDoubleValue((Double) value);
+          break;
+        case BOOL:
+          constant.setBoolValue((Boolean) value);
+          break;
+        case STRING:
+          constant.setStringValue((String) value);
+          break;
+        case BINARY:
+          constant.setBinaryValue(ByteString.copyFrom((byte[]) value));
+          break;
+        case DATA_TYPE:
+          constant.setDataTypeValue(toProto((DataType) value));
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported type: " + type);
+      }
+    }
+    return ExpressionDescription.newBuilder()
+        .setType(ExpressionType.CONSTANT)
+        .setConstant(constant)
+        .build();
+  }
+
+  public static ExpressionDescription int32(final int value) {
+    return constant(DataType.INT32, value);
+  }
+
+  public static ExpressionDescription int64(final long value) {
+    return constant(DataType.INT64, value);
+  }
+
+  public static ExpressionDescription float64(final double value) {
+    return constant(DataType.DOUBLE, value);
+  }
+
+  public static ExpressionDescription bool(final boolean value) {
+    return constant(DataType.BOOL, value);
+  }
+
+  public static ExpressionDescription string(final String value) {
+    return constant(DataType.STRING, value);
+  }
+
+  /**
+   * Returns a NULL of the specified type.
+   */
+  public static ExpressionDescription nullOf(final DataType type) {
+    return constant(type, null);
+  }
+
+  private static com.alibaba.supersonic.common.proto.CommonEnums.DataType
+      toProto(final DataType type) {
+    return com.alibaba.supersonic.common.proto.CommonEnums.DataType.valueOf(
+        type.getNumber());
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.infrastructure;
+
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+
+/**
+ * A subexpression that occurs more than once in an {@link ExpressionProgram}.
+ * All occurrences are the same object; the first evaluation in a block
+ * computes the result, and the others reuse it.
+ * 
+ * Occurrences may be evaluated on different selections (e.g. in the
+ * branches of an IF, or in the conjuncts of an AND). A result is reused if
+ * it was computed, for the current block, on all the requested rows.
+ * Otherwise, it is recomputed on the union of the rows computed so far and
+ * the requested ones, so that results that an ancestor still uses stay
+ * valid, and no row is evaluated that hasn't been asked for (which matters
+ * for expressions that can fail).
+ */
+final class SharedExpression extends BoundExpression {
+
+  private final ExpressionProgram program;
+  // The rows the result has been computed for, in the current block.
+  private final Selection computed;
+  private long generation;
+  private int rowCount;
+  // The last requested selection, for a quick check of repeated requests.
+  private Selection requested;
+  private int requestedVersion;
+  private FailureOr<Column> result;
+
+  SharedExpression(final ExpressionProgram program,
+      final BoundExpression expression) {
+    super(expression.resultAttribute(), expression);
+    this.program = program;
+    this.computed = new Selection();
+    this.generation = -1;
+  }
+
+  @Override
+  public FailureOr<Column> evaluate(final View input,
+      final Selection selection) {
+    if (generation == program.generation()
+        && rowCount == input.rowCount()) {
+      if ((requested == selection && requestedVersion == selection.version())
+          || computed.containsAll(selection)) {
+        return remember(selection);
+      }
+      computed.addAll(selection);
+    } else {
+      generation = program.generation();
+      rowCount = input.rowCount();
+      computed.copyFrom(selection);
+    }
+    result = child(0).evaluate(input, computed);
+    return remember(selection);
+  }
+
+  @Override
+  public void appendDescription(final StringBuilder target) {
+    child(0).appendDescription(target);
+  }
+
+  private FailureOr<Column> remember(final Selection selection) {
+    requested = selection;
+    requestedVersion = selection.version();
+    return result;
+  }
+}
@@ -16,6 +16,8 @@
  */
 package com.alibaba.supersonic.utils.exception;
 
+import com.alibaba.supersonic.base.exception.SupersonicException;
+
 /**
  * For results passed by value. The Result class must provide a default
  * constructor (used when a failure is propagated). (If this is not acceptable,
@@ -30,10 +32,11 @@ package com.alibaba.supersonic.utils.exception;
  * 
  */
 public class FailureOr<RESULT> extends FailureOrVoid {
-  private RESULT result;
+  private final RESULT result;
 
   public FailureOr(final FailurePropagator failure) {
     super(failure);
+    this.result = null;
   }
 
   public FailureOr(final ReferencePropagator<RESULT> result) {
@@ -41,6 +44,17 @@ public class FailureOr<RESULT> extends FailureOrVoid {
     this.result = result.result;
   }
 
+  /**
+   * Creates a success with the specified result (if exception is null), or a
+   * failure, without allocating a propagator. Used by the factory methods in
+   * {@link FailureOrs}, and by subclasses that are created per block.
+   */
+  protected FailureOr(final RESULT result,
+      final SupersonicException exception) {
+    super(exception);
+    this.result = result;
+  }
+
   public RESULT get() {
     ensureSuccess();
     return result;
@@ -49,7 +49,7 @@ import com.google.common.base.Preconditions;
  */
 public class FailureOrVoid {
 
-  private SupersonicException exception;
+  private final SupersonicException exception;
 
   public FailureOrVoid() {
     this.exception = null;
@@ -59,6 +59,14 @@ public class FailureOrVoid {
     this.exception = failure.exception;
   }
 
+  /**
+   * Creates a success (if exception is null) or a failure, without going
+   * through a propagator. Used by the factory methods in {@link FailureOrs}.
+   */
+  protected FailureOrVoid(final SupersonicException exception) {
+    this.exception = exception;
+  }
+
   public SupersonicException exception() {
     ensureFailure();
     return exception;
@@ -70,8 +78,10 @@ public class FailureOrVoid {
   }
 
   protected void ensureSuccess() {
-    Preconditions.checkState(isSuccess(),
-        "Unexpected failure: " + exception.getMessage());
+    if (isFailure()) {
+      throw new IllegalStateException(
+          "Unexpected failure: " + exception.getMessage(), exception);
+    }
   }
 
   public boolean isSuccess() {
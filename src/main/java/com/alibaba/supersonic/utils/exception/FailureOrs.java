@@ -17,6 +17,7 @@
 package com.alibaba.supersonic.utils.exception;
 
 import com.alibaba.supersonic.base.exception.SupersonicException;
+import com.google.common.base.Preconditions;
 
 /**
  * Propagators to support 'exception-like' error propagation. Allow to attach
@@ -56,25 +57,29 @@ import com.alibaba.supersonic.base.exception.SupersonicException;
  */
 public class FailureOrs {
 
+  // Results are immutable, so all void successes can share one instance.
+  private static final FailureOrVoid VOID_SUCCESS = new FailureOrVoid();
+
   public static <RESULT> FailureOr<RESULT> failure(SupersonicException exception) {
-    return new FailureOr<RESULT>(new FailurePropagator(exception));
+    Preconditions.checkNotNull(exception);
+    return new FailureOr<RESULT>(null, exception);
   }
 
   public static <RESULT> FailureOr<RESULT> success(RESULT result) {
-    return new FailureOr<RESULT>(new ReferencePropagator<RESULT>(result));
+    return new FailureOr<RESULT>(result, null);
   }
 
   public static FailureOrVoid voidFailure(SupersonicException exception) {
-    return new FailureOrVoid(new FailurePropagator(exception));
+    Preconditions.checkNotNull(exception);
+    return new FailureOrVoid(exception);
   }
 
   /**
-   * Creates an indication of success, with no result. Can be implicitly converted
-   * to {@link FailureOrVoid}.
+   * Returns an indication of success, with no result. Doesn't allocate.
    * @return
    */
   public static FailureOrVoid voidSuccess() {
-    return new FailureOrVoid();
+    return VOID_SUCCESS;
   }
 
 }
@@ -0,0 +1,271 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.utils.sketch;
+
+import java.util.Arrays;
+
+import com.alibaba.supersonic.base.exception.SupersonicException;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrVoid;
+import com.alibaba.supersonic.utils.exception.FailureOrs;
+
+/**
+ * A HyperLogLog sketch, estimating the number of distinct values added to it
+ * in fixed memory: 2^precision one-byte registers (4 KB with the default
+ * precision, for a standard error of about 1.04 / sqrt(2^precision), i.e.
+ * 1.6%). Values are added as 64-bit hashes (see the hash() methods); equal
+ * values must have equal hashes.
+ * 
+ * Sketches of the same precision are merged by taking the maximum of each
+ * register; the merge of the sketches of several inputs is the sketch of
+ * their union. The serialized form (toBytes()) is a header of three bytes
+ * (magic, version, precision), followed by the registers.
+ */
+public final class HyperLogLog {
+
+  public static final int DEFAULT_PRECISION = 12;
+  public static final int MIN_PRECISION = 4;
+  public static final int MAX_PRECISION = 18;
+
+  private static final byte MAGIC = 'H';
+  private static final byte VERSION = 1;
+  private static final int HEADER_SIZE = 3;
+
+  private final int precision;
+  private final byte[] registers;
+
+  public HyperLogLog() {
+    this(DEFAULT_PRECISION);
+  }
+
+  public HyperLogLog(final int precision) {
+    if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+      throw new IllegalArgumentException("Precision must be in ["
+          + MIN_PRECISION + ", " + MAX_PRECISION + "]: " + precision);
+    }
+    this.precision = precision;
+    this.registers = new byte[1 << precision];
+  }
+
+  /**
+   * Reads a sketch serialized by toBytes().
+   */
+  public static FailureOr<HyperLogLog> fromBytes(final byte[] bytes,
+      final int offset, final int length) {
+    final FailureOr<Integer> precision = readHeader(bytes, offset, length);
+    if (precision.isFailure()) {
+      return FailureOrs.failure(precision.exception());
+    }
+    final HyperLogLog result = new HyperLogLog(precision.get());
+    System.arraycopy(bytes, offset + HEADER_SIZE, result.registers, 0,
+        result.registers.length);
+    return FailureOrs.success(result);
+  }
+
+  public int precision() {
+    return precision;
+  }
+
+  /**
+   * Adds a value, given as its 64-bit hash.
+   */
+  public void add(final long hash) {
+    final int index = (int) (hash >>> (64 - precision));
+    // The position of the first 1 bit after the index bits; the sentinel
+    // bit bounds it by 64 - precision + 1.
+    final byte rank = (byte) (Long.numberOfLeadingZeros(
+        (hash << precision) | (1L << (precision - 1))) + 1);
+    if (rank > registers[index]) {
+      registers[index] = rank;
+    }
+  }
+
+  /**
+   * Merges another sketch of the same precision into this one.
+   */
+  public void merge(final HyperLogLog other) {
+    if (other.precision != precision) {
+      throw new IllegalArgumentException("Can't merge a sketch of precision "
+          + other.precision + " into one of precision " + precision);
+    }
+    merge(other.registers, 0);
+  }
+
+  /**
+   * Merges a serialized sketch (see toBytes()) into this one. Fails if the
+   * bytes are not a sketch of the same precision.
+   */
+  public FailureOrVoid merge(final byte[] bytes, final int offset,
+      final int length) {
+    final FailureOrVoid valid = check(bytes, offset, length, precision);
+    if (valid.isFailure()) {
+      return valid;
+    }
+    merge(bytes, offset + HEADER_SIZE);
+    return FailureOrs.voidSuccess();
+  }
+
+  /**
+   * Checks that the bytes are a serialized sketch of the specified
+   * precision, i.e. that merge(bytes, offset, length) into a sketch of that
+   * precision succeeds.
+   */
+  public static FailureOrVoid check(final byte[] bytes, final int offset,
+      final int length, final int precision) {
+    final FailureOr<Integer> otherPrecision =
+        readHeader(bytes, offset, length);
+    if (otherPrecision.isFailure()) {
+      return FailureOrs.voidFailure(otherPrecision.exception());
+    }
+    if (otherPrecision.get() != precision) {
+      return FailureOrs.voidFailure(new SupersonicException(
+          ReturnCode.ERROR_INVALID_ARGUMENT_VALUE,
+          "Can't merge a HyperLogLog sketch of precision "
+              + otherPrecision.get() + " into one of precision "
+              + precision));
+    }
+    return FailureOrs.voidSuccess();
+  }
+
+  /**
+   * Returns the estimated number of distinct values added.
+   */
+  public long estimate() {
+    final int m = registers.length;
+    double sum = 0.0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) {
+        ++zeros;
+      }
+    }
+    final double estimate = alpha(m) * m * m / sum;
+    // Small cardinalities: linear counting of the empty registers. The
+    // hashes are 64-bit, so there is no correction for large ones.
+    if (estimate <= 2.5 * m && zeros > 0) {
+      return Math.round(m * Math.log((double) m / zeros));
+    }
+    return Math.round(estimate);
+  }
+
+  // The bias correction of Flajolet et al.; the formula holds from 128
+  // registers on.
+  private static double alpha(final int m) {
+    switch (m) {
+      case 16:
+        return 0.673;
+      case 32:
+        return 0.697;
+      case 64:
+        return 0.709;
+      default:
+        return 0.7213 / (1.0 + 1.079 / m);
+    }
+  }
+
+  /**
+   * Returns the size of the serialized sketch, in bytes.
+   */
+  public int serializedSize() {
+    return HEADER_SIZE + registers.length;
+  }
+
+  /**
+   * Writes the serialized sketch to target, from offset on.
+   */
+  public void serialize(final byte[] target, final int offset) {
+    target[offset] = MAGIC;
+    target[offset + 1] = VERSION;
+    target[offset + 2] = (byte) precision;
+    System.arraycopy(registers, 0, target, offset + HEADER_SIZE,
+        registers.length);
+  }
+
+  public byte[] toBytes() {
+    final byte[] result = new byte[serializedSize()];
+    serialize(result, 0);
+    return result;
+  }
+
+  public void clear() {
+    Arrays.fill(registers, (byte) 0);
+  }
+
+  /**
+   * Returns a 64-bit hash of an integer value (the finalizer of
+   * MurmurHash3, a bijection).
+   */
+  public static long hash(long value) {
+    value ^= value >>> 33;
+    value *= 0xFF51AFD7ED558CCDL;
+    value ^= value >>> 33;
+    value *= 0xC4CEB9FE1A85EC53L;
+    value ^= value >>> 33;
+    return value;
+  }
+
+  /**
+   * Returns a 64-bit hash of a floating-point value. Zeros have the same
+   * hash, and so do NaNs.
+   */
+  public static long hash(final double value) {
+    return hash(Double.doubleToLongBits(value + 0.0));
+  }
+
+  /**
+   * Returns a 64-bit hash of the bytes (FNV-1a, then mixed).
+   */
+  public static long hash(final byte[] bytes, final int offset,
+      final int length) {
+    long hash = 0xCBF29CE484222325L;
+    for (int i = offset; i < offset + length; ++i) {
+      hash = (hash ^ (bytes[i] & 0xFF)) * 0x100000001B3L;
+    }
+    return hash(hash);
+  }
+
+  private void merge(final byte[] otherRegisters, final int offset) {
+    for (int i = 0; i < registers.length; ++i) {
+      final byte register = otherRegisters[offset + i];
+      if (register > registers[i]) {
+        registers[i] = register;
+      }
+    }
+  }
+
+  private static FailureOr<Integer> readHeader(final byte[] bytes,
+      final int offset, final int length) {
+    if (length < HEADER_SIZE || bytes[offset] != MAGIC
+        || bytes[offset + 1] != VERSION) {
+      return malformed();
+    }
+    final int precision = bytes[offset + 2];
+    if (precision < MIN_PRECISION || precision > MAX_PRECISION
+        || length != HEADER_SIZE + (1 << precision)) {
+      return malformed();
+    }
+    return FailureOrs.success(precision);
+  }
+
+  private static <T> FailureOr<T> malformed() {
+    return FailureOrs.failure(new SupersonicException(
+        ReturnCode.ERROR_INVALID_ARGUMENT_VALUE,
+        "Not a serialized HyperLogLog sketch"));
+  }
+}
@@ -0,0 +1,330 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.utils.sketch;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import com.alibaba.supersonic.base.exception.SupersonicException;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrVoid;
+import com.alibaba.supersonic.utils.exception.FailureOrs;
+
+/**
+ * A KLL sketch (Karnin, Lang and Liberty, "Optimal quantile approximation in
+ * streams"), estimating the quantiles of the values added to it in memory
+ * that grows only with the logarithm of their number: about 3k values for
+ * k = 200, with a rank error below 1% (with high probability).
+ * 
+ * The sketch is a stack of compactors; the values in compactor h stand for
+ * 2^h values each. A full compactor is sorted, and every other value (odd or
+ * even ones, at random) is moved up, to stand for twice as many. Sketches
+ * merge by concatenating their compactors, and compacting.
+ * 
+ * NaNs are ignored. The serialized form (toBytes()) is little-endian: magic,
+ * version, k, count, min, max, the number of compactors, and for each its
+ * size and values.
+ */
+public final class KllSketch {
+
+  public static final int DEFAULT_K = 200;
+
+  private static final byte MAGIC = 'K';
+  private static final byte VERSION = 1;
+  // magic, version, k, count, min, max, levelCount.
+  private static final int HEADER_SIZE = 1 + 1 + 4 + 8 + 8 + 8 + 4;
+
+  private final int k;
+  private double[][] levels;
+  private int[] sizes;
+  private int levelCount;
+  // The values in all levels, and their maximum before compacting.
+  private int size;
+  private int maxSize;
+  private long count;
+  private double min;
+  private double max;
+  private long random;
+
+  public KllSketch() {
+    this(DEFAULT_K);
+  }
+
+  public KllSketch(final int k) {
+    if (k < 8 || k > 65535) {
+      throw new IllegalArgumentException("k must be in [8, 65535]: " + k);
+    }
+    this.k = k;
+    this.levels = new double[4][];
+    this.sizes = new int[4];
+    this.levelCount = 0;
+    this.size = 0;
+    this.count = 0;
+    this.min = Double.NaN;
+    this.max = Double.NaN;
+    this.random = 0x9E3779B97F4A7C15L;
+    grow();
+  }
+
+  /**
+   * Reads a sketch serialized by toBytes().
+   */
+  public static FailureOr<KllSketch> fromBytes(final byte[] bytes,
+      final int offset, final int length) {
+    final ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    if (length < HEADER_SIZE || buffer.get() != MAGIC
+        || buffer.get() != VERSION) {
+      return malformed();
+    }
+    final int k = buffer.getInt();
+    final long count = buffer.getLong();
+    final double min = buffer.getDouble();
+    final double max = buffer.getDouble();
+    final int levelCount = buffer.getInt();
+    if (k < 8 || k > 65535 || count < 0 || levelCount < 1
+        || levelCount > 64) {
+      return malformed();
+    }
+    final KllSketch result = new KllSketch(k);
+    while (result.levelCount < levelCount) {
+      result.grow();
+    }
+    for (int level = 0; level < levelCount; ++level) {
+      if (buffer.remaining() < 4) {
+        return malformed();
+      }
+      final int levelSize = buffer.getInt();
+      if (levelSize < 0 || levelSize > buffer.remaining() / 8) {
+        return malformed();
+      }
+      for (int i = 0; i < levelSize; ++i) {
+        result.append(level, buffer.getDouble());
+      }
+    }
+    if (buffer.hasRemaining()) {
+      return malformed();
+    }
+    result.count = count;
+    result.min = min;
+    result.max = max;
+    result.compress();
+    return FailureOrs.success(result);
+  }
+
+  /**
+   * Returns the number of values added (NaNs excluded).
+   */
+  public long count() {
+    return count;
+  }
+
+  public void add(final double value) {
+    if (Double.isNaN(value)) {
+      return;
+    }
+    if (count++ == 0) {
+      min = value;
+      max = value;
+    } else {
+      min = Math.min(min, value);
+      max = Math.max(max, value);
+    }
+    append(0, value);
+    compress();
+  }
+
+  /**
+   * Merges another sketch into this one; the result estimates the
+   * quantiles of the union of their inputs.
+   */
+  public void merge(final KllSketch other) {
+    if (other.count == 0) {
+      return;
+    }
+    while (levelCount < other.levelCount) {
+      grow();
+    }
+    // The sizes before appending: other may be this sketch.
+    final int[] otherSizes = Arrays.copyOf(other.sizes, other.levelCount);
+    for (int level = 0; level < otherSizes.length; ++level) {
+      for (int i = 0; i < otherSizes[level]; ++i) {
+        append(level, other.levels[level][i]);
+      }
+    }
+    min = count == 0 ? other.min : Math.min(min, other.min);
+    max = count == 0 ? other.max : Math.max(max, other.max);
+    count += other.count;
+    compress();
+  }
+
+  /**
+   * Merges a serialized sketch (see toBytes()) into this one.
+   */
+  public FailureOrVoid merge(final byte[] bytes, final int offset,
+      final int length) {
+    final FailureOr<KllSketch> other = fromBytes(bytes, offset, length);
+    if (other.isFailure()) {
+      return FailureOrs.voidFailure(other.exception());
+    }
+    merge(other.get());
+    return FailureOrs.voidSuccess();
+  }
+
+  /**
+   * Returns the estimated quantile: the value with (about) fraction of the
+   * values below it; the minimum for 0, the maximum for 1. Returns NaN if
+   * no values were added.
+   */
+  public double quantile(final double fraction) {
+    if (count == 0) {
+      return Double.NaN;
+    }
+    if (fraction <= 0.0) {
+      return min;
+    }
+    if (fraction >= 1.0) {
+      return max;
+    }
+    // Merges the (sorted) levels, accumulating the weights, until they reach
+    // the rank.
+    final double rank = fraction * count;
+    final int[] positions = new int[levelCount];
+    for (int level = 0; level < levelCount; ++level) {
+      Arrays.sort(levels[level], 0, sizes[level]);
+    }
+    long weight = 0;
+    while (true) {
+      int next = -1;
+      for (int level = 0; level < levelCount; ++level) {
+        if (positions[level] < sizes[level] && (next < 0
+            || levels[level][positions[level]]
+                < levels[next][positions[next]])) {
+          next = level;
+        }
+      }
+      if (next < 0) {
+        return max;
+      }
+      final double value = levels[next][positions[next]++];
+      weight += 1L << next;
+      if (weight >= rank) {
+        return value;
+      }
+    }
+  }
+
+  /**
+   * Returns the size of the serialized sketch, in bytes.
+   */
+  public int serializedSize() {
+    return HEADER_SIZE + 4 * levelCount + 8 * size;
+  }
+
+  /**
+   * Writes the serialized sketch to target, from offset on.
+   */
+  public void serialize(final byte[] target, final int offset) {
+    final ByteBuffer buffer = ByteBuffer.wrap(target, offset,
+        serializedSize()).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.put(MAGIC).put(VERSION).putInt(k).putLong(count).putDouble(min)
+        .putDouble(max).putInt(levelCount);
+    for (int level = 0; level < levelCount; ++level) {
+      buffer.putInt(sizes[level]);
+      for (int i = 0; i < sizes[level]; ++i) {
+        buffer.putDouble(levels[level][i]);
+      }
+    }
+  }
+
+  public byte[] toBytes() {
+    final byte[] result = new byte[serializedSize()];
+    serialize(result, 0);
+    return result;
+  }
+
+  // The capacity of a level shrinks by 2/3 with each level above it.
+  private int capacity(final int level) {
+    final int depth = levelCount - level - 1;
+    return (int) Math.ceil(Math.pow(2.0 / 3.0, depth) * k) + 1;
+  }
+
+  private void grow() {
+    if (levelCount == levels.length) {
+      levels = Arrays.copyOf(levels, levelCount * 2);
+      sizes = Arrays.copyOf(sizes, levelCount * 2);
+    }
+    levels[levelCount] = new double[8];
+    sizes[levelCount] = 0;
+    ++levelCount;
+    maxSize = 0;
+    for (int level = 0; level < levelCount; ++level) {
+      maxSize += capacity(level);
+    }
+  }
+
+  private void append(final int level, final double value) {
+    if (sizes[level] == levels[level].length) {
+      levels[level] = Arrays.copyOf(levels[level], sizes[level] * 2);
+    }
+    levels[level][sizes[level]++] = value;
+    ++size;
+  }
+
+  private void compress() {
+    while (size >= maxSize) {
+      for (int level = 0; level < levelCount; ++level) {
+        if (sizes[level] >= capacity(level)) {
+          if (level + 1 == levelCount) {
+            grow();
+          }
+          compact(level);
+          break;
+        }
+      }
+    }
+  }
+
+  // Moves every other value of the level (the odd or the even ones) up; if
+  // there is an odd number of values, the smallest stays.
+  private void compact(final int level) {
+    final double[] values = levels[level];
+    final int levelSize = sizes[level];
+    Arrays.sort(values, 0, levelSize);
+    final int first = (levelSize & 1) + (nextBit() ? 1 : 0);
+    for (int i = first; i < levelSize; i += 2) {
+      append(level + 1, values[i]);
+    }
+    size -= levelSize - (levelSize & 1);
+    sizes[level] = levelSize & 1;
+  }
+
+  private boolean nextBit() {
+    random ^= random << 13;
+    random ^= random >>> 7;
+    random ^= random << 17;
+    return random < 0;
+  }
+
+  private static <T> FailureOr<T> malformed() {
+    return FailureOrs.failure(new SupersonicException(
+        ReturnCode.ERROR_INVALID_ARGUMENT_VALUE,
+        "Not a serialized KLL sketch"));
+  }
+}
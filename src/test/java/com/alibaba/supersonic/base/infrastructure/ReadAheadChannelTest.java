@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.base.infrastructure;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class ReadAheadChannelTest extends TestCase {
+
+  private Path file;
+
+  @Override
+  protected void setUp() throws IOException {
+    file = File.createTempFile("read-ahead", ".bin").toPath();
+  }
+
+  @Override
+  protected void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  public void testReadsTheWholeFile() throws IOException {
+    final byte[] contents = new byte[20000];
+    new Random(1).nextBytes(contents);
+    Files.write(file, contents);
+    final int[] chunkSizes = { 1, 7, 4096, 1 << 20 };
+    final int[] windows = { 1, 3, 8 };
+    final int[] targetSizes = { 1, 13, 5000, 50000 };
+    for (int chunkSize : chunkSizes) {
+      for (int window : windows) {
+        for (int targetSize : targetSizes) {
+          final ReadAheadChannel channel =
+              ReadAheadChannel.open(file, null, chunkSize, window);
+          try {
+            assertTrue(Arrays.equals(contents,
+                readAll(channel, targetSize)));
+          } finally {
+            channel.close();
+          }
+        }
+      }
+    }
+  }
+
+  public void testEmptyFile() throws IOException {
+    final ReadAheadChannel channel = ReadAheadChannel.open(file);
+    try {
+      assertEquals(-1, channel.read(ByteBuffer.allocate(10)));
+    } finally {
+      channel.close();
+    }
+  }
+
+  public void testCancelWakesUpWaitingRead() throws Exception {
+    Files.write(file, new byte[1000]);
+    // Never runs the reads, so that they never complete.
+    final PendingExecutor ioPool = new PendingExecutor();
+    final ReadAheadChannel channel = ReadAheadChannel.open(file, ioPool,
+        100, 2);
+    final Thread canceller = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          return;
+        }
+        channel.cancel();
+      }
+    };
+    canceller.start();
+    try {
+      channel.read(ByteBuffer.allocate(10));
+      fail("Expected the read to be cancelled");
+    } catch (InterruptedIOException expected) {
+    } finally {
+      canceller.join();
+      channel.close();
+    }
+  }
+
+  public void testClosedChannel() throws IOException {
+    Files.write(file, new byte[10]);
+    final ReadAheadChannel channel = ReadAheadChannel.open(file);
+    channel.close();
+    assertFalse(channel.isOpen());
+    try {
+      channel.read(ByteBuffer.allocate(10));
+      fail("Expected the read to fail");
+    } catch (IOException expected) {
+    }
+  }
+
+  private static byte[] readAll(final ReadAheadChannel channel,
+      final int targetSize) throws IOException {
+    final ByteBuffer target = ByteBuffer.allocate(targetSize);
+    final ByteArrayOutputStream result = new ByteArrayOutputStream();
+    while (true) {
+      target.clear();
+      final int count = channel.read(target);
+      if (count < 0) {
+        return result.toByteArray();
+      }
+      assertEquals(count, target.position());
+      result.write(target.array(), 0, count);
+    }
+  }
+
+  /**
+   * An executor that only queues its tasks.
+   */
+  private static final class PendingExecutor extends AbstractExecutorService {
+    private final List<Runnable> tasks = new ArrayList<Runnable>();
+    private boolean shutdown;
+
+    @Override
+    public synchronized void execute(final Runnable task) {
+      tasks.add(task);
+    }
+
+    @Override
+    public synchronized void shutdown() {
+      shutdown = true;
+    }
+
+    @Override
+    public synchronized List<Runnable> shutdownNow() {
+      shutdown = true;
+      return new ArrayList<Runnable>(tasks);
+    }
+
+    @Override
+    public synchronized boolean isShutdown() {
+      return shutdown;
+    }
+
+    @Override
+    public synchronized boolean isTerminated() {
+      return shutdown;
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,295 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.base.infrastructure;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+
+public class RowBufferTest extends TestCase {
+
+  private static final DataType[] TYPES = {
+    DataType.INT32, DataType.UINT32, DataType.INT64, DataType.UINT64,
+    DataType.FLOAT, DataType.DOUBLE, DataType.BOOL, DataType.DATE,
+    DataType.DATETIME, DataType.STRING, DataType.BINARY, DataType.DATA_TYPE,
+  };
+
+  private final Random random = new Random(11);
+  private TupleSchema schema;
+
+  @Override
+  protected void setUp() {
+    final TupleSchema.Builder builder = TupleSchema.builder();
+    for (DataType type : TYPES) {
+      builder.addAttribute(new Attribute(type.name().toLowerCase(), type,
+          Nullability.NOT_NULLABLE));
+      builder.addAttribute(new Attribute(type.name().toLowerCase() + "_n",
+          type, Nullability.NULLABLE));
+    }
+    schema = builder.build();
+  }
+
+  public void testRoundTrip() {
+    final Block[] blocks = { block(300), block(1), block(0), block(57) };
+    // A part of a block, whose columns start at an offset.
+    final View part = new View(blocks[0].view(), 120, 100);
+    final View[] views = {
+      blocks[0].view(), blocks[1].view(), part, blocks[2].view(),
+      blocks[3].view(),
+    };
+    // Starts small, so that appends have to grow it.
+    final RowBuffer rows = new RowBuffer(new RowFormat(schema), 16);
+    int expectedFirst = 0;
+    for (View view : views) {
+      assertEquals(expectedFirst, rows.appendRows(view));
+      expectedFirst += view.rowCount();
+    }
+    assertEquals(expectedFirst, rows.rowCount());
+    int row = 0;
+    for (View view : views) {
+      assertRowsEqual(view, rows, row);
+      final Block copy = new Block(schema, view.rowCount());
+      assertEquals(view.rowCount(),
+          rows.copyRows(row, view.rowCount(), new BlockBuilder(copy)));
+      assertViewsEqual(view, copy.view());
+      row += view.rowCount();
+    }
+  }
+
+  public void testPartialCopies() {
+    final Block source = block(100);
+    final RowBuffer rows = new RowBuffer(schema);
+    rows.appendRows(source.view());
+    // Copies rows [10, 100) into blocks of 40 rows, the first of which
+    // already holds 15 rows.
+    final Block first = new Block(schema, 40);
+    final BlockBuilder builder = new BlockBuilder(first);
+    assertEquals(15, rows.copyRows(0, 15, builder));
+    assertEquals(25, rows.copyRows(10, 90, builder));
+    assertTrue(builder.isFull());
+    assertEquals(0, rows.copyRows(35, 65, builder));
+    assertEquals(40, builder.rowCount());
+    assertViewsEqual(new View(source.view(), 0, 15),
+        new View(first.view(), 0, 15));
+    assertViewsEqual(new View(source.view(), 10, 25),
+        new View(first.view(), 15, 25));
+    int row = 35;
+    while (row < 100) {
+      final Block next = new Block(schema, 40);
+      final int copied = rows.copyRows(row, 100 - row, new BlockBuilder(next));
+      assertEquals(Math.min(40, 100 - row), copied);
+      assertViewsEqual(new View(source.view(), row, copied),
+          new View(next.view(), 0, copied));
+      row += copied;
+    }
+  }
+
+  public void testReset() {
+    final RowBuffer rows = new RowBuffer(schema);
+    rows.appendRows(block(50).view());
+    rows.reset();
+    assertEquals(0, rows.rowCount());
+    final Block source = block(20);
+    assertEquals(0, rows.appendRows(source.view()));
+    assertRowsEqual(source.view(), rows, 0);
+  }
+
+  public void testVariableLengthValues() {
+    final TupleSchema strings = TupleSchema.singleton("s", DataType.STRING,
+        Nullability.NULLABLE);
+    final String[] values = { "", "a", null, "", "0123456789abcdef" };
+    final Block block = new Block(strings, values.length);
+    for (int i = 0; i < values.length; ++i) {
+      block.isNull(0)[i] = values[i] == null;
+      block.setString(0, i, values[i] == null ? "ignored" : values[i]);
+    }
+    final RowBuffer rows = new RowBuffer(strings);
+    rows.appendRows(block.view());
+    final int fixed = rows.format().fixedRowSize();
+    for (int i = 0; i < values.length; ++i) {
+      assertEquals(values[i] == null, rows.isNull(i, 0));
+      final int length = values[i] == null ? 0 : values[i].length();
+      // NULLs take no space in the tail.
+      assertEquals(fixed + length, rows.rowSize(i));
+      assertEquals(length, rows.getBytesLength(i, 0));
+      if (values[i] != null) {
+        assertEquals(values[i], new String(rows.bytes(),
+            rows.getBytesOffset(i, 0), length));
+      }
+    }
+    final Block copy = new Block(strings, values.length);
+    rows.copyRows(0, values.length, new BlockBuilder(copy));
+    assertViewsEqual(block.view(), copy.view());
+  }
+
+  public void testNullsInNonNullableColumnsAreRejected() {
+    final TupleSchema nullable = TupleSchema.singleton("x", DataType.INT64,
+        Nullability.NULLABLE);
+    final TupleSchema notNullable = TupleSchema.singleton("x",
+        DataType.INT64, Nullability.NOT_NULLABLE);
+    final Block block = new Block(nullable, 10);
+    for (int i = 0; i < 10; ++i) {
+      block.longData(0)[i] = i;
+    }
+    // NULL flags that are all false are fine.
+    final RowBuffer strict = new RowBuffer(notNullable);
+    assertEquals(0, strict.appendRows(block.view()));
+    block.isNull(0)[6] = true;
+    try {
+      strict.appendRows(block.view());
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals(10, strict.rowCount());
+    }
+    // Rows past the view's row count don't matter.
+    assertEquals(10, strict.appendRows(new View(block.view(), 0, 6)));
+
+    final RowBuffer lenient = new RowBuffer(nullable);
+    lenient.appendRows(block.view());
+    final BlockBuilder target = new BlockBuilder(new Block(notNullable, 10));
+    assertEquals(6, lenient.copyRows(0, 6, target));
+    try {
+      lenient.copyRows(6, 4, target);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals(6, target.rowCount());
+    }
+    assertEquals(3, lenient.copyRows(7, 3, target));
+    assertEquals(9, target.block().longData(0)[8]);
+  }
+
+  private Block block(final int rowCount) {
+    final Block block = new Block(schema, rowCount);
+    final DataType[] dataTypes = DataType.values();
+    for (int column = 0; column < schema.attributeCount(); ++column) {
+      final boolean[] isNull = block.isNull(column);
+      for (int i = 0; i < rowCount; ++i) {
+        switch (schema.getAttributeAt(column).getType()) {
+          case INT32:
+          case UINT32:
+          case DATE:
+            block.intData(column)[i] = random.nextInt();
+            break;
+          case DATA_TYPE:
+            block.intData(column)[i] =
+                dataTypes[random.nextInt(dataTypes.length)].getNumber();
+            break;
+          case INT64:
+          case UINT64:
+          case DATETIME:
+            block.longData(column)[i] = random.nextLong();
+            break;
+          case FLOAT:
+            block.floatData(column)[i] = random.nextFloat();
+            break;
+          case DOUBLE:
+            block.doubleData(column)[i] = random.nextGaussian();
+            break;
+          case BOOL:
+            block.boolData(column)[i] = random.nextBoolean();
+            break;
+          case STRING:
+          case BINARY: {
+            final byte[] bytes = new byte[random.nextInt(20)];
+            random.nextBytes(bytes);
+            block.setBytes(column, i, bytes, 0, bytes.length);
+            break;
+          }
+          default:
+            throw new IllegalStateException();
+        }
+        if (isNull != null) {
+          isNull[i] = random.nextInt(5) == 0;
+        }
+      }
+    }
+    return block;
+  }
+
+  // Checks the row accessors against the view's columns.
+  private static void assertRowsEqual(final View expected,
+      final RowBuffer rows, final int firstRow) {
+    for (int column = 0; column < expected.columnCount(); ++column) {
+      final Column e = expected.column(column);
+      for (int i = 0; i < expected.rowCount(); ++i) {
+        final int row = firstRow + i;
+        final String message = e.attribute().getName() + " #" + i;
+        assertEquals(message, e.isNull(i), rows.isNull(row, column));
+        if (e.isNull(i)) {
+          continue;
+        }
+        switch (e.attribute().getType()) {
+          case INT32:
+          case UINT32:
+          case DATE:
+          case DATA_TYPE:
+            assertEquals(message, e.getInt(i), rows.getInt(row, column));
+            break;
+          case INT64:
+          case UINT64:
+          case DATETIME:
+            assertEquals(message, e.getLong(i), rows.getLong(row, column));
+            break;
+          case FLOAT:
+            assertEquals(message, e.getFloat(i), rows.getFloat(row, column));
+            break;
+          case DOUBLE:
+            assertEquals(message, e.getDouble(i),
+                rows.getDouble(row, column));
+            break;
+          case BOOL:
+            assertEquals(message, e.getBool(i), rows.getBool(row, column));
+            break;
+          default: {
+            final int offset = rows.getBytesOffset(row, column);
+            final byte[] actual = Arrays.copyOfRange(rows.bytes(), offset,
+                offset + rows.getBytesLength(row, column));
+            assertTrue(message, Arrays.equals(e.getBytes(i), actual));
+          }
+        }
+      }
+    }
+  }
+
+  private static void assertViewsEqual(final View expected,
+      final View actual) {
+    assertEquals(expected.rowCount(), actual.rowCount());
+    for (int column = 0; column < expected.columnCount(); ++column) {
+      final Column e = expected.column(column);
+      final Column a = actual.column(column);
+      for (int i = 0; i < expected.rowCount(); ++i) {
+        final String message = e.attribute().getName() + " #" + i;
+        assertEquals(message, e.isNull(i), a.isNull(i));
+        if (e.isNull(i)) {
+          continue;
+        }
+        switch (e.attribute().getType()) {
+          case STRING:
+          case BINARY:
+            assertTrue(message, Arrays.equals(e.getBytes(i), a.getBytes(i)));
+            break;
+          default:
+            assertEquals(message, e.get(i), a.get(i));
+        }
+      }
+    }
+  }
+}
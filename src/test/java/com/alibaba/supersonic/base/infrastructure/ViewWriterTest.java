@@ -0,0 +1,448 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.base.infrastructure;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrVoid;
+
+public class ViewWriterTest extends TestCase {
+
+  private static final DataType[] TYPES = {
+    DataType.INT32, DataType.UINT32, DataType.INT64, DataType.UINT64,
+    DataType.FLOAT, DataType.DOUBLE, DataType.BOOL, DataType.DATE,
+    DataType.DATETIME, DataType.STRING, DataType.BINARY,
+  };
+
+  private final Random random = new Random(7);
+  private TupleSchema schema;
+
+  @Override
+  protected void setUp() {
+    final TupleSchema.Builder builder = TupleSchema.builder();
+    for (DataType type : TYPES) {
+      builder.addAttribute(new Attribute(type.name().toLowerCase(), type,
+          Nullability.NOT_NULLABLE));
+      builder.addAttribute(new Attribute(type.name().toLowerCase() + "_n",
+          type, Nullability.NULLABLE));
+    }
+    schema = builder.build();
+  }
+
+  public void testRoundTripWithShortReadsAndWrites() {
+    final View[] views = views();
+    final ChunkedOutput output = new ChunkedOutput(5);
+    final ViewWriter writer = new ViewWriter(output, schema);
+    for (View view : views) {
+      assertTrue(writer.write(view).isSuccess());
+    }
+    assertTrue(writer.finish().isSuccess());
+
+    for (int maxReadSize : new int[] { 1, 3, 64, 1 << 20 }) {
+      final ViewReader reader = ViewReader.open(
+          new ChunkedInput(output.toByteArray(), maxReadSize)).get();
+      assertEquals(schema, reader.schema());
+      assertRead(views, reader);
+      assertNull(reader.read().get());
+    }
+  }
+
+  public void testRoundTripWithShortGatheringWritesAndScatteringReads() {
+    final View[] views = views();
+    final GatheringOutput output = new GatheringOutput(5);
+    final ViewWriter writer = new ViewWriter(output, schema);
+    for (View view : views) {
+      assertTrue(writer.write(view).isSuccess());
+    }
+    assertTrue(writer.finish().isSuccess());
+    assertTrue(output.gatheringWrites > 0);
+
+    for (int maxReadSize : new int[] { 1, 3, 64, 1 << 20 }) {
+      final ScatteringInput input =
+          new ScatteringInput(output.toByteArray(), maxReadSize);
+      assertRead(views, ViewReader.open(input).get());
+      assertTrue(input.scatteringReads > 0);
+    }
+  }
+
+  public void testRoundTripOverFileChannel() throws IOException {
+    final View[] views = views();
+    final Path file = File.createTempFile("views", ".bin").toPath();
+    try {
+      final FileChannel out = FileChannel.open(file,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      try {
+        final ViewWriter writer = new ViewWriter(out, schema);
+        for (View view : views) {
+          assertTrue(writer.write(view).isSuccess());
+        }
+        assertTrue(writer.finish().isSuccess());
+      } finally {
+        out.close();
+      }
+      final FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+      try {
+        assertRead(views, ViewReader.open(in).get());
+      } finally {
+        in.close();
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  public void testRoundTripOverPipe() throws Exception {
+    final View[] views = views();
+    final Pipe pipe = Pipe.open();
+    final FailureOrVoid[] written = new FailureOrVoid[views.length + 1];
+    // The pipe's buffer is small; the writer must run concurrently.
+    final Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        final ViewWriter writer = new ViewWriter(pipe.sink(), schema);
+        for (int i = 0; i < views.length; ++i) {
+          written[i] = writer.write(views[i]);
+        }
+        written[views.length] = writer.finish();
+        try {
+          pipe.sink().close();
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+    thread.start();
+    try {
+      assertRead(views, ViewReader.open(pipe.source()).get());
+    } finally {
+      thread.join();
+      pipe.source().close();
+    }
+    for (FailureOrVoid result : written) {
+      assertTrue(result.isSuccess());
+    }
+  }
+
+  public void testEmptyStream() {
+    final ChunkedOutput output = new ChunkedOutput(1 << 20);
+    assertTrue(new ViewWriter(output, schema).finish().isSuccess());
+    final ViewReader reader = ViewReader.open(
+        new ChunkedInput(output.toByteArray(), 1 << 20)).get();
+    assertEquals(schema, reader.schema());
+    assertNull(reader.read().get());
+  }
+
+  public void testNullsInNonNullableAttributeAreRejected() {
+    final TupleSchema nullable = TupleSchema.singleton("x", DataType.INT64,
+        Nullability.NULLABLE);
+    final TupleSchema notNullable = TupleSchema.singleton("x",
+        DataType.INT64, Nullability.NOT_NULLABLE);
+    final Block block = new Block(nullable, 10);
+    for (int i = 0; i < 10; ++i) {
+      block.longData(0)[i] = i;
+    }
+    final ChunkedOutput output = new ChunkedOutput(1 << 20);
+    final ViewWriter writer = new ViewWriter(output, notNullable);
+    // NULL flags that are all false are fine; no bitmap is written.
+    assertTrue(writer.write(block.view()).isSuccess());
+    final int written = output.toByteArray().length;
+    block.isNull(0)[3] = true;
+    final FailureOrVoid rejected = writer.write(block.view());
+    assertTrue(rejected.isFailure());
+    assertEquals(ReturnCode.ERROR_ATTRIBUTE_IS_NULLABLE,
+        rejected.exception().getReturnCode());
+    assertEquals(written, output.toByteArray().length);
+    // Rows past the view's row count don't matter.
+    assertTrue(writer.write(new View(block.view(), 0, 3)).isSuccess());
+    assertTrue(writer.finish().isSuccess());
+
+    final ViewReader reader = ViewReader.open(
+        new ChunkedInput(output.toByteArray(), 7)).get();
+    assertEquals(notNullable, reader.schema());
+    assertEquals(10, reader.read().get().rowCount());
+    final View last = reader.read().get();
+    assertEquals(3, last.rowCount());
+    assertEquals(2, last.column(0).getLong(2));
+    assertNull(reader.read().get());
+  }
+
+  public void testTruncatedStreamFails() {
+    final ChunkedOutput output = new ChunkedOutput(1 << 20);
+    final ViewWriter writer = new ViewWriter(output, schema);
+    assertTrue(writer.write(block(100).view()).isSuccess());
+    assertTrue(writer.finish().isSuccess());
+    final byte[] bytes = output.toByteArray();
+    final ViewReader reader = ViewReader.open(new ChunkedInput(
+        Arrays.copyOf(bytes, bytes.length - 100), 1 << 20)).get();
+    final FailureOr<View> result = reader.read();
+    assertTrue(result.isFailure());
+    assertEquals(ReturnCode.ERROR_GENERAL_IO_ERROR,
+        result.exception().getReturnCode());
+  }
+
+  // Views of several sizes, including an empty one, and a part of a block:
+  // its columns start at an offset, and only part of the arenas is
+  // referenced.
+  private View[] views() {
+    final Block first = block(1000);
+    return new View[] {
+      first.view(), block(1).view(), new View(first.view(), 100, 250),
+      block(0).view(), block(77).view(),
+    };
+  }
+
+  private static void assertRead(final View[] expected,
+      final ViewReader reader) {
+    for (View view : expected) {
+      final FailureOr<View> actual = reader.read();
+      assertTrue(actual.isSuccess());
+      assertViewsEqual(view, actual.get());
+    }
+    assertNull(reader.read().get());
+  }
+
+  private Block block(final int rowCount) {
+    final Block block = new Block(schema, rowCount);
+    for (int column = 0; column < schema.attributeCount(); ++column) {
+      final boolean[] isNull = block.isNull(column);
+      for (int i = 0; i < rowCount; ++i) {
+        switch (schema.getAttributeAt(column).getType()) {
+          case INT32:
+          case UINT32:
+          case DATE:
+            block.intData(column)[i] = random.nextInt();
+            break;
+          case INT64:
+          case UINT64:
+          case DATETIME:
+            block.longData(column)[i] = random.nextLong();
+            break;
+          case FLOAT:
+            block.floatData(column)[i] = random.nextFloat();
+            break;
+          case DOUBLE:
+            block.doubleData(column)[i] = random.nextGaussian();
+            break;
+          case BOOL:
+            block.boolData(column)[i] = random.nextBoolean();
+            break;
+          case STRING:
+          case BINARY: {
+            final byte[] bytes = new byte[random.nextInt(20)];
+            random.nextBytes(bytes);
+            block.setBytes(column, i, bytes, 0, bytes.length);
+            break;
+          }
+          default:
+            throw new IllegalStateException();
+        }
+        if (isNull != null) {
+          isNull[i] = random.nextInt(5) == 0;
+        }
+      }
+    }
+    return block;
+  }
+
+  private static void assertViewsEqual(final View expected,
+      final View actual) {
+    assertEquals(expected.rowCount(), actual.rowCount());
+    for (int column = 0; column < expected.columnCount(); ++column) {
+      final Column e = expected.column(column);
+      final Column a = actual.column(column);
+      for (int i = 0; i < expected.rowCount(); ++i) {
+        final String message = e.attribute().getName() + " #" + i;
+        assertEquals(message, e.isNull(i), a.isNull(i));
+        if (e.isNull(i)) {
+          continue;
+        }
+        switch (e.attribute().getType()) {
+          case STRING:
+          case BINARY:
+            assertTrue(message, Arrays.equals(e.getBytes(i), a.getBytes(i)));
+            break;
+          default:
+            assertEquals(message, e.get(i), a.get(i));
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes at most maxWriteSize bytes per call, and isn't a
+   * GatheringByteChannel.
+   */
+  private static class ChunkedOutput implements WritableByteChannel {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final int maxWriteSize;
+
+    ChunkedOutput(final int maxWriteSize) {
+      this.maxWriteSize = maxWriteSize;
+    }
+
+    @Override
+    public int write(final ByteBuffer source) {
+      return write(source, maxWriteSize);
+    }
+
+    int write(final ByteBuffer source, final int maxCount) {
+      final int count = Math.min(maxCount, source.remaining());
+      for (int i = 0; i < count; ++i) {
+        bytes.write(source.get());
+      }
+      return count;
+    }
+
+    byte[] toByteArray() {
+      return bytes.toByteArray();
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  /**
+   * Reads at most maxReadSize bytes per call.
+   */
+  private static class ChunkedInput implements ReadableByteChannel {
+    private final ByteBuffer bytes;
+    final int maxReadSize;
+
+    ChunkedInput(final byte[] bytes, final int maxReadSize) {
+      this.bytes = ByteBuffer.wrap(bytes);
+      this.maxReadSize = maxReadSize;
+    }
+
+    @Override
+    public int read(final ByteBuffer target) {
+      return read(target, maxReadSize);
+    }
+
+    int read(final ByteBuffer target, final int maxCount) {
+      if (!bytes.hasRemaining()) {
+        return -1;
+      }
+      final int count = Math.min(maxCount,
+          Math.min(bytes.remaining(), target.remaining()));
+      for (int i = 0; i < count; ++i) {
+        target.put(bytes.get());
+      }
+      return count;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  /**
+   * A GatheringByteChannel that writes at most maxWriteSize bytes per call,
+   * across all the buffers.
+   */
+  private static final class GatheringOutput extends ChunkedOutput
+      implements GatheringByteChannel {
+    int gatheringWrites;
+
+    GatheringOutput(final int maxWriteSize) {
+      super(maxWriteSize);
+    }
+
+    @Override
+    public long write(final ByteBuffer[] sources, final int offset,
+        final int length) {
+      ++gatheringWrites;
+      int written = 0;
+      for (int i = offset; i < offset + length && written < maxWriteSize;
+          ++i) {
+        written += write(sources[i], maxWriteSize - written);
+      }
+      return written;
+    }
+
+    @Override
+    public long write(final ByteBuffer[] sources) {
+      return write(sources, 0, sources.length);
+    }
+  }
+
+  /**
+   * A ScatteringByteChannel that reads at most maxReadSize bytes per call,
+   * across all the buffers.
+   */
+  private static final class ScatteringInput extends ChunkedInput
+      implements ScatteringByteChannel {
+    int scatteringReads;
+
+    ScatteringInput(final byte[] bytes, final int maxReadSize) {
+      super(bytes, maxReadSize);
+    }
+
+    @Override
+    public long read(final ByteBuffer[] targets, final int offset,
+        final int length) {
+      ++scatteringReads;
+      int read = 0;
+      for (int i = offset; i < offset + length && read < maxReadSize; ++i) {
+        if (!targets[i].hasRemaining()) {
+          continue;
+        }
+        final int count = read(targets[i], maxReadSize - read);
+        if (count < 0) {
+          return read == 0 ? -1 : read;
+        }
+        read += count;
+      }
+      return read;
+    }
+
+    @Override
+    public long read(final ByteBuffer[] targets) {
+      return read(targets, 0, targets.length);
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import static com.alibaba.supersonic.expression.infrastructure.Expressions.variable;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.cursor.base.CancellationToken;
+import com.alibaba.supersonic.cursor.base.Cursor;
+import com.alibaba.supersonic.cursor.base.ResultView;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+
+public class CancellationWatchCursorTest extends TestCase {
+
+  private CancellationToken token;
+  private InterruptionCounterCursor leaf;
+
+  @Override
+  protected void setUp() {
+    token = new CancellationToken();
+    leaf = new InterruptionCounterCursor(generate(1000));
+  }
+
+  public void testPassesRowsThrough() {
+    final CancellationWatchCursor cursor =
+        new CancellationWatchCursor(leaf, token);
+    assertEquals(leaf.schema(), cursor.schema());
+    long row = 0;
+    ResultView next;
+    while ((next = cursor.next(300)).hasData()) {
+      for (int i = 0; i < next.view().rowCount(); ++i, ++row) {
+        assertEquals(row, next.view().column(0).getLong(i));
+      }
+    }
+    assertTrue(next.isEos());
+    assertEquals(1000, row);
+    assertEquals(0, leaf.interruptionCount());
+  }
+
+  public void testCancelInterruptsTree() {
+    final InterruptionCounterCursor compute = new InterruptionCounterCursor(
+        ComputeCursor.create(leaf, Arrays.asList(variable("x")),
+            Arrays.asList("y")).get());
+    final CancellationWatchCursor cursor =
+        new CancellationWatchCursor(compute, token);
+    assertTrue(cursor.next(100).hasData());
+    token.cancel();
+    assertTrue(token.isCancelled());
+    // The interruption reaches the leaf through the compute cursor.
+    assertEquals(1, compute.interruptionCount());
+    assertEquals(1, leaf.interruptionCount());
+    assertEquals(ReturnCode.INTERRUPTED, cursor.next(100).status());
+    assertEquals(ReturnCode.INTERRUPTED, compute.next(100).status());
+    assertEquals(ReturnCode.INTERRUPTED, leaf.next(100).status());
+    // Cancelling again doesn't interrupt again.
+    token.cancel();
+    assertEquals(1, leaf.interruptionCount());
+  }
+
+  public void testWatchAfterCancel() {
+    token.cancel();
+    final CancellationWatchCursor cursor =
+        new CancellationWatchCursor(leaf, token);
+    assertEquals(1, leaf.interruptionCount());
+    assertEquals(ReturnCode.INTERRUPTED, cursor.next(100).status());
+  }
+
+  public void testUnwatchedWhenDone() {
+    final CancellationWatchCursor cursor =
+        new CancellationWatchCursor(leaf, token);
+    while (cursor.next(300).hasData()) {
+    }
+    token.cancel();
+    assertEquals(0, leaf.interruptionCount());
+  }
+
+  public void testInterruptDirectly() {
+    final InterruptionCounterCursor top = new InterruptionCounterCursor(
+        new CancellationWatchCursor(leaf, token));
+    top.interrupt();
+    top.interrupt();
+    assertEquals(2, top.interruptionCount());
+    assertEquals(2, leaf.interruptionCount());
+    assertEquals(ReturnCode.INTERRUPTED, top.next(100).status());
+    assertFalse(token.isCancelled());
+  }
+
+  private static Cursor generate(final long rowCount) {
+    return GenerateCursor.create(TupleSchema.singleton("x", DataType.INT64,
+        Nullability.NOT_NULLABLE), Arrays.asList(ColumnGenerator.sequence()),
+        rowCount, 256, 1).get();
+  }
+}
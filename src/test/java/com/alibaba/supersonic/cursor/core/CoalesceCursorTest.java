@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.BlockPool;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.cursor.base.ResultView;
+import com.alibaba.supersonic.cursor.infrastructure.ScriptedCursor;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+
+public class CoalesceCursorTest extends TestCase {
+
+  private static final TupleSchema INTS = TupleSchema.singleton("x",
+      DataType.INT32, Nullability.NOT_NULLABLE);
+
+  // The ints 0 to 999; the child's blocks are views over sub-ranges.
+  private final Block input = new Block(INTS, 1000);
+
+  @Override
+  protected void setUp() {
+    for (int i = 0; i < input.rowCapacity(); ++i) {
+      input.intData(0)[i] = i;
+    }
+  }
+
+  public void testPassesThroughBlocksOfHalfTheTarget() {
+    final ScriptedCursor child = new ScriptedCursor(INTS)
+        .thenView(rows(0, 5))
+        .thenView(rows(5, 4))
+        .thenView(rows(9, 10));
+    final BlockPool pool = pool(10);
+    final CoalesceCursor cursor = new CoalesceCursor(child, 10, pool);
+    // (10 + 1) / 2 rows is enough to pass through.
+    assertPassedThrough(cursor.next(100), 0, 5);
+    // Fewer rows are copied, with those of the next block.
+    assertCopied(cursor.next(100), pool, 5, 10);
+    assertCopied(cursor.next(100), pool, 15, 4);
+    assertTrue(cursor.next(100).isEos());
+    // The child is always asked for the target.
+    assertEquals(Arrays.asList(10, 10, 10, 10), child.requests());
+    // With an odd target, the threshold rounds up.
+    final ScriptedCursor odd = new ScriptedCursor(INTS)
+        .thenView(rows(0, 4))
+        .thenView(rows(4, 5));
+    final CoalesceCursor oddCursor = new CoalesceCursor(odd, 9, null);
+    assertCopied(oddCursor.next(100), null, 0, 9);
+    assertTrue(oddCursor.next(100).isEos());
+  }
+
+  public void testSplitsOversizedBlocks() {
+    final ScriptedCursor child = new ScriptedCursor(INTS)
+        .thenView(rows(0, 10))
+        .thenView(rows(10, 10));
+    final BlockPool pool = pool(10);
+    final CoalesceCursor cursor = new CoalesceCursor(child, 10, pool);
+    // A smaller maxRowCount lowers the target; a block of the child's is
+    // larger than that, and is split without copying.
+    assertPassedThrough(cursor.next(4), 0, 4);
+    assertPassedThrough(cursor.next(4), 4, 4);
+    assertEquals(1, pool.idleBlockCount());
+    // The 2 rows left don't reach half the target any more: they are copied,
+    // then completed from the next block.
+    assertCopied(cursor.next(10), pool, 8, 10);
+    // And the rest of that block is copied too.
+    assertCopied(cursor.next(10), pool, 18, 2);
+    assertTrue(cursor.next(10).isEos());
+    assertEquals(Arrays.asList(10, 10, 10), child.requests());
+    assertEquals(1, pool.idleBlockCount());
+  }
+
+  public void testFlushesBeforeBarriers() {
+    final ScriptedCursor child = new ScriptedCursor(INTS)
+        .thenView(rows(0, 3))
+        .thenWaitingOnBarrier()
+        .thenWaitingOnBarrier()
+        .thenView(rows(3, 2))
+        .thenView(rows(5, 2))
+        .thenWaitingOnBarrier()
+        .thenView(rows(7, 3));
+    final BlockPool pool = pool(10);
+    final CoalesceCursor cursor = new CoalesceCursor(child, 10, pool);
+    // The rows copied so far are returned at a barrier, rather than held
+    // back until it is crossed; the child is asked again on the next call.
+    assertCopied(cursor.next(100), pool, 0, 3);
+    assertEquals(2, child.requests().size());
+    // With nothing copied, the barrier is returned as is.
+    assertTrue(cursor.next(100).isWaitingOnBarrier());
+    assertEquals(3, child.requests().size());
+    assertCopied(cursor.next(100), pool, 3, 4);
+    // The block is kept across barriers.
+    assertEquals(0, pool.idleBlockCount());
+    assertCopied(cursor.next(100), pool, 7, 3);
+    assertTrue(cursor.next(100).isEos());
+    assertEquals(1, pool.idleBlockCount());
+  }
+
+  public void testDefersEndOfInputAfterFlush() {
+    final ScriptedCursor child = new ScriptedCursor(INTS)
+        .thenView(rows(0, 3));
+    final BlockPool pool = pool(10);
+    final CoalesceCursor cursor = new CoalesceCursor(child, 10, pool);
+    assertCopied(cursor.next(100), pool, 0, 3);
+    assertEquals(2, child.requests().size());
+    // The rows returned are still in use: the block isn't given back yet.
+    assertEquals(0, pool.idleBlockCount());
+    assertTrue(cursor.next(100).isEos());
+    assertEquals(1, pool.idleBlockCount());
+    // The end of input is remembered, without calling the child again.
+    assertTrue(cursor.next(100).isEos());
+    assertEquals(2, child.requests().size());
+    assertEquals(1, pool.idleBlockCount());
+  }
+
+  public void testDefersFailureAfterFlush() {
+    final ScriptedCursor child = new ScriptedCursor(INTS)
+        .thenView(rows(0, 3))
+        .thenFailure(ReturnCode.ERROR_EVALUATION_ERROR)
+        .thenView(rows(3, 10));
+    final BlockPool pool = pool(10);
+    final CoalesceCursor cursor = new CoalesceCursor(child, 10, pool);
+    assertCopied(cursor.next(100), pool, 0, 3);
+    assertEquals(0, pool.idleBlockCount());
+    final ResultView failure = cursor.next(100);
+    assertFailure(ReturnCode.ERROR_EVALUATION_ERROR, failure);
+    assertEquals(1, pool.idleBlockCount());
+    assertSame(failure, cursor.next(100));
+    assertEquals(2, child.requests().size());
+  }
+
+  public void testReturnsFailureWithNothingCopied() {
+    final ScriptedCursor child = new ScriptedCursor(INTS)
+        .thenView(rows(0, 10))
+        .thenFailure(ReturnCode.ERROR_EVALUATION_ERROR);
+    final CoalesceCursor cursor = new CoalesceCursor(child, 10, null);
+    assertPassedThrough(cursor.next(100), 0, 10);
+    final ResultView failure = cursor.next(100);
+    assertFailure(ReturnCode.ERROR_EVALUATION_ERROR, failure);
+    assertSame(failure, cursor.next(100));
+    assertEquals(2, child.requests().size());
+  }
+
+  public void testInterruption() {
+    final ScriptedCursor child = new ScriptedCursor(INTS)
+        .thenView(rows(0, 3))
+        .thenWaitingOnBarrier()
+        .thenView(rows(3, 3));
+    final BlockPool pool = pool(10);
+    final CoalesceCursor cursor = new CoalesceCursor(child, 10, pool);
+    assertCopied(cursor.next(100), pool, 0, 3);
+    cursor.interrupt();
+    final ResultView interrupted = cursor.next(100);
+    assertFailure(ReturnCode.INTERRUPTED, interrupted);
+    // The interruption reaches the child, and gives the block back.
+    assertFailure(ReturnCode.INTERRUPTED, child.next(100));
+    assertEquals(1, pool.idleBlockCount());
+    assertSame(interrupted, cursor.next(100));
+    // Before anything was read.
+    final CoalesceCursor idle = new CoalesceCursor(new ScriptedCursor(INTS)
+        .thenView(rows(0, 3)), 10, null);
+    idle.interrupt();
+    assertFailure(ReturnCode.INTERRUPTED, idle.next(100));
+  }
+
+  public void testReusesPooledBlocks() {
+    final BlockPool pool = new BlockPool(4);
+    final Block pooled = new Block(INTS, 10);
+    pool.release(pooled);
+    final CoalesceCursor first = new CoalesceCursor(new ScriptedCursor(INTS)
+        .thenView(rows(0, 2)).thenView(rows(2, 2)), 10, pool);
+    final ResultView copied = first.next(100);
+    assertCopied(copied, pool, 0, 4);
+    assertSame(pooled.intData(0), copied.view().column(0).data());
+    assertTrue(first.next(100).isEos());
+    assertEquals(1, pool.idleBlockCount());
+    // The next cursor gets the same block.
+    final CoalesceCursor second = new CoalesceCursor(new ScriptedCursor(INTS)
+        .thenView(rows(4, 1)), 10, pool);
+    final ResultView result = second.next(100);
+    assertCopied(result, pool, 4, 1);
+    assertSame(pooled.intData(0), result.view().column(0).data());
+    assertTrue(second.next(100).isEos());
+    assertEquals(1, pool.idleBlockCount());
+    // Without a pool, blocks are allocated.
+    final CoalesceCursor unpooled = new CoalesceCursor(
+        new ScriptedCursor(INTS).thenView(rows(0, 2)), 10, null);
+    assertCopied(unpooled.next(100), null, 0, 2);
+    assertTrue(unpooled.next(100).isEos());
+  }
+
+  public void testInvalidArguments() {
+    try {
+      new CoalesceCursor(new ScriptedCursor(INTS), 0, null);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      new CoalesceCursor(new ScriptedCursor(INTS)).next(0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  private View rows(final int offset, final int rowCount) {
+    return new View(input.view(), offset, rowCount);
+  }
+
+  // A pool holding one block of the target size.
+  private static BlockPool pool(final int targetRowCount) {
+    final BlockPool pool = new BlockPool(1);
+    pool.release(new Block(INTS, targetRowCount));
+    return pool;
+  }
+
+  private void assertPassedThrough(final ResultView result, final int from,
+      final int rowCount) {
+    assertRows(result, from, rowCount);
+    assertSame(input.intData(0), result.view().column(0).data());
+  }
+
+  // Asserts the rows were copied, into a block taken from the pool (which
+  // has none left).
+  private void assertCopied(final ResultView result, final BlockPool pool,
+      final int from, final int rowCount) {
+    assertRows(result, from, rowCount);
+    assertNotSame(input.intData(0), result.view().column(0).data());
+    if (pool != null) {
+      assertEquals(0, pool.idleBlockCount());
+    }
+  }
+
+  private static void assertRows(final ResultView result, final int from,
+      final int rowCount) {
+    assertTrue(result.hasData());
+    final View view = result.view();
+    assertEquals(rowCount, view.rowCount());
+    for (int i = 0; i < rowCount; ++i) {
+      assertEquals(from + i, view.column(0).getInt(i));
+    }
+  }
+
+  private static void assertFailure(final ReturnCode expected,
+      final ResultView result) {
+    assertTrue(result.isFailure());
+    assertEquals(expected, result.exception().getReturnCode());
+  }
+}
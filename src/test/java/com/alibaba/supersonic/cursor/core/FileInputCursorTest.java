@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.base.infrastructure.ViewWriter;
+import com.alibaba.supersonic.cursor.base.ResultView;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+
+public class FileInputCursorTest extends TestCase {
+
+  private static final int[] BATCH_SIZES = { 1000, 1, 333, 2048, 7 };
+
+  private TupleSchema schema;
+  private Path file;
+  private int rowCount;
+
+  @Override
+  protected void setUp() throws IOException {
+    final TupleSchema.Builder builder = TupleSchema.builder();
+    builder.addAttribute(new Attribute("id", DataType.INT64,
+        Nullability.NOT_NULLABLE));
+    builder.addAttribute(new Attribute("value", DataType.DOUBLE,
+        Nullability.NULLABLE));
+    builder.addAttribute(new Attribute("name", DataType.STRING,
+        Nullability.NULLABLE));
+    schema = builder.build();
+    file = File.createTempFile("file-input", ".views").toPath();
+    final FileChannel out = FileChannel.open(file,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    try {
+      final ViewWriter writer = new ViewWriter(out, schema);
+      for (int size : BATCH_SIZES) {
+        final Block block = new Block(schema, size);
+        for (int i = 0; i < size; ++i) {
+          final int row = rowCount + i;
+          block.longData(0)[i] = row;
+          block.doubleData(1)[i] = row * 0.5;
+          block.isNull(1)[i] = row % 7 == 0;
+          block.setString(2, i, name(row));
+          block.isNull(2)[i] = row % 11 == 0;
+        }
+        assertTrue(writer.write(block.view()).isSuccess());
+        rowCount += size;
+      }
+      assertTrue(writer.finish().isSuccess());
+    } finally {
+      out.close();
+    }
+  }
+
+  @Override
+  protected void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  public void testReadsAllRows() {
+    // Chunks smaller than a row, than a batch, and than the file.
+    final int[] chunkSizes = { 3, 100, 4096, 1 << 20 };
+    final int[] maxRowCounts = { 1, 100, 5000 };
+    for (int chunkSize : chunkSizes) {
+      for (int maxRowCount : maxRowCounts) {
+        final FileInputCursor cursor =
+            FileInputCursor.open(file, null, chunkSize, 2).get();
+        assertEquals(schema, cursor.schema());
+        int row = 0;
+        ResultView next;
+        while ((next = cursor.next(maxRowCount)).hasData()) {
+          final View view = next.view();
+          assertTrue(view.rowCount() > 0);
+          assertTrue(view.rowCount() <= maxRowCount);
+          for (int i = 0; i < view.rowCount(); ++i, ++row) {
+            assertEquals(row, view.column(0).getLong(i));
+            assertEquals(row % 7 == 0, view.column(1).isNull(i));
+            if (row % 7 != 0) {
+              assertEquals(row * 0.5, view.column(1).getDouble(i));
+            }
+            assertEquals(row % 11 == 0, view.column(2).isNull(i));
+            if (row % 11 != 0) {
+              assertEquals(name(row), view.column(2).getString(i));
+            }
+          }
+        }
+        assertTrue(next.isEos());
+        assertEquals(rowCount, row);
+        assertTrue(cursor.next(maxRowCount).isEos());
+      }
+    }
+  }
+
+  public void testTruncatedFileFails() throws IOException {
+    final byte[] contents = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(contents,
+        contents.length - 10));
+    final FileInputCursor cursor =
+        FileInputCursor.open(file, null, 64, 2).get();
+    ResultView next;
+    while ((next = cursor.next(1000)).hasData()) {
+    }
+    assertTrue(next.isFailure());
+    assertTrue(cursor.next(1000).isFailure());
+  }
+
+  public void testMissingFileFails() {
+    assertTrue(FileInputCursor.open(new File(file + ".missing").toPath())
+        .isFailure());
+  }
+
+  public void testInterrupt() {
+    final FileInputCursor cursor = FileInputCursor.open(file).get();
+    assertTrue(cursor.next(10).hasData());
+    cursor.interrupt();
+    final ResultView next = cursor.next(10);
+    assertTrue(next.isFailure());
+    assertEquals(ReturnCode.INTERRUPTED, next.exception().getReturnCode());
+  }
+
+  public void testClose() {
+    final FileInputCursor cursor = FileInputCursor.open(file).get();
+    assertTrue(cursor.next(10).hasData());
+    assertTrue(cursor.close().isSuccess());
+    assertTrue(cursor.next(10).isEos());
+  }
+
+  private static String name(final int row) {
+    final StringBuilder name = new StringBuilder("row-").append(row);
+    for (int i = 0; i < row % 5; ++i) {
+      name.append('!');
+    }
+    return name.toString();
+  }
+}
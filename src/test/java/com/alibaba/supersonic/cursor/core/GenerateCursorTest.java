@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.cursor.base.ResultView;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+
+public class GenerateCursorTest extends TestCase {
+
+  private TupleSchema schema;
+  private List<ColumnGenerator> generators;
+
+  @Override
+  protected void setUp() {
+    final TupleSchema.Builder builder = TupleSchema.builder();
+    builder.addAttribute(new Attribute("id", DataType.INT64,
+        Nullability.NOT_NULLABLE));
+    builder.addAttribute(new Attribute("small", DataType.INT32,
+        Nullability.NULLABLE));
+    builder.addAttribute(new Attribute("name", DataType.STRING,
+        Nullability.NOT_NULLABLE));
+    builder.addAttribute(new Attribute("flag", DataType.BOOL,
+        Nullability.NOT_NULLABLE));
+    builder.addAttribute(new Attribute("type", DataType.DATA_TYPE,
+        Nullability.NOT_NULLABLE));
+    schema = builder.build();
+    generators = Arrays.asList(ColumnGenerator.sequence(),
+        ColumnGenerator.uniform(10).withNullRate(0.25),
+        ColumnGenerator.uniform(50), ColumnGenerator.uniform(2),
+        ColumnGenerator.uniform(1000));
+  }
+
+  public void testRowCountsAndBlockSizes() {
+    assertBlockSizes(create(2500, 1024, 1), 1000, 1000, 1000, 500);
+    assertBlockSizes(create(2500, 1024, 1), 2000, 1024, 1024, 452);
+    assertBlockSizes(create(3, 1024, 1), 2, 2, 1);
+    assertBlockSizes(create(0, 1024, 1), 10);
+  }
+
+  public void testValues() {
+    final GenerateCursor cursor = create(5000, 700, 1);
+    final int[] smallCounts = new int[10];
+    int nulls = 0;
+    long row = 0;
+    ResultView next;
+    while ((next = cursor.next(1000)).hasData()) {
+      final View view = next.view();
+      for (int i = 0; i < view.rowCount(); ++i, ++row) {
+        assertEquals(row, view.column(0).getLong(i));
+        if (view.column(1).isNull(i)) {
+          ++nulls;
+        } else {
+          ++smallCounts[view.column(1).getInt(i)];
+        }
+        final long name = Long.parseLong(view.column(2).getString(i), 36);
+        assertTrue(name >= 0 && name < 50);
+        assertNotNull(DataType.valueOf(view.column(4).getInt(i)));
+      }
+    }
+    assertTrue(next.isEos());
+    assertEquals(5000, row);
+    assertEquals(0.25, nulls / 5000.0, 0.03);
+    for (int count : smallCounts) {
+      assertEquals(0.075, count / 5000.0, 0.02);
+    }
+  }
+
+  public void testSkew() {
+    final TupleSchema single = TupleSchema.singleton("x", DataType.INT64,
+        Nullability.NOT_NULLABLE);
+    final GenerateCursor cursor = GenerateCursor.create(single,
+        Arrays.asList(ColumnGenerator.skewed(1000, 3)), 20000, 1024, 7).get();
+    int small = 0;
+    ResultView next;
+    while ((next = cursor.next(1024)).hasData()) {
+      for (int i = 0; i < next.view().rowCount(); ++i) {
+        final long value = next.view().column(0).getLong(i);
+        assertTrue(value >= 0 && value < 1000);
+        if (value < 10) {
+          ++small;
+        }
+      }
+    }
+    // (10 / 1000)^(1 / 4) of the rows fall on the first 1% of the values.
+    assertEquals(Math.pow(0.01, 0.25), small / 20000.0, 0.02);
+  }
+
+  public void testSameSeedSameData() {
+    final GenerateCursor a = create(100, 100, 42);
+    final GenerateCursor b = create(100, 100, 42);
+    final GenerateCursor c = create(100, 100, 43);
+    final View x = a.next(100).view();
+    final View y = b.next(100).view();
+    final View z = c.next(100).view();
+    boolean differs = false;
+    for (int i = 0; i < 100; ++i) {
+      for (int column = 1; column < schema.attributeCount(); ++column) {
+        assertEquals(x.column(column).isNull(i), y.column(column).isNull(i));
+        assertEquals(x.column(column).get(i), y.column(column).get(i));
+        differs |= !x.column(column).get(i).equals(z.column(column).get(i));
+      }
+    }
+    assertTrue(differs);
+  }
+
+  public void testInvalidGenerators() {
+    assertEquals(ReturnCode.ERROR_ATTRIBUTE_COUNT_MISMATCH,
+        GenerateCursor.create(schema, generators.subList(0, 2), 10, 10, 1)
+            .exception().getReturnCode());
+    final TupleSchema notNullable = TupleSchema.singleton("x", DataType.INT32,
+        Nullability.NOT_NULLABLE);
+    assertEquals(ReturnCode.ERROR_INVALID_ARGUMENT_VALUE,
+        GenerateCursor.create(notNullable,
+            Arrays.asList(ColumnGenerator.uniform(5).withNullRate(0.1)), 10,
+            10, 1).exception().getReturnCode());
+  }
+
+  public void testInterrupt() {
+    final GenerateCursor cursor = create(10000, 100, 1);
+    assertTrue(cursor.next(100).hasData());
+    cursor.interrupt();
+    final ResultView next = cursor.next(100);
+    assertTrue(next.isFailure());
+    assertEquals(ReturnCode.INTERRUPTED, next.status());
+  }
+
+  private GenerateCursor create(final long rowCount, final int blockSize,
+      final long seed) {
+    return GenerateCursor.create(schema, generators, rowCount, blockSize,
+        seed).get();
+  }
+
+  private static void assertBlockSizes(final GenerateCursor cursor,
+      final int maxRowCount, final int... expected) {
+    for (int size : expected) {
+      final ResultView next = cursor.next(maxRowCount);
+      assertTrue(next.hasData());
+      assertEquals(size, next.view().rowCount());
+    }
+    assertTrue(cursor.next(maxRowCount).isEos());
+    assertTrue(cursor.next(maxRowCount).isEos());
+  }
+}
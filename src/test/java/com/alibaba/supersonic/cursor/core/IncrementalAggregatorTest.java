@@ -0,0 +1,665 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.proto.CommonEnums.Aggregation;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrVoid;
+import com.alibaba.supersonic.utils.sketch.HyperLogLog;
+import com.alibaba.supersonic.utils.sketch.KllSketch;
+
+public class IncrementalAggregatorTest extends TestCase {
+
+  private static final byte[] MALFORMED = { 1, 2, 3 };
+
+  private final Random random = new Random(3);
+  private TupleSchema schema;
+  private IncrementalAggregator aggregator;
+
+  @Override
+  protected void setUp() {
+    final TupleSchema.Builder builder = TupleSchema.builder();
+    builder.addAttribute(new Attribute("g", DataType.INT32,
+        Nullability.NOT_NULLABLE));
+    builder.addAttribute(new Attribute("x", DataType.INT64,
+        Nullability.NOT_NULLABLE));
+    builder.addAttribute(new Attribute("h", DataType.BINARY,
+        Nullability.NOT_NULLABLE));
+    builder.addAttribute(new Attribute("q", DataType.BINARY,
+        Nullability.NOT_NULLABLE));
+    schema = builder.build();
+    aggregator = IncrementalAggregator.create(schema, Arrays.asList("g"),
+        new AggregationSpecification()
+            .addAggregation(Aggregation.SUM, "x", "sum")
+            .addAggregation(Aggregation.COUNT, null, "count")
+            .addAggregation(Aggregation.HLL_MERGE, "h", "distinct")
+            .addAggregation(Aggregation.QUANTILE_MERGE, "q", "quantiles"))
+        .get();
+  }
+
+  public void testUpdatesAcrossBatches() {
+    assertTrue(aggregator.update(batch(new int[] { 1, 2, 1 }, 0)).isSuccess());
+    assertTrue(aggregator.update(batch(new int[] { 2, 3 }, 3)).isSuccess());
+    assertEquals(3, aggregator.groupCount());
+    final View result = aggregator.result();
+    assertEquals(3, result.rowCount());
+    // Groups keep the order in which they appeared: 1, 2, 3.
+    assertEquals(0 + 2, result.column(1).getLong(0));
+    assertEquals(1 + 3, result.column(1).getLong(1));
+    assertEquals(4, result.column(1).getLong(2));
+    assertEquals(2, result.column(2).getLong(0));
+    // Each row's sketches cover the values [100 * row, 100 * row + 100).
+    assertEquals(200, estimate(result, 0), 10);
+    assertEquals(200, estimate(result, 1), 10);
+    assertEquals(100, estimate(result, 2), 5);
+    final KllSketch quantiles = KllSketch.fromBytes(
+        result.column(4).getBytes(2), 0, result.column(4).getBytes(2).length)
+        .get();
+    assertEquals(100, quantiles.count());
+    assertEquals(400.0, quantiles.quantile(0));
+    assertEquals(499.0, quantiles.quantile(1));
+  }
+
+  public void testFailedUpdateChangesNothing() {
+    assertTrue(aggregator.update(batch(new int[] { 1, 2 }, 0)).isSuccess());
+    final Block malformedHll = block(new int[] { 2, 3, 1 }, 2);
+    malformedHll.setBytes(2, 2, MALFORMED, 0, MALFORMED.length);
+    assertFailsWithoutChange(malformedHll);
+    final Block malformedQuantiles = block(new int[] { 2, 3, 1 }, 2);
+    malformedQuantiles.setBytes(3, 1, MALFORMED, 0, MALFORMED.length);
+    assertFailsWithoutChange(malformedQuantiles);
+    final Block otherPrecision = block(new int[] { 3 }, 2);
+    final byte[] sketch = new HyperLogLog(8).toBytes();
+    otherPrecision.setBytes(2, 0, sketch, 0, sketch.length);
+    assertFailsWithoutChange(otherPrecision);
+
+    // The batch can be retried once fixed, and is counted once.
+    assertTrue(aggregator.update(batch(new int[] { 2, 3, 1 }, 2))
+        .isSuccess());
+    final View result = aggregator.result();
+    assertEquals(3, result.rowCount());
+    assertEquals(0 + 4, result.column(1).getLong(0));
+    assertEquals(1 + 2, result.column(1).getLong(1));
+    assertEquals(3, result.column(1).getLong(2));
+    assertEquals(2, result.column(2).getLong(0));
+    assertEquals(2, result.column(2).getLong(1));
+    assertEquals(1, result.column(2).getLong(2));
+  }
+
+  public void testNullsInNonNullableAttributesAreRejected() {
+    final IncrementalAggregator sums = IncrementalAggregator.create(
+        schema(DataType.INT32, Nullability.NOT_NULLABLE, DataType.INT64,
+            Nullability.NULLABLE),
+        Arrays.asList("c0"), new AggregationSpecification()
+            .addAggregation(Aggregation.SUM, "c1", "sum")).get();
+    // Same types, but g is nullable.
+    final TupleSchema nullable = schema(DataType.INT32, Nullability.NULLABLE,
+        DataType.INT64, Nullability.NULLABLE);
+    final FailureOrVoid updated = sums.update(rows(nullable,
+        row(0, 1L), row(7, 2L), row(null, null)));
+    assertTrue(updated.isFailure());
+    assertEquals(ReturnCode.ERROR_ATTRIBUTE_IS_NULLABLE,
+        updated.exception().getReturnCode());
+    assertEquals(0, sums.groupCount());
+    // Without NULLs, the batch is fine.
+    assertTrue(sums.update(rows(nullable, row(0, 1L), row(7, null)))
+        .isSuccess());
+    final View result = sums.result();
+    assertEquals(2, result.rowCount());
+    assertEquals(Arrays.asList(0, 1L), values(result, 0));
+    assertEquals(Arrays.asList(7, null), values(result, 1));
+  }
+
+  public void testMinMaxFirstLastByGroup() {
+    final TupleSchema input = schema(
+        DataType.INT32, Nullability.NOT_NULLABLE,
+        DataType.INT32, Nullability.NULLABLE,
+        DataType.UINT32, Nullability.NULLABLE,
+        DataType.UINT64, Nullability.NULLABLE,
+        DataType.DOUBLE, Nullability.NULLABLE,
+        DataType.STRING, Nullability.NULLABLE,
+        DataType.BOOL, Nullability.NULLABLE);
+    final AggregationSpecification specification =
+        new AggregationSpecification();
+    for (int i = 1; i < input.attributeCount(); ++i) {
+      specification.addAggregation(Aggregation.MIN, "c" + i, "min" + i);
+      specification.addAggregation(Aggregation.MAX, "c" + i, "max" + i);
+    }
+    specification.addAggregation(Aggregation.FIRST, "c1", "first");
+    specification.addAggregation(Aggregation.LAST, "c1", "last");
+    final IncrementalAggregator aggregator = IncrementalAggregator.create(
+        input, Arrays.asList("c0"), specification).get();
+    assertTrue(aggregator.update(rows(input,
+        row(1, 5, 1, 1L, 1.0, "b", true),
+        row(2, null, -1, -1L, Double.NaN, null, null),
+        row(1, -3, Integer.MIN_VALUE, Long.MIN_VALUE, -0.0, "ab", false),
+        row(3, null, null, null, null, null, null))).isSuccess());
+    assertTrue(aggregator.update(rows(input,
+        row(2, 7, 2, 2L, 3.0, "a", true),
+        row(1, null, null, null, 2.0, "", null),
+        row(3, null, null, null, null, null, null))).isSuccess());
+    final View result = aggregator.result();
+    assertEquals(3, result.rowCount());
+    // Unsigned: -1 and MIN_VALUE are the largest values. Doubles as
+    // Math.min and Math.max: -0 < 0, and NaN wins. FIRST and LAST keep
+    // NULLs.
+    assertEquals(Arrays.<Object>asList(1, -3, 5, 1, Integer.MIN_VALUE, 1L,
+        Long.MIN_VALUE, -0.0, 2.0, "", "b", false, true, 5, null),
+        values(result, 0));
+    assertEquals(Arrays.<Object>asList(2, 7, 7, 2, -1, 2L, -1L, Double.NaN,
+        Double.NaN, "a", "a", true, true, null, 7), values(result, 1));
+    final List<Object> nulls = new ArrayList<Object>(
+        Collections.nCopies(result.columnCount(), null));
+    nulls.set(0, 3);
+    assertEquals(nulls, values(result, 2));
+  }
+
+  public void testMinMaxWithoutGroupBy() {
+    final TupleSchema input = schema(
+        DataType.INT32, Nullability.NULLABLE,
+        DataType.INT64, Nullability.NOT_NULLABLE,
+        DataType.FLOAT, Nullability.NULLABLE,
+        DataType.DOUBLE, Nullability.NULLABLE,
+        DataType.STRING, Nullability.NULLABLE);
+    final IncrementalAggregator aggregator = IncrementalAggregator.create(
+        input, Collections.<String>emptyList(), minMax(input, 0)).get();
+    // No rows, no group.
+    assertEquals(0, aggregator.result().rowCount());
+    assertTrue(aggregator.update(rows(input)).isSuccess());
+    assertEquals(0, aggregator.result().rowCount());
+    // The first row's values are NULL; they must not be the initial values
+    // of the kernels.
+    assertTrue(aggregator.update(rows(input,
+        row(null, 4L, null, null, null),
+        row(3, 5L, 2.5f, -1.0, "x"),
+        row(-2, 6L, -0.5f, null, "y"))).isSuccess());
+    assertEquals(Arrays.<Object>asList(-2, 3, 4L, 6L, -0.5f, 2.5f, -1.0,
+        -1.0, "x", "y"), values(aggregator.result(), 0));
+    // A batch of NULLs changes nothing.
+    assertTrue(aggregator.update(rows(input,
+        row(null, 5L, null, null, null))).isSuccess());
+    assertEquals(Arrays.<Object>asList(-2, 3, 4L, 6L, -0.5f, 2.5f, -1.0,
+        -1.0, "x", "y"), values(aggregator.result(), 0));
+    assertTrue(aggregator.update(rows(input,
+        row(10, -7L, Float.NaN, 8.0, "a"))).isSuccess());
+    assertEquals(Arrays.<Object>asList(-2, 10, -7L, 6L, Float.NaN,
+        Float.NaN, -1.0, 8.0, "a", "y"), values(aggregator.result(), 0));
+  }
+
+  /**
+   * Aggregates random batches both without group-by attributes (with the
+   * kernels, for the numeric types) and grouped by a constant, and checks
+   * that the results agree, for every type.
+   */
+  public void testMinMaxWithoutGroupByMatchesGrouped() {
+    final TupleSchema input = schema(
+        DataType.INT32, Nullability.NOT_NULLABLE,
+        DataType.INT32, Nullability.NULLABLE,
+        DataType.UINT32, Nullability.NULLABLE,
+        DataType.INT64, Nullability.NULLABLE,
+        DataType.UINT64, Nullability.NOT_NULLABLE,
+        DataType.DATE, Nullability.NULLABLE,
+        DataType.FLOAT, Nullability.NULLABLE,
+        DataType.DOUBLE, Nullability.NULLABLE,
+        DataType.BOOL, Nullability.NULLABLE,
+        DataType.STRING, Nullability.NULLABLE);
+    // c0 is the group-by attribute of the grouped aggregator.
+    final AggregationSpecification specification = minMax(input, 1);
+    final IncrementalAggregator all = IncrementalAggregator.create(input,
+        Collections.<String>emptyList(), specification).get();
+    final IncrementalAggregator grouped = IncrementalAggregator.create(input,
+        Arrays.asList("c0"), specification).get();
+    for (int batch = 0; batch < 200; ++batch) {
+      final Block block = new Block(input, random.nextInt(70));
+      for (int c = 1; c < input.attributeCount(); ++c) {
+        // Batches of NULLs, of no NULLs, and in between.
+        final double nulls = random.nextInt(4) == 0 ? 1 : random.nextDouble();
+        for (int row = 0; row < block.rowCapacity(); ++row) {
+          if (block.isNull(c) != null) {
+            block.isNull(c)[row] = random.nextDouble() < nulls;
+          }
+          final int value = random.nextInt(2000) - 1000;
+          switch (input.getAttributeAt(c).getType()) {
+            case INT32:
+            case UINT32:
+            case DATE:
+              block.intData(c)[row] = value * 2000000;
+              break;
+            case INT64:
+            case UINT64:
+              block.longData(c)[row] = value * (1L << 53);
+              break;
+            case FLOAT:
+              block.floatData(c)[row] = random.nextInt(500) == 0
+                  ? Float.NaN : value / 8f;
+              break;
+            case DOUBLE:
+              block.doubleData(c)[row] = value == 0 ? -0.0 : value / 8.0;
+              break;
+            case BOOL:
+              block.boolData(c)[row] = value > 900;
+              break;
+            default:
+              block.setString(c, row, Integer.toString(value));
+          }
+        }
+      }
+      assertTrue(all.update(block.view()).isSuccess());
+      assertTrue(grouped.update(block.view()).isSuccess());
+      final View allResult = all.result();
+      final View groupedResult = grouped.result();
+      assertEquals(groupedResult.rowCount(), allResult.rowCount());
+      if (allResult.rowCount() == 1) {
+        final List<Object> expected = values(groupedResult, 0);
+        assertEquals(expected.subList(1, expected.size()),
+            values(allResult, 0));
+      }
+    }
+  }
+
+  // MIN and MAX of the attributes from the first on.
+  public void testApproximateAggregations() {
+    final TupleSchema input = schema(
+        DataType.INT32, Nullability.NOT_NULLABLE,
+        DataType.INT64, Nullability.NULLABLE,
+        DataType.STRING, Nullability.NULLABLE);
+    final IncrementalAggregator aggregator = IncrementalAggregator.create(
+        input, Arrays.asList("c0"), new AggregationSpecification()
+            .addAggregation(Aggregation.APPROX_COUNT_DISTINCT, "c1", "d1")
+            .addAggregation(Aggregation.APPROX_COUNT_DISTINCT, "c2", "d2")
+            .addAggregation(Aggregation.APPROX_QUANTILE, "c1", "median", 0.5)
+            .addAggregation(Aggregation.APPROX_QUANTILE, "c1", "p99", 0.99))
+        .get();
+    final Exact exact = new Exact(3);
+    for (int batch = 0; batch < 100; ++batch) {
+      assertTrue(aggregator.update(randomBatch(input, 2000, exact))
+          .isSuccess());
+    }
+    final View result = aggregator.result();
+    assertEquals(4, result.rowCount());
+    for (int row = 0; row < 4; ++row) {
+      final int group = result.column(0).getInt(row);
+      if (group == 3) {
+        // Only NULLs.
+        assertEquals(Arrays.<Object>asList(3, 0L, 0L, null, null),
+            values(result, row));
+        continue;
+      }
+      // 1.6% standard error, and 1% rank error.
+      assertEquals(exact.distinct(group), result.column(1).getLong(row),
+          exact.distinct(group) * 0.05);
+      assertEquals(exact.distinct(group), result.column(2).getLong(row),
+          exact.distinct(group) * 0.05);
+      exact.assertQuantile(group, 0.5, result.column(3).getDouble(row));
+      exact.assertQuantile(group, 0.99, result.column(4).getDouble(row));
+    }
+  }
+
+  /**
+   * Aggregates random batches in one phase, and in two (sketches in four
+   * partitions, estimated from their union) and three (with a merge in
+   * between), and compares the results.
+   */
+  public void testApproximateAggregationsInPhases() {
+    final TupleSchema input = schema(
+        DataType.INT32, Nullability.NOT_NULLABLE,
+        DataType.INT64, Nullability.NULLABLE);
+    final IncrementalAggregator single = IncrementalAggregator.create(input,
+        Arrays.asList("c0"), new AggregationSpecification()
+            .addAggregation(Aggregation.APPROX_COUNT_DISTINCT, "c1",
+                "distinct")
+            .addAggregation(Aggregation.APPROX_QUANTILE, "c1", "p90", 0.9))
+        .get();
+    final IncrementalAggregator[] partitions = new IncrementalAggregator[4];
+    for (int i = 0; i < partitions.length; ++i) {
+      partitions[i] = IncrementalAggregator.create(input,
+          Arrays.asList("c0"), new AggregationSpecification()
+              .addAggregation(Aggregation.HLL_SKETCH, "c1", "hll")
+              .addAggregation(Aggregation.QUANTILE_SKETCH, "c1", "kll"))
+          .get();
+    }
+    final Exact exact = new Exact(2);
+    for (int batch = 0; batch < 80; ++batch) {
+      final View view = randomBatch(input, 1500, exact);
+      assertTrue(single.update(view).isSuccess());
+      assertTrue(partitions[batch % partitions.length].update(view)
+          .isSuccess());
+    }
+    final TupleSchema sketches = partitions[0].schema();
+    final IncrementalAggregator estimates = IncrementalAggregator.create(
+        sketches, Arrays.asList("c0"), new AggregationSpecification()
+            .addAggregation(Aggregation.HLL_ESTIMATE, "hll", "distinct")
+            .addAggregation(Aggregation.QUANTILE_ESTIMATE, "kll", "p90", 0.9))
+        .get();
+    assertEquals(single.schema(), estimates.schema());
+    final IncrementalAggregator merges = IncrementalAggregator.create(
+        sketches, Arrays.asList("c0"), new AggregationSpecification()
+            .addAggregation(Aggregation.HLL_MERGE, "hll", "hll")
+            .addAggregation(Aggregation.QUANTILE_MERGE, "kll", "kll"))
+        .get();
+    for (IncrementalAggregator partition : partitions) {
+      assertTrue(estimates.update(partition.result()).isSuccess());
+      assertTrue(merges.update(partition.result()).isSuccess());
+    }
+    final IncrementalAggregator mergedEstimates = IncrementalAggregator
+        .create(merges.schema(), Arrays.asList("c0"),
+            new AggregationSpecification()
+                .addAggregation(Aggregation.HLL_ESTIMATE, "hll", "distinct")
+                .addAggregation(Aggregation.QUANTILE_ESTIMATE, "kll", "p90",
+                    0.9))
+        .get();
+    assertTrue(mergedEstimates.update(merges.result()).isSuccess());
+    final View expected = single.result();
+    assertEquals(3, expected.rowCount());
+    for (IncrementalAggregator phases : new IncrementalAggregator[] {
+        estimates, mergedEstimates }) {
+      final View actual = phases.result();
+      assertEquals(3, actual.rowCount());
+      for (int row = 0; row < 3; ++row) {
+        final int group = actual.column(0).getInt(row);
+        final int expectedRow = row(expected, group);
+        if (group == 2) {
+          // Only NULLs.
+          assertEquals(values(expected, expectedRow), values(actual, row));
+          continue;
+        }
+        // The union of HyperLogLog sketches is the sketch of the union.
+        assertEquals(expected.column(1).getLong(expectedRow),
+            actual.column(1).getLong(row));
+        exact.assertQuantile(group, 0.9, actual.column(2).getDouble(row));
+      }
+    }
+  }
+
+  public void testInvalidApproximateAggregations() {
+    final TupleSchema input = schema(
+        DataType.INT64, Nullability.NULLABLE,
+        DataType.STRING, Nullability.NULLABLE,
+        DataType.BINARY, Nullability.NULLABLE);
+    final Object[][] invalid = {
+      { Aggregation.APPROX_QUANTILE, "c1", 0.5,
+        ReturnCode.ERROR_INVALID_ARGUMENT_TYPE },
+      { Aggregation.APPROX_QUANTILE, "c0", 1.5,
+        ReturnCode.ERROR_INVALID_ARGUMENT_VALUE },
+      { Aggregation.APPROX_QUANTILE, "c0", Double.NaN,
+        ReturnCode.ERROR_INVALID_ARGUMENT_VALUE },
+      { Aggregation.QUANTILE_ESTIMATE, "c0", 0.5,
+        ReturnCode.ERROR_INVALID_ARGUMENT_TYPE },
+      { Aggregation.QUANTILE_ESTIMATE, "c2", -0.1,
+        ReturnCode.ERROR_INVALID_ARGUMENT_VALUE },
+      { Aggregation.HLL_ESTIMATE, "c1", Double.NaN,
+        ReturnCode.ERROR_INVALID_ARGUMENT_TYPE },
+      { Aggregation.HLL_MERGE, "c0", Double.NaN,
+        ReturnCode.ERROR_INVALID_ARGUMENT_TYPE },
+    };
+    for (Object[] aggregation : invalid) {
+      final String message = Arrays.toString(aggregation);
+      final FailureOr<IncrementalAggregator> created =
+          IncrementalAggregator.create(input, Collections.<String>emptyList(),
+              new AggregationSpecification().addAggregation(
+                  (Aggregation) aggregation[0], (String) aggregation[1],
+                  "result", (Double) aggregation[2]));
+      assertTrue(message, created.isFailure());
+      assertEquals(message, aggregation[3],
+          created.exception().getReturnCode());
+    }
+    // Malformed sketches fail the update.
+    final IncrementalAggregator estimates = IncrementalAggregator.create(
+        input, Collections.<String>emptyList(), new AggregationSpecification()
+            .addAggregation(Aggregation.HLL_ESTIMATE, "c2", "distinct")
+            .addAggregation(Aggregation.QUANTILE_ESTIMATE, "c2", "median",
+                0.5))
+        .get();
+    final Block block = new Block(input, 1);
+    block.setBytes(2, 0, MALFORMED, 0, MALFORMED.length);
+    final FailureOrVoid updated = estimates.update(block.view());
+    assertTrue(updated.isFailure());
+    assertEquals(ReturnCode.ERROR_INVALID_ARGUMENT_VALUE,
+        updated.exception().getReturnCode());
+    assertEquals(0, estimates.result().rowCount());
+  }
+
+  /**
+   * Exact distinct counts and quantiles of random values, by group, to
+   * check the estimates against.
+   */
+  private static final class Exact {
+    private final List<Set<Long>> distinct = new ArrayList<Set<Long>>();
+    private final List<List<Long>> values = new ArrayList<List<Long>>();
+
+    Exact(final int groupsWithValues) {
+      for (int i = 0; i < groupsWithValues; ++i) {
+        distinct.add(new HashSet<Long>());
+        values.add(new ArrayList<Long>());
+      }
+    }
+
+    int groupCount() {
+      return distinct.size();
+    }
+
+    void add(final int group, final long value) {
+      distinct.get(group).add(value);
+      values.get(group).add(value);
+    }
+
+    int distinct(final int group) {
+      return distinct.get(group).size();
+    }
+
+    // The estimate must have between fraction - 1% and fraction + 1% of
+    // the values below it (or equal to it, for the upper bound).
+    void assertQuantile(final int group, final double fraction,
+        final double estimate) {
+      final List<Long> all = values.get(group);
+      int less = 0;
+      int lessOrEqual = 0;
+      for (long value : all) {
+        less += value < estimate ? 1 : 0;
+        lessOrEqual += value <= estimate ? 1 : 0;
+      }
+      assertTrue(fraction + ": " + estimate,
+          (double) less / all.size() <= fraction + 0.01);
+      assertTrue(fraction + ": " + estimate,
+          (double) lessOrEqual / all.size() >= fraction - 0.01);
+    }
+  }
+
+  /**
+   * Returns a batch of random rows: c0 is the group, c1 a skewed random
+   * value (NULL in a tenth of the rows, and in all the rows of the last
+   * group), and c2, if any, c1 as a string.
+   */
+  private View randomBatch(final TupleSchema schema, final int rowCount,
+      final Exact exact) {
+    final Block block = new Block(schema, rowCount);
+    for (int row = 0; row < rowCount; ++row) {
+      final int group = random.nextInt(exact.groupCount() + 1);
+      final long value = (long) Math.pow(random.nextInt(1000), 2)
+          + random.nextInt(20) * (group + 1);
+      final boolean isNull = group == exact.groupCount()
+          || random.nextInt(10) == 0;
+      block.intData(0)[row] = group;
+      block.longData(1)[row] = value;
+      block.isNull(1)[row] = isNull;
+      if (schema.attributeCount() > 2) {
+        block.setString(2, row, "#" + value);
+        block.isNull(2)[row] = isNull;
+      }
+      if (!isNull) {
+        exact.add(group, value);
+      }
+    }
+    return block.view();
+  }
+
+  // The row of the group, whose key is the first column.
+  private static int row(final View view, final int group) {
+    for (int row = 0; row < view.rowCount(); ++row) {
+      if (view.column(0).getInt(row) == group) {
+        return row;
+      }
+    }
+    throw new AssertionError("No group " + group);
+  }
+
+  private static AggregationSpecification minMax(final TupleSchema input,
+      final int first) {
+    final AggregationSpecification result = new AggregationSpecification();
+    for (int i = first; i < input.attributeCount(); ++i) {
+      result.addAggregation(Aggregation.MIN, "c" + i, "min" + i);
+      result.addAggregation(Aggregation.MAX, "c" + i, "max" + i);
+    }
+    return result;
+  }
+
+  // Attributes c0, c1, ... of the given types and nullabilities, in pairs.
+  private static TupleSchema schema(final Object... typesAndNullabilities) {
+    final TupleSchema.Builder builder = TupleSchema.builder();
+    for (int i = 0; i < typesAndNullabilities.length; i += 2) {
+      builder.addAttribute(new Attribute("c" + i / 2,
+          (DataType) typesAndNullabilities[i],
+          (Nullability) typesAndNullabilities[i + 1]));
+    }
+    return builder.build();
+  }
+
+  private static Object[] row(final Object... values) {
+    return values;
+  }
+
+  // A view of the rows; null for NULL.
+  private static View rows(final TupleSchema schema, final Object[]... rows) {
+    final Block block = new Block(schema, rows.length);
+    for (int row = 0; row < rows.length; ++row) {
+      for (int c = 0; c < schema.attributeCount(); ++c) {
+        final Object value = rows[row][c];
+        if (value == null) {
+          block.isNull(c)[row] = true;
+          continue;
+        }
+        switch (schema.getAttributeAt(c).getType()) {
+          case INT32:
+          case UINT32:
+          case DATE:
+            block.intData(c)[row] = (Integer) value;
+            break;
+          case INT64:
+          case UINT64:
+            block.longData(c)[row] = (Long) value;
+            break;
+          case FLOAT:
+            block.floatData(c)[row] = (Float) value;
+            break;
+          case DOUBLE:
+            block.doubleData(c)[row] = (Double) value;
+            break;
+          case BOOL:
+            block.boolData(c)[row] = (Boolean) value;
+            break;
+          default:
+            block.setString(c, row, (String) value);
+        }
+      }
+    }
+    return block.view();
+  }
+
+  // The values of a row of the view; null for NULL.
+  private static List<Object> values(final View view, final int row) {
+    final List<Object> result = new ArrayList<Object>();
+    for (int c = 0; c < view.columnCount(); ++c) {
+      result.add(view.column(c).isNull(row) ? null
+          : view.column(c).get(row));
+    }
+    return result;
+  }
+
+  private void assertFailsWithoutChange(final Block batch) {
+    final View before = aggregator.result();
+    final int groupCount = before.rowCount();
+    final long[] sums = new long[groupCount];
+    final long[] counts = new long[groupCount];
+    final long[] estimates = new long[groupCount];
+    for (int i = 0; i < groupCount; ++i) {
+      sums[i] = before.column(1).getLong(i);
+      counts[i] = before.column(2).getLong(i);
+      estimates[i] = estimate(before, i);
+    }
+    final FailureOrVoid updated = aggregator.update(batch.view());
+    assertTrue(updated.isFailure());
+    final View after = aggregator.result();
+    assertEquals(groupCount, aggregator.groupCount());
+    assertEquals(groupCount, after.rowCount());
+    for (int i = 0; i < groupCount; ++i) {
+      assertEquals(sums[i], after.column(1).getLong(i));
+      assertEquals(counts[i], after.column(2).getLong(i));
+      assertEquals(estimates[i], estimate(after, i));
+    }
+  }
+
+  /**
+   * Returns a batch of a row per group, whose x is the row's number (from
+   * firstRow on), and whose sketches are of the values [100 * x, 100 * x +
+   * 100).
+   */
+  private View batch(final int[] groups, final int firstRow) {
+    return block(groups, firstRow).view();
+  }
+
+  private Block block(final int[] groups, final int firstRow) {
+    final Block block = new Block(schema, groups.length);
+    for (int i = 0; i < groups.length; ++i) {
+      final long x = firstRow + i;
+      block.intData(0)[i] = groups[i];
+      block.longData(1)[i] = x;
+      final HyperLogLog distinct = new HyperLogLog();
+      final KllSketch quantiles = new KllSketch();
+      for (long value = 100 * x; value < 100 * x + 100; ++value) {
+        distinct.add(HyperLogLog.hash(value));
+        quantiles.add(value);
+      }
+      final byte[] hll = distinct.toBytes();
+      block.setBytes(2, i, hll, 0, hll.length);
+      final byte[] kll = quantiles.toBytes();
+      block.setBytes(3, i, kll, 0, kll.length);
+    }
+    return block;
+  }
+
+  private static long estimate(final View result, final int row) {
+    final byte[] bytes = result.column(3).getBytes(row);
+    return HyperLogLog.fromBytes(bytes, 0, bytes.length).get().estimate();
+  }
+}
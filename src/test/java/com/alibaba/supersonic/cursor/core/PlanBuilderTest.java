@@ -0,0 +1,377 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import static com.alibaba.supersonic.expression.infrastructure.Expressions.int32;
+import static com.alibaba.supersonic.expression.infrastructure.Expressions.operation;
+import static com.alibaba.supersonic.expression.infrastructure.Expressions.variable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.CursorsProto.AggregationDescription;
+import com.alibaba.supersonic.common.proto.CursorsProto.CursorId;
+import com.alibaba.supersonic.common.proto.CursorsProto.NamedExpression;
+import com.alibaba.supersonic.common.proto.CursorsProto.OperatorDescription;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.ExpressionDescription;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+import com.alibaba.supersonic.cursor.base.Cursor;
+import com.alibaba.supersonic.cursor.base.ResultView;
+import com.alibaba.supersonic.cursor.infrastructure.ScriptedCursor;
+import com.alibaba.supersonic.proto.CommonEnums.Aggregation;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+
+public class PlanBuilderTest extends TestCase {
+
+  private static final TupleSchema INTS = TupleSchema.singleton("x",
+      DataType.INT32, Nullability.NOT_NULLABLE);
+  private static final TupleSchema DOUBLES = TupleSchema.singleton("x",
+      DataType.DOUBLE, Nullability.NOT_NULLABLE);
+
+  // y = x + x of the rows with x < 5.
+  private static final OperatorDescription FILTER_COMPUTE = compute(
+      filter(view("t"), operation(OperationType.LESS, variable("x"),
+          int32(5)), "x", variable("x")),
+      "y", operation(OperationType.ADD, variable("x"), variable("x")));
+
+  public void testBuildsPlans() {
+    final PlanBuilder builder = new PlanBuilder(10);
+    assertEquals(Arrays.asList(row(0), row(2), row(4), row(6), row(8)),
+        readAll(builder.build(FILTER_COMPUTE, sources(INTS, 100)).get()));
+    final OperatorDescription groups = OperatorDescription.newBuilder()
+        .setId(CursorId.GROUP_AGGREGATE)
+        .addChild(compute(view("t"), "g", operation(
+            OperationType.MODULUS, variable("x"), int32(3))))
+        .addGroupBy("g")
+        .addAggregation(aggregation(Aggregation.COUNT, null, "count"))
+        .build();
+    assertEquals(Arrays.asList(row(0, 4L), row(1, 3L), row(2, 3L)),
+        readAll(builder.build(groups, sources(INTS, 10)).get()));
+    final OperatorDescription scalar = OperatorDescription.newBuilder()
+        .setId(CursorId.SCALAR_AGGREGATE)
+        .addChild(view("t"))
+        .addAggregation(aggregation(Aggregation.SUM, "x", "sum"))
+        .addAggregation(aggregation(Aggregation.MAX, "x", "max"))
+        .build();
+    assertEquals(Arrays.asList(row(45L, 9)),
+        readAll(builder.build(scalar, sources(INTS, 10)).get()));
+  }
+
+  public void testCachesPlanShapes() {
+    final PlanBuilder builder = new PlanBuilder(2);
+    final OperatorDescription a = compute(view("t"), "a", variable("x"));
+    final OperatorDescription b = compute(view("t"), "b", variable("x"));
+    final OperatorDescription c = compute(view("t"), "c", variable("x"));
+    build(builder, a);
+    assertCounts(builder, 0, 1, 1);
+    // Serialized or not, the plan has the same shape.
+    readAll(builder.build(a.toByteArray(), sources(INTS, 3)).get());
+    assertCounts(builder, 1, 1, 1);
+    build(builder, b);
+    assertCounts(builder, 1, 2, 2);
+    // Makes a the most recently used, so that c evicts b.
+    build(builder, a);
+    build(builder, c);
+    assertCounts(builder, 2, 3, 2);
+    build(builder, a);
+    build(builder, c);
+    assertCounts(builder, 4, 3, 2);
+    build(builder, b);
+    assertCounts(builder, 4, 4, 2);
+    builder.invalidateAll();
+    assertEquals(0, builder.size());
+    build(builder, b);
+    assertCounts(builder, 4, 5, 1);
+  }
+
+  public void testZeroCapacityCachesNothing() {
+    final PlanBuilder builder = new PlanBuilder(0);
+    build(builder, FILTER_COMPUTE);
+    build(builder, FILTER_COMPUTE);
+    assertCounts(builder, 0, 2, 0);
+    assertEquals(0, builder.idleProgramCount());
+    try {
+      new PlanBuilder(-1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testProgramsAreReusedAcrossRuns() {
+    final PlanBuilder builder = new PlanBuilder(10);
+    // Two programs: the filter's and the compute's.
+    build(builder, FILTER_COMPUTE);
+    assertEquals(2, builder.idleProgramCount());
+    // A cache hit takes the idle programs of the prepared plan, rather than
+    // parsing the plan and compiling new ones.
+    final Cursor first = builder.build(FILTER_COMPUTE.toByteArray(),
+        sources(INTS, 10)).get();
+    assertEquals(1, builder.hitCount());
+    assertEquals(0, builder.idleProgramCount());
+    // Programs in use aren't shared: a concurrent tree compiles its own.
+    final Cursor second = builder.build(FILTER_COMPUTE,
+        sources(INTS, 10)).get();
+    assertEquals(0, builder.idleProgramCount());
+    assertEquals(5, readAll(second).size());
+    assertEquals(2, builder.idleProgramCount());
+    assertEquals(5, readAll(first).size());
+    assertEquals(4, builder.idleProgramCount());
+    // The pool is bounded.
+    final List<Cursor> cursors = new ArrayList<Cursor>();
+    for (int i = 0; i < 20; ++i) {
+      cursors.add(builder.build(FILTER_COMPUTE, sources(INTS, 10)).get());
+    }
+    for (Cursor cursor : cursors) {
+      assertEquals(Arrays.asList(row(0), row(2), row(4), row(6), row(8)),
+          readAll(cursor));
+    }
+    assertEquals(2 * 16, builder.idleProgramCount());
+  }
+
+  public void testProgramsAreReleasedOnceDone() {
+    final PlanBuilder builder = new PlanBuilder(10);
+    build(builder, FILTER_COMPUTE);
+    final Block block = ints(10);
+    final ScriptedCursor source = new ScriptedCursor(INTS)
+        .thenView(new View(block.view(), 0, 5))
+        .thenFailure(ReturnCode.ERROR_EVALUATION_ERROR);
+    final Cursor cursor = builder.build(FILTER_COMPUTE,
+        Collections.singletonMap("t", source)).get();
+    assertTrue(cursor.next(100).hasData());
+    assertEquals(0, builder.idleProgramCount());
+    // A failure is done too.
+    final ResultView failure = cursor.next(100);
+    assertTrue(failure.isFailure());
+    assertEquals(2, builder.idleProgramCount());
+    // From then on, the tree (whose programs may be taken by another) isn't
+    // called any more.
+    final int calls = source.requests().size();
+    final Cursor other = builder.build(FILTER_COMPUTE, sources(INTS, 10))
+        .get();
+    assertEquals(0, builder.idleProgramCount());
+    assertSame(failure, cursor.next(100));
+    assertSame(failure, cursor.next(100));
+    assertEquals(calls, source.requests().size());
+    assertEquals(5, readAll(other).size());
+    // The same after EOS.
+    final ScriptedCursor eos = new ScriptedCursor(INTS);
+    final Cursor empty = builder.build(FILTER_COMPUTE,
+        Collections.singletonMap("t", eos)).get();
+    assertTrue(empty.next(100).isEos());
+    assertTrue(empty.next(100).isEos());
+    assertEquals(1, eos.requests().size());
+  }
+
+  public void testAbandonedTreesKeepTheirPrograms() {
+    final PlanBuilder builder = new PlanBuilder(10);
+    build(builder, FILTER_COMPUTE);
+    final Cursor abandoned = builder.build(FILTER_COMPUTE,
+        sources(INTS, 10)).get();
+    assertTrue(abandoned.next(1).hasData());
+    assertEquals(0, builder.idleProgramCount());
+    // The next tree compiles its own programs, which are released.
+    assertEquals(5, readAll(builder.build(FILTER_COMPUTE,
+        sources(INTS, 10)).get()).size());
+    assertEquals(2, builder.idleProgramCount());
+  }
+
+  public void testOtherInputSchemasArePreparedAgain() {
+    final PlanBuilder builder = new PlanBuilder(10);
+    final OperatorDescription doubled = compute(view("t"), "y",
+        operation(OperationType.ADD, variable("x"), variable("x")));
+    final Cursor ints = builder.build(doubled, sources(INTS, 3)).get();
+    assertEquals(DataType.INT32, ints.schema().getAttributeAt(0).getType());
+    assertEquals(Arrays.asList(row(0), row(2), row(4)), readAll(ints));
+    // The same plan over doubles: a program compiled for ints won't do.
+    final Block block = new Block(DOUBLES, 2);
+    block.doubleData(0)[0] = 0.25;
+    block.doubleData(0)[1] = 1.5;
+    final Cursor doubles = builder.build(doubled, Collections.singletonMap(
+        "t", new ScriptedCursor(DOUBLES).thenView(block.view()))).get();
+    assertEquals(DataType.DOUBLE,
+        doubles.schema().getAttributeAt(0).getType());
+    assertEquals(Arrays.asList(row(0.5), row(3.0)), readAll(doubles));
+    assertCounts(builder, 0, 2, 2);
+    // Each shape keeps its own programs.
+    assertEquals(Arrays.asList(row(0), row(2), row(4)),
+        readAll(builder.build(doubled, sources(INTS, 3)).get()));
+    assertCounts(builder, 1, 2, 2);
+    assertEquals(2, builder.idleProgramCount());
+  }
+
+  public void testFailures() {
+    final PlanBuilder builder = new PlanBuilder(10);
+    // Unknown inputs, before and after the plan is cached.
+    assertFailure(ReturnCode.ERROR_INVALID_ARGUMENT_VALUE,
+        builder.build(FILTER_COMPUTE, sources(INTS, 3, "u")));
+    assertEquals(0, builder.size());
+    build(builder, FILTER_COMPUTE);
+    final FailureOr<Cursor> unknown = builder.build(FILTER_COMPUTE,
+        sources(INTS, 3, "u"));
+    assertFailure(ReturnCode.ERROR_INVALID_ARGUMENT_VALUE, unknown);
+    // A cached plan that fails to instantiate returns its programs.
+    assertEquals(2, builder.idleProgramCount());
+    assertFailure(ReturnCode.ERROR_NOT_IMPLEMENTED, builder.build(
+        OperatorDescription.newBuilder().setId(CursorId.HASH_JOIN)
+            .addChild(view("t")).addChild(view("t")).build(),
+        sources(INTS, 3)));
+    // Unsupported operators below supported ones.
+    assertFailure(ReturnCode.ERROR_NOT_IMPLEMENTED, builder.build(
+        compute(OperatorDescription.newBuilder()
+            .setId(CursorId.LOOKUP_JOIN).build(), "y", variable("x")),
+        sources(INTS, 3)));
+    assertFailure(ReturnCode.ERROR_BAD_PROTO, builder.build(
+        OperatorDescription.newBuilder().setId(CursorId.COMPUTE).build(),
+        sources(INTS, 3)));
+    assertFailure(ReturnCode.ERROR_BAD_PROTO, builder.build(
+        OperatorDescription.newBuilder().setId(CursorId.VIEW).setSource("t")
+            .addChild(view("t")).build(),
+        sources(INTS, 3)));
+    assertFailure(ReturnCode.ERROR_BAD_PROTO, builder.build(
+        OperatorDescription.newBuilder().setId(CursorId.VIEW).build(),
+        sources(INTS, 3)));
+    assertFailure(ReturnCode.ERROR_BAD_PROTO, builder.build(
+        OperatorDescription.newBuilder().setId(CursorId.FILTER)
+            .addChild(view("t")).build(),
+        sources(INTS, 3)));
+    assertFailure(ReturnCode.ERROR_BAD_PROTO, builder.build(
+        OperatorDescription.newBuilder().setId(CursorId.SCALAR_AGGREGATE)
+            .addChild(view("t")).addGroupBy("x").build(),
+        sources(INTS, 3)));
+    assertFailure(ReturnCode.ERROR_BAD_PROTO, builder.build(
+        new byte[] { 1, 2, 3 }, sources(INTS, 3)));
+    // Expressions that don't bind.
+    final FailureOr<Cursor> unbound = builder.build(
+        compute(view("t"), "y", variable("z")), sources(INTS, 3));
+    assertTrue(unbound.isFailure());
+    // None of the failed plans is cached.
+    assertEquals(1, builder.size());
+  }
+
+  private static OperatorDescription view(final String source) {
+    return OperatorDescription.newBuilder().setId(CursorId.VIEW)
+        .setSource(source).build();
+  }
+
+  private static OperatorDescription compute(final OperatorDescription child,
+      final String name, final ExpressionDescription expression) {
+    return OperatorDescription.newBuilder().setId(CursorId.COMPUTE)
+        .addChild(child)
+        .addOutput(NamedExpression.newBuilder().setName(name)
+            .setExpression(expression))
+        .build();
+  }
+
+  private static OperatorDescription filter(final OperatorDescription child,
+      final ExpressionDescription predicate, final String name,
+      final ExpressionDescription expression) {
+    return OperatorDescription.newBuilder().setId(CursorId.FILTER)
+        .addChild(child)
+        .setPredicate(predicate)
+        .addOutput(NamedExpression.newBuilder().setName(name)
+            .setExpression(expression))
+        .build();
+  }
+
+  private static AggregationDescription aggregation(
+      final Aggregation aggregation, final String input,
+      final String output) {
+    final AggregationDescription.Builder result = AggregationDescription
+        .newBuilder().setAggregation(aggregation).setOutput(output);
+    if (input != null) {
+      result.setInput(input);
+    }
+    return result.build();
+  }
+
+  // Builds the plan over 10 ints, and reads it to the end.
+  private static void build(final PlanBuilder builder,
+      final OperatorDescription plan) {
+    readAll(builder.build(plan, sources(INTS, 10)).get());
+  }
+
+  private static void assertCounts(final PlanBuilder builder,
+      final long hits, final long misses, final int size) {
+    assertEquals(hits, builder.hitCount());
+    assertEquals(misses, builder.missCount());
+    assertEquals(size, builder.size());
+  }
+
+  private static void assertFailure(final ReturnCode expected,
+      final FailureOr<Cursor> result) {
+    assertTrue(result.isFailure());
+    assertEquals(expected, result.exception().getReturnCode());
+  }
+
+  private static Block ints(final int rowCount) {
+    final Block block = new Block(INTS, rowCount);
+    for (int i = 0; i < rowCount; ++i) {
+      block.intData(0)[i] = i;
+    }
+    return block;
+  }
+
+  private static Map<String, Cursor> sources(final TupleSchema schema,
+      final int rowCount) {
+    return sources(schema, rowCount, "t");
+  }
+
+  // An input of the ints 0 to rowCount - 1, in blocks of 4 rows.
+  private static Map<String, Cursor> sources(final TupleSchema schema,
+      final int rowCount, final String name) {
+    final Block block = ints(rowCount);
+    final ScriptedCursor source = new ScriptedCursor(schema);
+    for (int i = 0; i < rowCount; i += 4) {
+      source.thenView(new View(block.view(), i, Math.min(4, rowCount - i)));
+    }
+    return Collections.<String, Cursor>singletonMap(name, source);
+  }
+
+  private static List<Object> row(final Object... values) {
+    return Arrays.asList(values);
+  }
+
+  private static List<List<Object>> readAll(final Cursor cursor) {
+    final List<List<Object>> rows = new ArrayList<List<Object>>();
+    while (true) {
+      final ResultView result = cursor.next(100);
+      assertFalse(result.isFailure());
+      if (result.isEos()) {
+        return rows;
+      }
+      final View view = result.view();
+      for (int i = 0; i < view.rowCount(); ++i) {
+        final List<Object> row = new ArrayList<Object>();
+        for (int c = 0; c < view.columnCount(); ++c) {
+          row.add(view.column(c).get(i));
+        }
+        rows.add(row);
+      }
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.core;
+
+import junit.framework.TestCase;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.cursor.base.ResultView;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+
+public class RepeatingBlockCursorTest extends TestCase {
+
+  private View block;
+
+  @Override
+  protected void setUp() {
+    final TupleSchema.Builder builder = TupleSchema.builder();
+    builder.addAttribute(new Attribute("id", DataType.INT32,
+        Nullability.NOT_NULLABLE));
+    builder.addAttribute(new Attribute("name", DataType.STRING,
+        Nullability.NULLABLE));
+    final Block data = new Block(builder.build(), 5);
+    for (int i = 0; i < 5; ++i) {
+      data.intData(0)[i] = i;
+      data.setString(1, i, "row" + i);
+      data.isNull(1)[i] = i == 3;
+    }
+    block = data.view();
+    block.setRowCount(5);
+  }
+
+  public void testCyclesThroughBlock() {
+    final RepeatingBlockCursor cursor = new RepeatingBlockCursor(block, 12);
+    assertEquals(block.schema(), cursor.schema());
+    // Results don't cross the end of the block.
+    final int[] sizes = { 3, 2, 3, 2, 2 };
+    int row = 0;
+    for (int size : sizes) {
+      final ResultView next = cursor.next(3);
+      assertTrue(next.hasData());
+      final View view = next.view();
+      assertEquals(size, view.rowCount());
+      for (int i = 0; i < size; ++i, ++row) {
+        assertEquals(row % 5, view.column(0).getInt(i));
+        assertEquals(row % 5 == 3, view.column(1).isNull(i));
+        if (row % 5 != 3) {
+          assertEquals("row" + row % 5, view.column(1).getString(i));
+        }
+      }
+    }
+    assertEquals(12, row);
+    assertTrue(cursor.next(3).isEos());
+    assertTrue(cursor.next(3).isEos());
+  }
+
+  public void testLargeMaxRowCount() {
+    final RepeatingBlockCursor cursor = new RepeatingBlockCursor(block, 7);
+    assertEquals(5, cursor.next(100).view().rowCount());
+    assertEquals(2, cursor.next(100).view().rowCount());
+    assertTrue(cursor.next(100).isEos());
+  }
+
+  public void testNoRows() {
+    assertTrue(new RepeatingBlockCursor(block, 0).next(10).isEos());
+  }
+
+  public void testEmptyBlockRejected() {
+    final View empty = new View(block.schema());
+    try {
+      new RepeatingBlockCursor(empty, 10);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+
+  public void testInterrupt() {
+    final RepeatingBlockCursor cursor =
+        new RepeatingBlockCursor(block, 1000);
+    assertTrue(cursor.next(2).hasData());
+    cursor.interrupt();
+    assertEquals(ReturnCode.INTERRUPTED, cursor.next(2).status());
+  }
+}
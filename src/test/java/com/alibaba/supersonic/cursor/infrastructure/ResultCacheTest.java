@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.infrastructure;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.CursorsProto.CursorId;
+import com.alibaba.supersonic.cursor.base.Cursor;
+import com.alibaba.supersonic.cursor.base.ResultView;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+
+public class ResultCacheTest extends TestCase {
+
+  private static final TupleSchema ROWS = rowsSchema();
+
+  private static final TupleSchema LONGS = TupleSchema.singleton("x",
+      DataType.INT64, Nullability.NOT_NULLABLE);
+
+  // The memory used by a cached result of up to 1024 LONGS rows.
+  private static final long BLOCK_USAGE =
+      new Block(LONGS, 1024).memoryUsage();
+
+  public void testReplayMatchesOriginal() {
+    final ResultCache cache = new ResultCache(1L << 30);
+    final Block first = rows(0, 700);
+    final Block second = rows(700, 2700);
+    final ScriptedCursor plan = new ScriptedCursor(ROWS)
+        .thenView(first.view())
+        .thenWaitingOnBarrier()
+        .thenView(new View(second.view(), 0, 1))
+        .thenView(new View(second.view(), 1, 1999));
+    assertNull(cache.lookup(key("q")));
+    final List<List<Object>> original =
+        readAll(cache.cache(key("q"), plan), 500);
+    assertEquals(2700, original.size());
+    assertEquals(1, cache.size());
+    assertTrue(cache.memoryUsage() > 0);
+    // The cache holds a copy; changes to the input don't show in replays.
+    first.longData(0)[0] = -1;
+    second.setString(1, 5, "changed");
+    for (int maxRowCount : new int[] { 1, 333, 1024, 5000 }) {
+      final Cursor replay = cache.lookup(key("q"));
+      assertNotNull(replay);
+      assertEquals(ROWS, replay.schema());
+      assertEquals(original, readAll(replay, maxRowCount));
+    }
+    assertEquals(4, cache.hitCount());
+    assertEquals(1, cache.missCount());
+    assertEquals(0, cache.evictionCount());
+  }
+
+  public void testEmptyResultIsCached() {
+    final ResultCache cache = new ResultCache(1024);
+    readAll(cache.cache(key("empty"), new ScriptedCursor(LONGS)), 100);
+    assertEquals(1, cache.size());
+    assertEquals(0, cache.memoryUsage());
+    assertTrue(cache.lookup(key("empty")).next(100).isEos());
+  }
+
+  public void testFailedResultIsNotCached() {
+    final ResultCache cache = new ResultCache(1L << 30);
+    final ScriptedCursor plan = new ScriptedCursor(LONGS)
+        .thenView(longs(0, 100).view())
+        .thenFailure(ReturnCode.ERROR_EVALUATION_ERROR);
+    final Cursor cursor = cache.cache(key("q"), plan);
+    assertTrue(cursor.next(1000).hasData());
+    final ResultView result = cursor.next(1000);
+    assertTrue(result.isFailure());
+    assertEquals(ReturnCode.ERROR_EVALUATION_ERROR,
+        result.exception().getReturnCode());
+    // Nothing is cached, even if the caller keeps reading to the end.
+    assertTrue(cursor.next(1000).isEos());
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.memoryUsage());
+    assertNull(cache.lookup(key("q")));
+  }
+
+  public void testInterruptedResultIsNotCached() {
+    final ResultCache cache = new ResultCache(1L << 30);
+    final Cursor cursor = cache.cache(key("q"), new ScriptedCursor(LONGS)
+        .thenView(longs(0, 100).view()));
+    assertTrue(cursor.next(50).hasData());
+    cursor.interrupt();
+    final ResultView result = cursor.next(50);
+    assertTrue(result.isFailure());
+    assertEquals(ReturnCode.INTERRUPTED, result.exception().getReturnCode());
+    assertEquals(0, cache.size());
+  }
+
+  public void testPartiallyReadResultIsNotCached() {
+    final ResultCache cache = new ResultCache(1L << 30);
+    final Cursor cursor = cache.cache(key("q"), new ScriptedCursor(LONGS)
+        .thenView(longs(0, 100).view()));
+    assertEquals(100, cursor.next(1000).view().rowCount());
+    // All the rows have been read, but not the EOS.
+    assertEquals(0, cache.size());
+    assertNull(cache.lookup(key("q")));
+  }
+
+  public void testResultLargerThanBudgetIsNotCached() {
+    final ResultCache cache = new ResultCache(BLOCK_USAGE);
+    final ScriptedCursor plan = new ScriptedCursor(LONGS)
+        .thenView(longs(0, 3000).view());
+    // The copy is dropped once it outgrows the budget, but the rows still
+    // pass through.
+    assertEquals(3000, readAll(cache.cache(key("q"), plan), 1000).size());
+    assertTrue(plan.isExhausted());
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.memoryUsage());
+    // A result that fits is still cached.
+    readAll(cache.cache(key("r"), new ScriptedCursor(LONGS)
+        .thenView(longs(0, 1024).view())), 1000);
+    assertEquals(1, cache.size());
+    assertEquals(BLOCK_USAGE, cache.memoryUsage());
+  }
+
+  public void testLeastRecentlyUsedResultsAreEvicted() {
+    final ResultCache cache = new ResultCache(3 * BLOCK_USAGE);
+    fill(cache, "a", 10);
+    fill(cache, "b", 20);
+    fill(cache, "c", 30);
+    assertEquals(3, cache.size());
+    assertEquals(3 * BLOCK_USAGE, cache.memoryUsage());
+    // Makes "a" the most recently used.
+    assertNotNull(cache.lookup(key("a")));
+    fill(cache, "d", 40);
+    assertEquals(3, cache.size());
+    assertEquals(1, cache.evictionCount());
+    assertNull(cache.lookup(key("b")));
+    assertEquals(40, readAll(cache.lookup(key("d")), 100).size());
+    // A result of two blocks evicts the two least recently used results.
+    fill(cache, "e", 1500);
+    assertEquals(3, cache.evictionCount());
+    assertEquals(2, cache.size());
+    assertTrue(cache.memoryUsage() <= cache.memoryBudget());
+    assertNull(cache.lookup(key("a")));
+    assertNull(cache.lookup(key("c")));
+    assertEquals(40, readAll(cache.lookup(key("d")), 100).size());
+    assertEquals(1500, readAll(cache.lookup(key("e")), 100).size());
+  }
+
+  public void testInvalidateAll() {
+    final ResultCache cache = new ResultCache(3 * BLOCK_USAGE);
+    fill(cache, "a", 10);
+    fill(cache, "b", 20);
+    cache.invalidateAll();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.memoryUsage());
+    assertNull(cache.lookup(key("a")));
+    fill(cache, "a", 10);
+    assertEquals(BLOCK_USAGE, cache.memoryUsage());
+  }
+
+  public void testKeysIncludeSourceVersions() {
+    final ResultCache cache = new ResultCache(3 * BLOCK_USAGE);
+    fill(cache, "a", 10);
+    assertNull(cache.lookup(PlanFingerprint.builder()
+        .addOperator(CursorId.GENERATE, 0)
+        .addSource("a", 2)
+        .build()));
+    assertNotNull(cache.lookup(key("a")));
+  }
+
+  public void testInterruptedReplay() {
+    final ResultCache cache = new ResultCache(3 * BLOCK_USAGE);
+    fill(cache, "a", 100);
+    final Cursor replay = cache.lookup(key("a"));
+    assertEquals(10, replay.next(10).view().rowCount());
+    replay.interrupt();
+    final ResultView result = replay.next(10);
+    assertTrue(result.isFailure());
+    assertEquals(ReturnCode.INTERRUPTED, result.exception().getReturnCode());
+    // Other replays of the same result are not affected.
+    assertEquals(100, readAll(cache.lookup(key("a")), 100).size());
+  }
+
+  private static TupleSchema rowsSchema() {
+    final TupleSchema.Builder builder = TupleSchema.builder();
+    builder.addAttribute(new Attribute("id", DataType.INT64,
+        Nullability.NOT_NULLABLE));
+    builder.addAttribute(new Attribute("s", DataType.STRING,
+        Nullability.NULLABLE));
+    return builder.build();
+  }
+
+  private static PlanFingerprint key(final String source) {
+    return PlanFingerprint.builder()
+        .addOperator(CursorId.GENERATE, 0)
+        .addSource(source, 1)
+        .build();
+  }
+
+  private static void fill(final ResultCache cache, final String source,
+      final int rowCount) {
+    readAll(cache.cache(key(source), new ScriptedCursor(LONGS)
+        .thenView(longs(0, rowCount).view())), 1000);
+  }
+
+  private static Block longs(final int from, final int to) {
+    final Block block = new Block(LONGS, to - from);
+    for (int i = from; i < to; ++i) {
+      block.longData(0)[i - from] = i * 31L;
+    }
+    return block;
+  }
+
+  private static Block rows(final int from, final int to) {
+    final Block block = new Block(ROWS, to - from);
+    for (int i = from; i < to; ++i) {
+      block.longData(0)[i - from] = i;
+      block.isNull(1)[i - from] = i % 7 == 3;
+      block.setString(1, i - from, i % 5 == 0 ? "" : "row " + i);
+    }
+    return block;
+  }
+
+  private static List<List<Object>> readAll(final Cursor cursor,
+      final int maxRowCount) {
+    final List<List<Object>> rows = new ArrayList<List<Object>>();
+    while (true) {
+      final ResultView result = cursor.next(maxRowCount);
+      if (result.isWaitingOnBarrier()) {
+        continue;
+      }
+      assertFalse(String.valueOf(result.status()), result.isFailure());
+      if (result.isEos()) {
+        return rows;
+      }
+      final View view = result.view();
+      assertTrue(view.rowCount() <= maxRowCount);
+      for (int i = 0; i < view.rowCount(); ++i) {
+        final List<Object> row = new ArrayList<Object>();
+        for (int c = 0; c < view.columnCount(); ++c) {
+          row.add(view.column(c).isNull(i) ? null : view.column(c).get(i));
+        }
+        rows.add(row);
+      }
+    }
+  }
+}
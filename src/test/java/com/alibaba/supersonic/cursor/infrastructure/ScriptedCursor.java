@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.cursor.infrastructure;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import com.alibaba.supersonic.base.exception.SupersonicException;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.cursor.base.ResultView;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+
+/**
+ * A cursor for tests that returns a scripted sequence of results: views,
+ * WAITING_ON_BARRIER, failures, and finally EOS. A view larger than the
+ * requested maxRowCount is returned over several calls. Records the
+ * maxRowCount of each call.
+ */
+public class ScriptedCursor extends BasicCursor {
+
+  private final LinkedList<Object> script = new LinkedList<Object>();
+  private final List<Integer> requests = new ArrayList<Integer>();
+  private final View result;
+  private int position;
+
+  public ScriptedCursor(final TupleSchema schema) {
+    super(schema);
+    this.result = new View(schema);
+  }
+
+  /**
+   * Appends a view to the script; it must stay valid until returned.
+   */
+  public ScriptedCursor thenView(final View view) {
+    if (view.rowCount() > 0) {
+      script.add(view);
+    }
+    return this;
+  }
+
+  public ScriptedCursor thenWaitingOnBarrier() {
+    script.add(ResultView.waitingOnBarrier());
+    return this;
+  }
+
+  public ScriptedCursor thenFailure(final ReturnCode code) {
+    script.add(ResultView.failure(new SupersonicException(code,
+        "Scripted failure")));
+    return this;
+  }
+
+  /**
+   * Returns the maxRowCount of each call to next() so far.
+   */
+  public List<Integer> requests() {
+    return requests;
+  }
+
+  /**
+   * Returns true if the whole script has been returned.
+   */
+  public boolean isExhausted() {
+    return script.isEmpty();
+  }
+
+  @Override
+  public ResultView next(final int maxRowCount) {
+    requests.add(maxRowCount);
+    if (isInterrupted()) {
+      return interruptedResult();
+    }
+    if (script.isEmpty()) {
+      return ResultView.eos();
+    }
+    if (script.getFirst() instanceof ResultView) {
+      return (ResultView) script.removeFirst();
+    }
+    final View view = (View) script.getFirst();
+    final int rowCount = Math.min(maxRowCount, view.rowCount() - position);
+    result.resetFromSubRange(view, position, rowCount);
+    position += rowCount;
+    if (position == view.rowCount()) {
+      script.removeFirst();
+      position = 0;
+    }
+    return ResultView.success(result);
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import static com.alibaba.supersonic.expression.infrastructure.Expressions.float64;
+import static com.alibaba.supersonic.expression.infrastructure.Expressions.int32;
+import static com.alibaba.supersonic.expression.infrastructure.Expressions.operation;
+import static com.alibaba.supersonic.expression.infrastructure.Expressions.variable;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.ExpressionDescription;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.expression.infrastructure.ExpressionBinder;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+
+public class ConjunctionExpressionTest extends TestCase {
+
+  // TRUE, FALSE and NULL, as used by the reference implementation below.
+  private static final Boolean[] VALUES = { Boolean.TRUE, Boolean.FALSE,
+      null };
+  // All the combinations of a, b and c.
+  private static final int ROWS = 27;
+
+  private TupleSchema schema;
+  private View view;
+  private ExpressionBinder binder;
+
+  @Override
+  protected void setUp() {
+    final TupleSchema.Builder builder = TupleSchema.builder();
+    for (String name : new String[] { "a", "b", "c" }) {
+      builder.addAttribute(new Attribute(name, DataType.BOOL,
+          Nullability.NULLABLE));
+    }
+    schema = builder.build();
+    final Block block = new Block(schema, ROWS);
+    for (int i = 0; i < ROWS; ++i) {
+      for (int column = 0; column < 3; ++column) {
+        final Boolean value = value(i, column);
+        block.isNull(column)[i] = value == null;
+        block.boolData(column)[i] = value != null && value;
+      }
+    }
+    view = block.view();
+    view.setRowCount(ROWS);
+    binder = new ExpressionBinder(schema);
+  }
+
+  public void testAndOrTruthTables() {
+    final ExpressionDescription a = variable("a");
+    final ExpressionDescription b = variable("b");
+    final ExpressionDescription c = variable("c");
+    for (int i = 0; i < ROWS; ++i) {
+      final Boolean x = value(i, 0);
+      final Boolean y = value(i, 1);
+      final Boolean z = value(i, 2);
+      assertResult(operation(OperationType.AND, a, b), i, and(x, y));
+      assertResult(operation(OperationType.OR, a, b), i, or(x, y));
+      assertResult(operation(OperationType.AND_NOT, a, b), i,
+          and(x, not(y)));
+      assertResult(operation(OperationType.AND, a,
+          operation(OperationType.AND, b, c)), i, and(x, and(y, z)));
+      assertResult(operation(OperationType.OR,
+          operation(OperationType.OR, a, b), c), i, or(or(x, y), z));
+      assertResult(operation(OperationType.OR,
+          operation(OperationType.AND, a, b), c), i, or(and(x, y), z));
+      assertResult(operation(OperationType.AND,
+          operation(OperationType.OR, a, c), operation(OperationType.NOT, b)),
+          i, and(or(x, z), not(y)));
+    }
+  }
+
+  public void testNestedConjunctionsAreFlattened() {
+    final BoundExpression and = bind(operation(OperationType.AND,
+        operation(OperationType.AND, variable("a"), variable("b")),
+        variable("c")));
+    assertTrue(and instanceof ConjunctionExpression);
+    assertEquals(3, and.children().size());
+    final BoundExpression mixed = bind(operation(OperationType.AND,
+        operation(OperationType.OR, variable("a"), variable("b")),
+        variable("c")));
+    assertEquals(2, mixed.children().size());
+    assertTrue(mixed.child(0) instanceof ConjunctionExpression);
+  }
+
+  public void testEvaluatesOnlySelectedRows() {
+    final boolean[] mask = new boolean[ROWS];
+    for (int i = 0; i < ROWS; i += 2) {
+      mask[i] = true;
+    }
+    final Selection selection = new Selection();
+    selection.selectTrue(Selection.all(ROWS), mask, 0, null, 0);
+    final BoundExpression and = bind(operation(OperationType.AND,
+        variable("a"), operation(OperationType.AND, variable("b"),
+            variable("c"))));
+    final BoundExpression or = bind(operation(OperationType.OR,
+        variable("a"), operation(OperationType.OR, variable("b"),
+            variable("c"))));
+    final Column andResult = and.evaluate(view, selection).get();
+    for (int i = 0; i < ROWS; i += 2) {
+      assertEquals(and(value(i, 0), and(value(i, 1), value(i, 2))),
+          valueOf(andResult, i));
+    }
+    final Column orResult = or.evaluate(view, selection).get();
+    for (int i = 0; i < ROWS; i += 2) {
+      assertEquals(or(value(i, 0), or(value(i, 1), value(i, 2))),
+          valueOf(orResult, i));
+    }
+  }
+
+  public void testShortCircuitSkipsDecidedRows() {
+    final View numbers = numbers(new int[] { 4, 1, 9, 0, 6 },
+        new int[] { 2, 0, 3, 0, 0 });
+    final Selection all = Selection.all(5);
+    final ExpressionDescription quotient = operation(
+        OperationType.DIVIDE_SIGNALING, variable("x"), variable("y"));
+    final ExpressionBinder numbersBinder =
+        new ExpressionBinder(numbers.schema());
+    assertEquals(ReturnCode.ERROR_EVALUATION_ERROR, numbersBinder
+        .bind(quotient).get().evaluate(numbers, all).exception()
+        .getReturnCode());
+    // x / y is evaluated only where y != 0 (for AND), or y == 0 is FALSE
+    // (for OR).
+    final Column and = numbersBinder.bind(operation(OperationType.AND,
+        operation(OperationType.NOT_EQUAL, variable("y"), int32(0)),
+        operation(OperationType.GREATER, quotient, float64(2.5))))
+        .get().evaluate(numbers, all).get();
+    final Column or = numbersBinder.bind(operation(OperationType.OR,
+        operation(OperationType.EQUAL, variable("y"), int32(0)),
+        operation(OperationType.GREATER, quotient, float64(2.5))))
+        .get().evaluate(numbers, all).get();
+    final boolean[] expectedAnd = { false, false, true, false, false };
+    final boolean[] expectedOr = { false, true, true, true, true };
+    for (int i = 0; i < 5; ++i) {
+      assertEquals(expectedAnd[i], and.getBool(i));
+      assertEquals(expectedOr[i], or.getBool(i));
+    }
+  }
+
+  public void testReorderingKeepsResults() {
+    final int rowCount = 1000;
+    final int[] x = new int[rowCount];
+    final int[] y = new int[rowCount];
+    for (int i = 0; i < rowCount; ++i) {
+      x[i] = i;
+      y[i] = i % 2;
+    }
+    final View numbers = numbers(x, y);
+    final ConjunctionExpression and = (ConjunctionExpression)
+        new ExpressionBinder(numbers.schema()).bind(operation(
+            OperationType.AND,
+            operation(OperationType.GREATER_OR_EQUAL, variable("x"),
+                int32(0)),
+            operation(OperationType.NOT_EQUAL, variable("y"), int32(0))))
+            .get();
+    assertTrue(Arrays.equals(new int[] { 0, 1 }, and.evaluationOrder()));
+    final Selection all = Selection.all(rowCount);
+    for (int round = 0; round < 2 * ConjunctionExpression.REORDER_PERIOD;
+        ++round) {
+      assertConjunction(and.evaluate(numbers, all).get(), x, y);
+    }
+    // The second conjunct decides half the rows; the first, none.
+    assertTrue(Arrays.equals(new int[] { 1, 0 }, and.evaluationOrder()));
+
+    // Now the first conjunct decides half the rows, and the second none.
+    for (int i = 0; i < rowCount; ++i) {
+      x[i] = i % 2 == 0 ? i : -i;
+      y[i] = 1;
+    }
+    for (int round = 0; round < 20 * ConjunctionExpression.REORDER_PERIOD;
+        ++round) {
+      assertConjunction(and.evaluate(numbers, all).get(), x, y);
+    }
+    assertTrue(Arrays.equals(new int[] { 0, 1 }, and.evaluationOrder()));
+  }
+
+  private void assertResult(final ExpressionDescription description,
+      final int row, final Boolean expected) {
+    final Column result = bind(description).evaluate(view,
+        Selection.all(ROWS)).get();
+    assertEquals(description + " at " + row, expected, valueOf(result, row));
+  }
+
+  private static void assertConjunction(final Column result, final int[] x,
+      final int[] y) {
+    for (int i = 0; i < x.length; ++i) {
+      assertEquals(x[i] >= 0 && y[i] != 0, result.getBool(i));
+    }
+  }
+
+  private BoundExpression bind(final ExpressionDescription description) {
+    return binder.bind(description).get();
+  }
+
+  // Returns a view with NOT_NULLABLE INT32 columns x and y, backed by the
+  // arrays (so that changes to them show in the view).
+  private static View numbers(final int[] x, final int[] y) {
+    final TupleSchema.Builder builder = TupleSchema.builder();
+    builder.addAttribute(new Attribute("x", DataType.INT32,
+        Nullability.NOT_NULLABLE));
+    builder.addAttribute(new Attribute("y", DataType.INT32,
+        Nullability.NOT_NULLABLE));
+    final View numbers = new View(builder.build());
+    numbers.mutableColumn(0).reset(x, null);
+    numbers.mutableColumn(1).reset(y, null);
+    numbers.setRowCount(x.length);
+    return numbers;
+  }
+
+  private static Boolean value(final int row, final int column) {
+    int index = row;
+    for (int i = 0; i < column; ++i) {
+      index /= 3;
+    }
+    return VALUES[index % 3];
+  }
+
+  private static Boolean valueOf(final Column column, final int row) {
+    return column.isNull(row) ? null : column.getBool(row);
+  }
+
+  private static Boolean and(final Boolean x, final Boolean y) {
+    if (Boolean.FALSE.equals(x) || Boolean.FALSE.equals(y)) {
+      return false;
+    }
+    return x == null || y == null ? null : true;
+  }
+
+  private static Boolean or(final Boolean x, final Boolean y) {
+    return not(and(not(x), not(y)));
+  }
+
+  private static Boolean not(final Boolean x) {
+    return x == null ? null : !x;
+  }
+}
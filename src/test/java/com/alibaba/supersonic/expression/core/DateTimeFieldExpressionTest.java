@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import static com.alibaba.supersonic.expression.infrastructure.Expressions.operation;
+import static com.alibaba.supersonic.expression.infrastructure.Expressions.variable;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoField;
+import java.time.temporal.IsoFields;
+
+import junit.framework.TestCase;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.expression.infrastructure.ExpressionBinder;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+
+public class DateTimeFieldExpressionTest extends TestCase {
+
+  private static final LocalDateTime[] TIMES = {
+    LocalDateTime.of(1970, 1, 1, 0, 0, 0, 0),
+    LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999999000),
+    LocalDateTime.of(1968, 2, 29, 12, 30, 15, 1000),
+    LocalDateTime.of(1968, 3, 1, 0, 0, 0, 0),
+    LocalDateTime.of(1968, 12, 31, 1, 2, 3, 4000),
+    LocalDateTime.of(1900, 2, 28, 23, 0, 0, 0),
+    LocalDateTime.of(1900, 3, 1, 6, 7, 8, 9000),
+    LocalDateTime.of(1600, 2, 29, 0, 0, 1, 0),
+    LocalDateTime.of(2000, 2, 29, 18, 45, 0, 0),
+    LocalDateTime.of(2000, 12, 31, 23, 59, 59, 0),
+    LocalDateTime.of(2024, 7, 4, 9, 10, 11, 120000),
+    LocalDateTime.of(2024, 7, 4, 21, 0, 0, 0),
+  };
+
+  private static final OperationType[] FIELDS = {
+    OperationType.YEAR_UTC, OperationType.MONTH_UTC, OperationType.DAY_UTC,
+    OperationType.WEEKDAY_UTC, OperationType.YEARDAY_UTC,
+    OperationType.QUARTER_UTC, OperationType.HOUR_UTC,
+    OperationType.MINUTE_UTC, OperationType.SECOND, OperationType.MICROSECOND,
+  };
+
+  private TupleSchema schema;
+  private View view;
+
+  @Override
+  protected void setUp() {
+    final TupleSchema.Builder builder = TupleSchema.builder();
+    builder.addAttribute(new Attribute("t", DataType.DATETIME,
+        Nullability.NULLABLE));
+    builder.addAttribute(new Attribute("d", DataType.DATE,
+        Nullability.NOT_NULLABLE));
+    schema = builder.build();
+    final Block block = new Block(schema, TIMES.length + 1);
+    for (int i = 0; i < TIMES.length; ++i) {
+      final long seconds = TIMES[i].toEpochSecond(ZoneOffset.UTC);
+      block.longData(0)[i] = seconds * 1000000 + TIMES[i].getNano() / 1000;
+      block.intData(1)[i] = (int) TIMES[i].toLocalDate().toEpochDay();
+    }
+    block.isNull(0)[TIMES.length] = true;
+    view = block.view();
+  }
+
+  public void testFieldsOfDatetimes() {
+    for (OperationType field : FIELDS) {
+      final Column result = evaluate(field, "t");
+      for (int i = 0; i < TIMES.length; ++i) {
+        assertEquals(field + " of " + TIMES[i], expected(field, TIMES[i]),
+            result.getInt(i));
+      }
+      assertTrue(result.isNull(TIMES.length));
+    }
+  }
+
+  public void testFieldsOfDates() {
+    for (OperationType field : FIELDS) {
+      if (DateTimeFieldExpression.isTimeOfDay(field)) {
+        continue;
+      }
+      final Column result = evaluate(field, "d");
+      for (int i = 0; i < TIMES.length; ++i) {
+        assertEquals(field + " of " + TIMES[i].toLocalDate(),
+            expected(field, TIMES[i]), result.getInt(i));
+      }
+    }
+  }
+
+  private Column evaluate(final OperationType field, final String argument) {
+    return new ExpressionBinder(schema)
+        .bind(operation(field, variable(argument))).get()
+        .evaluate(view, Selection.all(view.rowCount())).get();
+  }
+
+  private static int expected(final OperationType field,
+      final LocalDateTime time) {
+    switch (field) {
+      case YEAR_UTC:
+        return time.getYear();
+      case MONTH_UTC:
+        return time.getMonthValue();
+      case DAY_UTC:
+        return time.getDayOfMonth();
+      case WEEKDAY_UTC:
+        // Monday = 0.
+        return time.getDayOfWeek().getValue() - 1;
+      case YEARDAY_UTC:
+        return time.getDayOfYear();
+      case QUARTER_UTC:
+        return time.get(IsoFields.QUARTER_OF_YEAR);
+      case HOUR_UTC:
+        return time.getHour();
+      case MINUTE_UTC:
+        return time.getMinute();
+      case SECOND:
+        return time.getSecond();
+      case MICROSECOND:
+        return time.get(ChronoField.MICRO_OF_SECOND);
+      default:
+        throw new IllegalArgumentException(field.name());
+    }
+  }
+}
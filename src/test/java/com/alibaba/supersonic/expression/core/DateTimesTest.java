@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import java.time.LocalDate;
+
+import junit.framework.TestCase;
+
+public class DateTimesTest extends TestCase {
+
+  // From 1600-01-01 to 2400-12-31: 400-year cycles around the Epoch, and
+  // the leap and non-leap centuries.
+  private static final long FIRST_DAY =
+      LocalDate.of(1600, 1, 1).toEpochDay();
+  private static final long LAST_DAY =
+      LocalDate.of(2400, 12, 31).toEpochDay();
+
+  public void testCivilAgreesWithLocalDate() {
+    for (long day = FIRST_DAY; day <= LAST_DAY; ++day) {
+      final LocalDate date = LocalDate.ofEpochDay(day);
+      final long civil = DateTimes.civil(day);
+      assertEquals(date.toString(), date.getYear(), DateTimes.year(civil));
+      assertEquals(date.toString(), date.getMonthValue(),
+          DateTimes.month(civil));
+      assertEquals(date.toString(), date.getDayOfMonth(),
+          DateTimes.day(civil));
+      assertEquals(date.toString(), date.getDayOfWeek().getValue() - 1,
+          DateTimes.weekday(day));
+      assertEquals(date.toString(), date.getDayOfYear(),
+          DateTimes.yearDay(day, civil));
+      assertEquals(date.toString(), day, DateTimes.daysFromCivil(
+          date.getYear(), date.getMonthValue(), date.getDayOfMonth()));
+    }
+  }
+
+  public void testLeapYears() {
+    assertTrue(DateTimes.isLeapYear(1600));
+    assertFalse(DateTimes.isLeapYear(1700));
+    assertFalse(DateTimes.isLeapYear(1900));
+    assertTrue(DateTimes.isLeapYear(1968));
+    assertTrue(DateTimes.isLeapYear(2000));
+    assertFalse(DateTimes.isLeapYear(2023));
+    assertTrue(DateTimes.isLeapYear(2024));
+    assertTrue(DateTimes.isLeapYear(-4));
+    assertFalse(DateTimes.isLeapYear(-100));
+    for (int year = 1600; year <= 2400; ++year) {
+      for (int month = 1; month <= 12; ++month) {
+        assertEquals(year + "-" + month,
+            LocalDate.of(year, month, 1).lengthOfMonth(),
+            DateTimes.daysInMonth(year, month));
+      }
+    }
+    final long leapDay = LocalDate.of(1968, 2, 29).toEpochDay();
+    assertEquals(60, DateTimes.yearDay(leapDay, DateTimes.civil(leapDay)));
+    final long lastDay = LocalDate.of(1968, 12, 31).toEpochDay();
+    assertEquals(366, DateTimes.yearDay(lastDay, DateTimes.civil(lastDay)));
+  }
+
+  public void testAddMonthsClampsToTheLastDay() {
+    final int[] months = { -25, -13, -12, -1, 0, 1, 11, 12, 13, 48 };
+    for (long day = LocalDate.of(1967, 1, 1).toEpochDay();
+        day <= LocalDate.of(1973, 12, 31).toEpochDay(); ++day) {
+      final LocalDate date = LocalDate.ofEpochDay(day);
+      for (int added : months) {
+        assertEquals(date + " + " + added,
+            date.plusMonths(added).toEpochDay(),
+            DateTimes.addMonths(day, added));
+      }
+    }
+    final long january31 = LocalDate.of(2000, 1, 31).toEpochDay();
+    assertEquals(LocalDate.of(2000, 2, 29).toEpochDay(),
+        DateTimes.addMonths(january31, 1));
+    assertEquals(LocalDate.of(1900, 2, 28).toEpochDay(),
+        DateTimes.addMonths(january31, -1200 + 1));
+  }
+
+  public void testNegativeDatetimes() {
+    // 1969-12-31 23:59:59.999999.
+    assertEquals(-1, DateTimes.days(-1));
+    assertEquals(DateTimes.MICROS_PER_DAY - 1, DateTimes.timeOfDay(-1));
+    assertEquals(-1, DateTimes.days(-DateTimes.MICROS_PER_DAY));
+    assertEquals(0, DateTimes.timeOfDay(-DateTimes.MICROS_PER_DAY));
+    assertEquals(-2, DateTimes.days(-DateTimes.MICROS_PER_DAY - 1));
+  }
+
+  public void testFirstDays() {
+    final long day = LocalDate.of(1968, 8, 17).toEpochDay();
+    final long civil = DateTimes.civil(day);
+    assertEquals(LocalDate.of(1968, 8, 1).toEpochDay(),
+        DateTimes.firstDayOfMonth(day, civil));
+    assertEquals(LocalDate.of(1968, 7, 1).toEpochDay(),
+        DateTimes.firstDayOfQuarter(civil));
+    assertEquals(LocalDate.of(1968, 1, 1).toEpochDay(),
+        DateTimes.firstDayOfYear(civil));
+    assertEquals(3, DateTimes.quarter(civil));
+  }
+}
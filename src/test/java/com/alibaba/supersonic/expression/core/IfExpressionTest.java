@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import static com.alibaba.supersonic.expression.infrastructure.Expressions.float64;
+import static com.alibaba.supersonic.expression.infrastructure.Expressions.int32;
+import static com.alibaba.supersonic.expression.infrastructure.Expressions.int64;
+import static com.alibaba.supersonic.expression.infrastructure.Expressions.operation;
+import static com.alibaba.supersonic.expression.infrastructure.Expressions.variable;
+
+import junit.framework.TestCase;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.ExpressionDescription;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.expression.infrastructure.ExpressionBinder;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+
+public class IfExpressionTest extends TestCase {
+
+  private static final Boolean[] CONDITIONS = { Boolean.TRUE, Boolean.FALSE,
+      null };
+  private static final Long[] THENS = { 5L, null };
+  private static final Long[] OTHERWISES = { 7L, null };
+  // All the combinations of c, t and e.
+  private static final int ROWS = 12;
+
+  private View view;
+  private ExpressionBinder binder;
+
+  @Override
+  protected void setUp() {
+    final TupleSchema.Builder builder = TupleSchema.builder();
+    builder.addAttribute(new Attribute("c", DataType.BOOL,
+        Nullability.NULLABLE));
+    builder.addAttribute(new Attribute("t", DataType.INT64,
+        Nullability.NULLABLE));
+    builder.addAttribute(new Attribute("e", DataType.INT64,
+        Nullability.NULLABLE));
+    builder.addAttribute(new Attribute("i", DataType.INT32,
+        Nullability.NOT_NULLABLE));
+    final TupleSchema schema = builder.build();
+    final Block block = new Block(schema, ROWS);
+    for (int row = 0; row < ROWS; ++row) {
+      final Boolean c = condition(row);
+      block.isNull(0)[row] = c == null;
+      block.boolData(0)[row] = c != null && c;
+      final Long t = then(row);
+      block.isNull(1)[row] = t == null;
+      block.longData(1)[row] = t == null ? -1 : t;
+      final Long e = otherwise(row);
+      block.isNull(2)[row] = e == null;
+      block.longData(2)[row] = e == null ? -1 : e;
+      block.intData(3)[row] = row;
+    }
+    view = block.view();
+    view.setRowCount(ROWS);
+    binder = new ExpressionBinder(schema);
+  }
+
+  public void testIfTakesOtherwiseOnFalseAndNull() {
+    final BoundExpression expression = bind(operation(OperationType.IF,
+        variable("c"), variable("t"), variable("e")));
+    assertTrue(expression.isNullable());
+    final Column result = expression.evaluate(view, Selection.all(ROWS))
+        .get();
+    for (int row = 0; row < ROWS; ++row) {
+      final Long expected = Boolean.TRUE.equals(condition(row)) ? then(row)
+          : otherwise(row);
+      assertEquals("row " + row, expected, valueOf(result, row));
+    }
+  }
+
+  public void testIfNull() {
+    final BoundExpression expression = bind(operation(OperationType.IFNULL,
+        variable("t"), variable("e")));
+    final Column result = expression.evaluate(view, Selection.all(ROWS))
+        .get();
+    for (int row = 0; row < ROWS; ++row) {
+      final Long expected = then(row) != null ? then(row) : otherwise(row);
+      assertEquals("row " + row, expected, valueOf(result, row));
+    }
+    final BoundExpression notNull = bind(operation(OperationType.IFNULL,
+        variable("t"), int64(0)));
+    assertFalse(notNull.isNullable());
+    final Column substituted = notNull.evaluate(view, Selection.all(ROWS))
+        .get();
+    for (int row = 0; row < ROWS; ++row) {
+      assertEquals(then(row) != null ? then(row).longValue() : 0,
+          substituted.getLong(row));
+    }
+  }
+
+  public void testIfConvertsBranchesToCommonType() {
+    final BoundExpression expression = bind(operation(OperationType.IF,
+        variable("c"), variable("i"), variable("e")));
+    assertEquals(DataType.INT64, expression.resultType());
+    final Column result = expression.evaluate(view, Selection.all(ROWS))
+        .get();
+    for (int row = 0; row < ROWS; ++row) {
+      final Long expected = Boolean.TRUE.equals(condition(row))
+          ? Long.valueOf(row) : otherwise(row);
+      assertEquals("row " + row, expected, valueOf(result, row));
+    }
+  }
+
+  public void testIfOnSelection() {
+    final boolean[] mask = new boolean[ROWS];
+    for (int row = 1; row < ROWS; row += 3) {
+      mask[row] = true;
+    }
+    final Selection selection = new Selection();
+    selection.selectTrue(Selection.all(ROWS), mask, 0, null, 0);
+    final Column result = bind(operation(OperationType.IF, variable("c"),
+        variable("t"), variable("e"))).evaluate(view, selection).get();
+    for (int row = 1; row < ROWS; row += 3) {
+      final Long expected = Boolean.TRUE.equals(condition(row)) ? then(row)
+          : otherwise(row);
+      assertEquals("row " + row, expected, valueOf(result, row));
+    }
+  }
+
+  public void testBranchesEvaluatedOnlyOnRowsThatTakeThem() {
+    // 12 / (i % 3) divides by zero on every third row.
+    final ExpressionDescription divisor = operation(OperationType.MODULUS,
+        variable("i"), int32(3));
+    final ExpressionDescription quotient = operation(
+        OperationType.DIVIDE_SIGNALING, int32(12), divisor);
+    final Selection all = Selection.all(ROWS);
+    assertEquals(ReturnCode.ERROR_EVALUATION_ERROR,
+        bind(quotient).evaluate(view, all).exception().getReturnCode());
+    final Column guarded = bind(operation(OperationType.IF,
+        operation(OperationType.NOT_EQUAL, divisor, int32(0)), quotient,
+        float64(-1))).evaluate(view, all).get();
+    final Column inverted = bind(operation(OperationType.IF,
+        operation(OperationType.EQUAL, divisor, int32(0)), float64(-1),
+        quotient)).evaluate(view, all).get();
+    for (int row = 0; row < ROWS; ++row) {
+      final double expected = row % 3 == 0 ? -1 : 12.0 / (row % 3);
+      assertEquals(expected, guarded.getDouble(row), 0);
+      assertEquals(expected, inverted.getDouble(row), 0);
+    }
+  }
+
+  private BoundExpression bind(final ExpressionDescription description) {
+    return binder.bind(description).get();
+  }
+
+  private static Boolean condition(final int row) {
+    return CONDITIONS[row % 3];
+  }
+
+  private static Long then(final int row) {
+    return THENS[row / 3 % 2];
+  }
+
+  private static Long otherwise(final int row) {
+    return OTHERWISES[row / 6];
+  }
+
+  private static Long valueOf(final Column column, final int row) {
+    return column.isNull(row) ? null : column.getLong(row);
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import static com.alibaba.supersonic.expression.infrastructure.Expressions.operation;
+import static com.alibaba.supersonic.expression.infrastructure.Expressions.string;
+import static com.alibaba.supersonic.expression.infrastructure.Expressions.variable;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Block;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.expression.infrastructure.ExpressionBinder;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+
+public class RegexpExpressionTest extends TestCase {
+
+  private static final String[] TEXTS = {
+    "ABC", "xABCx", "abc", "", "\u0001abc", "\rMabc", "A1", "aa1", "aa12",
+    "a.b", "ab", "axb", "\u00e9t\u00e9", "error: disk full", "BC", "AB",
+  };
+
+  public void testRequiredLiteralOfLiterals() {
+    assertEquals("error", RegexpExpression.requiredLiteral("error"));
+    assertEquals("error: ", RegexpExpression.requiredLiteral("error: (\\w+)"));
+    assertEquals("a.b", RegexpExpression.requiredLiteral("a\\.b"));
+    assertEquals("", RegexpExpression.requiredLiteral(".*"));
+  }
+
+  public void testRequiredLiteralOfQuantifiers() {
+    assertEquals("ab", RegexpExpression.requiredLiteral("ab+c"));
+    assertEquals("bc", RegexpExpression.requiredLiteral("a?bc"));
+    assertEquals("bc", RegexpExpression.requiredLiteral("a*bc"));
+    assertEquals("yz", RegexpExpression.requiredLiteral("x{2,3}yz"));
+    assertEquals("b", RegexpExpression.requiredLiteral("[a-z]+b"));
+  }
+
+  public void testRequiredLiteralGivesUp() {
+    assertNull(RegexpExpression.requiredLiteral("abc|d"));
+    assertNull(RegexpExpression.requiredLiteral("(?i)abc"));
+    assertNull(RegexpExpression.requiredLiteral("\\Qa.b\\E"));
+  }
+
+  public void testRequiredLiteralSkipsOperandsOfEscapes() {
+    assertEquals("", RegexpExpression.requiredLiteral("\\x41"));
+    assertEquals("BC", RegexpExpression.requiredLiteral("\\x{41}BC"));
+    assertEquals("BC", RegexpExpression.requiredLiteral("\\u0041BC"));
+    assertEquals("", RegexpExpression.requiredLiteral("\\0101"));
+    assertEquals("8", RegexpExpression.requiredLiteral("\\0778"));
+    assertEquals("abc", RegexpExpression.requiredLiteral("\\cMabc"));
+    assertEquals("xyz", RegexpExpression.requiredLiteral("\\p{L}xyz"));
+    assertEquals("xyz", RegexpExpression.requiredLiteral("\\pLxyz"));
+    assertEquals("xyz", RegexpExpression.requiredLiteral("\\P{Lu}xyz"));
+    assertEquals("xyz", RegexpExpression.requiredLiteral("\\dxyz"));
+    assertEquals("", RegexpExpression.requiredLiteral("(a)\\12"));
+    assertEquals("b", RegexpExpression.requiredLiteral("(a)\\1(c)b"));
+  }
+
+  public void testMatchesAgreeWithPatternOnEscapes() {
+    final String[] patterns = {
+      "\\x41", "\\x{41}BC", "\\u0041BC", "\\0101", "\\cMabc", "\\p{L}b",
+      "\\pLb", "\\P{Lu}b", "(a)\\11", "(a)\\12", "a\\.b", "ab+c", "a?bc",
+      "\\w\\d", "\u00e9t\u00e9", "error: (\\w+)",
+    };
+    final TupleSchema schema = TupleSchema.singleton("s", DataType.STRING,
+        Nullability.NOT_NULLABLE);
+    final Block block = new Block(schema, TEXTS.length);
+    for (int i = 0; i < TEXTS.length; ++i) {
+      block.setString(0, i, TEXTS[i]);
+    }
+    final View view = block.view();
+    view.setRowCount(TEXTS.length);
+    final ExpressionBinder binder = new ExpressionBinder(schema);
+    final Selection all = Selection.all(TEXTS.length);
+    for (String regexp : patterns) {
+      final Pattern pattern = Pattern.compile(regexp);
+      final Column partial = binder.bind(operation(
+          OperationType.REGEXP_PARTIAL, variable("s"), string(regexp)))
+          .get().evaluate(view, all).get();
+      final Column full = binder.bind(operation(
+          OperationType.REGEXP_FULL, variable("s"), string(regexp)))
+          .get().evaluate(view, all).get();
+      final Column extract = binder.bind(operation(
+          OperationType.REGEXP_EXTRACT, variable("s"), string(regexp)))
+          .get().evaluate(view, all).get();
+      for (int i = 0; i < TEXTS.length; ++i) {
+        final String message = regexp + " on " + TEXTS[i];
+        final Matcher matcher = pattern.matcher(TEXTS[i]);
+        final boolean found = matcher.find();
+        assertEquals(message, found, partial.getBool(i));
+        assertEquals(message, pattern.matcher(TEXTS[i]).matches(),
+            full.getBool(i));
+        if (found) {
+          assertEquals(message,
+              matcher.group(matcher.groupCount() > 0 ? 1 : 0),
+              extract.getString(i));
+        } else {
+          assertTrue(message, extract.isNull(i));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.core;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+
+public class ScalarNumericKernelsTest extends TestCase {
+
+  private final NumericKernels kernels = new ScalarNumericKernels();
+
+  public void testIntArithmetic() {
+    // Operands start at different offsets; results are written from 0.
+    final int[] a = { 99, 7, -3, Integer.MAX_VALUE, 0x0f0f, 99 };
+    final int[] b = { 5, 1, 2, 0x00ff };
+    final int[] result = new int[4];
+    kernels.arithmetic(OperationType.ADD, a, 2, b, 0, result, 3);
+    assertArrayEquals(new int[] { 2, Integer.MIN_VALUE, 0x0f11, 0 }, result);
+    kernels.arithmetic(OperationType.SUBTRACT, a, 1, b, 1, result, 3);
+    assertArrayEquals(new int[] { 6, -5, Integer.MAX_VALUE - 0x00ff, 0 },
+        result);
+    kernels.arithmetic(OperationType.MULTIPLY, a, 3, b, 2, result, 2);
+    assertArrayEquals(
+        new int[] { -2, 0x0f0f * 0x00ff, Integer.MAX_VALUE - 0x00ff, 0 },
+        result);
+    kernels.arithmetic(OperationType.BITWISE_AND, a, 4, b, 3, result, 1);
+    assertEquals(0x000f, result[0]);
+    kernels.arithmetic(OperationType.BITWISE_OR, a, 4, b, 3, result, 1);
+    assertEquals(0x0fff, result[0]);
+    kernels.arithmetic(OperationType.BITWISE_XOR, a, 4, b, 3, result, 1);
+    assertEquals(0x0ff0, result[0]);
+  }
+
+  public void testLongArithmetic() {
+    final long[] a = { 0, Long.MAX_VALUE, -8, 1L << 40 };
+    final long[] b = { 1, 3, (1L << 40) | 1 };
+    final long[] result = new long[3];
+    kernels.arithmetic(OperationType.ADD, a, 1, b, 0, result, 3);
+    assertEquals(Long.MIN_VALUE, result[0]);
+    assertEquals(-5, result[1]);
+    assertEquals((1L << 41) | 1, result[2]);
+    kernels.arithmetic(OperationType.MULTIPLY, a, 2, b, 1, result, 2);
+    assertEquals(-24, result[0]);
+    // (2^40) * (2^40 + 1) wraps around to 2^40.
+    assertEquals(1L << 40, result[1]);
+    kernels.arithmetic(OperationType.BITWISE_AND, a, 3, b, 2, result, 1);
+    assertEquals(1L << 40, result[0]);
+  }
+
+  public void testFloatingPointArithmetic() {
+    final double[] a = { 1, 0, -1, Double.NaN, 6 };
+    final double[] b = { 0, 0, 0, 1, 4 };
+    final double[] result = new double[5];
+    kernels.arithmetic(OperationType.CPP_DIVIDE, a, 0, b, 0, result, 5);
+    assertEquals(Double.POSITIVE_INFINITY, result[0]);
+    assertTrue(Double.isNaN(result[1]));
+    assertEquals(Double.NEGATIVE_INFINITY, result[2]);
+    assertTrue(Double.isNaN(result[3]));
+    assertEquals(1.5, result[4]);
+    final float[] c = { 0.5f, 2, 3 };
+    final float[] floats = new float[2];
+    kernels.arithmetic(OperationType.SUBTRACT, c, 1, c, 0, floats, 2);
+    assertEquals(1.5f, floats[0]);
+    assertEquals(1f, floats[1]);
+    kernels.arithmetic(OperationType.DIVIDE_QUIET, c, 0, c, 1, floats, 2);
+    assertEquals(0.25f, floats[0]);
+  }
+
+  public void testUnsupportedOperations() {
+    try {
+      kernels.arithmetic(OperationType.CPP_DIVIDE, new int[1], 0, new int[1],
+          0, new int[1], 1);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      kernels.arithmetic(OperationType.BITWISE_AND, new double[1], 0,
+          new double[1], 0, new double[1], 1);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      kernels.compare(OperationType.GREATER, new long[1], 0, new long[1], 0,
+          false, new boolean[1], 1);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  public void testIntCompare() {
+    final int[] a = { -1, 0, 5, Integer.MIN_VALUE };
+    final int[] b = { 0, 0, 5, Integer.MAX_VALUE };
+    final boolean[] result = new boolean[4];
+    kernels.compare(OperationType.LESS, a, 0, b, 0, false, result, 4);
+    assertBooleans("TFFT", result);
+    // As unsigned, -1 and MIN_VALUE are larger than any positive value.
+    kernels.compare(OperationType.LESS, a, 0, b, 0, true, result, 4);
+    assertBooleans("FFFF", result);
+    kernels.compare(OperationType.LESS_OR_EQUAL, a, 0, b, 0, true, result, 4);
+    assertBooleans("FTTF", result);
+    kernels.compare(OperationType.EQUAL, a, 1, b, 1, true, result, 3);
+    assertBooleans("TTF", result);
+    kernels.compare(OperationType.NOT_EQUAL, a, 0, b, 1, false, result, 3);
+    assertBooleans("TTT", result);
+  }
+
+  public void testLongCompare() {
+    final long[] a = { -1, 1L << 62, Long.MIN_VALUE };
+    final long[] b = { 1, 1L << 62, 0 };
+    final boolean[] result = new boolean[3];
+    kernels.compare(OperationType.LESS, a, 0, b, 0, false, result, 3);
+    assertBooleans("TFT", result);
+    kernels.compare(OperationType.LESS, a, 0, b, 0, true, result, 3);
+    assertBooleans("FFF", result);
+    kernels.compare(OperationType.LESS_OR_EQUAL, a, 0, b, 0, true, result, 3);
+    assertBooleans("FTF", result);
+    kernels.compare(OperationType.LESS_OR_EQUAL, b, 0, a, 0, true, result, 3);
+    assertBooleans("TTT", result);
+  }
+
+  public void testFloatingPointCompare() {
+    // Every comparison with NaN is false, except NOT_EQUAL; -0 equals 0.
+    final double[] a = { Double.NaN, 1, -0.0, Double.NEGATIVE_INFINITY };
+    final double[] b = { Double.NaN, Double.NaN, 0.0, -1e300 };
+    final boolean[] result = new boolean[4];
+    kernels.compare(OperationType.EQUAL, a, 0, b, 0, result, 4);
+    assertBooleans("FFTF", result);
+    kernels.compare(OperationType.NOT_EQUAL, a, 0, b, 0, result, 4);
+    assertBooleans("TTFT", result);
+    kernels.compare(OperationType.LESS, a, 0, b, 0, result, 4);
+    assertBooleans("FFFT", result);
+    kernels.compare(OperationType.LESS_OR_EQUAL, a, 0, b, 0, result, 4);
+    assertBooleans("FFTT", result);
+    final float[] c = { Float.NaN, 2, 1 };
+    kernels.compare(OperationType.LESS, c, 1, c, 0, result, 2);
+    assertBooleans("FT", result);
+    kernels.compare(OperationType.LESS_OR_EQUAL, c, 2, c, 1, result, 1);
+    assertBooleans("T", result);
+  }
+
+  public void testSum() {
+    final int[] ints = { 100, Integer.MAX_VALUE, Integer.MAX_VALUE, -7, 3 };
+    final boolean[] isNull = { true, false, false, true, false };
+    // Sums as longs, so doesn't overflow at 32 bits.
+    assertEquals(2L * Integer.MAX_VALUE - 7 + 10,
+        kernels.sum(ints, 1, null, 0, 3, 10));
+    assertEquals(2L * Integer.MAX_VALUE + 3 + 10,
+        kernels.sum(ints, 1, isNull, 1, 4, 10));
+    // The NULL flags can start at a different offset than the values.
+    assertEquals(3, kernels.sum(ints, 4, isNull, 2, 1, 0));
+    assertEquals(0, kernels.sum(ints, 4, isNull, 0, 1, 0));
+    assertEquals(42, kernels.sum(ints, 0, isNull, 0, 0, 42));
+    final long[] longs = { Long.MAX_VALUE, 1, 5 };
+    assertEquals(Long.MIN_VALUE, kernels.sum(longs, 0, null, 0, 2, 0));
+    assertEquals(6, kernels.sum(longs, 1, new boolean[2], 0, 2, 0));
+    final float[] floats = { 0.5f, Float.NaN, 0.25f };
+    assertEquals(1.75, kernels.sum(floats, 0, new boolean[] {
+      false, true, false }, 0, 3, 1));
+    assertTrue(Double.isNaN(kernels.sum(floats, 0, null, 0, 3, 0)));
+    final double[] doubles = { 1e308, 1e308, -1 };
+    assertEquals(Double.POSITIVE_INFINITY,
+        kernels.sum(doubles, 0, null, 0, 2, 0));
+    assertEquals(-1.0, kernels.sum(doubles, 0, new boolean[] {
+      true, true, false }, 0, 3, 0));
+  }
+
+  public void testMinMax() {
+    final int[] ints = { 5, -1, Integer.MIN_VALUE, 9 };
+    final boolean[] isNull = { false, false, true, false };
+    assertEquals(Integer.MIN_VALUE, kernels.min(ints, 0, null, 0, 4, 0));
+    assertEquals(-1, kernels.min(ints, 0, isNull, 0, 4, 0));
+    assertEquals(9, kernels.max(ints, 0, isNull, 0, 4, 0));
+    assertEquals(100, kernels.max(ints, 0, isNull, 0, 4, 100));
+    // Nothing but NULLs leaves the initial value.
+    assertEquals(7, kernels.min(ints, 2, isNull, 2, 1, 7));
+    final long[] longs = { 3, Long.MAX_VALUE, -3 };
+    assertEquals(-3, kernels.min(longs, 0, null, 0, 3, Long.MAX_VALUE));
+    assertEquals(Long.MAX_VALUE, kernels.max(longs, 1, null, 0, 2, 0));
+  }
+
+  public void testFloatingPointMinMax() {
+    final double[] doubles = { 2, Double.NaN, -0.0, 0.0 };
+    final boolean[] isNull = { false, true, false, false };
+    assertTrue(Double.isNaN(kernels.min(doubles, 0, null, 0, 4, 0)));
+    assertTrue(Double.isNaN(kernels.max(doubles, 0, null, 0, 4, 0)));
+    // NULL NaNs are ignored.
+    assertEquals(2.0, kernels.max(doubles, 0, isNull, 0, 4, 0));
+    // Like Math.min(), -0 is less than 0.
+    assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(
+        kernels.min(doubles, 2, null, 0, 2, 0.0)));
+    assertEquals(Double.doubleToLongBits(0.0), Double.doubleToLongBits(
+        kernels.max(doubles, 2, null, 0, 2, -0.0)));
+    final float[] floats = { 1, Float.NaN, -5 };
+    assertEquals(-5f, kernels.min(floats, 2, null, 0, 1,
+        Float.POSITIVE_INFINITY));
+    assertTrue(Float.isNaN(kernels.max(floats, 0, null, 0, 3,
+        Float.NEGATIVE_INFINITY)));
+    assertTrue(Float.isNaN(kernels.min(floats, 0, null, 0, 0, Float.NaN)));
+  }
+
+  private static void assertArrayEquals(final int[] expected,
+      final int[] actual) {
+    assertEquals(Arrays.toString(expected), Arrays.toString(actual));
+  }
+
+  // expected has a T or an F for each of the first values of actual.
+  private static void assertBooleans(final String expected,
+      final boolean[] actual) {
+    final StringBuilder result = new StringBuilder();
+    for (int i = 0; i < expected.length(); ++i) {
+      result.append(actual[i] ? 'T' : 'F');
+    }
+    assertEquals(expected, result.toString());
+  }
+}
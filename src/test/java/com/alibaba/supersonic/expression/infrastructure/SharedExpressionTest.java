@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.expression.infrastructure;
+
+import static com.alibaba.supersonic.expression.infrastructure.Expressions.float64;
+import static com.alibaba.supersonic.expression.infrastructure.Expressions.int32;
+import static com.alibaba.supersonic.expression.infrastructure.Expressions.operation;
+import static com.alibaba.supersonic.expression.infrastructure.Expressions.variable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.alibaba.supersonic.base.infrastructure.Attribute;
+import com.alibaba.supersonic.base.infrastructure.Column;
+import com.alibaba.supersonic.base.infrastructure.TupleSchema;
+import com.alibaba.supersonic.base.infrastructure.View;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.ExpressionDescription;
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+import com.alibaba.supersonic.expression.base.BoundExpression;
+import com.alibaba.supersonic.expression.base.Selection;
+import com.alibaba.supersonic.proto.CommonEnums.DataType;
+import com.alibaba.supersonic.proto.CommonEnums.Nullability;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrs;
+
+public class SharedExpressionTest extends TestCase {
+
+  private static final int ROWS = 8;
+
+  private int[] x;
+  private int[] y;
+  private TupleSchema schema;
+  private View view;
+
+  @Override
+  protected void setUp() {
+    x = new int[] { 1, 2, 3, 4, 5, 6, 7, 8 };
+    y = new int[] { 1, 0, 2, 0, -1, 3, 0, 4 };
+    final TupleSchema.Builder builder = TupleSchema.builder();
+    builder.addAttribute(new Attribute("x", DataType.INT32,
+        Nullability.NOT_NULLABLE));
+    builder.addAttribute(new Attribute("y", DataType.INT32,
+        Nullability.NOT_NULLABLE));
+    schema = builder.build();
+    view = new View(schema);
+    view.mutableColumn(0).reset(x, null);
+    view.mutableColumn(1).reset(y, null);
+    view.setRowCount(ROWS);
+  }
+
+  public void testRepeatedSubtreesAreBoundOnce() {
+    final ExpressionDescription product = operation(OperationType.MULTIPLY,
+        variable("x"), variable("y"));
+    final ExpressionProgram program = compile(
+        operation(OperationType.ADD, product, int32(1)),
+        product,
+        operation(OperationType.LESS, variable("x"), variable("y")));
+    assertEquals(1, program.sharedExpressionCount());
+    assertTrue(program.root(1) instanceof SharedExpression);
+    assertSame(program.root(1), program.root(0).child(0));
+    assertFalse(program.root(2) instanceof SharedExpression);
+    program.beginBlock();
+    final Column plusOne = program.root(0).evaluate(view,
+        Selection.all(ROWS)).get();
+    for (int i = 0; i < ROWS; ++i) {
+      assertEquals(x[i] * y[i] + 1, plusOne.getInt(i));
+    }
+    final Column times = program.root(1).evaluate(view,
+        Selection.all(ROWS)).get();
+    for (int i = 0; i < ROWS; ++i) {
+      assertEquals(x[i] * y[i], times.getInt(i));
+    }
+  }
+
+  public void testOnlyLargestRepeatedSubtreesAreShared() {
+    final ExpressionDescription sum = operation(OperationType.ADD,
+        operation(OperationType.MULTIPLY, variable("x"), variable("y")),
+        variable("x"));
+    final ExpressionProgram program = compile(sum, sum);
+    assertEquals(1, program.sharedExpressionCount());
+    assertSame(program.root(0), program.root(1));
+  }
+
+  public void testResultReusedForContainedSelections() {
+    final Counting counting = new Counting(view);
+    final SharedExpression shared = share(counting);
+    final Selection all = Selection.all(ROWS);
+    final Selection even = select(0, 2, 4, 6);
+    shared.evaluate(view, all).get();
+    shared.evaluate(view, all).get();
+    shared.evaluate(view, even).get();
+    shared.evaluate(view, select(1, 7)).get();
+    assertEquals(1, counting.evaluations.size());
+  }
+
+  public void testRecomputedOnUnionOfSelections() {
+    final Counting counting = new Counting(view);
+    final SharedExpression shared = share(counting);
+    assertEquals(2, shared.evaluate(view, select(1, 5)).get().getInt(1));
+    assertEquals(6, shared.evaluate(view, select(5)).get().getInt(5));
+    final Column result = shared.evaluate(view, select(0, 5, 6)).get();
+    // Rows computed before stay valid, for ancestors that still use them.
+    assertEquals(2, result.getInt(1));
+    assertEquals(1, result.getInt(0));
+    assertEquals(7, result.getInt(6));
+    assertEquals(Arrays.asList("[1, 5]", "[0, 1, 5, 6]"),
+        counting.evaluations);
+  }
+
+  public void testBeginBlockInvalidatesResults() {
+    final Counting counting = new Counting(view);
+    final ExpressionProgram program = compile();
+    final SharedExpression shared = new SharedExpression(program, counting);
+    program.beginBlock();
+    assertEquals(3, shared.evaluate(view, select(2, 3)).get().getInt(2));
+    program.beginBlock();
+    x[2] = 30;
+    assertEquals(30, shared.evaluate(view, select(2)).get().getInt(2));
+    // A view with a different row count is a new block, too.
+    view.setRowCount(ROWS - 1);
+    assertEquals(30, shared.evaluate(view, select(2)).get().getInt(2));
+    assertEquals(Arrays.asList("[2, 3]", "[2]", "[2]"), counting.evaluations);
+  }
+
+  public void testSharedExpressionNotEvaluatedOnUnrequestedRows() {
+    // x / y fails where y = 0; each IF evaluates it only where y != 0.
+    final ExpressionDescription quotient = operation(
+        OperationType.DIVIDE_SIGNALING, variable("x"), variable("y"));
+    final ExpressionProgram program = compile(
+        operation(OperationType.IF,
+            operation(OperationType.GREATER, variable("y"), int32(0)),
+            quotient, float64(-1)),
+        operation(OperationType.IF,
+            operation(OperationType.NOT_EQUAL, variable("y"), int32(0)),
+            quotient, float64(-2)),
+        operation(OperationType.AND,
+            operation(OperationType.NOT_EQUAL, variable("y"), int32(0)),
+            operation(OperationType.GREATER, quotient, float64(1))));
+    // The quotient, and y != 0.
+    assertEquals(2, program.sharedExpressionCount());
+    for (int block = 0; block < 2; ++block) {
+      program.beginBlock();
+      final Column positive = program.root(0).evaluate(view,
+          Selection.all(ROWS)).get();
+      final Column nonZero = program.root(1).evaluate(view,
+          Selection.all(ROWS)).get();
+      final Column greater = program.root(2).evaluate(view,
+          Selection.all(ROWS)).get();
+      for (int i = 0; i < ROWS; ++i) {
+        final double q = y[i] == 0 ? Double.NaN : (double) x[i] / y[i];
+        assertEquals(y[i] > 0 ? q : -1, positive.getDouble(i), 0);
+        assertEquals(y[i] != 0 ? q : -2, nonZero.getDouble(i), 0);
+        assertEquals(y[i] != 0 && q > 1, greater.getBool(i));
+      }
+      for (int i = 0; i < ROWS; ++i) {
+        y[i] = -y[i];
+      }
+    }
+  }
+
+  private ExpressionProgram compile(
+      final ExpressionDescription... descriptions) {
+    return ExpressionProgram.compile(schema, Arrays.asList(descriptions))
+        .get();
+  }
+
+  private SharedExpression share(final BoundExpression expression) {
+    final ExpressionProgram program = compile();
+    program.beginBlock();
+    return new SharedExpression(program, expression);
+  }
+
+  private static Selection select(final int... rows) {
+    final boolean[] mask = new boolean[ROWS];
+    for (int row : rows) {
+      mask[row] = true;
+    }
+    final Selection selection = new Selection();
+    selection.selectTrue(Selection.all(ROWS), mask, 0, null, 0);
+    return selection;
+  }
+
+  // Returns column x, and records the rows it was evaluated on.
+  private static final class Counting extends BoundExpression {
+
+    final List<String> evaluations = new ArrayList<String>();
+
+    Counting(final View input) {
+      super(input.schema().getAttributeAt(0));
+    }
+
+    @Override
+    public FailureOr<Column> evaluate(final View input,
+        final Selection selection) {
+      final List<Integer> rows = new ArrayList<Integer>();
+      for (int k = 0; k < selection.count(); ++k) {
+        rows.add(selection.row(k));
+      }
+      Collections.sort(rows);
+      evaluations.add(rows.toString());
+      return FailureOrs.success(input.column(0));
+    }
+  }
+}
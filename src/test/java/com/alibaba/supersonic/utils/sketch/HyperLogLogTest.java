@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.utils.sketch;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+import com.alibaba.supersonic.utils.exception.FailureOrVoid;
+
+public class HyperLogLogTest extends TestCase {
+
+  public void testEmpty() {
+    assertEquals(0, new HyperLogLog().estimate());
+    assertEquals(0, new HyperLogLog(HyperLogLog.MIN_PRECISION).estimate());
+  }
+
+  public void testDuplicatesDontCount() {
+    final HyperLogLog sketch = new HyperLogLog();
+    for (int pass = 0; pass < 3; ++pass) {
+      for (long value = 0; value < 1000; ++value) {
+        sketch.add(HyperLogLog.hash(value));
+      }
+    }
+    final HyperLogLog once = sketch(0, 1000, HyperLogLog.DEFAULT_PRECISION);
+    assertTrue(Arrays.equals(once.toBytes(), sketch.toBytes()));
+  }
+
+  public void testSmallCardinalities() {
+    // Linear counting: nearly exact while most registers are empty.
+    for (int n = 1; n <= 100; ++n) {
+      assertEquals(n, sketch(0, n, HyperLogLog.DEFAULT_PRECISION).estimate(),
+          Math.max(1, n * 0.02));
+    }
+  }
+
+  public void testLargeCardinalities() {
+    // Within 3 standard errors (1.04 / sqrt(2^precision)).
+    final int[] precisions = { 10, 12, 14 };
+    final int[] counts = { 5000, 100000, 2000000 };
+    for (int precision : precisions) {
+      final double error = 3 * 1.04 / Math.sqrt(1 << precision);
+      for (int n : counts) {
+        final long estimate = sketch(0, n, precision).estimate();
+        assertEquals("precision " + precision + ", " + n + " values", n,
+            estimate, n * error);
+      }
+    }
+  }
+
+  public void testSmallPrecisionsAreUnbiased() {
+    // With 16 to 64 registers, the estimate of a single sketch is rough;
+    // the mean over many is close to the count (over 2.5 values per
+    // register, where linear counting doesn't apply).
+    for (int precision = HyperLogLog.MIN_PRECISION; precision <= 7;
+        ++precision) {
+      final int n = 50 << precision;
+      final int sketches = 400;
+      double sum = 0;
+      for (int i = 0; i < sketches; ++i) {
+        sum += sketch((long) i * n, (long) (i + 1) * n, precision).estimate();
+      }
+      final double error = 4 * 1.04 / Math.sqrt(1 << precision)
+          / Math.sqrt(sketches);
+      assertEquals("precision " + precision, 1.0, sum / sketches / n, error);
+    }
+  }
+
+  public void testMergeOfManySketches() {
+    // 100 overlapping ranges of 1000 values, 50500 values in all.
+    final HyperLogLog union = new HyperLogLog();
+    final HyperLogLog fromBytes = new HyperLogLog();
+    for (int i = 0; i < 100; ++i) {
+      final HyperLogLog part = sketch(i * 500L, i * 500L + 1000,
+          HyperLogLog.DEFAULT_PRECISION);
+      union.merge(part);
+      final byte[] bytes = part.toBytes();
+      assertTrue(fromBytes.merge(bytes, 0, bytes.length).isSuccess());
+    }
+    // The merge is the sketch of the union.
+    final HyperLogLog all = sketch(0, 50500, HyperLogLog.DEFAULT_PRECISION);
+    assertTrue(Arrays.equals(all.toBytes(), union.toBytes()));
+    assertTrue(Arrays.equals(all.toBytes(), fromBytes.toBytes()));
+    assertEquals(50500, union.estimate(), 50500 * 0.05);
+    // Merging a sketch into itself changes nothing.
+    union.merge(union);
+    assertTrue(Arrays.equals(all.toBytes(), union.toBytes()));
+  }
+
+  public void testMergeOfOtherPrecisionFails() {
+    final HyperLogLog sketch = new HyperLogLog(10);
+    try {
+      sketch.merge(new HyperLogLog(11));
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    final byte[] other = new HyperLogLog(11).toBytes();
+    assertMalformed(sketch.merge(other, 0, other.length));
+    assertTrue(HyperLogLog.check(other, 0, other.length, 11).isSuccess());
+    assertMalformed(HyperLogLog.check(other, 0, other.length, 10));
+  }
+
+  public void testRoundTrip() {
+    final HyperLogLog sketch = sketch(0, 12345, 9);
+    final byte[] bytes = new byte[sketch.serializedSize() + 7];
+    sketch.serialize(bytes, 5);
+    final FailureOr<HyperLogLog> read =
+        HyperLogLog.fromBytes(bytes, 5, sketch.serializedSize());
+    assertTrue(read.isSuccess());
+    assertEquals(9, read.get().precision());
+    assertEquals(sketch.estimate(), read.get().estimate());
+    assertTrue(Arrays.equals(sketch.toBytes(), read.get().toBytes()));
+    read.get().clear();
+    assertEquals(0, read.get().estimate());
+  }
+
+  public void testMalformedBytes() {
+    final byte[] valid = new HyperLogLog(4).toBytes();
+    assertTrue(HyperLogLog.fromBytes(valid, 0, valid.length).isSuccess());
+    assertMalformed(HyperLogLog.fromBytes(valid, 0, 0));
+    assertMalformed(HyperLogLog.fromBytes(valid, 0, 2));
+    // Truncated, and with a byte too many.
+    assertMalformed(HyperLogLog.fromBytes(valid, 0, valid.length - 1));
+    assertMalformed(HyperLogLog.fromBytes(Arrays.copyOf(valid,
+        valid.length + 1), 0, valid.length + 1));
+    for (int i = 0; i < 3; ++i) {
+      final byte[] bytes = valid.clone();
+      ++bytes[i];
+      assertMalformed(HyperLogLog.fromBytes(bytes, 0, bytes.length));
+    }
+    // Precisions out of range.
+    final byte[] small = valid.clone();
+    small[2] = HyperLogLog.MIN_PRECISION - 1;
+    assertMalformed(HyperLogLog.fromBytes(small, 0, 3 + (1 << small[2])));
+    final byte[] large = new byte[3 + (1 << 19)];
+    System.arraycopy(valid, 0, large, 0, 3);
+    large[2] = HyperLogLog.MAX_PRECISION + 1;
+    assertMalformed(HyperLogLog.fromBytes(large, 0, large.length));
+    large[2] = -1;
+    assertMalformed(HyperLogLog.fromBytes(large, 0, large.length));
+    final HyperLogLog sketch = new HyperLogLog(4);
+    assertMalformed(sketch.merge(small, 0, small.length));
+    assertEquals(0, sketch.estimate());
+  }
+
+  public void testInvalidPrecision() {
+    for (int precision : new int[] { HyperLogLog.MIN_PRECISION - 1,
+        HyperLogLog.MAX_PRECISION + 1 }) {
+      try {
+        new HyperLogLog(precision);
+        fail();
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+  }
+
+  public void testHashes() {
+    assertEquals(HyperLogLog.hash(0.0), HyperLogLog.hash(-0.0));
+    assertEquals(HyperLogLog.hash(Double.NaN),
+        HyperLogLog.hash(Double.longBitsToDouble(0x7ff8000000000001L)));
+    assertFalse(HyperLogLog.hash(1.0) == HyperLogLog.hash(2.0));
+    final byte[] bytes = { 9, 1, 2, 3, 9 };
+    assertEquals(HyperLogLog.hash(new byte[] { 1, 2, 3 }, 0, 3),
+        HyperLogLog.hash(bytes, 1, 3));
+    assertFalse(HyperLogLog.hash(bytes, 0, 0) == HyperLogLog.hash(bytes, 0,
+        1));
+  }
+
+  private static HyperLogLog sketch(final long from, final long to,
+      final int precision) {
+    final HyperLogLog result = new HyperLogLog(precision);
+    for (long value = from; value < to; ++value) {
+      result.add(HyperLogLog.hash(value));
+    }
+    return result;
+  }
+
+  private static void assertMalformed(final FailureOr<?> result) {
+    assertTrue(result.isFailure());
+    assertEquals(ReturnCode.ERROR_INVALID_ARGUMENT_VALUE,
+        result.exception().getReturnCode());
+  }
+
+  private static void assertMalformed(final FailureOrVoid result) {
+    assertTrue(result.isFailure());
+    assertEquals(ReturnCode.ERROR_INVALID_ARGUMENT_VALUE,
+        result.exception().getReturnCode());
+  }
+}
@@ -0,0 +1,310 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.utils.sketch;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.alibaba.supersonic.proto.CommonEnums.ReturnCode;
+import com.alibaba.supersonic.utils.exception.FailureOr;
+
+public class KllSketchTest extends TestCase {
+
+  // Fractions whose rank error is checked.
+  private static final double[] FRACTIONS = {
+    0.001, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999,
+  };
+
+  private final Random random = new Random(5);
+
+  public void testEmpty() {
+    final KllSketch sketch = new KllSketch();
+    assertEquals(0, sketch.count());
+    assertTrue(Double.isNaN(sketch.quantile(0.5)));
+    assertTrue(Double.isNaN(sketch.quantile(0)));
+    sketch.add(Double.NaN);
+    assertEquals(0, sketch.count());
+    final KllSketch read = roundTrip(sketch);
+    assertEquals(0, read.count());
+    assertTrue(Double.isNaN(read.quantile(1)));
+  }
+
+  public void testExactWhileSmall() {
+    // Below k values nothing is compacted: the quantiles are exact.
+    final KllSketch sketch = new KllSketch();
+    for (double value : shuffled(150)) {
+      sketch.add(value);
+    }
+    sketch.add(Double.NaN);
+    assertEquals(150, sketch.count());
+    assertEquals(0.0, sketch.quantile(0));
+    assertEquals(149.0, sketch.quantile(1));
+    for (int rank = 1; rank <= 150; ++rank) {
+      assertEquals(rank - 1.0, sketch.quantile((rank - 0.5) / 150));
+    }
+  }
+
+  public void testLargeInputs() {
+    final int n = 1000000;
+    final KllSketch shuffled = new KllSketch();
+    final KllSketch ascending = new KllSketch();
+    final KllSketch descending = new KllSketch();
+    for (double value : shuffled(n)) {
+      shuffled.add(value);
+    }
+    for (int i = 0; i < n; ++i) {
+      ascending.add(i);
+      descending.add(n - 1 - i);
+    }
+    for (KllSketch sketch : new KllSketch[] {
+        shuffled, ascending, descending }) {
+      assertEquals(n, sketch.count());
+      assertEquals(0.0, sketch.quantile(0));
+      assertEquals(n - 1.0, sketch.quantile(1));
+      assertRankErrors(sketch, n);
+      // About 3k values, whatever the input size.
+      assertTrue(sketch.serializedSize() < 4 * KllSketch.DEFAULT_K * 8);
+      assertQuantilesEqual(sketch, roundTrip(sketch));
+    }
+  }
+
+  public void testSmallK() {
+    final int n = 100000;
+    final KllSketch sketch = new KllSketch(8);
+    for (double value : shuffled(n)) {
+      sketch.add(value);
+    }
+    assertEquals(n, sketch.count());
+    assertTrue(sketch.serializedSize() < 100 * 8);
+    // Rough, but still ordered and within range.
+    double previous = sketch.quantile(0);
+    for (double fraction = 0.05; fraction <= 1; fraction += 0.05) {
+      final double quantile = sketch.quantile(fraction);
+      assertTrue(quantile >= previous);
+      previous = quantile;
+    }
+  }
+
+  public void testMergeOfManySketches() {
+    // 100 sketches of every 100th value, by object and by bytes.
+    final int n = 1000000;
+    final KllSketch[] parts = new KllSketch[100];
+    for (int i = 0; i < parts.length; ++i) {
+      parts[i] = new KllSketch();
+    }
+    for (double value : shuffled(n)) {
+      parts[(int) value % parts.length].add(value);
+    }
+    final KllSketch union = new KllSketch();
+    final KllSketch fromBytes = new KllSketch();
+    for (KllSketch part : parts) {
+      union.merge(part);
+      final byte[] bytes = part.toBytes();
+      assertTrue(fromBytes.merge(bytes, 0, bytes.length).isSuccess());
+    }
+    for (KllSketch sketch : new KllSketch[] { union, fromBytes }) {
+      assertEquals(n, sketch.count());
+      assertEquals(0.0, sketch.quantile(0));
+      assertEquals(n - 1.0, sketch.quantile(1));
+      assertRankErrors(sketch, n);
+      assertTrue(sketch.serializedSize() < 4 * KllSketch.DEFAULT_K * 8);
+    }
+    // Merges of merges.
+    final KllSketch left = new KllSketch();
+    final KllSketch right = new KllSketch();
+    for (int i = 0; i < parts.length; ++i) {
+      (i < 30 ? left : right).merge(parts[i]);
+    }
+    left.merge(right);
+    assertRankErrors(left, n);
+  }
+
+  public void testMergeIntoItself() {
+    final KllSketch sketch = new KllSketch();
+    for (double value : shuffled(10000)) {
+      sketch.add(value);
+    }
+    sketch.merge(sketch);
+    assertEquals(20000, sketch.count());
+    assertEquals(0.0, sketch.quantile(0));
+    assertEquals(9999.0, sketch.quantile(1));
+    assertRankErrors(sketch, 10000);
+    // Small enough not to be compacted yet.
+    final KllSketch small = new KllSketch();
+    small.add(1);
+    small.add(2);
+    small.merge(small);
+    assertEquals(4, small.count());
+    assertEquals(1.0, small.quantile(0.5));
+    assertEquals(2.0, small.quantile(0.75));
+  }
+
+  public void testMergeOfEmptySketches() {
+    final KllSketch empty = new KllSketch();
+    final KllSketch sketch = new KllSketch();
+    sketch.merge(empty);
+    assertEquals(0, sketch.count());
+    sketch.add(-3);
+    sketch.merge(empty);
+    empty.merge(sketch);
+    assertEquals(1, empty.count());
+    assertEquals(-3.0, empty.quantile(0));
+    assertEquals(-3.0, empty.quantile(1));
+  }
+
+  public void testRoundTripAtOffset() {
+    final KllSketch sketch = new KllSketch(50);
+    for (double value : shuffled(5000)) {
+      sketch.add(value * 0.5 - 100);
+    }
+    final byte[] bytes = new byte[sketch.serializedSize() + 10];
+    sketch.serialize(bytes, 3);
+    final FailureOr<KllSketch> read =
+        KllSketch.fromBytes(bytes, 3, sketch.serializedSize());
+    assertTrue(read.isSuccess());
+    assertEquals(sketch.count(), read.get().count());
+    assertQuantilesEqual(sketch, read.get());
+    assertTrue(Arrays.equals(sketch.toBytes(), read.get().toBytes()));
+  }
+
+  public void testMalformedBytes() {
+    final KllSketch sketch = new KllSketch();
+    for (double value : shuffled(1000)) {
+      sketch.add(value);
+    }
+    final byte[] valid = sketch.toBytes();
+    // Every truncation, and a byte too many.
+    for (int length = 0; length < valid.length; ++length) {
+      assertMalformed(KllSketch.fromBytes(valid, 0, length));
+    }
+    assertMalformed(KllSketch.fromBytes(Arrays.copyOf(valid,
+        valid.length + 1), 0, valid.length + 1));
+    // Magic, version.
+    for (int i = 0; i < 2; ++i) {
+      final byte[] bytes = valid.clone();
+      ++bytes[i];
+      assertMalformed(KllSketch.fromBytes(bytes, 0, bytes.length));
+    }
+    // k, count, levelCount, and the size of the first level.
+    assertMalformed(withInt(valid, 2, 7));
+    assertMalformed(withInt(valid, 2, 65536));
+    assertMalformed(withLong(valid, 6, -1));
+    assertMalformed(withInt(valid, 30, 0));
+    assertMalformed(withInt(valid, 30, 65));
+    assertMalformed(withInt(valid, 34, -1));
+    assertMalformed(withInt(valid, 34, Integer.MAX_VALUE));
+    final KllSketch target = new KllSketch();
+    target.add(1);
+    assertTrue(target.merge(valid, 0, 3).isFailure());
+    assertEquals(1, target.count());
+    assertTrue(target.merge(valid, 0, valid.length).isSuccess());
+    assertEquals(1001, target.count());
+  }
+
+  public void testCorruptedBytesDontThrow() {
+    final KllSketch sketch = new KllSketch(20);
+    for (double value : shuffled(3000)) {
+      sketch.add(value);
+    }
+    final byte[] valid = sketch.toBytes();
+    for (int run = 0; run < 2000; ++run) {
+      final byte[] bytes = valid.clone();
+      for (int i = random.nextInt(4); i >= 0; --i) {
+        bytes[random.nextInt(bytes.length)] = (byte) random.nextInt();
+      }
+      final FailureOr<KllSketch> read =
+          KllSketch.fromBytes(bytes, 0, bytes.length);
+      if (read.isSuccess()) {
+        read.get().quantile(random.nextDouble());
+        read.get().merge(sketch);
+      }
+    }
+  }
+
+  public void testInvalidK() {
+    for (int k : new int[] { 7, 65536 }) {
+      try {
+        new KllSketch(k);
+        fail();
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+  }
+
+  // The values 0 to n - 1 are their ranks; the estimates must be within 1%
+  // of the requested ranks.
+  private static void assertRankErrors(final KllSketch sketch, final int n) {
+    for (double fraction : FRACTIONS) {
+      final double quantile = sketch.quantile(fraction);
+      assertEquals("quantile " + fraction, fraction, quantile / n, 0.01);
+    }
+  }
+
+  private static void assertQuantilesEqual(final KllSketch expected,
+      final KllSketch actual) {
+    for (double fraction = 0; fraction <= 1; fraction += 0.01) {
+      assertEquals(expected.quantile(fraction), actual.quantile(fraction));
+    }
+  }
+
+  private static KllSketch roundTrip(final KllSketch sketch) {
+    final byte[] bytes = sketch.toBytes();
+    assertEquals(sketch.serializedSize(), bytes.length);
+    return KllSketch.fromBytes(bytes, 0, bytes.length).get();
+  }
+
+  // The values 0 to n - 1, in random order.
+  private double[] shuffled(final int n) {
+    final double[] result = new double[n];
+    for (int i = 0; i < n; ++i) {
+      result[i] = i;
+    }
+    for (int i = n - 1; i > 0; --i) {
+      final int j = random.nextInt(i + 1);
+      final double value = result[i];
+      result[i] = result[j];
+      result[j] = value;
+    }
+    return result;
+  }
+
+  private static FailureOr<KllSketch> withInt(final byte[] bytes,
+      final int offset, final int value) {
+    final byte[] result = bytes.clone();
+    ByteBuffer.wrap(result).order(ByteOrder.LITTLE_ENDIAN).putInt(offset,
+        value);
+    return KllSketch.fromBytes(result, 0, result.length);
+  }
+
+  private static FailureOr<KllSketch> withLong(final byte[] bytes,
+      final int offset, final long value) {
+    final byte[] result = bytes.clone();
+    ByteBuffer.wrap(result).order(ByteOrder.LITTLE_ENDIAN).putLong(offset,
+        value);
+    return KllSketch.fromBytes(result, 0, result.length);
+  }
+
+  private static void assertMalformed(final FailureOr<?> result) {
+    assertTrue(result.isFailure());
+    assertEquals(ReturnCode.ERROR_INVALID_ARGUMENT_VALUE,
+        result.exception().getReturnCode());
+  }
+}
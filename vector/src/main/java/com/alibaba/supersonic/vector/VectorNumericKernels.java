@@ -0,0 +1,705 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.vector;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+import com.alibaba.supersonic.expression.core.NumericKernels;
+import com.alibaba.supersonic.expression.core.ScalarNumericKernels;
+
+/**
+ * {@link NumericKernels} with the Vector API, in vectors of the preferred
+ * (widest) shape of the hardware. The rows after the last full vector are
+ * left to the scalar kernels.
+ * 
+ * The operators are constants at each call of the vector loops: the JIT
+ * compiler emits vector instructions only for operators it knows.
+ * 
+ * NULL flags become masks (the lanes of NULL rows are left out of
+ * aggregations); no NULL flags, no mask. INT32 and FLOAT values are widened
+ * to longs and doubles before summing, in vectors of half the shape.
+ */
+public class VectorNumericKernels extends ScalarNumericKernels {
+
+  private static final VectorSpecies<Integer> INTS =
+      IntVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Long> LONGS =
+      LongVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Float> FLOATS =
+      FloatVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Double> DOUBLES =
+      DoubleVector.SPECIES_PREFERRED;
+  // As many ints (floats) as there are longs (doubles) in a vector.
+  private static final VectorSpecies<Integer> HALF_INTS = VectorSpecies.of(
+      int.class, VectorShape.forBitSize(LONGS.vectorBitSize() / 2));
+  private static final VectorSpecies<Float> HALF_FLOATS = VectorSpecies.of(
+      float.class, VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+
+  @Override
+  public void arithmetic(final OperationType operation, final int[] left,
+      final int leftOffset, final int[] right, final int rightOffset,
+      final int[] result, final int count) {
+    final int done;
+    switch (operation) {
+      case ADD:
+        done = lanewise(VectorOperators.ADD, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case SUBTRACT:
+        done = lanewise(VectorOperators.SUB, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case MULTIPLY:
+        done = lanewise(VectorOperators.MUL, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case BITWISE_AND:
+        done = lanewise(VectorOperators.AND, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case BITWISE_OR:
+        done = lanewise(VectorOperators.OR, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case BITWISE_XOR:
+        done = lanewise(VectorOperators.XOR, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      default:
+        throw unsupported(operation);
+    }
+    arithmetic(operation, left, leftOffset, right, rightOffset, result, done,
+        count);
+  }
+
+  @Override
+  public void arithmetic(final OperationType operation, final long[] left,
+      final int leftOffset, final long[] right, final int rightOffset,
+      final long[] result, final int count) {
+    final int done;
+    switch (operation) {
+      case ADD:
+        done = lanewise(VectorOperators.ADD, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case SUBTRACT:
+        done = lanewise(VectorOperators.SUB, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case MULTIPLY:
+        done = lanewise(VectorOperators.MUL, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case BITWISE_AND:
+        done = lanewise(VectorOperators.AND, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case BITWISE_OR:
+        done = lanewise(VectorOperators.OR, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case BITWISE_XOR:
+        done = lanewise(VectorOperators.XOR, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      default:
+        throw unsupported(operation);
+    }
+    arithmetic(operation, left, leftOffset, right, rightOffset, result, done,
+        count);
+  }
+
+  @Override
+  public void arithmetic(final OperationType operation, final float[] left,
+      final int leftOffset, final float[] right, final int rightOffset,
+      final float[] result, final int count) {
+    final int done;
+    switch (operation) {
+      case ADD:
+        done = lanewise(VectorOperators.ADD, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case SUBTRACT:
+        done = lanewise(VectorOperators.SUB, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case MULTIPLY:
+        done = lanewise(VectorOperators.MUL, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case CPP_DIVIDE:
+      case DIVIDE_QUIET:
+        done = lanewise(VectorOperators.DIV, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      default:
+        throw unsupported(operation);
+    }
+    arithmetic(operation, left, leftOffset, right, rightOffset, result, done,
+        count);
+  }
+
+  @Override
+  public void arithmetic(final OperationType operation, final double[] left,
+      final int leftOffset, final double[] right, final int rightOffset,
+      final double[] result, final int count) {
+    final int done;
+    switch (operation) {
+      case ADD:
+        done = lanewise(VectorOperators.ADD, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case SUBTRACT:
+        done = lanewise(VectorOperators.SUB, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case MULTIPLY:
+        done = lanewise(VectorOperators.MUL, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case CPP_DIVIDE:
+      case DIVIDE_QUIET:
+        done = lanewise(VectorOperators.DIV, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      default:
+        throw unsupported(operation);
+    }
+    arithmetic(operation, left, leftOffset, right, rightOffset, result, done,
+        count);
+  }
+
+  @Override
+  public void compare(final OperationType operation, final int[] left,
+      final int leftOffset, final int[] right, final int rightOffset,
+      final boolean unsigned, final boolean[] result, final int count) {
+    final int done;
+    switch (operation) {
+      case EQUAL:
+        done = compareLanes(VectorOperators.EQ, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case NOT_EQUAL:
+        done = compareLanes(VectorOperators.NE, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case LESS:
+        done = unsigned
+            ? compareLanes(VectorOperators.UNSIGNED_LT, left, leftOffset,
+                right, rightOffset, result, count)
+            : compareLanes(VectorOperators.LT, left, leftOffset, right,
+                rightOffset, result, count);
+        break;
+      case LESS_OR_EQUAL:
+        done = unsigned
+            ? compareLanes(VectorOperators.UNSIGNED_LE, left, leftOffset,
+                right, rightOffset, result, count)
+            : compareLanes(VectorOperators.LE, left, leftOffset, right,
+                rightOffset, result, count);
+        break;
+      default:
+        throw unsupported(operation);
+    }
+    compare(operation, left, leftOffset, right, rightOffset, unsigned, result,
+        done, count);
+  }
+
+  @Override
+  public void compare(final OperationType operation, final long[] left,
+      final int leftOffset, final long[] right, final int rightOffset,
+      final boolean unsigned, final boolean[] result, final int count) {
+    final int done;
+    switch (operation) {
+      case EQUAL:
+        done = compareLanes(VectorOperators.EQ, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case NOT_EQUAL:
+        done = compareLanes(VectorOperators.NE, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case LESS:
+        done = unsigned
+            ? compareLanes(VectorOperators.UNSIGNED_LT, left, leftOffset,
+                right, rightOffset, result, count)
+            : compareLanes(VectorOperators.LT, left, leftOffset, right,
+                rightOffset, result, count);
+        break;
+      case LESS_OR_EQUAL:
+        done = unsigned
+            ? compareLanes(VectorOperators.UNSIGNED_LE, left, leftOffset,
+                right, rightOffset, result, count)
+            : compareLanes(VectorOperators.LE, left, leftOffset, right,
+                rightOffset, result, count);
+        break;
+      default:
+        throw unsupported(operation);
+    }
+    compare(operation, left, leftOffset, right, rightOffset, unsigned, result,
+        done, count);
+  }
+
+  @Override
+  public void compare(final OperationType operation, final float[] left,
+      final int leftOffset, final float[] right, final int rightOffset,
+      final boolean[] result, final int count) {
+    final int done;
+    switch (operation) {
+      case EQUAL:
+        done = compareLanes(VectorOperators.EQ, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case NOT_EQUAL:
+        done = compareLanes(VectorOperators.NE, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case LESS:
+        done = compareLanes(VectorOperators.LT, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case LESS_OR_EQUAL:
+        done = compareLanes(VectorOperators.LE, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      default:
+        throw unsupported(operation);
+    }
+    compare(operation, left, leftOffset, right, rightOffset, result, done,
+        count);
+  }
+
+  @Override
+  public void compare(final OperationType operation, final double[] left,
+      final int leftOffset, final double[] right, final int rightOffset,
+      final boolean[] result, final int count) {
+    final int done;
+    switch (operation) {
+      case EQUAL:
+        done = compareLanes(VectorOperators.EQ, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case NOT_EQUAL:
+        done = compareLanes(VectorOperators.NE, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case LESS:
+        done = compareLanes(VectorOperators.LT, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      case LESS_OR_EQUAL:
+        done = compareLanes(VectorOperators.LE, left, leftOffset, right,
+            rightOffset, result, count);
+        break;
+      default:
+        throw unsupported(operation);
+    }
+    compare(operation, left, leftOffset, right, rightOffset, result, done,
+        count);
+  }
+
+  @Override
+  public long sum(final int[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final long initial) {
+    LongVector sums = LongVector.zero(LONGS);
+    final int bound = LONGS.loopBound(count);
+    int i = 0;
+    if (isNull == null) {
+      for (; i < bound; i += LONGS.length()) {
+        sums = sums.add(widen(values, offset + i));
+      }
+    } else {
+      for (; i < bound; i += LONGS.length()) {
+        sums = sums.add(widen(values, offset + i),
+            VectorMask.fromArray(LONGS, isNull, isNullOffset + i).not());
+      }
+    }
+    return super.sum(values, offset + i, isNull, isNullOffset + i, count - i,
+        initial + sums.reduceLanes(VectorOperators.ADD));
+  }
+
+  @Override
+  public long sum(final long[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final long initial) {
+    LongVector sums = LongVector.zero(LONGS);
+    final int bound = LONGS.loopBound(count);
+    int i = 0;
+    if (isNull == null) {
+      for (; i < bound; i += LONGS.length()) {
+        sums = sums.add(LongVector.fromArray(LONGS, values, offset + i));
+      }
+    } else {
+      for (; i < bound; i += LONGS.length()) {
+        sums = sums.add(LongVector.fromArray(LONGS, values, offset + i),
+            VectorMask.fromArray(LONGS, isNull, isNullOffset + i).not());
+      }
+    }
+    return super.sum(values, offset + i, isNull, isNullOffset + i, count - i,
+        initial + sums.reduceLanes(VectorOperators.ADD));
+  }
+
+  @Override
+  public double sum(final float[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final double initial) {
+    DoubleVector sums = DoubleVector.zero(DOUBLES);
+    final int bound = DOUBLES.loopBound(count);
+    int i = 0;
+    if (isNull == null) {
+      for (; i < bound; i += DOUBLES.length()) {
+        sums = sums.add(widen(values, offset + i));
+      }
+    } else {
+      for (; i < bound; i += DOUBLES.length()) {
+        sums = sums.add(widen(values, offset + i),
+            VectorMask.fromArray(DOUBLES, isNull, isNullOffset + i).not());
+      }
+    }
+    return super.sum(values, offset + i, isNull, isNullOffset + i, count - i,
+        initial + sums.reduceLanes(VectorOperators.ADD));
+  }
+
+  @Override
+  public double sum(final double[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final double initial) {
+    DoubleVector sums = DoubleVector.zero(DOUBLES);
+    final int bound = DOUBLES.loopBound(count);
+    int i = 0;
+    if (isNull == null) {
+      for (; i < bound; i += DOUBLES.length()) {
+        sums = sums.add(DoubleVector.fromArray(DOUBLES, values, offset + i));
+      }
+    } else {
+      for (; i < bound; i += DOUBLES.length()) {
+        sums = sums.add(DoubleVector.fromArray(DOUBLES, values, offset + i),
+            VectorMask.fromArray(DOUBLES, isNull, isNullOffset + i).not());
+      }
+    }
+    return super.sum(values, offset + i, isNull, isNullOffset + i, count - i,
+        initial + sums.reduceLanes(VectorOperators.ADD));
+  }
+
+  @Override
+  public int min(final int[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final int initial) {
+    IntVector result = IntVector.broadcast(INTS, initial);
+    final int bound = INTS.loopBound(count);
+    int i = 0;
+    if (isNull == null) {
+      for (; i < bound; i += INTS.length()) {
+        result = result.lanewise(VectorOperators.MIN,
+            IntVector.fromArray(INTS, values, offset + i));
+      }
+    } else {
+      for (; i < bound; i += INTS.length()) {
+        result = result.lanewise(VectorOperators.MIN,
+            IntVector.fromArray(INTS, values, offset + i),
+            VectorMask.fromArray(INTS, isNull, isNullOffset + i).not());
+      }
+    }
+    return super.min(values, offset + i, isNull, isNullOffset + i,
+        count - i, result.reduceLanes(VectorOperators.MIN));
+  }
+
+  @Override
+  public long min(final long[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final long initial) {
+    LongVector result = LongVector.broadcast(LONGS, initial);
+    final int bound = LONGS.loopBound(count);
+    int i = 0;
+    if (isNull == null) {
+      for (; i < bound; i += LONGS.length()) {
+        result = result.lanewise(VectorOperators.MIN,
+            LongVector.fromArray(LONGS, values, offset + i));
+      }
+    } else {
+      for (; i < bound; i += LONGS.length()) {
+        result = result.lanewise(VectorOperators.MIN,
+            LongVector.fromArray(LONGS, values, offset + i),
+            VectorMask.fromArray(LONGS, isNull, isNullOffset + i).not());
+      }
+    }
+    return super.min(values, offset + i, isNull, isNullOffset + i,
+        count - i, result.reduceLanes(VectorOperators.MIN));
+  }
+
+  @Override
+  public float min(final float[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final float initial) {
+    FloatVector result = FloatVector.broadcast(FLOATS, initial);
+    final int bound = FLOATS.loopBound(count);
+    int i = 0;
+    if (isNull == null) {
+      for (; i < bound; i += FLOATS.length()) {
+        result = result.lanewise(VectorOperators.MIN,
+            FloatVector.fromArray(FLOATS, values, offset + i));
+      }
+    } else {
+      for (; i < bound; i += FLOATS.length()) {
+        result = result.lanewise(VectorOperators.MIN,
+            FloatVector.fromArray(FLOATS, values, offset + i),
+            VectorMask.fromArray(FLOATS, isNull, isNullOffset + i).not());
+      }
+    }
+    return super.min(values, offset + i, isNull, isNullOffset + i,
+        count - i, result.reduceLanes(VectorOperators.MIN));
+  }
+
+  @Override
+  public double min(final double[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final double initial) {
+    DoubleVector result = DoubleVector.broadcast(DOUBLES, initial);
+    final int bound = DOUBLES.loopBound(count);
+    int i = 0;
+    if (isNull == null) {
+      for (; i < bound; i += DOUBLES.length()) {
+        result = result.lanewise(VectorOperators.MIN,
+            DoubleVector.fromArray(DOUBLES, values, offset + i));
+      }
+    } else {
+      for (; i < bound; i += DOUBLES.length()) {
+        result = result.lanewise(VectorOperators.MIN,
+            DoubleVector.fromArray(DOUBLES, values, offset + i),
+            VectorMask.fromArray(DOUBLES, isNull, isNullOffset + i).not());
+      }
+    }
+    return super.min(values, offset + i, isNull, isNullOffset + i,
+        count - i, result.reduceLanes(VectorOperators.MIN));
+  }
+
+  @Override
+  public int max(final int[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final int initial) {
+    IntVector result = IntVector.broadcast(INTS, initial);
+    final int bound = INTS.loopBound(count);
+    int i = 0;
+    if (isNull == null) {
+      for (; i < bound; i += INTS.length()) {
+        result = result.lanewise(VectorOperators.MAX,
+            IntVector.fromArray(INTS, values, offset + i));
+      }
+    } else {
+      for (; i < bound; i += INTS.length()) {
+        result = result.lanewise(VectorOperators.MAX,
+            IntVector.fromArray(INTS, values, offset + i),
+            VectorMask.fromArray(INTS, isNull, isNullOffset + i).not());
+      }
+    }
+    return super.max(values, offset + i, isNull, isNullOffset + i,
+        count - i, result.reduceLanes(VectorOperators.MAX));
+  }
+
+  @Override
+  public long max(final long[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final long initial) {
+    LongVector result = LongVector.broadcast(LONGS, initial);
+    final int bound = LONGS.loopBound(count);
+    int i = 0;
+    if (isNull == null) {
+      for (; i < bound; i += LONGS.length()) {
+        result = result.lanewise(VectorOperators.MAX,
+            LongVector.fromArray(LONGS, values, offset + i));
+      }
+    } else {
+      for (; i < bound; i += LONGS.length()) {
+        result = result.lanewise(VectorOperators.MAX,
+            LongVector.fromArray(LONGS, values, offset + i),
+            VectorMask.fromArray(LONGS, isNull, isNullOffset + i).not());
+      }
+    }
+    return super.max(values, offset + i, isNull, isNullOffset + i,
+        count - i, result.reduceLanes(VectorOperators.MAX));
+  }
+
+  @Override
+  public float max(final float[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final float initial) {
+    FloatVector result = FloatVector.broadcast(FLOATS, initial);
+    final int bound = FLOATS.loopBound(count);
+    int i = 0;
+    if (isNull == null) {
+      for (; i < bound; i += FLOATS.length()) {
+        result = result.lanewise(VectorOperators.MAX,
+            FloatVector.fromArray(FLOATS, values, offset + i));
+      }
+    } else {
+      for (; i < bound; i += FLOATS.length()) {
+        result = result.lanewise(VectorOperators.MAX,
+            FloatVector.fromArray(FLOATS, values, offset + i),
+            VectorMask.fromArray(FLOATS, isNull, isNullOffset + i).not());
+      }
+    }
+    return super.max(values, offset + i, isNull, isNullOffset + i,
+        count - i, result.reduceLanes(VectorOperators.MAX));
+  }
+
+  @Override
+  public double max(final double[] values, final int offset,
+      final boolean[] isNull, final int isNullOffset, final int count,
+      final double initial) {
+    DoubleVector result = DoubleVector.broadcast(DOUBLES, initial);
+    final int bound = DOUBLES.loopBound(count);
+    int i = 0;
+    if (isNull == null) {
+      for (; i < bound; i += DOUBLES.length()) {
+        result = result.lanewise(VectorOperators.MAX,
+            DoubleVector.fromArray(DOUBLES, values, offset + i));
+      }
+    } else {
+      for (; i < bound; i += DOUBLES.length()) {
+        result = result.lanewise(VectorOperators.MAX,
+            DoubleVector.fromArray(DOUBLES, values, offset + i),
+            VectorMask.fromArray(DOUBLES, isNull, isNullOffset + i).not());
+      }
+    }
+    return super.max(values, offset + i, isNull, isNullOffset + i,
+        count - i, result.reduceLanes(VectorOperators.MAX));
+  }
+
+  private static int lanewise(final VectorOperators.Binary operator,
+      final int[] left, final int leftOffset, final int[] right,
+      final int rightOffset, final int[] result, final int count) {
+    final int bound = INTS.loopBound(count);
+    for (int i = 0; i < bound; i += INTS.length()) {
+      final IntVector a = IntVector.fromArray(INTS, left, leftOffset + i);
+      final IntVector b = IntVector.fromArray(INTS, right, rightOffset + i);
+      a.lanewise(operator, b).intoArray(result, i);
+    }
+    return bound;
+  }
+
+  private static int lanewise(final VectorOperators.Binary operator,
+      final long[] left, final int leftOffset, final long[] right,
+      final int rightOffset, final long[] result, final int count) {
+    final int bound = LONGS.loopBound(count);
+    for (int i = 0; i < bound; i += LONGS.length()) {
+      final LongVector a = LongVector.fromArray(LONGS, left, leftOffset + i);
+      final LongVector b = LongVector.fromArray(LONGS, right, rightOffset + i);
+      a.lanewise(operator, b).intoArray(result, i);
+    }
+    return bound;
+  }
+
+  private static int lanewise(final VectorOperators.Binary operator,
+      final float[] left, final int leftOffset, final float[] right,
+      final int rightOffset, final float[] result, final int count) {
+    final int bound = FLOATS.loopBound(count);
+    for (int i = 0; i < bound; i += FLOATS.length()) {
+      final FloatVector a = FloatVector.fromArray(FLOATS, left, leftOffset + i);
+      final FloatVector b =
+          FloatVector.fromArray(FLOATS, right, rightOffset + i);
+      a.lanewise(operator, b).intoArray(result, i);
+    }
+    return bound;
+  }
+
+  private static int lanewise(final VectorOperators.Binary operator,
+      final double[] left, final int leftOffset, final double[] right,
+      final int rightOffset, final double[] result, final int count) {
+    final int bound = DOUBLES.loopBound(count);
+    for (int i = 0; i < bound; i += DOUBLES.length()) {
+      final DoubleVector a =
+          DoubleVector.fromArray(DOUBLES, left, leftOffset + i);
+      final DoubleVector b =
+          DoubleVector.fromArray(DOUBLES, right, rightOffset + i);
+      a.lanewise(operator, b).intoArray(result, i);
+    }
+    return bound;
+  }
+
+  private static int compareLanes(
+      final VectorOperators.Comparison comparison, final int[] left,
+      final int leftOffset, final int[] right, final int rightOffset,
+      final boolean[] result, final int count) {
+    final int bound = INTS.loopBound(count);
+    for (int i = 0; i < bound; i += INTS.length()) {
+      final IntVector a = IntVector.fromArray(INTS, left, leftOffset + i);
+      final IntVector b = IntVector.fromArray(INTS, right, rightOffset + i);
+      a.compare(comparison, b).intoArray(result, i);
+    }
+    return bound;
+  }
+
+  private static int compareLanes(
+      final VectorOperators.Comparison comparison, final long[] left,
+      final int leftOffset, final long[] right, final int rightOffset,
+      final boolean[] result, final int count) {
+    final int bound = LONGS.loopBound(count);
+    for (int i = 0; i < bound; i += LONGS.length()) {
+      final LongVector a = LongVector.fromArray(LONGS, left, leftOffset + i);
+      final LongVector b = LongVector.fromArray(LONGS, right, rightOffset + i);
+      a.compare(comparison, b).intoArray(result, i);
+    }
+    return bound;
+  }
+
+  private static int compareLanes(
+      final VectorOperators.Comparison comparison, final float[] left,
+      final int leftOffset, final float[] right, final int rightOffset,
+      final boolean[] result, final int count) {
+    final int bound = FLOATS.loopBound(count);
+    for (int i = 0; i < bound; i += FLOATS.length()) {
+      final FloatVector a = FloatVector.fromArray(FLOATS, left, leftOffset + i);
+      final FloatVector b =
+          FloatVector.fromArray(FLOATS, right, rightOffset + i);
+      a.compare(comparison, b).intoArray(result, i);
+    }
+    return bound;
+  }
+
+  private static int compareLanes(
+      final VectorOperators.Comparison comparison, final double[] left,
+      final int leftOffset, final double[] right, final int rightOffset,
+      final boolean[] result, final int count) {
+    final int bound = DOUBLES.loopBound(count);
+    for (int i = 0; i < bound; i += DOUBLES.length()) {
+      final DoubleVector a =
+          DoubleVector.fromArray(DOUBLES, left, leftOffset + i);
+      final DoubleVector b =
+          DoubleVector.fromArray(DOUBLES, right, rightOffset + i);
+      a.compare(comparison, b).intoArray(result, i);
+    }
+    return bound;
+  }
+
+  private static LongVector widen(final int[] values, final int offset) {
+    return (LongVector) IntVector.fromArray(HALF_INTS, values, offset)
+        .convertShape(VectorOperators.I2L, LONGS, 0);
+  }
+
+  private static DoubleVector widen(final float[] values, final int offset) {
+    return (DoubleVector) FloatVector.fromArray(HALF_FLOATS, values, offset)
+        .convertShape(VectorOperators.F2D, DOUBLES, 0);
+  }
+}
@@ -0,0 +1,432 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.supersonic.vector;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.alibaba.supersonic.common.proto.ExpressionDescriptionProto.OperationType;
+import com.alibaba.supersonic.expression.core.NumericKernels;
+import com.alibaba.supersonic.expression.core.NumericKernelsLoader;
+import com.alibaba.supersonic.expression.core.ScalarNumericKernels;
+
+/**
+ * Checks that the vector kernels give the same results as the scalar ones,
+ * on random arrays of random lengths (to cover the rows after the last full
+ * vector), at random offsets, with and without NULLs.
+ */
+public class VectorNumericKernelsTest extends TestCase {
+
+  private static final int RUNS = 2000;
+
+  private static final OperationType[] INTEGER_OPERATIONS = {
+    OperationType.ADD, OperationType.SUBTRACT, OperationType.MULTIPLY,
+    OperationType.BITWISE_AND, OperationType.BITWISE_OR,
+    OperationType.BITWISE_XOR,
+  };
+
+  private static final OperationType[] FLOATING_POINT_OPERATIONS = {
+    OperationType.ADD, OperationType.SUBTRACT, OperationType.MULTIPLY,
+    OperationType.CPP_DIVIDE, OperationType.DIVIDE_QUIET,
+  };
+
+  private static final OperationType[] COMPARISONS = {
+    OperationType.EQUAL, OperationType.NOT_EQUAL, OperationType.LESS,
+    OperationType.LESS_OR_EQUAL,
+  };
+
+  private static final int[] SPECIAL_INTS = {
+    0, 1, -1, Integer.MIN_VALUE, Integer.MAX_VALUE,
+  };
+
+  private static final long[] SPECIAL_LONGS = {
+    0, 1, -1, Long.MIN_VALUE, Long.MAX_VALUE, Integer.MIN_VALUE,
+  };
+
+  private static final double[] SPECIAL_DOUBLES = {
+    0.0, -0.0, 1, Double.NaN, Double.POSITIVE_INFINITY,
+    Double.NEGATIVE_INFINITY, Double.MIN_VALUE, Double.MAX_VALUE,
+  };
+
+  private final NumericKernels scalar = new ScalarNumericKernels();
+  private final NumericKernels vector = new VectorNumericKernels();
+  private final Random random = new Random(41);
+
+  public void testLoaderPicksVectorKernels() {
+    assertTrue(NumericKernelsLoader.kernels() instanceof VectorNumericKernels);
+  }
+
+  public void testIntArithmetic() {
+    for (int run = 0; run < RUNS; ++run) {
+      final int count = count();
+      final int leftOffset = offset();
+      final int rightOffset = offset();
+      final int[] left = ints(leftOffset + count);
+      final int[] right = ints(rightOffset + count);
+      for (OperationType operation : INTEGER_OPERATIONS) {
+        final int[] expected = ints(count + offset());
+        final int[] actual = expected.clone();
+        scalar.arithmetic(operation, left, leftOffset, right, rightOffset,
+            expected, count);
+        vector.arithmetic(operation, left, leftOffset, right, rightOffset,
+            actual, count);
+        assertTrue(operation + " of " + count,
+            Arrays.equals(expected, actual));
+      }
+    }
+  }
+
+  public void testLongArithmetic() {
+    for (int run = 0; run < RUNS; ++run) {
+      final int count = count();
+      final int leftOffset = offset();
+      final int rightOffset = offset();
+      final long[] left = longs(leftOffset + count);
+      final long[] right = longs(rightOffset + count);
+      for (OperationType operation : INTEGER_OPERATIONS) {
+        final long[] expected = longs(count + offset());
+        final long[] actual = expected.clone();
+        scalar.arithmetic(operation, left, leftOffset, right, rightOffset,
+            expected, count);
+        vector.arithmetic(operation, left, leftOffset, right, rightOffset,
+            actual, count);
+        assertTrue(operation + " of " + count,
+            Arrays.equals(expected, actual));
+      }
+    }
+  }
+
+  public void testFloatArithmetic() {
+    for (int run = 0; run < RUNS; ++run) {
+      final int count = count();
+      final int leftOffset = offset();
+      final int rightOffset = offset();
+      final float[] left = floats(leftOffset + count);
+      final float[] right = floats(rightOffset + count);
+      for (OperationType operation : FLOATING_POINT_OPERATIONS) {
+        final float[] expected = floats(count + offset());
+        final float[] actual = expected.clone();
+        scalar.arithmetic(operation, left, leftOffset, right, rightOffset,
+            expected, count);
+        vector.arithmetic(operation, left, leftOffset, right, rightOffset,
+            actual, count);
+        // Arrays.equals() compares floats as Float.equals(): NaNs are
+        // equal, -0 and 0 aren't.
+        assertTrue(operation + " of " + count,
+            Arrays.equals(expected, actual));
+      }
+    }
+  }
+
+  public void testDoubleArithmetic() {
+    for (int run = 0; run < RUNS; ++run) {
+      final int count = count();
+      final int leftOffset = offset();
+      final int rightOffset = offset();
+      final double[] left = doubles(leftOffset + count);
+      final double[] right = doubles(rightOffset + count);
+      for (OperationType operation : FLOATING_POINT_OPERATIONS) {
+        final double[] expected = doubles(count + offset());
+        final double[] actual = expected.clone();
+        scalar.arithmetic(operation, left, leftOffset, right, rightOffset,
+            expected, count);
+        vector.arithmetic(operation, left, leftOffset, right, rightOffset,
+            actual, count);
+        assertTrue(operation + " of " + count,
+            Arrays.equals(expected, actual));
+      }
+    }
+  }
+
+  public void testIntCompare() {
+    for (int run = 0; run < RUNS; ++run) {
+      final int count = count();
+      final int leftOffset = offset();
+      final int rightOffset = offset();
+      final int[] left = ints(leftOffset + count);
+      // Makes some of the values equal.
+      final int[] right = ints(rightOffset + count);
+      for (int i = 0; i < count; i += 3) {
+        right[rightOffset + i] = left[leftOffset + i];
+      }
+      for (OperationType operation : COMPARISONS) {
+        for (boolean unsigned : new boolean[] { false, true }) {
+          final boolean[] expected = booleans(count + offset());
+          final boolean[] actual = expected.clone();
+          scalar.compare(operation, left, leftOffset, right, rightOffset,
+              unsigned, expected, count);
+          vector.compare(operation, left, leftOffset, right, rightOffset,
+              unsigned, actual, count);
+          assertTrue(operation + (unsigned ? " unsigned" : "") + " of "
+              + count, Arrays.equals(expected, actual));
+        }
+      }
+    }
+  }
+
+  public void testLongCompare() {
+    for (int run = 0; run < RUNS; ++run) {
+      final int count = count();
+      final int leftOffset = offset();
+      final int rightOffset = offset();
+      final long[] left = longs(leftOffset + count);
+      final long[] right = longs(rightOffset + count);
+      for (int i = 0; i < count; i += 3) {
+        right[rightOffset + i] = left[leftOffset + i];
+      }
+      for (OperationType operation : COMPARISONS) {
+        for (boolean unsigned : new boolean[] { false, true }) {
+          final boolean[] expected = booleans(count + offset());
+          final boolean[] actual = expected.clone();
+          scalar.compare(operation, left, leftOffset, right, rightOffset,
+              unsigned, expected, count);
+          vector.compare(operation, left, leftOffset, right, rightOffset,
+              unsigned, actual, count);
+          assertTrue(operation + (unsigned ? " unsigned" : "") + " of "
+              + count, Arrays.equals(expected, actual));
+        }
+      }
+    }
+  }
+
+  public void testFloatingPointCompare() {
+    for (int run = 0; run < RUNS; ++run) {
+      final int count = count();
+      final int leftOffset = offset();
+      final int rightOffset = offset();
+      final float[] leftFloats = floats(leftOffset + count);
+      final float[] rightFloats = floats(rightOffset + count);
+      final double[] leftDoubles = doubles(leftOffset + count);
+      final double[] rightDoubles = doubles(rightOffset + count);
+      for (int i = 0; i < count; i += 3) {
+        rightFloats[rightOffset + i] = leftFloats[leftOffset + i];
+        rightDoubles[rightOffset + i] = leftDoubles[leftOffset + i];
+      }
+      for (OperationType operation : COMPARISONS) {
+        boolean[] expected = booleans(count + offset());
+        boolean[] actual = expected.clone();
+        scalar.compare(operation, leftFloats, leftOffset, rightFloats,
+            rightOffset, expected, count);
+        vector.compare(operation, leftFloats, leftOffset, rightFloats,
+            rightOffset, actual, count);
+        assertTrue(operation + " of " + count + " floats",
+            Arrays.equals(expected, actual));
+        expected = booleans(count + offset());
+        actual = expected.clone();
+        scalar.compare(operation, leftDoubles, leftOffset, rightDoubles,
+            rightOffset, expected, count);
+        vector.compare(operation, leftDoubles, leftOffset, rightDoubles,
+            rightOffset, actual, count);
+        assertTrue(operation + " of " + count + " doubles",
+            Arrays.equals(expected, actual));
+      }
+    }
+  }
+
+  public void testIntegerAggregations() {
+    for (int run = 0; run < RUNS; ++run) {
+      final int count = count();
+      final int offset = offset();
+      final int isNullOffset = offset();
+      final int[] ints = ints(offset + count);
+      final long[] longs = longs(offset + count);
+      final boolean[] isNull = isNull(isNullOffset + count);
+      final int initialInt = ints(1)[0];
+      final long initialLong = longs(1)[0];
+      final String message = count + " values, NULLs: " + (isNull != null);
+      assertEquals(message,
+          scalar.sum(ints, offset, isNull, isNullOffset, count, initialLong),
+          vector.sum(ints, offset, isNull, isNullOffset, count, initialLong));
+      assertEquals(message,
+          scalar.sum(longs, offset, isNull, isNullOffset, count, initialLong),
+          vector.sum(longs, offset, isNull, isNullOffset, count,
+              initialLong));
+      assertEquals(message,
+          scalar.min(ints, offset, isNull, isNullOffset, count, initialInt),
+          vector.min(ints, offset, isNull, isNullOffset, count, initialInt));
+      assertEquals(message,
+          scalar.max(ints, offset, isNull, isNullOffset, count, initialInt),
+          vector.max(ints, offset, isNull, isNullOffset, count, initialInt));
+      assertEquals(message,
+          scalar.min(longs, offset, isNull, isNullOffset, count, initialLong),
+          vector.min(longs, offset, isNull, isNullOffset, count,
+              initialLong));
+      assertEquals(message,
+          scalar.max(longs, offset, isNull, isNullOffset, count, initialLong),
+          vector.max(longs, offset, isNull, isNullOffset, count,
+              initialLong));
+    }
+  }
+
+  public void testFloatingPointMinMax() {
+    for (int run = 0; run < RUNS; ++run) {
+      final int count = count();
+      final int offset = offset();
+      final int isNullOffset = offset();
+      final float[] floats = floats(offset + count);
+      final double[] doubles = doubles(offset + count);
+      final boolean[] isNull = isNull(isNullOffset + count);
+      final float initialFloat = floats(1)[0];
+      final double initialDouble = doubles(1)[0];
+      final String message = count + " values, NULLs: " + (isNull != null);
+      assertIdentical(message,
+          scalar.min(floats, offset, isNull, isNullOffset, count,
+              initialFloat),
+          vector.min(floats, offset, isNull, isNullOffset, count,
+              initialFloat));
+      assertIdentical(message,
+          scalar.max(floats, offset, isNull, isNullOffset, count,
+              initialFloat),
+          vector.max(floats, offset, isNull, isNullOffset, count,
+              initialFloat));
+      assertIdentical(message,
+          scalar.min(doubles, offset, isNull, isNullOffset, count,
+              initialDouble),
+          vector.min(doubles, offset, isNull, isNullOffset, count,
+              initialDouble));
+      assertIdentical(message,
+          scalar.max(doubles, offset, isNull, isNullOffset, count,
+              initialDouble),
+          vector.max(doubles, offset, isNull, isNullOffset, count,
+              initialDouble));
+    }
+  }
+
+  public void testFloatingPointSums() {
+    for (int run = 0; run < RUNS; ++run) {
+      final int count = count();
+      final int offset = offset();
+      final int isNullOffset = offset();
+      // No MAX_VALUEs: whether their sums overflow depends on the order.
+      final float[] floats = new float[offset + count];
+      final double[] doubles = new double[offset + count];
+      for (int i = 0; i < floats.length; ++i) {
+        doubles[i] = random.nextInt(20) == 0
+            ? SPECIAL_DOUBLES[random.nextInt(SPECIAL_DOUBLES.length - 1)]
+            : random.nextGaussian() * 1e6;
+        floats[i] = (float) doubles[i];
+      }
+      final boolean[] isNull = isNull(isNullOffset + count);
+      final String message = count + " values, NULLs: " + (isNull != null);
+      assertSum(message,
+          scalar.sum(floats, offset, isNull, isNullOffset, count, 1),
+          vector.sum(floats, offset, isNull, isNullOffset, count, 1));
+      assertSum(message,
+          scalar.sum(doubles, offset, isNull, isNullOffset, count, 1),
+          vector.sum(doubles, offset, isNull, isNullOffset, count, 1));
+    }
+  }
+
+  // The vector kernels add in a different order; the sums may differ in
+  // the last bits.
+  private static void assertSum(final String message, final double expected,
+      final double actual) {
+    if (Double.isNaN(expected) || Double.isInfinite(expected)) {
+      assertIdentical(message, expected, actual);
+    } else {
+      assertEquals(message, expected, actual,
+          1e-9 * Math.max(1, Math.abs(expected)) + 1e-3);
+    }
+  }
+
+  // As Double.equals(): NaNs are equal, -0 and 0 aren't.
+  private static void assertIdentical(final String message,
+      final double expected, final double actual) {
+    assertTrue(message + ": expected " + expected + " but was " + actual,
+        Double.compare(expected, actual) == 0);
+  }
+
+  // Up to a few vectors of the widest shape, plus a tail.
+  private int count() {
+    return random.nextInt(4) == 0 ? random.nextInt(4) : random.nextInt(150);
+  }
+
+  private int offset() {
+    return random.nextInt(17);
+  }
+
+  private int[] ints(final int length) {
+    final int[] result = new int[length];
+    final int range = random.nextBoolean() ? 10 : 0;
+    for (int i = 0; i < length; ++i) {
+      if (random.nextInt(8) == 0) {
+        result[i] = SPECIAL_INTS[random.nextInt(SPECIAL_INTS.length)];
+      } else {
+        result[i] = range == 0 ? random.nextInt() : random.nextInt(range);
+      }
+    }
+    return result;
+  }
+
+  private long[] longs(final int length) {
+    final long[] result = new long[length];
+    for (int i = 0; i < length; ++i) {
+      if (random.nextInt(8) == 0) {
+        result[i] = SPECIAL_LONGS[random.nextInt(SPECIAL_LONGS.length)];
+      } else {
+        result[i] = random.nextBoolean() ? random.nextLong()
+            : random.nextInt(10) - 5;
+      }
+    }
+    return result;
+  }
+
+  private float[] floats(final int length) {
+    final double[] values = doubles(length);
+    final float[] result = new float[length];
+    for (int i = 0; i < length; ++i) {
+      result[i] = (float) values[i];
+    }
+    return result;
+  }
+
+  private double[] doubles(final int length) {
+    final double[] result = new double[length];
+    for (int i = 0; i < length; ++i) {
+      if (random.nextInt(8) == 0) {
+        result[i] = SPECIAL_DOUBLES[random.nextInt(SPECIAL_DOUBLES.length)];
+      } else {
+        result[i] = random.nextInt(4) == 0 ? random.nextInt(5)
+            : random.nextGaussian() * 1000;
+      }
+    }
+    return result;
+  }
+
+  private boolean[] booleans(final int length) {
+    final boolean[] result = new boolean[length];
+    for (int i = 0; i < length; ++i) {
+      result[i] = random.nextBoolean();
+    }
+    return result;
+  }
+
+  // Null a third of the time, otherwise NULLs at a random density.
+  private boolean[] isNull(final int length) {
+    if (random.nextInt(3) == 0) {
+      return null;
+    }
+    final double density = random.nextDouble();
+    final boolean[] result = new boolean[length];
+    for (int i = 0; i < length; ++i) {
+      result[i] = random.nextDouble() < density;
+    }
+    return result;
+  }
+}